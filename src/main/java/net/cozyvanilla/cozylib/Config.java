@@ -1,10 +1,13 @@
 package net.cozyvanilla.cozylib;
 
 import net.cozyvanilla.cozylib.common.enums.MessageType;
+import net.cozyvanilla.cozylib.common.enums.StorageBackend;
+import net.cozyvanilla.cozylib.runtime.DatabaseExecutor;
 import net.cozyvanilla.cozylib.util.yaml.YamlReader;
 import org.bukkit.plugin.Plugin;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class Config {
@@ -16,6 +19,18 @@ public class Config {
     private static MessageSound messageSound;
 
     private static MySQLConfig mySQLConfig;
+    private static StorageConfig storageConfig;
+    private static ReplicaConfig replicaConfig;
+    private static ShardConfig shardConfig;
+    private static BulkheadConfig bulkheadConfig;
+    private static WriteBehindConfig writeBehindConfig;
+    private static JournalConfig journalConfig;
+    private static BackfillConfig backfillConfig;
+    private static CacheConfig cacheConfig;
+    private static SessionConfig sessionConfig;
+    private static ExecutorConfig executorConfig;
+    private static MetricsConfig metricsConfig;
+    private static ResilienceConfig resilienceConfig;
 
     private static final Map<String, Boolean> modules = new HashMap<>();
     private static final Map<String, Boolean> integrations = new HashMap<>();
@@ -28,6 +43,19 @@ public class Config {
     public record MessageSound(String info, String warning, String severe, String notification, String broadcast) {}
 
     public record MySQLConfig(String poolName, String host, int port, String username, String password, String dbName) {}
+    public record StorageConfig(StorageBackend backend, String sqliteFile, int readPoolSize, int groupCommitSize) {}
+    public record ReplicaConfig(List<String> hosts, int poolSize, long readYourWritesMillis) {}
+    public record ShardConfig(List<String> hosts, int poolSize, int previousCount, long placementCacheSeconds) {}
+    public record BulkheadConfig(boolean enabled, int maxConnections, long timeoutMillis, Map<String, Integer> plugins) {}
+    public record WriteBehindConfig(boolean enabled, double interval, int maxPending, int batchSize) {}
+    public record JournalConfig(boolean enabled, String folder, double drainInterval, long compactBytes) {}
+    public record BackfillConfig(int chunkSize, int rowsPerSecond) {}
+    public record CacheConfig(long maximumSize, long refreshAfter, long gracePeriod) {}
+    public record SessionConfig(long deadlineMillis, long gracePeriod, double flushInterval, String timeoutMessage, String failureMessage) {}
+    public record ExecutorConfig(int queueCapacity, DatabaseExecutor.RejectionPolicy rejectionPolicy) {}
+    public record MetricsConfig(boolean enabled, long slowQueryMillis) {}
+    public record ResilienceConfig(boolean enabled, int initialLimit, int minLimit, int maxLimit, long latencyTargetMillis,
+                                   int windowSize, double failureRate, long openMillis, int probes) {}
 
     public Config(Plugin plugin) {
         YamlReader reader = new YamlReader(plugin, "config.yml");
@@ -77,10 +105,109 @@ public class Config {
                 reader.get().getString("mysql.database")
         );
 
+        storageConfig = new StorageConfig(
+                readStorageBackend(reader.get().getString("mysql.storage", "mysql")),
+                reader.get().getString("mysql.sqlite.file", "database.db"),
+                Math.max(1, reader.get().getInt("mysql.sqlite.read_pool_size", 4)),
+                reader.get().getInt("mysql.sqlite.group_commit_size", 256)
+        );
+
+        replicaConfig = new ReplicaConfig(
+                reader.get().getStringList("mysql.replicas.hosts", List.of()),
+                Math.max(1, reader.get().getInt("mysql.replicas.pool_size", 10)),
+                reader.get().getLong("mysql.replicas.read_your_writes_millis", 2000L)
+        );
+
+        shardConfig = new ShardConfig(
+                reader.get().getStringList("mysql.shards.hosts", List.of()),
+                Math.max(1, reader.get().getInt("mysql.shards.pool_size", 10)),
+                Math.max(0, reader.get().getInt("mysql.shards.previous_count", 0)),
+                Math.max(1L, reader.get().getLong("mysql.shards.placement_cache_seconds", 30L))
+        );
+
+        bulkheadConfig = new BulkheadConfig(
+                reader.get().getBoolean("mysql.bulkheads.enabled", true),
+                reader.get().getInt("mysql.bulkheads.max_connections", 6),
+                reader.get().getLong("mysql.bulkheads.timeout_millis", 10000L),
+                Map.copyOf(reader.stringKeyIntMap(reader.get().getSection("mysql.bulkheads.plugins")))
+        );
+
+        writeBehindConfig = new WriteBehindConfig(
+                reader.get().getBoolean("mysql.write_behind.enabled", false),
+                reader.get().getDouble("mysql.write_behind.interval", 5.0),
+                reader.get().getInt("mysql.write_behind.max_pending", 500),
+                reader.get().getInt("mysql.write_behind.batch_size", 250)
+        );
+
+        journalConfig = new JournalConfig(
+                reader.get().getBoolean("mysql.journal.enabled", false),
+                reader.get().getString("mysql.journal.folder", "journal"),
+                reader.get().getDouble("mysql.journal.drain_interval", 2.0),
+                reader.get().getLong("mysql.journal.compact_bytes", 4194304L)
+        );
+
+        backfillConfig = new BackfillConfig(
+                reader.get().getInt("mysql.backfill.chunk_size", 500),
+                reader.get().getInt("mysql.backfill.rows_per_second", 5000)
+        );
+
+        cacheConfig = new CacheConfig(
+                reader.get().getLong("mysql.cache.maximum_size", 2000L),
+                reader.get().getLong("mysql.cache.refresh_after", 300L),
+                reader.get().getLong("mysql.cache.grace_period", 60L)
+        );
+
+        sessionConfig = new SessionConfig(
+                reader.get().getLong("mysql.sessions.deadline_millis", 3000L),
+                reader.get().getLong("mysql.sessions.grace_period", 30L),
+                reader.get().getDouble("mysql.sessions.flush_interval", 60.0),
+                reader.get().getString("mysql.sessions.timeout_message", "<red>Your data took too long to load, please try again in a moment."),
+                reader.get().getString("mysql.sessions.failure_message", "<red>Your data could not be loaded, please try again later.")
+        );
+
+        executorConfig = new ExecutorConfig(
+                reader.get().getInt("mysql.executor.queue_capacity", 1000),
+                readRejectionPolicy(reader.get().getString("mysql.executor.rejection_policy", "ABORT"))
+        );
+
+        metricsConfig = new MetricsConfig(
+                reader.get().getBoolean("mysql.metrics.enabled", true),
+                reader.get().getLong("mysql.metrics.slow_query_millis", 250L)
+        );
+
+        resilienceConfig = new ResilienceConfig(
+                reader.get().getBoolean("mysql.resilience.enabled", true),
+                reader.get().getInt("mysql.resilience.initial_limit", 20),
+                reader.get().getInt("mysql.resilience.min_limit", 2),
+                reader.get().getInt("mysql.resilience.max_limit", 200),
+                reader.get().getLong("mysql.resilience.latency_target_millis", 500L),
+                reader.get().getInt("mysql.resilience.window_size", 20),
+                reader.get().getDouble("mysql.resilience.failure_rate", 0.5),
+                reader.get().getLong("mysql.resilience.open_millis", 10000L),
+                reader.get().getInt("mysql.resilience.probes", 3)
+        );
+
         modules.putAll(reader.stringKeyBooleanMap("modules"));
         integrations.putAll(reader.stringKeyBooleanMap("integrations"));
     }
 
+    private StorageBackend readStorageBackend(String value) {
+        try {
+            return StorageBackend.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return StorageBackend.MYSQL;
+        }
+    }
+
+    private DatabaseExecutor.RejectionPolicy readRejectionPolicy(String value) {
+        try {
+            return DatabaseExecutor.RejectionPolicy.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            // the logger is not up yet while the config is read
+            return DatabaseExecutor.RejectionPolicy.ABORT;
+        }
+    }
+
     public static String getName() { return "CozyLib"; }
 
     public static String getPrefix() {
@@ -129,6 +256,30 @@ public class Config {
 
     public static MySQLConfig getMySQLConfig() { return mySQLConfig; }
 
+    public static StorageConfig getStorageConfig() { return storageConfig; }
+
+    public static ReplicaConfig getReplicaConfig() { return replicaConfig; }
+
+    public static ShardConfig getShardConfig() { return shardConfig; }
+
+    public static BulkheadConfig getBulkheadConfig() { return bulkheadConfig; }
+
+    public static WriteBehindConfig getWriteBehindConfig() { return writeBehindConfig; }
+
+    public static JournalConfig getJournalConfig() { return journalConfig; }
+
+    public static BackfillConfig getBackfillConfig() { return backfillConfig; }
+
+    public static CacheConfig getCacheConfig() { return cacheConfig; }
+
+    public static SessionConfig getSessionConfig() { return sessionConfig; }
+
+    public static ExecutorConfig getExecutorConfig() { return executorConfig; }
+
+    public static MetricsConfig getMetricsConfig() { return metricsConfig; }
+
+    public static ResilienceConfig getResilienceConfig() { return resilienceConfig; }
+
     public static Map<String, Boolean> getModules() { return modules; }
 
     public static Map<String, Boolean> getIntegrations() { return integrations; }
@@ -34,6 +34,7 @@ public final class CozyLib extends JavaPlugin {
         // Plugin shutdown logic
         modules.disable();
         integrations.disable();
+        database.disable();
         logger.disable();
     }
 
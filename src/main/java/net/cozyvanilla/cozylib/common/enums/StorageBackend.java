@@ -0,0 +1,8 @@
+package net.cozyvanilla.cozylib.common.enums;
+
+public enum StorageBackend {
+    /** A MySQL or MariaDB server, shared between servers. */
+    MYSQL,
+    /** An embedded SQLite file in the plugin data folder, for single-server setups. */
+    SQLITE
+}
@@ -0,0 +1,12 @@
+package net.cozyvanilla.cozylib.common.enums;
+
+public enum StorageMode {
+    /** Every player has a row for every data name, zero rows included. */
+    DENSE,
+    /** Rows only exist once a value becomes non-zero; missing rows read as zero. */
+    SPARSE;
+
+    public boolean isSparse() {
+        return this == SPARSE;
+    }
+}
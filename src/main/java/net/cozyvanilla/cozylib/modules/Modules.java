@@ -3,12 +3,14 @@ package net.cozyvanilla.cozylib.modules;
 import dev.jorel.commandapi.CommandAPICommand;
 import net.cozyvanilla.cozylib.Config;
 import net.cozyvanilla.cozylib.common.enums.MessageType;
+import net.cozyvanilla.cozylib.modules.mysql.MySQLCommands;
+import net.cozyvanilla.cozylib.modules.mysql.services.session.SessionLoader;
 import net.cozyvanilla.cozylib.modules.util.Console;
-import net.cozyvanilla.cozylib.runtime.MySQLConnection;
 import net.cozyvanilla.cozylib.modules.core.polls.Polls;
 import net.cozyvanilla.cozylib.modules.core.seasons.Seasons;
 import org.bukkit.plugin.Plugin;
 
+import java.time.Duration;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -17,7 +19,7 @@ public class Modules {
     private final Set<CommandAPICommand> commands = new HashSet<>();
 
     // ------------ mandatory ------------
-    private MySQLConnection mysqlDatabase;
+    private SessionLoader sessionLoader;
 
     // ------------ optional ------------
     private Seasons seasons;
@@ -29,10 +31,14 @@ public class Modules {
     }
 
     private void register() {
-        // mandatory
-        this.mysqlDatabase = new MySQLConnection(plugin);
-        mysqlDatabase.enable();
+        // mandatory, the database itself is opened by the plugin before the modules load
+        commands.add(new MySQLCommands().get());
 
+        Config.SessionConfig sessionConfig = Config.getSessionConfig();
+        this.sessionLoader = new SessionLoader(plugin, sessionConfig.deadlineMillis(),
+                Duration.ofSeconds(sessionConfig.gracePeriod()), sessionConfig.flushInterval(),
+                sessionConfig.timeoutMessage(), sessionConfig.failureMessage());
+        sessionLoader.enable();
 
         this.seasons = new Seasons(plugin);
         this.polls = new Polls(plugin);
@@ -65,6 +71,7 @@ public class Modules {
     }
 
     public void disable() {
+        sessionLoader.disable();
         seasons.disable();
         polls.disable();
     }
@@ -0,0 +1,169 @@
+package net.cozyvanilla.cozylib.modules.core.collection_log;
+
+import net.cozyvanilla.cozylib.common.enums.OperationType;
+import net.cozyvanilla.cozylib.modules.mysql.repositories.IntegerKeyDatabase;
+import net.cozyvanilla.cozylib.modules.mysql.repositories.PlayerProgressRepository.Collection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One player's collection log, indexed by the data ids of the repository's dictionary.
+ *
+ * <p>Amounts live in an {@code int[]} and first-obtained times, in epoch millis with 0 for never,
+ * in a {@code long[]}. Both are updated with compare-and-set, so any thread may change them without
+ * allocating. Every changed index is recorded in a dirty {@link BitSet}, guarded by its own monitor
+ * for the single bit it sets, which a save takes and clears in one step.
+ */
+public final class CollectionProgress {
+    private static final VarHandle AMOUNTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle OBTAINED_AT = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final UUID uuid;
+    private final int[] amounts;
+    private final long[] obtainedAt;
+    private final BitSet dirty;
+
+    CollectionProgress(@NotNull UUID uuid, int capacity) {
+        this.uuid = uuid;
+        this.amounts = new int[capacity];
+        this.obtainedAt = new long[capacity];
+        this.dirty = new BitSet(capacity);
+    }
+
+    /**
+     * Copies loaded rows into a new progress, with a slot for every id the dictionary knows. Call it
+     * once the dictionary was loaded, see {@code PlayerProgressRepository#dictionaryLoaded()}; names
+     * it does not know are skipped.
+     */
+    static @NotNull CollectionProgress of(@NotNull UUID uuid, @NotNull Map<String, Collection> data,
+                                          @NotNull IntegerKeyDatabase dictionary) {
+        CollectionProgress progress = new CollectionProgress(uuid, dictionary.capacity());
+
+        data.forEach((dataName, collection) -> {
+            int id = dictionary.idOf(dataName);
+            if (collection == null || !progress.contains(id)) return;
+
+            progress.amounts[id] = collection.amount();
+            progress.obtainedAt[id] = collection.obtainedAt() == null ? 0 : collection.obtainedAt().toEpochMilli();
+        });
+
+        return progress;
+    }
+
+    public @NotNull UUID getUuid() {
+        return uuid;
+    }
+
+    /**
+     * Checks whether a data id has a slot, ids registered after the player loaded do not.
+     */
+    public boolean contains(int id) {
+        return id >= 0 && id < amounts.length;
+    }
+
+    public int getAmount(int id) {
+        return (int) AMOUNTS.getVolatile(amounts, id);
+    }
+
+    /**
+     * Gets when the data was first obtained, in epoch millis.
+     *
+     * @return the time, or 0 if it was never obtained
+     */
+    public long getObtainedAt(int id) {
+        return (long) OBTAINED_AT.getVolatile(obtainedAt, id);
+    }
+
+    /**
+     * Atomically applies an operation to an amount. The result is kept between 0 and
+     * {@link Integer#MAX_VALUE}, and the first time it rises above 0 the obtained time is set.
+     *
+     * @param id the data id, see {@link #contains}
+     * @param type the operation
+     * @param value the operand
+     * @param now the current time in epoch millis
+     * @return the new amount
+     * @throws ArithmeticException if dividing by zero
+     */
+    public int apply(int id, @NotNull OperationType type, int value, long now) {
+        if (type == OperationType.DIVIDE && value == 0) {
+            throw new ArithmeticException("Cannot divide a collection amount by zero");
+        }
+
+        int current;
+        int next;
+
+        do {
+            current = (int) AMOUNTS.getVolatile(amounts, id);
+            next = compute(current, type, value);
+        } while (current != next && !AMOUNTS.compareAndSet(amounts, id, current, next));
+
+        if (current == next) return next;
+
+        if (next > 0) {
+            OBTAINED_AT.compareAndSet(obtainedAt, id, 0L, now);
+        }
+
+        synchronized (dirty) {
+            dirty.set(id);
+        }
+
+        return next;
+    }
+
+    public boolean isDirty() {
+        synchronized (dirty) {
+            return !dirty.isEmpty();
+        }
+    }
+
+    /**
+     * Takes the dirty indices and clears them, a change made afterward marks its index again.
+     */
+    @NotNull BitSet takeDirty() {
+        synchronized (dirty) {
+            BitSet taken = (BitSet) dirty.clone();
+            dirty.clear();
+            return taken;
+        }
+    }
+
+    /**
+     * Marks indices taken by a save that failed as dirty again.
+     */
+    void restoreDirty(@NotNull BitSet failed) {
+        synchronized (dirty) {
+            dirty.or(failed);
+        }
+    }
+
+    /**
+     * Gets the obtained time of an index as an instant.
+     *
+     * @return the time, or null if it was never obtained
+     */
+    @Nullable Instant obtainedInstant(int id) {
+        long millis = getObtainedAt(id);
+        return millis == 0 ? null : Instant.ofEpochMilli(millis);
+    }
+
+    // private methods
+    private static int compute(int current, OperationType type, int value) {
+        long result = switch (type) {
+            case ADD -> (long) current + value;
+            case SUBTRACT -> (long) current - value;
+            case MULTIPLY -> (long) current * value;
+            case DIVIDE -> current / value;
+            case SET -> value;
+        };
+
+        return (int) Math.clamp(result, 0L, Integer.MAX_VALUE);
+    }
+}
@@ -1,111 +1,224 @@
-//package net.cozyvanilla.cozylib.services.cozylib;
-//
-//import net.cozyvanilla.cozylib.modules.util.Console;
-//import net.cozyvanilla.cozylib.modules.mysql.repositories.PlayerProgressRepository;
-//import net.cozyvanilla.cozylib.util.paper.AsyncUtils;
-//import org.bukkit.entity.Player;
-//import org.bukkit.event.EventHandler;
-//import org.bukkit.event.Listener;
-//import org.bukkit.event.player.PlayerJoinEvent;
-//import org.bukkit.event.player.PlayerQuitEvent;
-//import org.bukkit.plugin.Plugin;
-//
-//import java.util.*;
-//import java.util.concurrent.CompletableFuture;
-//
-//public class CozyCollectionLog implements Listener {
-//    private final Plugin plugin;
-//    private final PlayerProgressRepository database;
-//    private final Map<UUID, Map<String, PlayerProgressRepository.Collection>> playerCache = new HashMap<>();
-//    private final Set<UUID> dirtyPlayers =  new HashSet<>();
-//
-//    public CozyCollectionLog(Plugin plugin, Set<String> dataList) {
-//        this.plugin = plugin;
-//        String tableName = plugin.getName().toLowerCase() + "_collections";
-//        this.database = new PlayerProgressRepository(tableName, dataList);
-//    }
-//
-//    @EventHandler
-//    public void onJoin(PlayerJoinEvent e) {
-//        Player player = e.getPlayer();
-//        UUID uuid = player.getUniqueId();
-//        getOrCreate(uuid);
-//    }
-//
-//    @EventHandler
-//    public void onLeave(PlayerQuitEvent e) {
-//        Player player = e.getPlayer();
-//        UUID uuid = player.getUniqueId();
-//        // store cached data to database
-//        updateDatabase(uuid);
-//    }
-//
-//    private void enable() {
-//        database.initialize();
-//        plugin.getServer().getPluginManager().registerEvents(this, plugin);
-//    }
-//
-//    private void disable() {
-//
-//    }
-//
-//    public void getOrCreate(UUID uuid) {
-//        database.getAsync(uuid)
-//                .thenCompose(optionalData -> {
-//                    if (optionalData.isPresent()) {
-//                        playerCache.put(uuid, optionalData.get());
-//                        return CompletableFuture.completedFuture(null);
-//                    }
-//
-//                    // not found → create
-//                    return database.createAsync(uuid).thenAccept(createdData -> {
-//                        playerCache.put(uuid, createdData);
-//                    });
-//                })
-//                .exceptionally(error -> {
-//                    Throwable cause = error.getCause() == null ? error : error.getCause();
-//
-//                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-//                        Console.severe("[" + plugin.getName() + "] ",
-//                                "Failed to getOrCreate data for " + uuid + ": " + cause.getMessage()
-//                        );
-//                    });
-//
-//                    return null;
-//                });
-//    }
-//
-//    // does nothing if cache data does not exist/empty
-//    public void updateDatabase(UUID uuid) {
-//        Map<String, Integer> data = getFromCache(uuid);
-//        if (data == null || data.isEmpty()) { return; }
-//        AsyncUtils.asyncAndForget(plugin, () -> {
-//            database.update(uuid, data);
-//        });
-//    }
-//
-//    public Map<String, Integer> getFromCache(UUID uuid) {
-//        return playerCache.getOrDefault(uuid, new HashMap<>());
-//    }
-//
-//    public void markDirty(UUID uuid) {
-//        dirtyPlayers.add(uuid);
-//    }
-//
-//    public void saveAll() {
-//        for (UUID uuid : dirtyPlayers) {
-//            updateDatabase(uuid);
-//        }
-//
-//        dirtyPlayers.clear();
-//    }
-//
-//    //
-//    public void incrementData(UUID uuid, String dataName, OperationType type, int amount) {
-//        Map<String, Integer> data = getFromCache(uuid);
-//        if (data == null || data.isEmpty()) { return; }
-//
-//        int value = data.getOrDefault(dataName, 0);
-//        //data.replace(dataName, )
-//    }
-//}
\ No newline at end of file
+package net.cozyvanilla.cozylib.modules.core.collection_log;
+
+import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.common.enums.OperationType;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.PlayerRepository;
+import net.cozyvanilla.cozylib.modules.mysql.repositories.IntegerKeyDatabase;
+import net.cozyvanilla.cozylib.modules.mysql.repositories.PlayerProgressRepository;
+import net.cozyvanilla.cozylib.modules.mysql.services.session.PlayerSession;
+import net.cozyvanilla.cozylib.modules.mysql.services.session.SessionKey;
+import net.cozyvanilla.cozylib.modules.mysql.services.session.SessionLoader;
+import net.cozyvanilla.cozylib.runtime.MySQLConnection;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Per-player collection counters of a plugin, stored in a {@code <plugin>_collections} table.
+ *
+ * <p>Players are loaded before they join through the {@link SessionLoader}, straight into a
+ * {@link CollectionProgress} indexed by data id that lives in their session. {@link #incrementData}
+ * is a lock-free update of that progress, can be called from any thread and marks the session
+ * dirty. The session loader owns every save: its flush interval, the quit flush and a session
+ * reattached within the grace period all work on the same progress, and each save writes only the
+ * indices changed since the last one, through the repository's journal or write-behind buffer when
+ * enabled. A failed save keeps both the indices and the session dirty for the next flush.
+ *
+ * <p>Amounts are saved exactly, so lowering one persists; the table keeps the earliest obtained
+ * time it has seen. Players are only loaded once the data list has its ids, so every data name of
+ * it has a slot in their progress.
+ */
+public final class CozyCollectionLog {
+    private final Plugin plugin;
+    private final PlayerProgressRepository database;
+    private final IntegerKeyDatabase dictionary;
+    private final SessionKey<CollectionProgress> key;
+
+    public CozyCollectionLog(@NotNull Plugin plugin, @NotNull Set<String> dataList) {
+        this.plugin = plugin;
+        String tableName = plugin.getName().toLowerCase(Locale.ROOT) + "_collections";
+        this.database = new PlayerProgressRepository(plugin, tableName, dataList);
+        this.dictionary = database.getDictionary();
+        this.key = SessionLoader.register(tableName, new ProgressLoader());
+    }
+
+    /**
+     * Synchronously saves every online player, then stops loading progress into new sessions and
+     * flushes the repository.
+     */
+    public void disable() {
+        saveAll();
+        SessionLoader.unregister(key);
+        database.close();
+    }
+
+    // ------------ usable methods ------------
+    /**
+     * Applies an operation to an online player's counter without touching the database and marks
+     * their session dirty. Every operation, including one lowering the counter, is saved as the
+     * exact new amount.
+     *
+     * @param uuid the player's UUID
+     * @param dataName a data name from the data list
+     * @param type the operation
+     * @param amount the operand
+     * @return the new amount, or -1 if the player or data name is not loaded
+     */
+    public int incrementData(@NotNull UUID uuid, @NotNull String dataName, @NotNull OperationType type, int amount) {
+        PlayerSession session = SessionLoader.getSession(uuid);
+        if (session == null || !session.has(key)) return -1;
+
+        CollectionProgress progress = session.get(key);
+        int id = dictionary.idOf(dataName);
+        if (!progress.contains(id)) return -1;
+
+        int result = progress.apply(id, type, amount, System.currentTimeMillis());
+        session.markDirty(key);
+        return result;
+    }
+
+    /**
+     * Gets an online player's counter.
+     *
+     * @return the amount, or -1 if the player or data name is not loaded
+     */
+    public int getData(@NotNull UUID uuid, @NotNull String dataName) {
+        CollectionProgress progress = getProgress(uuid);
+        if (progress == null) return -1;
+
+        int id = dictionary.idOf(dataName);
+        return progress.contains(id) ? progress.getAmount(id) : -1;
+    }
+
+    /**
+     * Gets when an online player first obtained a data name.
+     *
+     * @return the time, or null if it was never obtained or is not loaded
+     */
+    public @Nullable Instant getObtainedAt(@NotNull UUID uuid, @NotNull String dataName) {
+        CollectionProgress progress = getProgress(uuid);
+        if (progress == null) return null;
+
+        int id = dictionary.idOf(dataName);
+        return progress.contains(id) ? progress.obtainedInstant(id) : null;
+    }
+
+    public @Nullable CollectionProgress getProgress(@NotNull UUID uuid) {
+        PlayerSession session = SessionLoader.getSession(uuid);
+        return session == null || !session.has(key) ? null : session.get(key);
+    }
+
+    /**
+     * Writes the changed counters of every online player on the calling thread. Counters that fail
+     * to save stay dirty for the session loader's next flush.
+     */
+    public void saveAll() {
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            CollectionProgress progress = getProgress(player.getUniqueId());
+            if (progress == null) continue;
+
+            try {
+                save(progress);
+            } catch (IllegalStateException e) {
+                Logger.severe("Failed to save the collection counters of " + player.getName() + " in " +
+                        database.getTableName() + ", retrying on the next flush", e);
+            }
+        }
+    }
+
+    public @NotNull PlayerProgressRepository getDatabase() {
+        return database;
+    }
+
+    // private methods
+    // goes through the repository's journal or write-behind buffer when enabled, the changed indices
+    // are marked dirty again if the save fails
+    private void save(CollectionProgress progress) {
+        BitSet dirty = progress.takeDirty();
+        if (dirty.isEmpty()) return;
+
+        Map<String, PlayerProgressRepository.Collection> data = new HashMap<>();
+        for (int id = dirty.nextSetBit(0); id >= 0; id = dirty.nextSetBit(id + 1)) {
+            String dataName = dictionary.nameOf(id);
+            if (dataName == null) continue;
+
+            data.put(dataName, new PlayerProgressRepository.Collection(progress.getAmount(id), progress.obtainedInstant(id)));
+        }
+
+        try {
+            database.update(progress.getUuid(), data);
+        } catch (RuntimeException e) {
+            progress.restoreDirty(dirty);
+            throw e;
+        }
+    }
+
+    // loads players straight into their progress at login, and saves the changes of one player; progress
+    // is sized by the dictionary, so nothing is loaded before it holds the data list
+    private final class ProgressLoader implements PlayerRepository<CollectionProgress> {
+
+        @Override
+        public @NotNull Optional<CollectionProgress> get(UUID uuid) {
+            database.dictionaryLoaded().join();
+            return database.get(uuid).map(data -> CollectionProgress.of(uuid, data, dictionary));
+        }
+
+        @Override
+        public @NotNull Map<UUID, CollectionProgress> getAll(@NotNull java.util.Collection<UUID> uuids) {
+            database.dictionaryLoaded().join();
+            Map<UUID, CollectionProgress> result = new HashMap<>();
+            database.getAll(uuids).forEach((uuid, data) -> result.put(uuid, CollectionProgress.of(uuid, data, dictionary)));
+            return result;
+        }
+
+        @Override
+        public @NotNull CollectionProgress create(UUID uuid) {
+            database.dictionaryLoaded().join();
+            return CollectionProgress.of(uuid, database.create(uuid), dictionary);
+        }
+
+        // fails so a session flush keeps the session dirty, the progress keeps its own dirty indices
+        @Override
+        public void update(UUID uuid, @NotNull CollectionProgress data) {
+            save(data);
+        }
+
+        @Override
+        public @NotNull CompletableFuture<Optional<CollectionProgress>> getAsync(UUID uuid) {
+            return database.dictionaryLoaded()
+                    .thenCompose(ignored -> database.getAsync(uuid))
+                    .thenApply(found -> found.map(data -> CollectionProgress.of(uuid, data, dictionary)));
+        }
+
+        @Override
+        public @NotNull CompletableFuture<Map<UUID, CollectionProgress>> getAllAsync(@NotNull java.util.Collection<UUID> uuids) {
+            return database.dictionaryLoaded().thenCompose(ignored -> database.getAllAsync(uuids)).thenApply(loaded -> {
+                Map<UUID, CollectionProgress> result = new HashMap<>();
+                loaded.forEach((uuid, data) -> result.put(uuid, CollectionProgress.of(uuid, data, dictionary)));
+                return result;
+            });
+        }
+
+        @Override
+        public @NotNull CompletableFuture<CollectionProgress> createAsync(UUID uuid) {
+            return database.dictionaryLoaded()
+                    .thenCompose(ignored -> database.createAsync(uuid))
+                    .thenApply(data -> CollectionProgress.of(uuid, data, dictionary));
+        }
+
+        @Override
+        public @NotNull CompletableFuture<Void> updateAsync(UUID uuid, @NotNull CollectionProgress data) {
+            return MySQLConnection.runAsync(plugin, database.getTableName(), () -> update(uuid, data));
+        }
+
+        @Override
+        public @NotNull CompletableFuture<Void> flushAsync(UUID uuid) {
+            return database.flushAsync(uuid);
+        }
+    }
+}
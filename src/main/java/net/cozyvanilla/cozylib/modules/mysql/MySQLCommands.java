@@ -0,0 +1,419 @@
+package net.cozyvanilla.cozylib.modules.mysql;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import dev.jorel.commandapi.CommandAPICommand;
+import dev.jorel.commandapi.arguments.StringArgument;
+import net.cozyvanilla.cozylib.Config;
+import net.cozyvanilla.cozylib.CozyLib;
+import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.common.enums.MessageType;
+import net.cozyvanilla.cozylib.modules.mysql.abstracts.AbstractMySQL;
+import net.cozyvanilla.cozylib.modules.mysql.services.cache.CachedPlayerRepository;
+import net.cozyvanilla.cozylib.modules.mysql.services.dump.TableDump;
+import net.cozyvanilla.cozylib.modules.mysql.services.metrics.LatencyHistogram;
+import net.cozyvanilla.cozylib.modules.mysql.services.metrics.QueryMetrics;
+import net.cozyvanilla.cozylib.modules.mysql.services.metrics.StatementMetrics;
+import net.cozyvanilla.cozylib.modules.mysql.services.resilience.CircuitBreaker;
+import net.cozyvanilla.cozylib.modules.mysql.services.resilience.RepositoryGuard;
+import net.cozyvanilla.cozylib.modules.mysql.services.shard.ShardRebalancer;
+import net.cozyvanilla.cozylib.modules.mysql.services.table.StatementTemplate;
+import net.cozyvanilla.cozylib.modules.util.Console;
+import net.cozyvanilla.cozylib.modules.util.Messages;
+import net.cozyvanilla.cozylib.runtime.ConnectionBulkhead;
+import net.cozyvanilla.cozylib.runtime.DatabaseExecutor;
+import net.cozyvanilla.cozylib.runtime.MySQLConnection;
+import net.cozyvanilla.cozylib.runtime.ShardRouter;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+public class MySQLCommands {
+    private static final int STATS_LIMIT = 10;
+    private static final int TEMPLATE_DISPLAY_LENGTH = 120;
+    private static final long PROGRESS_INTERVAL_MILLIS = 5_000L;
+    private static final DateTimeFormatter DUMP_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final String prefix = "[CozyLib-MySQL]";
+    private final String permission = "cozylib.admin";
+
+    public CommandAPICommand get() {
+        return new CommandAPICommand("db")
+                .withSubcommand(bulkheads())
+                .withSubcommand(cache())
+                .withSubcommand(executor())
+                .withSubcommand(export())
+                .withSubcommand(guards())
+                .withSubcommand(importDump())
+                .withSubcommand(rebalance())
+                .withSubcommand(shards())
+                .withSubcommand(statements())
+                .withSubcommand(stats());
+    }
+
+    private CommandAPICommand bulkheads() {
+        return new CommandAPICommand("bulkheads")
+                .withPermission(permission)
+                .executes((sender, args) -> {
+
+                    if (MySQLConnection.getBulkheads().isEmpty()) {
+                        reply(sender, "No plugin has borrowed a connection through a bulkhead yet.", MessageType.WARNING);
+                        return;
+                    }
+
+                    for (ConnectionBulkhead bulkhead : MySQLConnection.getBulkheads()) {
+                        ConnectionBulkhead.Stats stats = bulkhead.getStats();
+                        reply(sender, stats.name() +
+                                ": in_use=" + stats.inUse() + "/" + stats.maxConnections() +
+                                ", acquired=" + stats.acquired() +
+                                ", timeouts=" + stats.timeouts() +
+                                ", avg_wait=" + String.format("%.2fms", stats.averageWaitMillis()) +
+                                ", p99_wait=" + String.format("%.2fms", stats.p99WaitMillis()), MessageType.INFO);
+                    }
+                });
+    }
+
+    private CommandAPICommand cache() {
+        return new CommandAPICommand("cache")
+                .withPermission(permission)
+                .executes((sender, args) -> {
+
+                    if (CachedPlayerRepository.registered().isEmpty()) {
+                        reply(sender, "There are no cached repositories registered.", MessageType.WARNING);
+                        return;
+                    }
+
+                    for (CachedPlayerRepository<?> repository : CachedPlayerRepository.registered()) {
+                        CacheStats stats = repository.getStats();
+                        reply(sender, repository.getName() +
+                                ": size=" + repository.estimatedSize() +
+                                ", pinned=" + repository.pinnedCount() +
+                                ", hits=" + stats.hitCount() +
+                                ", misses=" + stats.missCount() +
+                                ", hit_rate=" + String.format("%.1f%%", stats.hitRate() * 100) +
+                                ", avg_load=" + String.format("%.2fms", stats.averageLoadPenalty() / 1_000_000.0) +
+                                ", evictions=" + stats.evictionCount(), MessageType.INFO);
+                    }
+                });
+    }
+
+    private CommandAPICommand executor() {
+        return new CommandAPICommand("executor")
+                .withPermission(permission)
+                .executes((sender, args) -> {
+                    DatabaseExecutor executor = MySQLConnection.getExecutor();
+
+                    if (executor == null) {
+                        reply(sender, "The database executor is not running.", MessageType.WARNING);
+                        return;
+                    }
+
+                    DatabaseExecutor.Stats stats = executor.getStats();
+                    reply(sender, "queued=" + stats.queueDepth() +
+                            ", active=" + stats.activeWorkers() +
+                            ", completed=" + stats.completed() +
+                            ", rejected=" + stats.rejected() +
+                            ", avg_wait=" + String.format("%.2fms", stats.averageWaitMillis()) +
+                            ", max_wait=" + String.format("%.2fms", stats.maxWaitMillis()), MessageType.INFO);
+
+                    stats.depthByKey().forEach((key, depth) ->
+                            reply(sender, key + ": queued=" + depth, MessageType.INFO));
+                });
+    }
+
+    private CommandAPICommand export() {
+        return new CommandAPICommand("export")
+                .withPermission(permission)
+                .withArguments(new StringArgument("table"))
+                .executes((sender, args) -> {
+                    String table = (String) args.get("table");
+                    AbstractMySQL repository = AbstractMySQL.find(table);
+
+                    if (repository == null) {
+                        reply(sender, "No repository owns a table named " + table + ".", MessageType.WARNING);
+                        return;
+                    }
+
+                    File file = new File(dumpFolder(repository), table + "-" + LocalDateTime.now().format(DUMP_TIMESTAMP) + TableDump.EXTENSION);
+                    reply(sender, "Exporting " + table + " to " + file.getName() + "...", MessageType.INFO);
+
+                    repository.exportAsync(file, progress(sender, "Exported", table)).thenAccept(rows -> {
+                        if (rows < 0) {
+                            reply(sender, "Failed to export " + table + ", see the console for details.", MessageType.SEVERE);
+                        } else {
+                            reply(sender, "Exported " + rows + " rows of " + table + " to " + file.getPath() + ".", MessageType.NOTIFICATION);
+                        }
+                    });
+                });
+    }
+
+    private CommandAPICommand guards() {
+        return new CommandAPICommand("guards")
+                .withPermission(permission)
+                .executes((sender, args) -> {
+
+                    if (RepositoryGuard.registered().isEmpty()) {
+                        reply(sender, "There are no guarded repositories registered.", MessageType.WARNING);
+                        return;
+                    }
+
+                    for (RepositoryGuard guard : RepositoryGuard.registered()) {
+                        RepositoryGuard.Stats stats = guard.getStats();
+                        reply(sender, stats.name() +
+                                ": circuit=" + stats.state() +
+                                ", in_flight=" + stats.inFlight() + "/" + stats.limit() +
+                                ", calls=" + stats.calls() +
+                                ", failures=" + stats.failures() +
+                                ", failure_rate=" + String.format("%.1f%%", stats.failureRate() * 100) +
+                                ", limited=" + stats.limited() +
+                                ", short_circuited=" + stats.shortCircuited() +
+                                ", transitions=" + stats.transitions() +
+                                ", p99=" + String.format("%.2fms", stats.p99Millis()),
+                                stats.state() == CircuitBreaker.State.CLOSED ? MessageType.INFO : MessageType.WARNING);
+                    }
+                });
+    }
+
+    private CommandAPICommand importDump() {
+        return new CommandAPICommand("import")
+                .withPermission(permission)
+                .withArguments(new StringArgument("table"))
+                .withOptionalArguments(new StringArgument("file"))
+                .executes((sender, args) -> {
+                    String table = (String) args.get("table");
+                    String fileName = (String) args.get("file");
+                    AbstractMySQL repository = AbstractMySQL.find(table);
+
+                    if (repository == null) {
+                        reply(sender, "No repository owns a table named " + table + ".", MessageType.WARNING);
+                        return;
+                    }
+
+                    File file = fileName == null ? latestDump(repository) : dumpFile(repository, fileName);
+                    if (fileName != null && file == null) {
+                        reply(sender, fileName + " is not inside " + dumpFolder(repository).getPath() + ".", MessageType.WARNING);
+                        return;
+                    }
+
+                    if (file == null || !file.isFile()) {
+                        reply(sender, "No export of " + table + " was found in " + dumpFolder(repository).getPath() + ".", MessageType.WARNING);
+                        return;
+                    }
+
+                    reply(sender, "Importing " + file.getName() + " into " + table + "...", MessageType.INFO);
+
+                    repository.importAsync(file, progress(sender, "Imported", table)).thenAccept(rows -> {
+                        if (rows < 0) {
+                            reply(sender, "Failed to import " + file.getName() + ", see the console for details.", MessageType.SEVERE);
+                        } else {
+                            reply(sender, "Imported " + rows + " rows into " + table + ".", MessageType.NOTIFICATION);
+                        }
+                    });
+                });
+    }
+
+    private CommandAPICommand rebalance() {
+        return new CommandAPICommand("rebalance")
+                .withPermission(permission)
+                .executes((sender, args) -> {
+                    ShardRouter router = MySQLConnection.getShardRouter();
+
+                    if (router == null || !router.isRebalancing()) {
+                        reply(sender, "No rebalance is pending, append shards and set mysql.shards.previous_count first.", MessageType.WARNING);
+                        return;
+                    }
+
+                    if (ShardRebalancer.isRunning()) {
+                        reply(sender, "A rebalance is already running.", MessageType.WARNING);
+                        return;
+                    }
+
+                    CozyLib plugin = CozyLib.getInstance();
+                    Config.BackfillConfig config = Config.getBackfillConfig();
+                    List<AbstractMySQL> tables = ShardRebalancer.shardedTables();
+
+                    // players online here keep writing through their cached placement, move them later
+                    ShardRebalancer rebalancer = new ShardRebalancer(plugin, router, tables,
+                            uuid -> plugin.getServer().getPlayer(uuid) != null,
+                            config.chunkSize(), config.rowsPerSecond());
+
+                    reply(sender, "Rebalancing " + tables.size() + " tables from " + router.getPreviousCount() +
+                            " to " + router.getShardCount() + " shards...", MessageType.INFO);
+
+                    MySQLConnection.supplyAsync(plugin, "shard-rebalance", () -> {
+                        try {
+                            return rebalancer.run();
+                        } catch (SQLException | IllegalStateException e) {
+                            Logger.severe("Failed to rebalance shards", e);
+                            return null;
+                        }
+                    }).exceptionally(error -> {
+                        Logger.severe("Could not queue the shard rebalance", error);
+                        return null;
+                    }).thenAccept(result -> {
+                        if (result == null) {
+                            reply(sender, "Failed to rebalance shards, see the console for details.", MessageType.SEVERE);
+                        } else {
+                            reply(sender, "Moved " + result.moved() + " players (" + result.rows() + " rows), skipped " +
+                                    result.skipped() + " online players.", MessageType.NOTIFICATION);
+                        }
+                    });
+                });
+    }
+
+    private CommandAPICommand shards() {
+        return new CommandAPICommand("shards")
+                .withPermission(permission)
+                .executes((sender, args) -> {
+                    ShardRouter router = MySQLConnection.getShardRouter();
+
+                    if (router == null || router.getShardCount() < 2) {
+                        reply(sender, "Sharding is off, every table lives on the primary.", MessageType.INFO);
+                        return;
+                    }
+
+                    for (int shard = 0; shard < router.getShardCount(); shard++) {
+                        reply(sender, "shard " + shard + ": pool=" + router.getPoolName(shard), MessageType.INFO);
+                    }
+
+                    reply(sender, "sharded_tables=" + ShardRebalancer.shardedTables().stream().map(AbstractMySQL::getTableName).toList() +
+                            ", previous_count=" + router.getPreviousCount() +
+                            ", rebalancing=" + ShardRebalancer.isRunning(),
+                            router.isRebalancing() ? MessageType.WARNING : MessageType.INFO);
+                });
+    }
+
+    private CommandAPICommand statements() {
+        return new CommandAPICommand("statements")
+                .withPermission(permission)
+                .executes((sender, args) -> {
+                    int variants = 0;
+
+                    for (AbstractMySQL repository : AbstractMySQL.registered()) {
+                        for (StatementTemplate template : repository.getStatements()) {
+                            variants += template.getVariantCount();
+
+                            // longer statements are never cached by the driver
+                            boolean cacheable = template.getSql().length() <= MySQLConnection.PREPARED_STATEMENT_SQL_LIMIT;
+                            reply(sender, repository.getTableName() + "." + template.getName() +
+                                    ": variants=" + template.getVariantCount() +
+                                    ", length=" + template.getSql().length(),
+                                    cacheable ? MessageType.INFO : MessageType.WARNING);
+                        }
+                    }
+
+                    if (variants == 0) {
+                        reply(sender, "No repository has compiled statement templates.", MessageType.WARNING);
+                        return;
+                    }
+
+                    reply(sender, "total_variants=" + variants + ", prep_stmt_cache_size=" + MySQLConnection.PREPARED_STATEMENT_CACHE_SIZE,
+                            variants <= MySQLConnection.PREPARED_STATEMENT_CACHE_SIZE ? MessageType.INFO : MessageType.WARNING);
+                });
+    }
+
+    private CommandAPICommand stats() {
+        return new CommandAPICommand("stats")
+                .withPermission(permission)
+                .withSubcommand(new CommandAPICommand("reset")
+                        .withPermission(permission)
+                        .executes((sender, args) -> {
+                            QueryMetrics.reset();
+                            reply(sender, "Statement metrics have been reset.", MessageType.INFO);
+                        }))
+                .executes((sender, args) -> {
+                    if (!QueryMetrics.isEnabled()) {
+                        reply(sender, "Statement metrics are disabled in config.yml.", MessageType.WARNING);
+                        return;
+                    }
+
+                    LatencyHistogram poolWait = QueryMetrics.getPoolWait();
+                    reply(sender, "pool_wait: count=" + poolWait.getCount() + ", " + percentiles(poolWait), MessageType.INFO);
+
+                    List<StatementMetrics> statements = QueryMetrics.getStatements();
+                    if (statements.isEmpty()) {
+                        reply(sender, "No statements have been recorded yet.", MessageType.INFO);
+                        return;
+                    }
+
+                    for (StatementMetrics metrics : statements.subList(0, Math.min(STATS_LIMIT, statements.size()))) {
+                        LatencyHistogram latency = metrics.getLatency();
+                        reply(sender, shorten(metrics.getTemplate()), MessageType.NOTIFICATION);
+                        reply(sender, "  count=" + metrics.getExecutions() +
+                                ", errors=" + metrics.getErrors() +
+                                ", total=" + String.format("%.1fms", latency.getTotal() / 1_000.0) +
+                                ", " + percentiles(latency) +
+                                ", rows=" + metrics.getRowsAffected() +
+                                ", avg_batch=" + String.format("%.1f", metrics.getAverageBatchSize()), MessageType.INFO);
+                    }
+                });
+    }
+
+    private File dumpFolder(AbstractMySQL repository) {
+        return new File(repository.getPlugin().getDataFolder(), "exports");
+    }
+
+    // resolves a file name inside the dump folder, or null if it points anywhere else, e.g. through ../
+    private File dumpFile(AbstractMySQL repository, String fileName) {
+        try {
+            File folder = dumpFolder(repository).getCanonicalFile();
+            File file = new File(folder, fileName).getCanonicalFile();
+
+            return file.toPath().startsWith(folder.toPath()) && !file.equals(folder) ? file : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private File latestDump(AbstractMySQL repository) {
+        String prefix = repository.getTableName() + "-";
+        File[] dumps = dumpFolder(repository).listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(TableDump.EXTENSION));
+
+        // the timestamp in the name sorts chronologically
+        return dumps == null ? null : Arrays.stream(dumps).max(Comparator.comparing(File::getName)).orElse(null);
+    }
+
+    private LongConsumer progress(CommandSender sender, String verb, String table) {
+        long[] lastReport = {System.currentTimeMillis()};
+
+        return rows -> {
+            long now = System.currentTimeMillis();
+            if (now - lastReport[0] < PROGRESS_INTERVAL_MILLIS) return;
+
+            lastReport[0] = now;
+            reply(sender, verb + " " + rows + " rows of " + table + " so far...", MessageType.INFO);
+        };
+    }
+
+    private String percentiles(LatencyHistogram histogram) {
+        return "mean=" + millis(Math.round(histogram.getMean())) +
+                ", p50=" + millis(histogram.percentile(50)) +
+                ", p95=" + millis(histogram.percentile(95)) +
+                ", p99=" + millis(histogram.percentile(99)) +
+                ", max=" + millis(histogram.getMax());
+    }
+
+    private String millis(long micros) {
+        return String.format("%.2fms", micros / 1_000.0);
+    }
+
+    private String shorten(String template) {
+        return template.length() <= TEMPLATE_DISPLAY_LENGTH ? template : template.substring(0, TEMPLATE_DISPLAY_LENGTH) + "...";
+    }
+
+    private void reply(CommandSender sender, String message, MessageType type) {
+        if (sender instanceof Player player) {
+            Messages.message(player, message, type);
+        } else {
+            Console.print(prefix, message, type);
+        }
+    }
+}
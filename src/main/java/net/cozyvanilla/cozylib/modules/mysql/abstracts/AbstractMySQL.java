@@ -1,63 +1,856 @@
 package net.cozyvanilla.cozylib.modules.mysql.abstracts;
 
+import net.cozyvanilla.cozylib.Config;
 import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ConnectionCallback;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ConnectionSupplier;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ResultSetMapper;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.SqlDialect;
+import net.cozyvanilla.cozylib.modules.mysql.services.dump.TableDump;
+import net.cozyvanilla.cozylib.modules.mysql.services.mapping.RecordMapper;
+import net.cozyvanilla.cozylib.modules.mysql.services.metrics.QueryMetrics;
+import net.cozyvanilla.cozylib.modules.mysql.services.migration.SchemaEvolution;
+import net.cozyvanilla.cozylib.modules.mysql.services.resilience.RepositoryGuard;
+import net.cozyvanilla.cozylib.modules.mysql.services.scan.TableScan;
+import net.cozyvanilla.cozylib.modules.mysql.services.table.StatementTemplate;
+import net.cozyvanilla.cozylib.modules.mysql.services.table.TableBuilder;
+import net.cozyvanilla.cozylib.modules.mysql.services.transaction.UnitOfWork;
 import net.cozyvanilla.cozylib.runtime.MySQLConnection;
-import net.cozyvanilla.cozylib.util.paper.FutureUtils;
+import net.cozyvanilla.cozylib.runtime.ShardRouter;
+import net.cozyvanilla.cozylib.util.java.UUIDUtils;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 
 public abstract class AbstractMySQL {
     private static final String TABLE_NAME_PATTERN = "^[a-zA-Z0-9_]+$";
+    private static final Map<String, AbstractMySQL> REGISTRY = new ConcurrentHashMap<>();
+    private static final long LEGACY_UUID_RECHECK_MILLIS = 5_000L;
 
     protected final Plugin plugin;
     protected final String tableName;
+    private final @Nullable RepositoryGuard guard;
+    private volatile List<StatementTemplate> statements = List.of();
+
+    // per database server by jdbc url, shards and replicas are inspected and migrated on their own
+    private final Map<String, UuidFormat> uuidFormats = new ConcurrentHashMap<>();
+
+    private record UuidFormat(boolean binary, long checkedAt) {}
 
     protected AbstractMySQL(@NotNull Plugin plugin, @NotNull String tableName) {
         this.plugin = plugin;
         this.tableName = validateTableName(tableName);
+        this.guard = RepositoryGuard.of(this.tableName);
     }
 
-    public final void initializeAsync() {
-        FutureUtils.async(plugin, () -> {
+    public final CompletableFuture<Void> initializeAsync() {
+        if (shardByPlayer() && getUuidColumn() == null) {
+            throw new IllegalStateException(tableName + " is sharded by player but names no uuid column");
+        }
+
+        REGISTRY.put(tableName, this);
+
+        // table creation bypasses the guard, it must run even while the circuit is open
+        return MySQLConnection.runAsync(plugin, tableName, () -> {
             createTable();
+            evolve();
+            inspect();
             createTrigger();
         });
     }
 
+    public final @NotNull String getTableName() {
+        return tableName;
+    }
+
+    public final @NotNull Plugin getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * Whether the uuid column returned by {@link #getUuidColumn()} is stored as BINARY(16) on every
+     * database server inspected so far. Legacy CHAR(36) tables, and tables not inspected yet, report false.
+     */
+    public final boolean hasBinaryUuids() {
+        return !uuidFormats.isEmpty() && uuidFormats.values().stream().allMatch(UuidFormat::binary);
+    }
+
+    /**
+     * Switches uuid binding to BINARY(16) on the connection's server. Called by the uuid migration
+     * once the table is swapped.
+     *
+     * @param connection a connection to the migrated server
+     */
+    public final void markBinaryUuids(@NotNull Connection connection) throws SQLException {
+        uuidFormats.put(serverOf(connection), new UuidFormat(true, System.currentTimeMillis()));
+    }
+
+    /**
+     * Builds the CREATE TABLE statement for this repository's columns under another table name.
+     *
+     * @param name the table name to create
+     * @return the CREATE TABLE IF NOT EXISTS statement
+     */
+    public final @NotNull String buildCreateTableSql(@NotNull String name) {
+        return "CREATE TABLE IF NOT EXISTS " + validateTableName(name) + " (" + buildDefinitions() + ")";
+    }
+
+    /**
+     * Prepares a constant-memory scan over this whole table, reading from a replica when configured.
+     * Rows are streamed from a single query unless {@link TableScan#keyset} switches to keyset pages.
+     * A sharded table is scanned on every shard in parallel.
+     *
+     * @param columns the comma separated select list handed to the mapper
+     * @param mapper maps the current row
+     * @param <T> the mapped row type
+     * @return the scan, run with {@link TableScan#forEach} or {@link TableScan#stream} off the main thread
+     */
+    public final <T> @NotNull TableScan<T> scan(@NotNull String columns, @NotNull ResultSetMapper<T> mapper) {
+        List<ConnectionSupplier> shards = new ArrayList<>();
+        shards.add(this::getReadConnection);
+
+        for (int shard = 1; shard < getShardCount(); shard++) {
+            int index = shard;
+            shards.add(() -> getShardConnection(index));
+        }
+
+        return new TableScan<>(shards, dialect(), tableName, columns, mapper);
+    }
+
+    /**
+     * Prepares a constant-memory scan mapping each row onto a record, see {@link RecordMapper}
+     * for how components are matched to columns.
+     *
+     * @param columns the comma separated select list, covering every record component
+     * @param type the record class
+     * @param <R> the record type
+     * @return the scan, run with {@link TableScan#forEach} or {@link TableScan#stream} off the main thread
+     */
+    public final <R extends Record> @NotNull TableScan<R> scan(@NotNull String columns, @NotNull Class<R> type) {
+        return scan(columns, RecordMapper.of(type));
+    }
+
+    /**
+     * Exports every row of this table to a compressed dump, read from one consistent snapshot on
+     * a replica when configured. Runs beside the table's regular queue and bypasses its guard, so
+     * a long export neither delays nor skews the repository's own calls.
+     *
+     * @param file the dump file to create
+     * @param progress receives the number of rows exported so far, on the database thread
+     * @return a future containing the number of rows exported, or -1 if the export failed
+     */
+    public final @NotNull CompletableFuture<Long> exportAsync(@NotNull File file, @NotNull LongConsumer progress) {
+        if (getShardCount() > 1) {
+            Logger.severe("Cannot export " + tableName + ", it is spread over " + getShardCount() + " shards");
+            return CompletableFuture.completedFuture(-1L);
+        }
+
+        TableDump dump = dump();
+
+        return MySQLConnection.supplyAsync(plugin, tableName + ":dump", () -> {
+            try {
+                return dump.export(file, progress);
+            } catch (IOException | SQLException e) {
+                Logger.severe("Failed to export " + tableName + " to " + file.getName(), e);
+                return -1L;
+            }
+        }).exceptionally(error -> {
+            Logger.severe("Could not queue the export of " + tableName, error);
+            return -1L;
+        });
+    }
+
+    /**
+     * Imports a dump created by {@link #exportAsync} into this table in multi-row batches,
+     * replacing rows whose keys already exist.
+     *
+     * @param file the dump file to read
+     * @param progress receives the number of rows imported so far, on the database thread
+     * @return a future containing the number of rows imported, or -1 if the import failed
+     */
+    public final @NotNull CompletableFuture<Long> importAsync(@NotNull File file, @NotNull LongConsumer progress) {
+        if (getShardCount() > 1) {
+            Logger.severe("Cannot import into " + tableName + ", it is spread over " + getShardCount() + " shards");
+            return CompletableFuture.completedFuture(-1L);
+        }
+
+        TableDump dump = dump();
+
+        return MySQLConnection.supplyAsync(plugin, tableName + ":dump", () -> {
+            try {
+                return dump.restore(file, progress);
+            } catch (IOException | SQLException e) {
+                Logger.severe("Failed to import " + file.getName() + " into " + tableName, e);
+                return -1L;
+            }
+        }).exceptionally(error -> {
+            Logger.severe("Could not queue the import into " + tableName, error);
+            return -1L;
+        });
+    }
+
+    /**
+     * Whether this table's rows are spread over the configured shards by player, see {@link #shardByPlayer()}.
+     */
+    public final boolean isSharded() {
+        return shardByPlayer() && MySQLConnection.getShardCount() > 1;
+    }
+
+    /**
+     * Gets the number of shards this table is spread over, 1 if it is not sharded.
+     */
+    public final int getShardCount() {
+        return shardByPlayer() ? MySQLConnection.getShardCount() : 1;
+    }
+
+    /**
+     * Lists the players with rows on a shard, in uuid order. Used by the shard rebalancer.
+     *
+     * @param shard the shard index
+     * @param after the last player of the previous page, or null for the first page
+     * @param limit the maximum number of players
+     * @return the players, fewer than {@code limit} on the last page
+     */
+    public final @NotNull List<UUID> scanPlayers(int shard, @Nullable UUID after, int limit) throws SQLException {
+        String column = getUuidColumn();
+        String sql = "SELECT DISTINCT " + column + " FROM " + tableName +
+                (after == null ? "" : " WHERE " + column + " > ?") + " ORDER BY " + column + " LIMIT ?";
+
+        List<UUID> players = new ArrayList<>();
+
+        try (Connection connection = getShardConnection(shard);
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            int index = 1;
+            if (after != null) setUuid(ps, index++, after);
+            ps.setInt(index, limit);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    players.add(getUuid(rs, 1));
+                }
+            }
+        }
+
+        return players;
+    }
+
+    /**
+     * Copies every row of a player from one shard to another, replacing rows the target already
+     * has. Used by the shard rebalancer before the player's placement is switched.
+     *
+     * @return the copied rows, handed to {@link #deletePlayer} once the move is recorded
+     */
+    public final @NotNull PlayerRows copyPlayer(@NotNull UUID player, int from, int to) throws SQLException {
+        String column = getUuidColumn();
+
+        try (Connection source = getShardConnection(from);
+             Connection target = getShardConnection(to);
+             PreparedStatement select = source.prepareStatement("SELECT * FROM " + tableName + " WHERE " + column + " = ?")) {
+            setUuid(select, 1, player);
+
+            try (ResultSet rs = select.executeQuery()) {
+                int columns = rs.getMetaData().getColumnCount();
+                List<String> names = new ArrayList<>(columns);
+                for (int i = 1; i <= columns; i++) {
+                    names.add(rs.getMetaData().getColumnLabel(i));
+                }
+
+                String replace = "REPLACE INTO " + tableName + " (" + String.join(", ", names) + ") VALUES (" +
+                        String.join(", ", Collections.nCopies(columns, "?")) + ")";
+
+                List<Object[]> rows = new ArrayList<>();
+                try (PreparedStatement insert = target.prepareStatement(replace)) {
+                    while (rs.next()) {
+                        Object[] row = new Object[columns];
+                        for (int i = 1; i <= columns; i++) {
+                            row[i - 1] = rs.getObject(i);
+                            insert.setObject(i, row[i - 1]);
+                        }
+
+                        insert.addBatch();
+                        rows.add(row);
+                    }
+
+                    if (!rows.isEmpty()) insert.executeBatch();
+                }
+
+                return new PlayerRows(player, names, rows);
+            }
+        }
+    }
+
+    /**
+     * Deletes the copied rows of a player from a shard, but only rows still holding exactly the
+     * values that were copied. Used by the shard rebalancer once the move is recorded; a row written
+     * since the copy differs in at least one column and is kept, however close to the copy the
+     * write happened, so it is never lost.
+     *
+     * @param copied the rows returned by {@link #copyPlayer}
+     * @param shard the shard the player was copied from
+     * @return the number of the player's rows left on the shard
+     */
+    public final int deletePlayer(@NotNull PlayerRows copied, int shard) throws SQLException {
+        String column = getUuidColumn();
+
+        try (Connection connection = getShardConnection(shard)) {
+            if (!copied.rows().isEmpty()) {
+                // shards are MySQL only, <=> also matches NULL columns that were copied as NULL
+                String matches = String.join(" AND ", copied.columns().stream().map(name -> name + " <=> ?").toList());
+
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "DELETE FROM " + tableName + " WHERE " + matches)) {
+                    for (Object[] row : copied.rows()) {
+                        for (int i = 0; i < row.length; i++) {
+                            ps.setObject(i + 1, row[i]);
+                        }
+
+                        ps.addBatch();
+                    }
+
+                    ps.executeBatch();
+                }
+            }
+
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT COUNT(*) FROM " + tableName + " WHERE " + column + " = ?")) {
+                setUuid(ps, 1, copied.player());
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the statement templates this repository compiled, e.g. to size the driver's prepared
+     * statement cache.
+     */
+    public final @NotNull List<StatementTemplate> getStatements() {
+        return statements;
+    }
+
+    /**
+     * Gets the initialized repository of a table, e.g. for {@code /cozy db export}.
+     *
+     * @param tableName the table name
+     * @return the repository, or null if no initialized repository owns the table
+     */
+    public static @Nullable AbstractMySQL find(@NotNull String tableName) {
+        return REGISTRY.get(tableName);
+    }
+
+    public static @NotNull Collection<AbstractMySQL> registered() {
+        return List.copyOf(REGISTRY.values());
+    }
+
     // ------------ usable methods ------------
+    /**
+     * Borrows a connection from the primary pool, counted against the owning plugin's bulkhead
+     * partition. While metrics are enabled the connection is instrumented, so every statement is
+     * timed per SQL template and slow ones are logged.
+     */
     protected final Connection getConnection() throws SQLException {
-        return MySQLConnection.getConnection();
+        return instrument(() -> MySQLConnection.getConnection(plugin));
+    }
+
+    /**
+     * Borrows a primary connection for writes; same as {@link #getConnection()}.
+     */
+    protected final Connection getWriteConnection() throws SQLException {
+        return getConnection();
+    }
+
+    /**
+     * Borrows a primary connection of one shard of this table. Shard 0 is the primary itself.
+     *
+     * @param shard the shard index, below {@link #getShardCount()}
+     */
+    protected final Connection getShardConnection(int shard) throws SQLException {
+        return instrument(() -> MySQLConnection.getShardConnection(plugin, shard));
+    }
+
+    /**
+     * Borrows a primary connection of the shard holding a player's rows, for writes outside
+     * {@link #write(UUID, ConnectionCallback)}.
+     *
+     * @param player the player whose data is written
+     * @throws SQLException if the player is being moved to another shard
+     */
+    protected final Connection getWriteConnection(@NotNull UUID player) throws SQLException {
+        return getShardConnection(writeShardOf(player));
+    }
+
+    /**
+     * Gets the shard holding a player's rows of this table, always 0 for unsharded tables.
+     *
+     * @param player the player's UUID
+     * @throws SQLException if the player awaits a rebalance and their placement could not be looked up
+     */
+    protected final int shardOf(@NotNull UUID player) throws SQLException {
+        ShardRouter router = MySQLConnection.getShardRouter();
+        return router == null || !isSharded() ? 0 : router.shardOf(player);
+    }
+
+    /**
+     * Gets the shard a player's rows of this table are written to, see {@link ShardRouter#writeShardOf}.
+     *
+     * @param player the player's UUID
+     * @throws SQLException if the player is being moved to another shard, or their placement could not be looked up
+     */
+    protected final int writeShardOf(@NotNull UUID player) throws SQLException {
+        ShardRouter router = MySQLConnection.getShardRouter();
+        return router == null || !isSharded() ? 0 : router.writeShardOf(player);
+    }
+
+    /**
+     * Borrows a connection for reads not tied to a single player, from a read replica when configured.
+     * Replicas may lag behind the primary, use {@link #getReadConnection(UUID)} for player data.
+     */
+    protected final Connection getReadConnection() throws SQLException {
+        return instrument(() -> MySQLConnection.getReadConnection(plugin, null));
+    }
+
+    /**
+     * Borrows a connection for reading a player's data, from a read replica unless the player
+     * wrote within the read-your-writes window, in which case the primary is used. Players of a
+     * sharded table living on another shard always read from that shard's primary, as replicas
+     * are only configured for shard 0.
+     *
+     * @param player the player whose data is read
+     */
+    protected final Connection getReadConnection(@NotNull UUID player) throws SQLException {
+        int shard = shardOf(player);
+        if (shard != 0) return getShardConnection(shard);
+
+        return instrument(() -> MySQLConnection.getReadConnection(plugin, player));
+    }
+
+    /**
+     * Pins the player's reads to the primary for the read-your-writes window. Call after writing
+     * the player's data.
+     *
+     * @param player the player who was written
+     */
+    protected final void markWritten(@NotNull UUID player) {
+        MySQLConnection.markWritten(player);
+    }
+
+    /**
+     * Runs write work and returns its result. On SQLite the work is queued on the single writer
+     * thread and group committed; on MySQL it runs on a pooled connection.
+     *
+     * @param work the work, which must not close the connection
+     * @param <T> the result type
+     * @return the work's result
+     * @throws SQLException if the work or its commit failed
+     */
+    protected final <T> T write(@NotNull ConnectionCallback<T> work) throws SQLException {
+        try {
+            return MySQLConnection.write(plugin, connection ->
+                    work.apply(QueryMetrics.isEnabled() ? QueryMetrics.instrument(connection) : connection));
+        } catch (SQLException e) {
+            writeFailed();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs write work for one player on the shard holding their rows; same as
+     * {@link #write(ConnectionCallback)} for unsharded tables.
+     *
+     * @param player the player whose data is written
+     * @throws SQLException if the work failed, or the player is being moved to another shard
+     */
+    protected final <T> T write(@NotNull UUID player, @NotNull ConnectionCallback<T> work) throws SQLException {
+        return write(writeShardOf(player), work);
+    }
+
+    /**
+     * Runs write work on one shard of this table, instrumented like {@link #write(ConnectionCallback)}.
+     *
+     * @param shard the shard index, below {@link #getShardCount()}
+     */
+    protected final <T> T write(int shard, @NotNull ConnectionCallback<T> work) throws SQLException {
+        try {
+            return MySQLConnection.write(plugin, shard, connection ->
+                    work.apply(QueryMetrics.isEnabled() ? QueryMetrics.instrument(connection) : connection));
+        } catch (SQLException e) {
+            writeFailed();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds write work to a unit of work instead of running it on its own connection and commit.
+     * The work runs when the unit commits, inside the unit's transaction.
+     *
+     * @param unit the unit to add to
+     * @param player the player whose data is written, pinned to the primary once committed, or null;
+     *               a sharded table's work runs on this player's shard
+     * @param work the work, which must not close the connection or commit
+     */
+    protected final void stage(@NotNull UnitOfWork unit, @Nullable UUID player, @NotNull ConnectionCallback<?> work) {
+        ConnectionCallback<?> step = connection -> work.apply(QueryMetrics.isEnabled() ? QueryMetrics.instrument(connection) : connection);
+
+        if (player != null && isSharded()) {
+            unit.addSharded(player, step);
+        } else {
+            unit.add(player, step);
+        }
+    }
+
+    /**
+     * Commits a unit of work holding this repository's staged writes, handling a failure like a
+     * failed {@link #write(ConnectionCallback)}.
+     *
+     * @throws SQLException if the unit failed; nothing it staged was written
+     */
+    protected final void commit(@NotNull UnitOfWork unit) throws SQLException {
+        try {
+            unit.commit();
+        } catch (SQLException e) {
+            writeFailed();
+            throw e;
+        }
+    }
+
+    /**
+     * Publishes the statement templates this repository executes, replacing any registered before.
+     * Call again when the templates are recompiled, e.g. after detecting a legacy column layout.
+     *
+     * @param templates the compiled templates
+     */
+    protected final void registerStatements(@NotNull StatementTemplate... templates) {
+        this.statements = List.of(templates);
+    }
+
+    /**
+     * Gets the SQL dialect of the configured storage backend.
+     */
+    protected final @NotNull SqlDialect dialect() {
+        return MySQLConnection.getDialect();
+    }
+
+    /**
+     * Runs blocking work on the shared database executor. Tasks are queued per table, so a busy
+     * repository cannot starve the others. While the database struggles the repository's guard
+     * limits how many calls are in flight and, once too many fail, refuses calls outright with a
+     * {@link java.util.concurrent.RejectedExecutionException} until a probe succeeds.
+     *
+     * @param supplier the blocking work
+     * @param <T> the supplied value type
+     * @return a future containing the supplied value
+     */
+    protected final <T> CompletableFuture<T> supplyAsync(@NotNull Supplier<T> supplier) {
+        if (guard == null) {
+            return MySQLConnection.supplyAsync(plugin, tableName, supplier);
+        }
+
+        return guard.submit(work -> MySQLConnection.supplyAsync(plugin, tableName, work), supplier);
+    }
+
+    /**
+     * Runs blocking work on the shared database executor, queued under this table.
+     *
+     * @param runnable the blocking work
+     * @return a future completed when the work finishes
+     */
+    protected final CompletableFuture<Void> runAsync(@NotNull Runnable runnable) {
+        return supplyAsync(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs blocking work that saves data on the shared database executor, queued under this table.
+     * Unlike {@link #supplyAsync} the guard never refuses it, so a struggling database slows saves
+     * down instead of dropping them. The future still fails if the executor's queue is full.
+     *
+     * @param supplier the blocking work
+     * @param <T> the supplied value type
+     * @return a future containing the supplied value
+     */
+    protected final <T> CompletableFuture<T> supplyWriteAsync(@NotNull Supplier<T> supplier) {
+        if (guard == null) {
+            return MySQLConnection.supplyAsync(plugin, tableName, supplier);
+        }
+
+        return guard.submit(work -> MySQLConnection.supplyAsync(plugin, tableName, work), supplier, true);
+    }
+
+    /**
+     * Runs blocking work that saves data, see {@link #supplyWriteAsync}.
+     *
+     * @param runnable the blocking work
+     * @return a future completed when the work finishes
+     */
+    protected final CompletableFuture<Void> runWriteAsync(@NotNull Runnable runnable) {
+        return supplyWriteAsync(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Binds a UUID in the table's current storage format, 16 raw bytes or the legacy 36-char string.
+     * The format is looked up on the statement's connection until the table was inspected, and a
+     * legacy table is looked up again every few seconds and after a failed write, so a migration
+     * run by another server is picked up.
+     *
+     * @throws SQLException if the format is unknown and cannot be looked up
+     */
+    protected final void setUuid(PreparedStatement ps, int index, UUID uuid) throws SQLException {
+        if (binaryUuids(ps.getConnection())) {
+            ps.setBytes(index, UUIDUtils.toBytes(uuid));
+        } else {
+            ps.setString(index, uuid.toString());
+        }
     }
 
-    // ------------ mandatory methods ------------
-    protected abstract String getTableColumns();
+    /**
+     * Reads a UUID in the format the row was returned in, 16 raw bytes or the legacy 36-char string.
+     */
+    protected final @Nullable UUID getUuid(ResultSet rs, int column) throws SQLException {
+        return switch (rs.getObject(column)) {
+            case null -> null;
+            case byte[] bytes -> UUIDUtils.fromBytes(bytes);
+            case Object value -> UUID.fromString(value.toString());
+        };
+    }
 
     // ------------ optional methods ------------
     protected void createTrigger() {}
 
+    /**
+     * Defines the table with a {@link TableBuilder}. Tables defined this way are evolved at startup:
+     * columns and indexes missing from the live table are added online, see {@link SchemaEvolution}.
+     * The builder must be created with {@link #tableName}.
+     *
+     * @return the table definition, or null if the table is defined by {@link #getTableColumns()}
+     */
+    protected @Nullable TableBuilder getTableDefinition() { return null; }
+
+    /**
+     * Defines the table's columns, keys and indexes as raw SQL. Defaults to the definitions of
+     * {@link #getTableDefinition()}; one of the two must be overridden.
+     *
+     * @return the comma separated definitions
+     */
+    protected String getTableColumns() {
+        TableBuilder definition = getTableDefinition();
+        if (definition == null) {
+            throw new IllegalStateException(getClass().getSimpleName() + " defines neither getTableColumns nor getTableDefinition");
+        }
+
+        return definition.definitions();
+    }
+
+    /**
+     * Spreads this table over the shards configured in config.yml by a stable hash of each row's
+     * player, see {@link ShardRouter}. A player's rows always live on one shard, so per-player
+     * reads and writes stay on it while scans fan out over all of them. Requires {@link #getUuidColumn()}.
+     *
+     * @return true to shard this table
+     */
+    protected boolean shardByPlayer() { return false; }
+
+    /**
+     * Names the column holding player UUIDs so legacy CHAR(36) storage can be detected and migrated.
+     *
+     * @return the uuid column name, or null if the table has none
+     */
+    protected @Nullable String getUuidColumn() { return null; }
+
+    /**
+     * Runs once the table exists, e.g. to detect legacy column layouts.
+     *
+     * @param connection an open connection
+     * @throws SQLException if inspecting the table fails
+     */
+    protected void inspectTable(@NotNull Connection connection) throws SQLException {}
+
+    /**
+     * Looks up the MySQL data type of a column of this table, e.g. {@code "binary"} or {@code "varchar"}.
+     *
+     * @param connection an open connection
+     * @param column the column name
+     * @return the lower-case data type, or null if the column does not exist
+     */
+    protected final @Nullable String getColumnType(@NotNull Connection connection, @NotNull String column) throws SQLException {
+        return dialect().columnType(connection, tableName, column);
+    }
+
     // ------------ private methods ------------
+    private TableDump dump() {
+        return new TableDump(tableName, buildCreateTableSql(tableName), this::getReadConnection, this::write, dialect());
+    }
+
+    private boolean binaryUuids(Connection connection) throws SQLException {
+        String server = serverOf(connection);
+        UuidFormat format = uuidFormats.get(server);
+
+        if (format != null && (format.binary() || System.currentTimeMillis() - format.checkedAt() <= LEGACY_UUID_RECHECK_MILLIS)) {
+            return format.binary();
+        }
+
+        return inspectUuids(connection, server);
+    }
+
+    private boolean inspectUuids(Connection connection, String server) throws SQLException {
+        String column = getUuidColumn();
+        if (column == null) {
+            uuidFormats.put(server, new UuidFormat(true, System.currentTimeMillis()));
+            return true;
+        }
+
+        String type = getColumnType(connection, column);
+        if (type == null) {
+            throw new SQLException("Cannot bind uuids to " + tableName + ", column " + column + " does not exist");
+        }
+
+        boolean binary = type.equals("binary");
+        UuidFormat previous = uuidFormats.put(server, new UuidFormat(binary, System.currentTimeMillis()));
+
+        if (binary && previous != null && !previous.binary()) {
+            Logger.info(tableName + "." + column + " was migrated to BINARY(16) on " + server + ", switching uuid binding");
+        }
+
+        return binary;
+    }
+
+    private static String serverOf(Connection connection) throws SQLException {
+        return connection.getMetaData().getURL();
+    }
+
+    private void writeFailed() {
+        RepositoryGuard.markFailed();
+
+        // a CHAR(36) table may have been migrated by another server
+        uuidFormats.replaceAll((server, format) -> format.binary() ? format : new UuidFormat(false, 0L));
+    }
+
+    private Connection instrument(ConnectionSupplier supplier) throws SQLException {
+        if (!QueryMetrics.isEnabled()) {
+            return borrow(supplier);
+        }
+
+        long start = System.nanoTime();
+        Connection connection = borrow(supplier);
+        QueryMetrics.recordPoolWait(System.nanoTime() - start);
+
+        return QueryMetrics.instrument(connection);
+    }
+
+    private Connection borrow(ConnectionSupplier supplier) throws SQLException {
+        try {
+            return supplier.getConnection();
+        } catch (SQLException e) {
+            RepositoryGuard.markFailed();
+            throw e;
+        }
+    }
+
     private void createTable() {
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            createTable(shard);
+        }
+    }
+
+    private void createTable(int shard) {
+        try {
+            write(shard, connection -> {
+                for (String sql : dialect().createTable(tableName, buildDefinitions())) {
+                    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                        stmt.execute();
+                    }
+                }
+
+                return null;
+            });
+        } catch (SQLException e) {
+            Logger.severe("Failed to create table " + tableName + (shard == 0 ? "" : " on shard " + shard), e);
+        }
+    }
+
+    private void evolve() {
+        TableBuilder definition = getTableDefinition();
+        if (definition == null) return;
+
+        if (!definition.getTableName().equals(tableName)) {
+            Logger.severe("Table definition of " + tableName + " is named " + definition.getTableName() + ", not evolving it");
+            return;
+        }
+
+        Config.BackfillConfig config = Config.getBackfillConfig();
+        SchemaEvolution evolution = new SchemaEvolution(definition, buildCreateTableSql(SchemaEvolution.shadowName(tableName)),
+                dialect(), config.chunkSize(), config.rowsPerSecond());
+
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            try {
+                write(shard, evolution::run);
+            } catch (SQLException e) {
+                Logger.severe("Failed to evolve table " + tableName + (shard == 0 ? "" : " on shard " + shard), e);
+            }
+        }
+    }
+
+    private String buildDefinitions() {
         String columns = getTableColumns().trim();
 
         if (columns.endsWith(",")) {
             columns = columns.substring(0, columns.length() - 1);
         }
 
-        String sql = "CREATE TABLE IF NOT EXISTS " + tableName + " (" +
-                columns + "," +
+        return columns + "," +
                 "last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP " +
-                "ON UPDATE CURRENT_TIMESTAMP" +
-                ")";
+                "ON UPDATE CURRENT_TIMESTAMP";
+    }
+
+    private void inspect() {
+        try (Connection conn = getConnection()) {
+            String column = getUuidColumn();
 
-        try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.execute();
+            if (column != null && !inspectUuids(conn, serverOf(conn))) {
+                Logger.warning(tableName + "." + column + " is stored as " + getColumnType(conn, column) +
+                        ", run the uuid migration to convert it to BINARY(16)");
+            }
+
+            inspectTable(conn);
         } catch (SQLException e) {
-            Logger.severe("Failed to create table " + tableName, e);
+            Logger.severe("Failed to inspect table " + tableName, e);
+        }
+
+        // every shard keeps its own column type, a shard left on CHAR(36) must not get binary uuids
+        for (int shard = 1; shard < getShardCount(); shard++) {
+            try (Connection conn = getShardConnection(shard)) {
+                String column = getUuidColumn();
+
+                if (column != null && !inspectUuids(conn, serverOf(conn))) {
+                    Logger.warning(tableName + "." + column + " is stored as " + getColumnType(conn, column) +
+                            " on shard " + shard + ", run the uuid migration to convert it to BINARY(16)");
+                }
+            } catch (SQLException e) {
+                Logger.severe("Failed to inspect table " + tableName + " on shard " + shard, e);
+            }
         }
     }
 
@@ -68,4 +861,9 @@ public abstract class AbstractMySQL {
 
         return tableName;
     }
-}
\ No newline at end of file
+
+    /**
+     * The rows of a player as copied by {@link #copyPlayer}, in the column order of {@code columns}.
+     */
+    public record PlayerRows(@NotNull UUID player, @NotNull List<String> columns, @NotNull List<Object[]> rows) {}
+}
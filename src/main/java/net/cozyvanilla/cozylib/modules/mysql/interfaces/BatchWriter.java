@@ -0,0 +1,11 @@
+package net.cozyvanilla.cozylib.modules.mysql.interfaces;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+@FunctionalInterface
+public interface BatchWriter<K, V> {
+    void writeBatch(@NotNull Map<K, V> batch) throws SQLException;
+}
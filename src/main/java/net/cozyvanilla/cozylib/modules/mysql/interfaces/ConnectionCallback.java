@@ -0,0 +1,12 @@
+package net.cozyvanilla.cozylib.modules.mysql.interfaces;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Work run against a connection owned by the caller. Implementations must not close the connection.
+ */
+@FunctionalInterface
+public interface ConnectionCallback<T> {
+    T apply(Connection connection) throws SQLException;
+}
@@ -0,0 +1,9 @@
+package net.cozyvanilla.cozylib.modules.mysql.interfaces;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface ConnectionSupplier {
+    Connection getConnection() throws SQLException;
+}
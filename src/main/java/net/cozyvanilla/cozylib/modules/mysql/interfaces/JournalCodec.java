@@ -0,0 +1,20 @@
+package net.cozyvanilla.cozylib.modules.mysql.interfaces;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Serializes one pending row of a write journal.
+ *
+ * @param <K> the type of keys identifying a single row
+ * @param <V> the type of pending values
+ */
+public interface JournalCodec<K, V> {
+    void write(@NotNull DataOutput out, @NotNull K key, @NotNull V value) throws IOException;
+
+    @NotNull Map.Entry<K, V> read(@NotNull DataInput in) throws IOException;
+}
@@ -0,0 +1,12 @@
+package net.cozyvanilla.cozylib.modules.mysql.interfaces;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds a typed value to a statement parameter.
+ */
+@FunctionalInterface
+public interface ParameterBinder<T> {
+    void bind(PreparedStatement statement, int index, T value) throws SQLException;
+}
@@ -2,6 +2,8 @@ package net.cozyvanilla.cozylib.modules.mysql.interfaces;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -9,10 +11,22 @@ import java.util.concurrent.CompletableFuture;
 public interface PlayerRepository<T> {
 
     @NotNull Optional<T> get(UUID uuid);
+    @NotNull Map<UUID, T> getAll(@NotNull Collection<UUID> uuids);
     @NotNull T create(UUID uuid);
     void update(UUID uuid, @NotNull T data);
 
     @NotNull CompletableFuture<Optional<T>> getAsync(UUID uuid);
+    @NotNull CompletableFuture<Map<UUID, T>> getAllAsync(@NotNull Collection<UUID> uuids);
     @NotNull CompletableFuture<T> createAsync(UUID uuid);
     @NotNull CompletableFuture<Void> updateAsync(UUID uuid, @NotNull T data);
-}
\ No newline at end of file
+
+    /**
+     * Writes whatever the repository still holds back for a player, e.g. rows waiting in a
+     * write-behind buffer or journal. Called when the player quits, after their session was flushed.
+     *
+     * @return a future completing once the player's pending writes are in the database
+     */
+    default @NotNull CompletableFuture<Void> flushAsync(UUID uuid) {
+        return CompletableFuture.completedFuture(null);
+    }
+}
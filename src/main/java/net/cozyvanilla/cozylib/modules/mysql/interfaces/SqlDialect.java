@@ -0,0 +1,153 @@
+package net.cozyvanilla.cozylib.modules.mysql.interfaces;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The SQL that differs between storage backends. Repositories build their statements from these
+ * fragments so the same repository runs on MySQL and SQLite.
+ */
+public interface SqlDialect {
+
+    /**
+     * One way of applying a schema change, labelled with the algorithm it uses, e.g. {@code INSTANT}.
+     */
+    record AlterAttempt(@NotNull String algorithm, @NotNull String sql) {}
+
+    /**
+     * Gets the statements creating a table, in order. Column definitions are written in MySQL
+     * syntax and translated by dialects that need it.
+     *
+     * @param table the table name
+     * @param definitions the comma separated column, key and index definitions
+     * @return the statements to execute
+     */
+    @NotNull List<String> createTable(@NotNull String table, @NotNull String definitions);
+
+    /**
+     * Appends an upsert clause to an {@code INSERT}.
+     *
+     * @param insert the {@code INSERT INTO ... VALUES ...} statement
+     * @param keyColumns the columns of the conflicting unique key
+     * @param assignments the {@code column = expression} list applied to existing rows
+     * @return the complete statement
+     */
+    @NotNull String upsert(@NotNull String insert, @NotNull List<String> keyColumns, @NotNull String assignments);
+
+    /**
+     * Turns an {@code INSERT} into one that silently skips rows whose key already exists.
+     *
+     * @param insert the {@code INSERT INTO ...} statement, either {@code VALUES} or {@code SELECT} based
+     * @param keyColumns the columns of the conflicting unique key
+     * @return the complete statement
+     */
+    @NotNull String insertIgnore(@NotNull String insert, @NotNull List<String> keyColumns);
+
+    /**
+     * References the value an upsert tried to insert, for use in {@link #upsert} assignments.
+     *
+     * @param column the column name
+     * @return the expression
+     */
+    @NotNull String inserted(@NotNull String column);
+
+    /**
+     * Gets the larger of two expressions.
+     */
+    @NotNull String greatest(@NotNull String a, @NotNull String b);
+
+    /**
+     * Builds a {@code DELETE} removing at most {@code ?} matching rows; the limit is the last parameter.
+     *
+     * @param table the table name
+     * @param where the condition, without {@code WHERE}
+     * @return the statement
+     */
+    @NotNull String deleteLimited(@NotNull String table, @NotNull String where);
+
+    /**
+     * Gets the fetch size that makes the driver stream a result set instead of buffering it whole.
+     *
+     * @return the value to pass to {@link java.sql.Statement#setFetchSize(int)}
+     */
+    int streamingFetchSize();
+
+    /**
+     * Starts a read-only transaction whose reads all see the same snapshot of the database. End it
+     * with {@link Connection#rollback()}.
+     *
+     * @param connection an open connection, left with auto-commit disabled
+     */
+    void beginSnapshot(@NotNull Connection connection) throws SQLException;
+
+    /**
+     * Looks up the declared type of a column, lower-cased and without its length, e.g. {@code "binary"}.
+     *
+     * @param connection an open connection
+     * @param table the table name
+     * @param column the column name
+     * @return the type, or null if the column does not exist
+     */
+    @Nullable String columnType(@NotNull Connection connection, @NotNull String table, @NotNull String column) throws SQLException;
+
+    /**
+     * Lists the columns of a table.
+     *
+     * @return the lower-case column names, empty if the table does not exist
+     */
+    @NotNull Set<String> columnNames(@NotNull Connection connection, @NotNull String table) throws SQLException;
+
+    /**
+     * Lists the secondary indexes of a table under the names they were declared with in the
+     * table definition.
+     *
+     * @return the lower-case index names
+     */
+    @NotNull Set<String> indexNames(@NotNull Connection connection, @NotNull String table) throws SQLException;
+
+    /**
+     * Gets the ways to add a column to a live table, cheapest first. Each is tried until one succeeds.
+     *
+     * @param table the table name
+     * @param definition the column definition in MySQL syntax
+     */
+    @NotNull List<AlterAttempt> addColumn(@NotNull String table, @NotNull String definition);
+
+    /**
+     * Gets the ways to add a secondary index to a live table, cheapest first.
+     *
+     * @param table the table name
+     * @param name the index name as declared in the table definition
+     * @param columns the indexed columns
+     */
+    @NotNull List<AlterAttempt> addIndex(@NotNull String table, @NotNull String name, @NotNull List<String> columns);
+
+    /**
+     * Builds the statement atomically moving {@code table} to {@code backup} and {@code shadow} to
+     * {@code table}, used when a change has to be applied by copying into a shadow table.
+     *
+     * @return the statement, or null if the backend cannot swap tables atomically
+     */
+    @Nullable String swapTables(@NotNull String table, @NotNull String backup, @NotNull String shadow);
+
+    /**
+     * Takes a named lock shared by every server using the database, held by the connection until
+     * {@link #releaseLock released} or closed.
+     *
+     * @param connection an open connection
+     * @param name the lock name, at most 64 characters
+     * @param timeoutSeconds how long to wait for another holder
+     * @return true if the lock was taken, false if the wait timed out
+     */
+    boolean acquireLock(@NotNull Connection connection, @NotNull String name, int timeoutSeconds) throws SQLException;
+
+    /**
+     * Releases a lock taken by {@link #acquireLock} on the same connection.
+     */
+    void releaseLock(@NotNull Connection connection, @NotNull String name) throws SQLException;
+}
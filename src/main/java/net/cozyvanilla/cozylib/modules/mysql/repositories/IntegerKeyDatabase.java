@@ -1,139 +1,214 @@
-//package net.cozyvanilla.cozylib.modules.mysql.generic;
-//
-//import net.cozyvanilla.cozylib.modules.util.Console;
-//import net.cozyvanilla.cozylib.modules.mysql.MySQLConnection;
-//import net.cozyvanilla.cozylib.util.paper.AsyncUtils;
-//import org.bukkit.plugin.Plugin;
-//import org.jetbrains.annotations.NotNull;
-//
-//import java.sql.Connection;
-//import java.sql.PreparedStatement;
-//import java.sql.ResultSet;
-//import java.sql.SQLException;
-//import java.util.HashMap;
-//import java.util.List;
-//import java.util.Map;
-//import java.util.UUID;
-//
-//public class IntegerKeyDatabase {
-//    private final Plugin plugin;
-//    private final String tableName;
-//    private final MySQLConnection connection;
-//
-//    public IntegerKeyDatabase(@NotNull Plugin plugin,
-//                              @NotNull String tableName,
-//                              @NotNull MySQLConnection connection,
-//                              @NotNull List<String> dataList) {
-//        this.plugin = plugin;
-//        this.tableName = tableName;
-//        this.connection = connection;
-//    }
-//
-//    private String generateDefStmt() {
-//        return "CREATE TABLE IF NOT EXISTS " + tableName + "_def (" +
-//                "data_id INT NOT NULL AUTO_INCREMENT," +
-//                "data_name VARCHAR(255) NOT NULL," +
-//                "PRIMARY KEY (data_id)," +
-//                "UNIQUE KEY (data_name)" +
-//                ")";
-//    }
-//
-//    private String generateDataStmt() {
-//        return "CREATE TABLE IF NOT EXISTS " + tableName + "_data (" +
-//                "player_uuid CHAR(36) NOT NULL," +
-//                "data_id INT NOT NULL," +
-//                "amount INT NOT NULL DEFAULT 0," +
-//                "last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP," +
-//                "PRIMARY KEY (player_uuid, data_id)," +
-//                "CONSTRAINT fk_" + tableName + "_data_definition " +
-//                "FOREIGN KEY (data_id) REFERENCES " + tableName + "_def (data_id) " +
-//                "ON DELETE CASCADE ON UPDATE CASCADE" +
-//                ")";
-//    }
-//
-//    private void generateTables(List<String> dataList) {
-//        AsyncUtils.async(plugin, () -> syncGenerateTables(dataList));
-//    }
-//
-//    private void syncGenerateTables(List<String> dataList) {
-//        try (Connection conn = connection.getConnection()) {
-//            try (PreparedStatement stmt = conn.prepareStatement(generateDefStmt())) {
-//                stmt.execute();
-//            }
-//
-//            try (PreparedStatement stmt = conn.prepareStatement(generateDataStmt())) {
-//                stmt.execute();
-//            }
-//
-//            // Insert new data types if they don't exist
-//            String insertQuery = "INSERT IGNORE INTO " + tableName + "_def (data_name) VALUES (?)";
-//
-//            try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
-//                for (String data : dataList) {
-//                    insertStmt.setString(1, data);
-//                    insertStmt.addBatch();
-//                }
-//                insertStmt.executeBatch();
-//            }
-//        } catch (SQLException e) {
-//            Console.severe("An error occurred when trying to initialize data for " + tableName + ": " + e.getMessage());
-//        }
-//    }
-//
-//    public Map<Integer, Integer> syncQuery(UUID uuid) {
-//        Map<Integer, Integer> result = new HashMap<>();
-//        String insertMissingRows =
-//                "INSERT IGNORE INTO " + tableName + "_data (player_uuid, data_id, amount) " +
-//                        "SELECT ?, d.data_id, 0 FROM " + tableName + "_def d";
-//
-//        String selectQuery =
-//                "SELECT data_id, amount FROM " + tableName + "_data WHERE player_uuid = ?";
-//
-//        try (Connection conn = connection.getConnection()) {
-//            // Ensure the player has rows for every known data_id
-//            try (PreparedStatement insertStmt = conn.prepareStatement(insertMissingRows)) {
-//                insertStmt.setString(1, uuid.toString());
-//                insertStmt.executeUpdate();
-//            }
-//
-//            // Read back all values
-//            try (PreparedStatement selectStmt = conn.prepareStatement(selectQuery)) {
-//                selectStmt.setString(1, uuid.toString());
-//
-//                try (ResultSet rs = selectStmt.executeQuery()) {
-//                    while (rs.next()) {
-//                        result.put(rs.getInt("data_id"), rs.getInt("amount"));
-//                    }
-//                }
-//            }
-//        } catch (SQLException e) {
-//            Console.severe("An error occurred when trying to query data for " + uuid + " in " + tableName + ": " + e.getMessage());
-//        }
-//
-//        return result;
-//    }
-//
-//    public void update(UUID uuid, Map<Integer, Integer> data) {
-//        AsyncUtils.async(plugin, () -> syncUpdate(uuid, data));
-//    }
-//
-//    public void syncUpdate(UUID uuid, Map<Integer, Integer> data) {
-//        String upsertQuery =
-//                "INSERT INTO " + tableName + "_data (player_uuid, data_id, amount) VALUES (?, ?, ?) " +
-//                        "ON DUPLICATE KEY UPDATE amount = VALUES(amount)";
-//
-//        try (Connection conn = connection.getConnection();
-//             PreparedStatement stmt = conn.prepareStatement(upsertQuery)) {
-//
-//            for (Map.Entry<Integer, Integer> entry : data.entrySet()) {
-//                stmt.setString(1, uuid.toString());
-//                stmt.setInt(2, entry.getKey());
-//                stmt.setInt(3, entry.getValue());
-//                stmt.addBatch();
-//            }
-//            stmt.executeBatch();
-//        } catch (SQLException e) {
-//            Console.severe("An error occurred when trying to update data for " + uuid + " in " + tableName + ": " + e.getMessage());
-//        }
-//    }
-//}
\ No newline at end of file
+package net.cozyvanilla.cozylib.modules.mysql.repositories;
+
+import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.modules.mysql.abstracts.AbstractMySQL;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.*;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns data names to small integer ids through a {@code <name>_def} definitions table.
+ *
+ * <p>All known names are loaded into memory once at startup, after which {@link #idOf(String)}
+ * and {@link #nameOf(int)} never touch the database. Repositories store and index the int id
+ * instead of repeating the name in every row, and in-memory player data can use the id as an
+ * array index (ids are AUTO_INCREMENT values, so they are dense apart from deleted names).
+ *
+ * <p>One dictionary can be shared by several repositories.
+ */
+public class IntegerKeyDatabase extends AbstractMySQL {
+    public static final int UNKNOWN_ID = -1;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[0];
+
+    public IntegerKeyDatabase(@NotNull Plugin plugin, @NotNull String tableName) {
+        super(plugin, tableName);
+    }
+
+    @Override
+    protected String getTableColumns() {
+        return """
+           data_id INT NOT NULL AUTO_INCREMENT,
+           data_name VARCHAR(255) NOT NULL,
+           PRIMARY KEY (data_id),
+           UNIQUE KEY (data_name)
+           """;
+    }
+
+    /**
+     * Creates the definitions table, registers the given names and loads every definition into memory.
+     *
+     * @param dataNames names that must have an id once the future completes
+     * @return a future completed once the dictionary is usable
+     */
+    public @NotNull CompletableFuture<Void> loadAsync(@NotNull Collection<String> dataNames) {
+        return initializeAsync().thenRun(() -> load(dataNames));
+    }
+
+    /**
+     * Registers the given names and loads every definition into memory on the calling thread.
+     *
+     * @param dataNames names that must have an id afterwards
+     */
+    public void load(@NotNull Collection<String> dataNames) {
+        try {
+            write(connection -> {
+                readAll(connection);
+
+                // only insert names we do not know yet, re-inserting known ones would still burn AUTO_INCREMENT ids
+                List<String> missing = dataNames.stream().filter(name -> !ids.containsKey(name)).toList();
+                if (missing.isEmpty()) return null;
+
+                String insert = dialect().insertIgnore("INSERT INTO " + tableName + " (data_name) VALUES (?)",
+                        List.of("data_name"));
+
+                try (PreparedStatement ps = connection.prepareStatement(insert)) {
+                    for (String dataName : missing) {
+                        ps.setString(1, dataName);
+                        ps.addBatch();
+                    }
+
+                    ps.executeBatch();
+                }
+
+                readAll(connection);
+                return null;
+            });
+
+        } catch (SQLException e) {
+            Logger.severe("Error loading data definitions from " + tableName, e);
+        }
+    }
+
+    /**
+     * Gets the id of a data name without touching the database.
+     *
+     * @param dataName the data name
+     * @return the id, or {@link #UNKNOWN_ID} if the name was never registered
+     */
+    public int idOf(@NotNull String dataName) {
+        Integer id = ids.get(dataName);
+        return id == null ? UNKNOWN_ID : id;
+    }
+
+    /**
+     * Gets the id of a data name, registering it in the definitions table if it is new.
+     * Only new names hit the database.
+     *
+     * @param dataName the data name
+     * @return the id of the name
+     * @throws SQLException if the name could not be registered
+     */
+    public int getOrCreate(@NotNull String dataName) throws SQLException {
+        int id = idOf(dataName);
+        if (id != UNKNOWN_ID) return id;
+
+        String insert = dialect().insertIgnore("INSERT INTO " + tableName + " (data_name) VALUES (?)",
+                List.of("data_name"));
+        String select = "SELECT data_id FROM " + tableName + " WHERE data_name = ?";
+
+        // a plain select afterwards works on every backend and also covers a concurrent insert
+        id = write(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(insert)) {
+                ps.setString(1, dataName);
+                ps.executeUpdate();
+            }
+
+            try (PreparedStatement ps = connection.prepareStatement(select)) {
+                ps.setString(1, dataName);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("No id returned for data name " + dataName);
+                    }
+
+                    return rs.getInt(1);
+                }
+            }
+        });
+
+        register(id, dataName);
+        return id;
+    }
+
+    /**
+     * Gets the data name of an id without touching the database.
+     *
+     * @param id the data id
+     * @return the name, or null if the id is unknown
+     */
+    public @Nullable String nameOf(int id) {
+        String[] snapshot = names;
+        return id >= 0 && id < snapshot.length ? snapshot[id] : null;
+    }
+
+    /**
+     * Gets the data name of an id, reading it from the definitions table if it was registered
+     * after the dictionary was loaded, e.g. by another server.
+     *
+     * @param id the data id
+     * @return the name, or null if no definition has the id
+     * @throws SQLException if the definition could not be read
+     */
+    public @Nullable String resolveName(int id) throws SQLException {
+        String dataName = nameOf(id);
+        if (dataName != null || id < 0) return dataName;
+
+        // read from the primary, a replica may not have the definition yet
+        try (Connection connection = getConnection();
+             PreparedStatement ps = connection.prepareStatement("SELECT data_name FROM " + tableName + " WHERE data_id = ?")) {
+            ps.setInt(1, id);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+
+                dataName = rs.getString(1);
+                register(id, dataName);
+                return dataName;
+            }
+        }
+    }
+
+    /**
+     * Gets an upper bound for every known id, usable as the length of an id-indexed array.
+     *
+     * @return the highest known id plus one
+     */
+    public int capacity() {
+        return names.length;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    // private methods
+    private void readAll(Connection connection) throws SQLException {
+        String select = "SELECT data_id, data_name FROM " + tableName;
+
+        try (PreparedStatement ps = connection.prepareStatement(select);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                register(rs.getInt(1), rs.getString(2));
+            }
+        }
+    }
+
+    private synchronized void register(int id, String dataName) {
+        ids.put(dataName, id);
+
+        String[] current = names;
+        String[] next = id < current.length ? current.clone() : Arrays.copyOf(current, id + 1);
+        next[id] = dataName;
+        names = next;
+    }
+}
@@ -1,112 +1,307 @@
 package net.cozyvanilla.cozylib.modules.mysql.repositories;
 
+import net.cozyvanilla.cozylib.Config;
 import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.common.enums.StorageMode;
 import net.cozyvanilla.cozylib.modules.mysql.abstracts.AbstractMySQL;
 import net.cozyvanilla.cozylib.modules.mysql.interfaces.PlayerRepository;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.SqlDialect;
+import net.cozyvanilla.cozylib.modules.mysql.services.backfill.BackfillJob;
+import net.cozyvanilla.cozylib.modules.mysql.services.cache.CachedPlayerRepository;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.JournalCodec;
+import net.cozyvanilla.cozylib.modules.mysql.services.flush.WriteBehindBuffer;
+import net.cozyvanilla.cozylib.modules.mysql.services.journal.WriteJournal;
+import net.cozyvanilla.cozylib.modules.mysql.services.mapping.RecordMapper;
+import net.cozyvanilla.cozylib.modules.mysql.services.migration.UuidMigration;
+import net.cozyvanilla.cozylib.modules.mysql.services.scan.TableScan;
+import net.cozyvanilla.cozylib.modules.mysql.services.table.Column;
+import net.cozyvanilla.cozylib.modules.mysql.services.table.Condition;
+import net.cozyvanilla.cozylib.modules.mysql.services.table.DataType;
+import net.cozyvanilla.cozylib.modules.mysql.services.table.Query;
+import net.cozyvanilla.cozylib.modules.mysql.services.table.StatementTemplate;
+import net.cozyvanilla.cozylib.modules.mysql.services.transaction.UnitOfWork;
+import net.cozyvanilla.cozylib.runtime.MySQLConnection;
 import net.cozyvanilla.cozylib.util.paper.FutureUtils;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
 import java.sql.*;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
 
 public class PlayerProgressRepository extends AbstractMySQL implements PlayerRepository<Map<String, PlayerProgressRepository.Collection>> {
+    private static final int BULK_CHUNK_SIZE = 500;
+    private static final RecordMapper<Collection> COLLECTIONS = RecordMapper.of(Collection.class);
+    private static final Column<Integer> AMOUNT = Column.integer("amount");
+    private static final Column<Instant> OBTAINED_AT = Column.timestamp("obtained_at");
+    private static final Column<Integer> CHUNK_SIZE = Column.integer("chunk_size");
+
+    private final Column<UUID> player = Column.of("player_uuid", DataType.uuid(), this::setUuid);
 
     private final Set<String> dataList;
+    private final StorageMode storageMode;
+    private final IntegerKeyDatabase dictionary;
+    private final CompletableFuture<Void> dictionaryLoaded;
+
+    // null until the table was inspected, true while it still stores data_name VARCHAR instead of the interned data_id
+    private volatile Boolean legacyDataNames;
+    private volatile WriteBehindBuffer<ProgressKey, Collection> writeBehind;
+    private volatile WriteJournal<ProgressKey, Collection> journal;
+    private volatile Statements statements;
+    private final List<BackfillJob> backfills = new ArrayList<>();
+
     public record Collection(int amount, @Nullable Instant obtainedAt) {}
+    public record ProgressKey(UUID uuid, String dataName) {}
+    public record ProgressRow(UUID uuid, @Nullable String dataName, int amount, @Nullable Instant obtainedAt) {}
+
+    private record Statements(Column<String> data,
+                              StatementTemplate select,
+                              StatementTemplate selectMany,
+                              StatementTemplate create,
+                              StatementTemplate save,
+                              StatementTemplate upsertAmount,
+                              StatementTemplate setAmount,
+                              StatementTemplate setObtainedAt,
+                              StatementTemplate setObtainedAtSparse,
+                              StatementTemplate purgeDefaults) {}
 
     public PlayerProgressRepository(@NotNull Plugin plugin, @NotNull String tableName, @NotNull Set<String> dataList) {
+        this(plugin, tableName, dataList, StorageMode.DENSE);
+    }
+
+    public PlayerProgressRepository(@NotNull Plugin plugin,
+                                    @NotNull String tableName,
+                                    @NotNull Set<String> dataList,
+                                    @NotNull StorageMode storageMode) {
+        this(plugin, tableName, dataList, storageMode, new IntegerKeyDatabase(plugin, tableName + "_def"));
+    }
+
+    public PlayerProgressRepository(@NotNull Plugin plugin,
+                                    @NotNull String tableName,
+                                    @NotNull Set<String> dataList,
+                                    @NotNull StorageMode storageMode,
+                                    @NotNull IntegerKeyDatabase dictionary) {
         super(plugin, tableName);
         this.dataList = dataList;
-        initializeAsync(); // -> table creation
+        this.storageMode = storageMode;
+        this.dictionary = dictionary;
+        this.statements = compileStatements();
+
+        // -> definitions, then table creation
+        this.dictionaryLoaded = dictionary.loadAsync(dataList);
+        CompletableFuture<Void> initialized = dictionaryLoaded.thenCompose(ignored -> initializeAsync());
 
-        FutureUtils.handleAsync(updateMissingDataAsync(), value -> {
-            if (value > 0) {
-                Logger.info("Successfully updated (" + value + ") rows on " + tableName);
+        if (Config.getJournalConfig().enabled()) {
+            try {
+                enableJournal();
+            } catch (IllegalStateException e) {
+                Logger.severe("Saving " + tableName + " straight to the database, its write journal could not be opened", e);
             }
-        }, null);
+        } else if (Config.getWriteBehindConfig().enabled()) {
+            enableWriteBehind();
+        }
+
+        // sparse tables never hold zero rows, so there is nothing to backfill
+        if (storageMode.isSparse()) return;
+
+        // each shard walks its own players
+        Config.BackfillConfig config = Config.getBackfillConfig();
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            int index = shard;
+            backfills.add(new BackfillJob(plugin, tableName, shard == 0 ? tableName : tableName + "-shard-" + shard,
+                    () -> getShardConnection(index), dataList, config.chunkSize(), config.rowsPerSecond()));
+        }
+
+        FutureUtils.handleAsync(initialized, ignored -> backfills.forEach(job -> job.start(keyColumn(), this::keyValue)),
+                error -> Logger.severe("Skipping backfill of " + tableName + ", table creation failed", error));
     }
 
     @Override
     protected String getTableColumns() {
         return """
-           player_uuid CHAR(36) NOT NULL,
-           data_name VARCHAR(255) NOT NULL,
+           player_uuid BINARY(16) NOT NULL,
+           data_id INT NOT NULL,
            amount INT NOT NULL DEFAULT 0,
            obtained_at TIMESTAMP NULL DEFAULT NULL,
-           PRIMARY KEY (player_uuid, data_name)
+           PRIMARY KEY (player_uuid, data_id)
            """;
     }
 
+    @Override
+    protected @NotNull String getUuidColumn() {
+        return "player_uuid";
+    }
+
+    @Override
+    protected boolean shardByPlayer() {
+        return true;
+    }
+
+    @Override
+    protected void inspectTable(@NotNull Connection connection) throws SQLException {
+        if (inspectDataKeys(connection)) {
+            Logger.warning(tableName + " still stores data_name per row, run the uuid migration to convert it to interned data ids");
+        }
+    }
+
+    /**
+     * Loads a player's progress. Saves still waiting in the journal or write-behind buffer are
+     * applied on top of the rows read, so a player loaded again right after a save sees it.
+     *
+     * @return the progress, empty in dense mode if the player has no rows
+     * @throws IllegalStateException if the progress could not be read, so a failure is never mistaken for a new player
+     */
     @Override
     public @NotNull Optional<Map<String, Collection>> get(UUID uuid) {
-        try {
-            String sql = "SELECT data_name, amount, obtained_at FROM " + tableName +
-                    " WHERE player_uuid = ?";
+        // taken before reading, a save acknowledged in between is then either still pending or in the rows read
+        Map<ProgressKey, Collection> unwritten = unwritten(key -> key.uuid().equals(uuid));
 
+        try {
             Map<String, Collection> result = new HashMap<>();
 
-            try (Connection connection = getConnection();
-                 PreparedStatement ps = connection.prepareStatement(sql)) {
+            try (Connection connection = getReadConnection(uuid);
+                 StatementTemplate.Binder binder = statements.select().prepare(connection)) {
 
-                ps.setString(1, uuid.toString());
+                binder.set(player, uuid);
 
-                try (ResultSet rs = ps.executeQuery()) {
+                try (ResultSet rs = binder.statement().executeQuery()) {
                     while (rs.next()) {
-                        String dataName = rs.getString("data_name");
-                        int amount = rs.getInt("amount");
-
-                        Timestamp timestamp = rs.getTimestamp("obtained_at");
-                        Instant obtainedAt = timestamp == null ? null : timestamp.toInstant();
+                        String dataName = readDataKey(rs, 1);
+                        if (dataName == null) continue;
 
-                        result.put(dataName, new Collection(amount, obtainedAt));
+                        result.put(dataName, COLLECTIONS.fromResultSet(rs));
                     }
                 }
             }
 
+            unwritten.forEach((key, collection) -> result.merge(key.dataName(), collection, PlayerProgressRepository::latest));
+
+            // a dense player without rows was never created, so the caller creates their zero rows
+            if (!storageMode.isSparse()) {
+                return result.isEmpty() ? Optional.empty() : Optional.of(result);
+            }
+
+            fillDefaults(result);
             return Optional.of(result);
 
         } catch (SQLException e) {
             Logger.severe("Error querying data for " + uuid + " in " + tableName, e);
+            throw new IllegalStateException("Failed to load " + uuid + " from " + tableName, e);
         }
-
-        return Optional.empty();
     }
 
     @Override
     public @NotNull CompletableFuture<Optional<Map<String, Collection>>> getAsync(UUID uuid) {
-        return FutureUtils.supplyAsync(plugin, () -> get(uuid));
+        return supplyAsync(() -> get(uuid));
     }
 
+    /**
+     * Loads many players at once using chunked {@code WHERE player_uuid IN (...)} queries on a
+     * single connection per shard. In dense mode players without rows are missing from the result;
+     * in sparse mode every requested player is present.
+     *
+     * @throws IllegalStateException if any shard could not be read, rather than returning the players read so far
+     */
+    @Override
+    public @NotNull Map<UUID, Map<String, Collection>> getAll(@NotNull java.util.Collection<UUID> uuids) {
+        Map<UUID, Map<String, Collection>> result = new HashMap<>();
+        if (uuids.isEmpty()) return result;
+
+        List<UUID> players = new ArrayList<>(new LinkedHashSet<>(uuids));
+        Set<UUID> requested = new HashSet<>(players);
+        Map<ProgressKey, Collection> unwritten = unwritten(key -> requested.contains(key.uuid()));
+
+        try {
+            for (Map.Entry<Integer, List<UUID>> shard : byShard(players).entrySet()) {
+                loadShard(shard.getKey(), shard.getValue(), result);
+            }
+        } catch (SQLException e) {
+            Logger.severe("Error bulk querying data for " + players.size() + " players in " + tableName, e);
+            throw new IllegalStateException("Failed to load " + players.size() + " players from " + tableName, e);
+        }
+
+        unwritten.forEach((key, collection) -> result.computeIfAbsent(key.uuid(), ignored -> new HashMap<>())
+                .merge(key.dataName(), collection, PlayerProgressRepository::latest));
+
+        if (storageMode.isSparse()) {
+            for (UUID uuid : players) {
+                fillDefaults(result.computeIfAbsent(uuid, ignored -> new HashMap<>()));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Loads many players at once, see {@link #getAll}.
+     *
+     * @return a future containing the loaded data keyed by player, failed if any shard could not be read
+     */
+    @Override
+    public @NotNull CompletableFuture<Map<UUID, Map<String, Collection>>> getAllAsync(@NotNull java.util.Collection<UUID> uuids) {
+        List<UUID> snapshot = List.copyOf(uuids);
+        return supplyAsync(() -> getAll(snapshot));
+    }
+
+    /**
+     * Loads every currently online player in bulk, e.g. to warm caches when a module is enabled
+     * after a reload. Must be called from the main thread so the online player list is stable.
+     *
+     * @return a future containing the loaded data keyed by player, failed if it could not be read
+     */
+    public @NotNull CompletableFuture<Map<UUID, Map<String, Collection>>> getOnlineAsync() {
+        List<UUID> online = plugin.getServer().getOnlinePlayers().stream()
+                .map(org.bukkit.entity.Player::getUniqueId)
+                .toList();
+
+        return getAllAsync(online);
+    }
+
+    /**
+     * Creates a player's progress, inserting a zero row per data name in dense mode.
+     *
+     * @throws IllegalStateException if the rows could not be inserted, so a dense player is never
+     *                               left without the rows {@link #get} expects
+     */
     @Override
     public @NotNull Map<String, Collection> create(UUID uuid) {
         Map<String, Collection> data = new HashMap<>();
 
+        if (storageMode.isSparse()) {
+            fillDefaults(data);
+            return data;
+        }
+
         try {
-            String sql = "INSERT INTO " + tableName +
-                    " (player_uuid, data_name, amount, obtained_at) " +
-                    " VALUES (?, ?, 0, NULL) " +
-                    " ON DUPLICATE KEY UPDATE amount = amount";
+            Statements compiled = statements;
 
-            try (Connection connection = getConnection();
-                 PreparedStatement ps = connection.prepareStatement(sql)) {
+            write(uuid, connection -> {
+                try (StatementTemplate.Binder binder = compiled.create().prepare(connection)) {
+                    for (String dataName : dataList) {
+                        binder.set(player, uuid).set(compiled.data(), dataName);
+                        binder.addBatch();
 
-                for (String dataName : dataList) {
-                    ps.setString(1, uuid.toString());
-                    ps.setString(2, dataName);
-                    ps.addBatch();
+                        data.put(dataName, new Collection(0, null));
+                    }
 
-                    data.put(dataName, new Collection(0, null));
+                    return binder.statement().executeBatch();
                 }
+            });
 
-                ps.executeBatch();
-            }
+            markWritten(uuid);
 
         } catch (SQLException e) {
             Logger.severe("Error creating data for " + uuid + " in " + tableName, e);
+            throw new IllegalStateException("Failed to create " + uuid + " in " + tableName, e);
         }
 
         return data;
@@ -114,64 +309,259 @@ public class PlayerProgressRepository extends AbstractMySQL implements PlayerRep
 
     @Override
     public @NotNull CompletableFuture<Map<String, Collection>> createAsync(UUID uuid) {
-        return FutureUtils.supplyAsync(plugin, () -> create(uuid));
+        return supplyWriteAsync(() -> create(uuid));
     }
 
+    /**
+     * Saves a player's progress, see {@link #save}, through the journal when one is enabled.
+     *
+     * @throws IllegalStateException if the amounts could not be journaled or written, so callers
+     *                               such as a session flush keep them and retry
+     */
     @Override
     public void update(UUID uuid, @NotNull Map<String, Collection> data) {
         if (data.isEmpty()) return;
 
+        WriteJournal<ProgressKey, Collection> log = journal;
+        if (log != null) {
+            try {
+                log.append(rows(uuid, data)).join();
+            } catch (CompletionException e) {
+                Logger.severe("Error journaling data for " + uuid + " in " + tableName, e.getCause());
+                throw new IllegalStateException("Failed to journal " + uuid + " in " + tableName, e.getCause());
+            }
+
+            return;
+        }
+
+        WriteBehindBuffer<ProgressKey, Collection> buffer = writeBehind;
+        if (buffer != null) {
+            rows(uuid, data).forEach(buffer::enqueue);
+            return;
+        }
+
         try {
-            String sql = "UPDATE " + tableName +
-                    " SET amount = GREATEST(amount, ?) " +
-                    " WHERE player_uuid = ? AND data_name = ?";
+            save(rows(uuid, data));
+        } catch (SQLException e) {
+            Logger.severe("Error updating data for " + uuid + " in " + tableName, e);
+            throw new IllegalStateException("Failed to update " + uuid + " in " + tableName, e);
+        }
+    }
+
+    /**
+     * Stages a player save into a unit of work, with the same semantics as {@link #save}: amounts
+     * are set exactly and obtained_at keeps the earliest time, as multi-row statements.
+     *
+     * @param unit the unit to add to, committed by the caller
+     * @param uuid the player's UUID
+     * @param data the player's progress
+     */
+    public void stageSave(@NotNull UnitOfWork unit, UUID uuid, @NotNull Map<String, Collection> data) {
+        List<Map.Entry<ProgressKey, Collection>> entries = new ArrayList<>(rows(uuid, data).entrySet());
+        if (!entries.isEmpty()) stageRows(unit, entries);
+    }
+
+    /**
+     * Saves the player's progress asynchronously, see {@link #save}. With the journal enabled the
+     * future completes once the rows are synced to the local journal; with write-behind enabled
+     * the amounts are only queued and the future completes immediately. Either way they reach
+     * MySQL later.
+     */
+    @Override
+    public @NotNull CompletableFuture<Void> updateAsync(UUID uuid, @NotNull Map<String, Collection> data) {
+        if (data.isEmpty()) return CompletableFuture.completedFuture(null);
 
-            try (Connection connection = getConnection();
-                 PreparedStatement ps = connection.prepareStatement(sql)) {
+        WriteJournal<ProgressKey, Collection> log = journal;
+        if (log != null) {
+            return log.append(rows(uuid, data));
+        }
 
-                for (Map.Entry<String, Collection> entry : data.entrySet()) {
-                    String dataName = entry.getKey();
-                    Collection collection = entry.getValue();
+        WriteBehindBuffer<ProgressKey, Collection> buffer = writeBehind;
+        if (buffer != null) {
+            rows(uuid, data).forEach(buffer::enqueue);
+            return CompletableFuture.completedFuture(null);
+        }
 
-                    if (collection == null) continue;
+        return runWriteAsync(() -> update(uuid, data));
+    }
 
-                    ps.setInt(1, collection.amount());
-                    ps.setString(2, uuid.toString());
-                    ps.setString(3, dataName);
-                    ps.addBatch();
-                }
+    /**
+     * Saves many (player, data name) entries the way a player save does: amounts are set exactly,
+     * so lowering one persists, and obtained_at keeps the earliest time a row has seen. The rows of
+     * each shard are written as multi-row statements in one {@link UnitOfWork}, so a save is
+     * either written completely or not at all. A stale save is not harmless, so only the server
+     * holding the players' current progress should call it.
+     *
+     * @param rows the entries to write, keyed by player and data name
+     * @throws SQLException if a shard's rows could not be written; other shards may have been
+     */
+    public void save(@NotNull Map<ProgressKey, Collection> rows) throws SQLException {
+        if (rows.isEmpty()) return;
+
+        Map<Integer, List<Map.Entry<ProgressKey, Collection>>> shards = new HashMap<>();
+        for (Map.Entry<ProgressKey, Collection> entry : rows.entrySet()) {
+            shards.computeIfAbsent(writeShardOf(entry.getKey().uuid()), ignored -> new ArrayList<>()).add(entry);
+        }
+
+        for (List<Map.Entry<ProgressKey, Collection>> entries : shards.values()) {
+            UnitOfWork unit = new UnitOfWork(plugin);
+            stageRows(unit, entries);
+            commit(unit);
 
-                ps.executeBatch();
+            for (Map.Entry<ProgressKey, Collection> entry : entries) {
+                markWritten(entry.getKey().uuid());
             }
+        }
+    }
 
-        } catch (SQLException e) {
-            Logger.severe("Error updating data for " + uuid + " in " + tableName, e);
+    /**
+     * Upserts many (player, data name) amounts using multi-row statements, keeping the
+     * highest amount when a row already exists. Amounts are grouped by shard first.
+     *
+     * @param amounts the amounts to write, keyed by player and data name
+     * @throws SQLException if any chunk fails to write
+     */
+    public void upsertAmounts(@NotNull Map<ProgressKey, Integer> amounts) throws SQLException {
+        upsertAmounts(amounts, false);
+    }
+
+    /**
+     * Sets many (player, data name) amounts exactly using multi-row statements, replacing a higher
+     * amount a row already has, e.g. after a counter was lowered. Unlike {@link #upsertAmounts} a
+     * stale or replayed write is not harmless, so only the server holding the player's current
+     * amounts should call it. Amounts are grouped by shard first.
+     *
+     * @param amounts the amounts to write, keyed by player and data name
+     * @throws SQLException if any chunk fails to write
+     */
+    public void setAmounts(@NotNull Map<ProgressKey, Integer> amounts) throws SQLException {
+        upsertAmounts(amounts, true);
+    }
+
+    /**
+     * Sets many (player, data name) obtained_at values using multi-row statements, keeping the
+     * earliest time when a row already has one. Times are grouped by shard first.
+     *
+     * @param times the times to write, keyed by player and data name
+     * @throws SQLException if any chunk fails to write
+     */
+    public void upsertObtainedAt(@NotNull Map<ProgressKey, Instant> times) throws SQLException {
+        if (times.isEmpty()) return;
+
+        int batchSize = Math.max(1, Config.getWriteBehindConfig().batchSize());
+        Map<Integer, List<Map.Entry<ProgressKey, Instant>>> shards = new HashMap<>();
+
+        for (Map.Entry<ProgressKey, Instant> entry : times.entrySet()) {
+            shards.computeIfAbsent(writeShardOf(entry.getKey().uuid()), ignored -> new ArrayList<>()).add(entry);
+        }
+
+        for (Map.Entry<Integer, List<Map.Entry<ProgressKey, Instant>>> shard : shards.entrySet()) {
+            upsertObtainedAt(shard.getKey(), shard.getValue(), batchSize);
         }
     }
 
+    /**
+     * Routes saves through a write-behind buffer that coalesces repeated writes and flushes them
+     * through {@link #save}, using the intervals from config.yml. Enabling {@code mysql.write_behind}
+     * does this on construction unless the journal is enabled, which takes precedence on every save.
+     *
+     * @return the started buffer
+     */
+    public @NotNull WriteBehindBuffer<ProgressKey, Collection> enableWriteBehind() {
+        if (writeBehind != null) return writeBehind;
+
+        Config.WriteBehindConfig config = Config.getWriteBehindConfig();
+        writeBehind = new WriteBehindBuffer<>(plugin, tableName, this::save, PlayerProgressRepository::latest,
+                config.interval(), config.maxPending());
+        writeBehind.start();
+
+        return writeBehind;
+    }
+
+    /**
+     * Puts an append-only journal in the plugin data folder in front of saves, which enabling
+     * {@code mysql.journal} in config.yml does on construction. Saves are synced to the journal
+     * first and drained to MySQL with {@link #save}, so they neither block on nor get lost to a
+     * slow or unreachable database. Saves of the same row merge like the table does: the newer
+     * amount replaces the pending one and the earliest obtained_at is kept. Rows left over from a
+     * previous run are replayed immediately. Takes precedence over write-behind.
+     *
+     * @return the started journal
+     * @throws IllegalStateException if the journal file cannot be opened
+     */
+    public @NotNull WriteJournal<ProgressKey, Collection> enableJournal() {
+        if (journal != null) return journal;
+
+        Config.JournalConfig config = Config.getJournalConfig();
+        File file = new File(new File(plugin.getDataFolder(), config.folder()), tableName + ".journal");
+
+        WriteJournal<ProgressKey, Collection> created = new WriteJournal<>(plugin, tableName, file,
+                new ProgressJournalCodec(), this::save, PlayerProgressRepository::latest,
+                config.drainInterval(), config.compactBytes());
+
+        try {
+            created.start();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open the write journal of " + tableName, e);
+        }
+
+        journal = created;
+        return created;
+    }
+
+    /**
+     * Flushes a single player's pending writes from the journal or write-behind buffer, called by
+     * the {@link net.cozyvanilla.cozylib.modules.mysql.services.session.SessionLoader} when the player quits.
+     *
+     * @param uuid the player's UUID
+     * @return a future completed once the player's rows are written
+     */
     @Override
-    public @NotNull CompletableFuture<Void> updateAsync(UUID uuid, @NotNull Map<String, Collection> data) {
-        if (data.isEmpty()) return CompletableFuture.completedFuture(null);
-        return FutureUtils.async(plugin, () -> update(uuid, data));
+    public @NotNull CompletableFuture<Void> flushAsync(UUID uuid) {
+        WriteJournal<ProgressKey, Collection> log = journal;
+        if (log != null) {
+            return log.drainAsync(key -> key.uuid().equals(uuid)).thenApply(drained -> null);
+        }
+
+        WriteBehindBuffer<ProgressKey, Collection> buffer = writeBehind;
+        if (buffer == null) return CompletableFuture.completedFuture(null);
+
+        return buffer.flushAsync(key -> key.uuid().equals(uuid)).thenApply(flushed -> null);
     }
 
-    public void setObtainedAt(UUID uuid, String dataName, @NotNull Instant time) {
-        String sql = "UPDATE " + tableName +
-                " SET obtained_at = ? " +
-                " WHERE player_uuid = ? AND data_name = ? " +
-                " AND (obtained_at IS NULL OR obtained_at > ?)";
+    /**
+     * Stops the background backfill and write-behind, then synchronously flushes all pending writes.
+     * Meant to be called on disable.
+     */
+    public void close() {
+        backfills.forEach(BackfillJob::cancel);
 
-        try (Connection connection = getConnection();
-             PreparedStatement ps = connection.prepareStatement(sql)) {
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+            writeBehind = null;
+        }
 
-            Timestamp ts = Timestamp.from(time);
+        if (journal != null) {
+            journal.shutdown();
+            journal = null;
+        }
+    }
 
-            ps.setTimestamp(1, ts);
-            ps.setString(2, uuid.toString());
-            ps.setString(3, dataName);
-            ps.setTimestamp(4, ts);
+    public @Nullable WriteBehindBuffer<ProgressKey, Collection> getWriteBehind() {
+        return writeBehind;
+    }
 
-            ps.executeUpdate();
+    public @Nullable WriteJournal<ProgressKey, Collection> getJournal() {
+        return journal;
+    }
+
+    public void setObtainedAt(UUID uuid, String dataName, @NotNull Instant time) {
+        Statements compiled = statements;
+
+        try {
+            write(uuid, connection -> writeObtainedAt(connection, compiled, uuid, Map.of(dataName, time)));
+
+            markWritten(uuid);
 
         } catch (SQLException e) {
             Logger.severe("Error updating obtained_at for " + uuid + " / " + dataName + " in " + tableName, e);
@@ -179,50 +569,529 @@ public class PlayerProgressRepository extends AbstractMySQL implements PlayerRep
     }
 
     public @NotNull CompletableFuture<Void> setObtainedAtAsync(UUID uuid, String dataName, @NotNull Instant time) {
-        return FutureUtils.async(plugin, () -> setObtainedAt(uuid, dataName, time));
+        return runWriteAsync(() -> setObtainedAt(uuid, dataName, time));
+    }
+
+    /**
+     * Deletes rows that only hold default values, converting an existing dense table to sparse storage.
+     * Rows are removed in bounded chunks so the table is never locked for long.
+     *
+     * @param chunkSize the maximum number of rows removed per statement
+     * @return the number of rows removed
+     */
+    public int purgeDefaultRows(int chunkSize) {
+        int purged = 0;
+
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            purged += purgeDefaultRows(shard, chunkSize);
+        }
+
+        return purged;
+    }
+
+    public @NotNull CompletableFuture<Integer> purgeDefaultRowsAsync(int chunkSize) {
+        return supplyAsync(() -> purgeDefaultRows(chunkSize));
+    }
+
+    /**
+     * Converts a legacy table in place: a CHAR(36) player_uuid column to BINARY(16) and a data_name
+     * column to the data_id interned in the dictionary, copying rows in throttled chunks using the
+     * backfill limits from config.yml. The migration can run for hours, so like the backfill it runs
+     * on the async scheduler rather than holding a database worker.
+     *
+     * @return a future containing the number of rows migrated, failed if the table is sharded or
+     *         the migration stopped on an error
+     */
+    public @NotNull CompletableFuture<Long> migrateUuidsAsync() {
+        if (isSharded()) {
+            Logger.severe("Cannot migrate uuids of " + tableName + " while it is sharded, migrate it before adding shards");
+            return CompletableFuture.failedFuture(new IllegalStateException("Cannot migrate uuids of sharded table " + tableName));
+        }
+
+        Config.BackfillConfig config = Config.getBackfillConfig();
+        UuidMigration migration = new UuidMigration(this, this::getConnection, getUuidColumn(),
+                config.chunkSize(), config.rowsPerSecond())
+                .convert("data_name", "data_id", dictionary.getTableName());
+
+        CompletableFuture<Long> result = new CompletableFuture<>();
+
+        plugin.getServer().getAsyncScheduler().runNow(plugin, task -> {
+            try {
+                long migrated = migration.run();
+
+                // pick up the converted layout and the ids registered for legacy names
+                try (Connection connection = getConnection()) {
+                    inspectDataKeys(connection);
+                }
+                dictionary.load(dataList);
+
+                result.complete(migrated);
+            } catch (SQLException e) {
+                Logger.severe("Failed to migrate uuids of " + tableName, e);
+                result.completeExceptionally(new IllegalStateException("Failed to migrate uuids of " + tableName, e));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Prepares a streaming scan over every stored row, e.g. for nightly audits or leaderboard
+     * recomputation, fanning out over every shard. Sparse tables only hold non-default rows. A data
+     * name is null if its id is no longer known to the dictionary.
+     *
+     * @return the scan, run off the main thread
+     */
+    public @NotNull TableScan<ProgressRow> scanRows() {
+        return scan("player_uuid, " + keyColumn() + ", amount, obtained_at", this::readRow);
+    }
+
+    /**
+     * Prepares a scan over every stored row that reads pages ordered by the primary key, for scans
+     * doing slow work per row that would stall a single streaming query.
+     *
+     * @param pageSize the rows read per page
+     * @return the scan, run off the main thread
+     */
+    public @NotNull TableScan<ProgressRow> scanRowsPaged(int pageSize) {
+        return scanRows().keyset("player_uuid", keyColumn()).pageSize(pageSize);
+    }
+
+    public @NotNull StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    public @NotNull IntegerKeyDatabase getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Gets a future completed once the dictionary was loaded and every name of the data list has
+     * an id, so {@link IntegerKeyDatabase#capacity()} covers them.
+     */
+    public @NotNull CompletableFuture<Void> dictionaryLoaded() {
+        return dictionaryLoaded;
+    }
+
+    /**
+     * Wraps this repository in a read-through cache configured from config.yml. Written amounts
+     * are merged into the cached value, so saves never force a reload, and amounts still waiting
+     * in the journal or write-behind buffer are merged into refreshed values.
+     *
+     * @return the enabled cache
+     */
+    public @NotNull CachedPlayerRepository<Map<String, Collection>> cached() {
+        Config.CacheConfig config = Config.getCacheConfig();
+        CachedPlayerRepository<Map<String, Collection>> cached = new CachedPlayerRepository<>(
+                plugin, tableName, this, PlayerProgressRepository::merge, this::unwritten,
+                config.maximumSize(),
+                Duration.ofSeconds(config.refreshAfter()),
+                Duration.ofSeconds(config.gracePeriod()));
+
+        cached.enable();
+        return cached;
+    }
+
+    /**
+     * Merges written progress into existing progress the same way {@link #save} does: the written
+     * amount wins and the earliest obtained_at is kept.
+     */
+    public static @NotNull Map<String, Collection> merge(@NotNull Map<String, Collection> current,
+                                                         @NotNull Map<String, Collection> written) {
+        Map<String, Collection> merged = new HashMap<>(current);
+
+        written.forEach((dataName, collection) -> {
+            if (collection != null) merged.merge(dataName, collection, PlayerProgressRepository::latest);
+        });
+
+        return merged;
     }
 
     // private methods
-    private int updateMissingData() {
-        String sql = """
-        INSERT INTO %s (player_uuid, data_name, amount, obtained_at)
-        SELECT p.player_uuid, ?, 0, NULL
-        FROM (SELECT DISTINCT player_uuid FROM %s) p
-        LEFT JOIN %s t
-          ON t.player_uuid = p.player_uuid AND t.data_name = ?
-        WHERE t.player_uuid IS NULL
-        """.formatted(tableName, tableName, tableName);
-
-        int synced = 0;
-
-        try (Connection connection = getConnection();
-             PreparedStatement ps = connection.prepareStatement(sql)) {
-
-            for (String dataName : dataList) {
-                ps.setString(1, dataName);
-                ps.setString(2, dataName);
-                ps.addBatch();
+    private void upsertAmounts(Map<ProgressKey, Integer> amounts, boolean exact) throws SQLException {
+        if (amounts.isEmpty()) return;
+
+        int batchSize = Math.max(1, Config.getWriteBehindConfig().batchSize());
+        List<Map.Entry<ProgressKey, Integer>> entries = new ArrayList<>(amounts.size());
+
+        for (Map.Entry<ProgressKey, Integer> entry : amounts.entrySet()) {
+            // a zero amount is already implied by a missing sparse row, unless it lowers an existing one
+            if (!exact && storageMode.isSparse() && entry.getValue() <= 0) continue;
+            entries.add(entry);
+        }
+
+        Map<Integer, List<Map.Entry<ProgressKey, Integer>>> shards = new HashMap<>();
+        for (Map.Entry<ProgressKey, Integer> entry : entries) {
+            shards.computeIfAbsent(writeShardOf(entry.getKey().uuid()), ignored -> new ArrayList<>()).add(entry);
+        }
+
+        for (Map.Entry<Integer, List<Map.Entry<ProgressKey, Integer>>> shard : shards.entrySet()) {
+            upsertAmounts(shard.getKey(), shard.getValue(), batchSize, exact);
+        }
+    }
+
+    private void loadShard(int shard, List<UUID> players, Map<UUID, Map<String, Collection>> result) throws SQLException {
+        // one recent writer is enough to send the whole batch to the primary
+        boolean pinned = players.stream().anyMatch(MySQLConnection::isPinned);
+        StatementTemplate selectMany = statements.selectMany();
+
+        try (Connection connection = shard != 0 ? getShardConnection(shard) : pinned ? getWriteConnection() : getReadConnection()) {
+            for (int from = 0; from < players.size(); from += BULK_CHUNK_SIZE) {
+                List<UUID> chunk = players.subList(from, Math.min(from + BULK_CHUNK_SIZE, players.size()));
+
+                try (StatementTemplate.Binder binder = selectMany.repeat(chunk.size()).prepare(connection)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        if (i > 0) binder.next();
+                        binder.set(player, chunk.get(i));
+                    }
+
+                    try (ResultSet rs = binder.statement().executeQuery()) {
+                        while (rs.next()) {
+                            UUID uuid = getUuid(rs, 1);
+                            String dataName = readDataKey(rs, 2);
+                            if (uuid == null || dataName == null) continue;
+
+                            result.computeIfAbsent(uuid, ignored -> new HashMap<>())
+                                    .put(dataName, COLLECTIONS.fromResultSet(rs));
+                        }
+                    }
+                }
             }
+        }
+    }
+
+    private void upsertAmounts(int shard, List<Map.Entry<ProgressKey, Integer>> entries, int batchSize, boolean exact) throws SQLException {
+        Statements compiled = statements;
+        StatementTemplate template = exact ? compiled.setAmount() : compiled.upsertAmount();
+
+        for (int from = 0; from < entries.size(); from += batchSize) {
+            List<Map.Entry<ProgressKey, Integer>> chunk =
+                    entries.subList(from, Math.min(from + batchSize, entries.size()));
 
-            int[] results = ps.executeBatch();
+            StatementTemplate upsert = template.repeat(chunk.size());
 
-            for (int result : results) {
-                if (result > 0) {
-                    synced += result;
-                } else if (result == Statement.SUCCESS_NO_INFO) {
-                    synced++;
+            write(shard, connection -> {
+                try (StatementTemplate.Binder binder = upsert.prepare(connection)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        Map.Entry<ProgressKey, Integer> entry = chunk.get(i);
+
+                        if (i > 0) binder.next();
+                        binder.set(player, entry.getKey().uuid())
+                                .set(compiled.data(), entry.getKey().dataName())
+                                .set(AMOUNT, entry.getValue());
+                    }
+
+                    return binder.statement().executeUpdate();
                 }
+            });
+
+            for (Map.Entry<ProgressKey, Integer> entry : chunk) {
+                markWritten(entry.getKey().uuid());
             }
+        }
+    }
+
+    private void upsertObtainedAt(int shard, List<Map.Entry<ProgressKey, Instant>> entries, int batchSize) throws SQLException {
+        Statements compiled = statements;
+
+        for (int from = 0; from < entries.size(); from += batchSize) {
+            List<Map.Entry<ProgressKey, Instant>> chunk =
+                    entries.subList(from, Math.min(from + batchSize, entries.size()));
+
+            // inserts a zero amount for a missing row, which dense tables never have
+            StatementTemplate upsert = compiled.setObtainedAtSparse().repeat(chunk.size());
+
+            write(shard, connection -> {
+                try (StatementTemplate.Binder binder = upsert.prepare(connection)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        Map.Entry<ProgressKey, Instant> entry = chunk.get(i);
+
+                        if (i > 0) binder.next();
+                        binder.set(player, entry.getKey().uuid())
+                                .set(compiled.data(), entry.getKey().dataName())
+                                .set(OBTAINED_AT, entry.getValue());
+                    }
+
+                    return binder.statement().executeUpdate();
+                }
+            });
+
+            for (Map.Entry<ProgressKey, Instant> entry : chunk) {
+                markWritten(entry.getKey().uuid());
+            }
+        }
+    }
+
+    private int purgeDefaultRows(int shard, int chunkSize) {
+        StatementTemplate purge = statements.purgeDefaults();
+
+        int purged = 0;
 
-            return synced;
+        try {
+            int removed;
+            do {
+                // one write per chunk, so other writes can interleave
+                removed = write(shard, connection -> {
+                    try (StatementTemplate.Binder binder = purge.prepare(connection)) {
+                        binder.set(CHUNK_SIZE, Math.max(1, chunkSize));
+                        return binder.statement().executeUpdate();
+                    }
+                });
+
+                purged += removed;
+            } while (removed > 0);
 
         } catch (SQLException e) {
-            Logger.severe("Error syncing missing data for " + tableName, e);
-            return 0;
+            Logger.severe("Error purging default rows in " + tableName + (shard == 0 ? "" : " on shard " + shard), e);
         }
+
+        return purged;
+    }
+
+    private Map<Integer, List<UUID>> byShard(List<UUID> players) throws SQLException {
+        if (!isSharded()) return Map.of(0, players);
+
+        Map<Integer, List<UUID>> shards = new TreeMap<>();
+        for (UUID uuid : players) {
+            shards.computeIfAbsent(shardOf(uuid), ignored -> new ArrayList<>()).add(uuid);
+        }
+
+        return shards;
+    }
+
+    private Statements compileStatements() {
+        SqlDialect dialect = dialect();
+        boolean legacy = Boolean.TRUE.equals(legacyDataNames);
+        Column<String> data = Column.of(keyColumn(), legacy ? DataType.varchar(64) : DataType.intType(), this::setDataKey);
+        String[] keys = {player.getName(), data.getName()};
+
+        Statements compiled = new Statements(
+                data,
+                Query.select(tableName, data.getName(), "amount", "obtained_at")
+                        .where(player.eq())
+                        .compile("select", dialect),
+                Query.select(tableName, player.getName(), data.getName(), "amount", "obtained_at")
+                        .where(player.in())
+                        .compile("select_many", dialect),
+                Query.insertInto(tableName)
+                        .value(player).value(data).value("amount", "0").value("obtained_at", "NULL")
+                        .ignoreDuplicates(keys)
+                        .compile("create", dialect),
+                Query.insertInto(tableName)
+                        .value(player).value(data).value(AMOUNT).value(OBTAINED_AT)
+                        .onDuplicateUpdate(d -> "amount = " + d.inserted("amount") +
+                                ", obtained_at = CASE WHEN obtained_at IS NULL OR obtained_at > " + d.inserted("obtained_at") +
+                                " THEN " + d.inserted("obtained_at") + " ELSE obtained_at END", keys)
+                        .compile("save", dialect),
+                Query.insertInto(tableName)
+                        .value(player).value(data).value(AMOUNT)
+                        .onDuplicateUpdate(d -> "amount = " + d.greatest("amount", d.inserted("amount")), keys)
+                        .compile("upsert_amount", dialect),
+                Query.insertInto(tableName)
+                        .value(player).value(data).value(AMOUNT)
+                        .onDuplicateUpdate(d -> "amount = " + d.inserted("amount"), keys)
+                        .compile("set_amount", dialect),
+                Query.update(tableName)
+                        .set(OBTAINED_AT)
+                        .where(player.eq(), data.eq(), Condition.of("obtained_at IS NULL OR obtained_at > ?", OBTAINED_AT))
+                        .compile("set_obtained_at", dialect),
+                Query.insertInto(tableName)
+                        .value(player).value(data).value("amount", "0").value(OBTAINED_AT)
+                        .onDuplicateUpdate(d -> "obtained_at = CASE WHEN obtained_at IS NULL OR obtained_at > " +
+                                d.inserted("obtained_at") + " THEN " + d.inserted("obtained_at") + " ELSE obtained_at END", keys)
+                        .compile("set_obtained_at_sparse", dialect),
+                Query.deleteFrom(tableName)
+                        .where(Condition.of("amount = 0 AND obtained_at IS NULL"))
+                        .limit(CHUNK_SIZE)
+                        .compile("purge_defaults", dialect));
+
+        registerStatements(compiled.select(), compiled.selectMany(), compiled.create(), compiled.save(),
+                compiled.upsertAmount(), compiled.setAmount(), compiled.setObtainedAt(), compiled.setObtainedAtSparse(), compiled.purgeDefaults());
+
+        return compiled;
     }
 
-    private CompletableFuture<Integer> updateMissingDataAsync() {
-        return FutureUtils.supplyAsync(plugin, this::updateMissingData);
+    private String keyColumn() {
+        return Boolean.TRUE.equals(legacyDataNames) ? "data_name" : "data_id";
+    }
+
+    // detects the data key layout and recompiles the statements if it changed, true while it is legacy
+    private boolean inspectDataKeys(Connection connection) throws SQLException {
+        boolean legacy;
+
+        if (getColumnType(connection, "data_id") != null) {
+            legacy = false;
+        } else if (getColumnType(connection, "data_name") != null) {
+            legacy = true;
+        } else {
+            throw new SQLException(tableName + " has neither a data_id nor a data_name column");
+        }
+
+        if (!Boolean.valueOf(legacy).equals(legacyDataNames)) {
+            legacyDataNames = legacy;
+            statements = compileStatements();
+        }
+
+        return legacy;
+    }
+
+    // looks the layout up on the statement's connection if the table was not inspected yet
+    private boolean legacyDataNames(Connection connection) throws SQLException {
+        Boolean legacy = legacyDataNames;
+        if (legacy != null) return legacy;
+
+        // statements compiled before inspecting assume data_id
+        if (inspectDataKeys(connection)) {
+            throw new SQLException(tableName + " still stores data_name per row, retry with the recompiled statements");
+        }
+
+        return false;
+    }
+
+    private Object keyValue(String dataName) {
+        if (Boolean.TRUE.equals(legacyDataNames)) return dataName;
+
+        try {
+            return dictionary.getOrCreate(dataName);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to intern data name " + dataName, e);
+        }
+    }
+
+    private void setDataKey(PreparedStatement ps, int index, String dataName) throws SQLException {
+        if (legacyDataNames(ps.getConnection())) {
+            ps.setString(index, dataName);
+        } else {
+            ps.setInt(index, dictionary.getOrCreate(dataName));
+        }
+    }
+
+    // ids interned by another server since startup are read from the dictionary table
+    private @Nullable String readDataKey(ResultSet rs, int column) throws SQLException {
+        if (legacyDataNames(rs.getStatement().getConnection())) return rs.getString(column);
+
+        return dictionary.resolveName(rs.getInt(column));
+    }
+
+    private ProgressRow readRow(ResultSet rs) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp(4);
+        return new ProgressRow(getUuid(rs, 1), readDataKey(rs, 2), rs.getInt(3),
+                timestamp == null ? null : timestamp.toInstant());
+    }
+
+    // saves accepted by updateAsync that are not in the table yet, or null if there are none
+    private @Nullable Map<String, Collection> unwritten(UUID uuid) {
+        Map<ProgressKey, Collection> pending = unwritten(key -> key.uuid().equals(uuid));
+        if (pending.isEmpty()) return null;
+
+        Map<String, Collection> data = new HashMap<>();
+        pending.forEach((key, collection) -> data.put(key.dataName(), collection));
+        return data;
+    }
+
+    private Map<ProgressKey, Collection> unwritten(Predicate<ProgressKey> filter) {
+        WriteJournal<ProgressKey, Collection> log = journal;
+        if (log != null) return log.pending(filter);
+
+        WriteBehindBuffer<ProgressKey, Collection> buffer = writeBehind;
+        if (buffer == null) return Map.of();
+
+        return buffer.pending(filter);
+    }
+
+    private Map<ProgressKey, Collection> rows(UUID uuid, Map<String, Collection> data) {
+        Map<ProgressKey, Collection> rows = new HashMap<>();
+
+        data.forEach((dataName, collection) -> {
+            if (collection != null) rows.put(new ProgressKey(uuid, dataName), collection);
+        });
+
+        return rows;
+    }
+
+    // a newer save of the same row: its amount replaces the pending one, the earliest obtained_at is kept
+    private static Collection latest(Collection pending, Collection newer) {
+        Instant obtainedAt = pending.obtainedAt() == null ? newer.obtainedAt()
+                : newer.obtainedAt() == null ? pending.obtainedAt()
+                : pending.obtainedAt().isBefore(newer.obtainedAt()) ? pending.obtainedAt() : newer.obtainedAt();
+
+        return new Collection(newer.amount(), obtainedAt);
+    }
+
+    private void fillDefaults(Map<String, Collection> data) {
+        for (String dataName : dataList) {
+            data.putIfAbsent(dataName, new Collection(0, null));
+        }
+    }
+
+    private void stageRows(UnitOfWork unit, List<Map.Entry<ProgressKey, Collection>> entries) {
+        Statements compiled = statements;
+        int batchSize = Math.max(1, Config.getWriteBehindConfig().batchSize());
+
+        for (int from = 0; from < entries.size(); from += batchSize) {
+            List<Map.Entry<ProgressKey, Collection>> chunk =
+                    entries.subList(from, Math.min(from + batchSize, entries.size()));
+
+            StatementTemplate save = compiled.save().repeat(chunk.size());
+
+            // every player of a chunk lives on the same shard, the first one routes it
+            stage(unit, chunk.getFirst().getKey().uuid(), connection -> {
+                try (StatementTemplate.Binder binder = save.prepare(connection)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        Map.Entry<ProgressKey, Collection> entry = chunk.get(i);
+
+                        if (i > 0) binder.next();
+                        binder.set(player, entry.getKey().uuid())
+                                .set(compiled.data(), entry.getKey().dataName())
+                                .set(AMOUNT, entry.getValue().amount())
+                                .set(OBTAINED_AT, entry.getValue().obtainedAt());
+                    }
+
+                    return binder.statement().executeUpdate();
+                }
+            });
+        }
+    }
+
+    private int[] writeObtainedAt(Connection connection, Statements compiled, UUID uuid,
+                                  Map<String, Instant> times) throws SQLException {
+        StatementTemplate template = storageMode.isSparse() ? compiled.setObtainedAtSparse() : compiled.setObtainedAt();
+
+        try (StatementTemplate.Binder binder = template.prepare(connection)) {
+            for (Map.Entry<String, Instant> entry : times.entrySet()) {
+                binder.set(player, uuid)
+                        .set(compiled.data(), entry.getKey())
+                        .set(OBTAINED_AT, entry.getValue());
+                binder.addBatch();
+            }
+
+            return times.isEmpty() ? new int[0] : binder.statement().executeBatch();
+        }
+    }
+
+    // one journaled row, obtained_at is kept to the millisecond
+    static final class ProgressJournalCodec implements JournalCodec<ProgressKey, Collection> {
+
+        @Override
+        public void write(@NotNull DataOutput out, @NotNull ProgressKey key, @NotNull Collection value) throws IOException {
+            out.writeLong(key.uuid().getMostSignificantBits());
+            out.writeLong(key.uuid().getLeastSignificantBits());
+            out.writeUTF(key.dataName());
+            out.writeInt(value.amount());
+            out.writeBoolean(value.obtainedAt() != null);
+            if (value.obtainedAt() != null) out.writeLong(value.obtainedAt().toEpochMilli());
+        }
+
+        @Override
+        public @NotNull Map.Entry<ProgressKey, Collection> read(@NotNull DataInput in) throws IOException {
+            UUID uuid = new UUID(in.readLong(), in.readLong());
+            ProgressKey key = new ProgressKey(uuid, in.readUTF());
+            int amount = in.readInt();
+            Instant obtainedAt = in.readBoolean() ? Instant.ofEpochMilli(in.readLong()) : null;
+
+            return Map.entry(key, new Collection(amount, obtainedAt));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,307 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.backfill;
+
+import com.google.gson.JsonElement;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ConnectionSupplier;
+import net.cozyvanilla.cozylib.runtime.MySQLConnection;
+import net.cozyvanilla.cozylib.util.json.JsonWriter;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Inserts missing default rows for new data names in small primary-key ranges.
+ *
+ * <p>Instead of one {@code INSERT ... SELECT} over the whole table, the job walks the distinct
+ * {@code player_uuid} values in ascending order, {@code chunkSize} players at a time, and sleeps
+ * between chunks so it never writes more than {@code rowsPerSecond} rows per second.
+ *
+ * <p>The cursor and the set of already backfilled data names are stored in
+ * {@code backfill/<table>.json} (one file per shard of a sharded table) inside the plugin data folder, so a restart resumes from the
+ * last finished chunk and names that were fully backfilled are never walked again. The cursor
+ * is kept as raw key bytes and bound in the column's type, looked up on every chunk, so it works
+ * for both CHAR(36) and BINARY(16) uuid columns; a cursor of the other type, left behind by a
+ * uuid migration, restarts the walk.
+ */
+public final class BackfillJob {
+    private static final long RETRY_DELAY_MILLIS = 30_000L;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final HexFormat HEX = HexFormat.of();
+    private static final int BINARY_UUID_BYTES = 16;
+
+    private final Plugin plugin;
+    private final String tableName;
+    private final String stateName;
+    private final ConnectionSupplier connections;
+    private final Set<String> dataNames;
+    private final int chunkSize;
+    private final int rowsPerSecond;
+
+    private String keyColumn;
+    private Function<String, Object> keyValue;
+    private JsonWriter state;
+    private List<String> pending;
+    private byte[] cursor;
+    private boolean binaryKeys;
+    private long totalPlayers;
+    private long processedPlayers;
+    private long insertedRows;
+    private long startedAt;
+    private int attempts;
+
+    private volatile boolean cancelled;
+    private volatile ScheduledTask task;
+
+    public BackfillJob(@NotNull Plugin plugin,
+                       @NotNull String tableName,
+                       @NotNull ConnectionSupplier connections,
+                       @NotNull Set<String> dataNames,
+                       int chunkSize,
+                       int rowsPerSecond) {
+        this(plugin, tableName, tableName, connections, dataNames, chunkSize, rowsPerSecond);
+    }
+
+    /**
+     * @param stateName names the file the cursor is kept in, so each shard of a table resumes on its own
+     */
+    public BackfillJob(@NotNull Plugin plugin,
+                       @NotNull String tableName,
+                       @NotNull String stateName,
+                       @NotNull ConnectionSupplier connections,
+                       @NotNull Set<String> dataNames,
+                       int chunkSize,
+                       int rowsPerSecond) {
+        this.plugin = plugin;
+        this.tableName = tableName;
+        this.stateName = stateName;
+        this.connections = connections;
+        this.dataNames = dataNames;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.rowsPerSecond = Math.max(1, rowsPerSecond);
+    }
+
+    /**
+     * Loads the persisted cursor and schedules the first chunk. Does nothing when every data
+     * name has already been backfilled.
+     *
+     * @param keyColumn the column identifying the data, e.g. {@code data_id}
+     * @param keyValue maps a data name to the value stored in the key column
+     */
+    public void start(@NotNull String keyColumn, @NotNull Function<String, Object> keyValue) {
+        this.keyColumn = keyColumn;
+        this.keyValue = keyValue;
+        state = new JsonWriter(plugin, "backfill/" + stateName + ".json");
+
+        Set<String> completed = new HashSet<>(readStringList("completed"));
+        pending = new ArrayList<>();
+        for (String dataName : dataNames) {
+            if (!completed.contains(dataName)) pending.add(dataName);
+        }
+        Collections.sort(pending);
+
+        if (pending.isEmpty()) return;
+
+        // a cursor only applies to the exact set of names it was walking
+        if (pending.equals(readStringList("pending"))) {
+            cursor = HEX.parseHex(readString("cursor"));
+        } else {
+            cursor = new byte[0];
+            state.writeObject("pending", pending, true);
+            state.writeString("cursor", "", true);
+        }
+
+        startedAt = System.currentTimeMillis();
+        schedule(0L);
+    }
+
+    /**
+     * Stops the job after the chunk currently running. The cursor is kept so the next start resumes.
+     */
+    public void cancel() {
+        cancelled = true;
+
+        ScheduledTask current = task;
+        if (current != null) current.cancel();
+    }
+
+    public boolean isRunning() {
+        return !cancelled && pending != null && !pending.isEmpty();
+    }
+
+    // private methods
+    private void schedule(long delayMillis) {
+        if (cancelled) return;
+
+        task = plugin.getServer().getAsyncScheduler().runDelayed(
+                plugin, t -> step(), Math.max(1L, delayMillis), TimeUnit.MILLISECONDS);
+    }
+
+    private void step() {
+        if (cancelled) return;
+
+        try (Connection connection = connections.getConnection()) {
+            inspectKeys(connection);
+
+            if (totalPlayers == 0) {
+                totalPlayers = countRemainingPlayers(connection);
+                Logger.info("Backfilling " + pending.size() + " data names for ~" + totalPlayers +
+                        " players on " + tableName);
+            }
+
+            List<byte[]> players = nextPlayers(connection);
+            if (players.isEmpty()) {
+                finish();
+                return;
+            }
+
+            byte[] upper = players.getLast();
+            insertedRows += insertRange(connection, cursor, upper);
+            processedPlayers += players.size();
+            attempts = 0;
+
+            cursor = upper;
+            state.writeString("cursor", HEX.formatHex(cursor), true);
+
+            Logger.info("Backfill " + tableName + ": " + processedPlayers + "/" + totalPlayers +
+                    " players (" + insertedRows + " rows inserted)");
+
+            // budget the rows we asked MySQL to consider, not just the ones it inserted
+            long attemptedRows = (long) players.size() * pending.size();
+            schedule(attemptedRows * 1000L / rowsPerSecond);
+
+        } catch (SQLException e) {
+            if (++attempts >= MAX_ATTEMPTS) {
+                Logger.severe("Backfill of " + tableName + " stopped after " + attempts +
+                        " failed attempts, will resume from the saved cursor on next start", e);
+                cancelled = true;
+                return;
+            }
+
+            Logger.severe("Backfill chunk failed for " + tableName + ", retrying in " +
+                    (RETRY_DELAY_MILLIS / 1000) + "s", e);
+            schedule(RETRY_DELAY_MILLIS);
+        }
+    }
+
+    private long countRemainingPlayers(Connection connection) throws SQLException {
+        String sql = "SELECT COUNT(DISTINCT player_uuid) FROM " + tableName + " WHERE player_uuid > ?";
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            setKey(ps, 1, cursor);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Math.max(1L, rs.getLong(1)) : 1L;
+            }
+        }
+    }
+
+    private List<byte[]> nextPlayers(Connection connection) throws SQLException {
+        String sql = "SELECT DISTINCT player_uuid FROM " + tableName +
+                " WHERE player_uuid > ? ORDER BY player_uuid LIMIT ?";
+
+        List<byte[]> players = new ArrayList<>(chunkSize);
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            setKey(ps, 1, cursor);
+            ps.setInt(2, chunkSize);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    players.add(binaryKeys ? rs.getBytes(1) : rs.getString(1).getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+        }
+
+        return players;
+    }
+
+    private int insertRange(Connection connection, byte[] lower, byte[] upper) throws SQLException {
+        String names = String.join(" UNION ALL ", Collections.nCopies(pending.size(), "SELECT ? AS k"));
+        String sql = MySQLConnection.getDialect().insertIgnore(
+                "INSERT INTO " + tableName + " (player_uuid, " + keyColumn + ", amount, obtained_at) " +
+                "SELECT p.player_uuid, d.k, 0, NULL " +
+                "FROM (SELECT DISTINCT player_uuid FROM " + tableName +
+                " WHERE player_uuid > ? AND player_uuid <= ?) p " +
+                "CROSS JOIN (" + names + ") d", List.of("player_uuid", keyColumn));
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int index = 1;
+            setKey(ps, index++, lower);
+            setKey(ps, index++, upper);
+
+            for (String dataName : pending) {
+                ps.setObject(index++, keyValue.apply(dataName));
+            }
+
+            return ps.executeUpdate();
+        }
+    }
+
+    private void inspectKeys(Connection connection) throws SQLException {
+        String type = MySQLConnection.getDialect().columnType(connection, tableName, "player_uuid");
+        if (type == null) {
+            throw new SQLException("Column player_uuid not found on " + tableName);
+        }
+
+        binaryKeys = type.equals("binary");
+
+        // a uuid migration ran since the cursor was saved, walking again from the start is harmless
+        boolean binaryCursor = cursor.length == BINARY_UUID_BYTES;
+        if (cursor.length > 0 && binaryCursor != binaryKeys) {
+            Logger.warning("Backfill cursor of " + tableName + " does not match its player_uuid column, restarting the walk");
+            cursor = new byte[0];
+            processedPlayers = 0;
+            totalPlayers = 0;
+            state.writeString("cursor", "", true);
+        }
+    }
+
+    private void setKey(PreparedStatement ps, int index, byte[] key) throws SQLException {
+        if (binaryKeys) {
+            ps.setBytes(index, key);
+        } else {
+            ps.setString(index, new String(key, StandardCharsets.US_ASCII));
+        }
+    }
+
+    private void finish() {
+        Set<String> completed = new TreeSet<>(readStringList("completed"));
+        completed.addAll(pending);
+
+        state.writeObject("completed", completed, true);
+        state.remove("pending");
+        state.remove("cursor");
+
+        long seconds = (System.currentTimeMillis() - startedAt) / 1000;
+        Logger.info("Backfill of " + tableName + " finished: " + insertedRows + " rows inserted in " + seconds + "s");
+
+        pending = List.of();
+        task = null;
+    }
+
+    private List<String> readStringList(String key) {
+        JsonElement element = state.getRoot().get(key);
+        if (element == null || !element.isJsonArray()) return List.of();
+
+        List<String> list = new ArrayList<>();
+        for (JsonElement e : element.getAsJsonArray()) {
+            if (e.isJsonPrimitive()) list.add(e.getAsString());
+        }
+
+        return list;
+    }
+
+    private String readString(String key) {
+        JsonElement element = state.getRoot().get(key);
+        return element == null || !element.isJsonPrimitive() ? "" : element.getAsString();
+    }
+}
@@ -0,0 +1,271 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.PlayerRepository;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Read-through cache in front of any {@link PlayerRepository}.
+ *
+ * <p>Concurrent misses for the same player share a single load, cached values are refreshed in
+ * the background once they are older than {@code refreshAfter}, and online players are pinned so
+ * they are never evicted: pinned entries weigh nothing, so only offline players count towards
+ * {@code maximumSize}. When a player quits their entry is kept for {@code gracePeriod} so a quick
+ * rejoin is served from memory. Failed loads are not cached, the next access loads again.
+ *
+ * <p>Writes go straight to the delegate. If a merger is supplied the cached value is updated with
+ * the written data, otherwise the entry is invalidated and reloaded on next access. Writes the
+ * delegate has accepted but not stored yet, e.g. in a write-behind buffer, are merged into
+ * refreshed values so a refresh never rolls them back.
+ *
+ * @param <T> the repository's data type
+ */
+public final class CachedPlayerRepository<T> implements PlayerRepository<T>, Listener {
+    private static final Map<String, CachedPlayerRepository<?>> REGISTRY = new ConcurrentHashMap<>();
+
+    private final Plugin plugin;
+    private final String name;
+    private final PlayerRepository<T> delegate;
+    private final BinaryOperator<T> merger;
+    private final Function<UUID, T> unwritten;
+    private final Duration gracePeriod;
+    private final Set<UUID> pinned = ConcurrentHashMap.newKeySet();
+    private final AsyncLoadingCache<UUID, Optional<T>> cache;
+    private final Policy.VarExpiration<UUID, Optional<T>> expiration;
+
+    public CachedPlayerRepository(@NotNull Plugin plugin,
+                                  @NotNull String name,
+                                  @NotNull PlayerRepository<T> delegate,
+                                  @Nullable BinaryOperator<T> merger,
+                                  long maximumSize,
+                                  @NotNull Duration refreshAfter,
+                                  @NotNull Duration gracePeriod) {
+        this(plugin, name, delegate, merger, null, maximumSize, refreshAfter, gracePeriod);
+    }
+
+    /**
+     * @param unwritten gets a player's writes the delegate accepted but has not stored yet, or null
+     *                  if there are none; merged into refreshed values, requires a merger
+     */
+    public CachedPlayerRepository(@NotNull Plugin plugin,
+                                  @NotNull String name,
+                                  @NotNull PlayerRepository<T> delegate,
+                                  @Nullable BinaryOperator<T> merger,
+                                  @Nullable Function<UUID, T> unwritten,
+                                  long maximumSize,
+                                  @NotNull Duration refreshAfter,
+                                  @NotNull Duration gracePeriod) {
+        this.plugin = plugin;
+        this.name = name;
+        this.delegate = delegate;
+        this.merger = merger;
+        this.unwritten = merger == null ? null : unwritten;
+        this.gracePeriod = gracePeriod;
+
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumSize)
+                .weigher((UUID uuid, Optional<T> value) -> pinned.contains(uuid) ? 0 : 1)
+                .expireAfter(new PinnedExpiry())
+                .refreshAfterWrite(refreshAfter)
+                .recordStats()
+                .buildAsync(new Loader());
+
+        this.expiration = cache.synchronous().policy()
+                .expireVariably()
+                .orElseThrow(() -> new IllegalStateException("Cache was not built with variable expiration"));
+    }
+
+    /**
+     * Starts pinning online players and registers the cache for {@code /cozy db cache}.
+     */
+    public void enable() {
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        plugin.getServer().getOnlinePlayers().forEach(player -> pinned.add(player.getUniqueId()));
+        REGISTRY.put(name, this);
+    }
+
+    public void disable() {
+        HandlerList.unregisterAll(this);
+        REGISTRY.remove(name);
+        pinned.clear();
+        cache.synchronous().invalidateAll();
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent e) {
+        UUID uuid = e.getPlayer().getUniqueId();
+        pinned.add(uuid);
+
+        // an entry kept during the grace period is reweighed and becomes pinned again
+        reweigh(uuid);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        UUID uuid = e.getPlayer().getUniqueId();
+        pinned.remove(uuid);
+
+        if (reweigh(uuid)) {
+            expiration.setExpiresAfter(uuid, gracePeriod);
+        }
+    }
+
+    // ------------ PlayerRepository ------------
+    @Override
+    public @NotNull Optional<T> get(UUID uuid) {
+        return cache.synchronous().get(uuid);
+    }
+
+    @Override
+    public @NotNull Map<UUID, T> getAll(@NotNull Collection<UUID> uuids) {
+        return getAllAsync(uuids).join();
+    }
+
+    @Override
+    public @NotNull T create(UUID uuid) {
+        T created = delegate.create(uuid);
+        cache.put(uuid, CompletableFuture.completedFuture(Optional.of(created)));
+        return created;
+    }
+
+    @Override
+    public void update(UUID uuid, @NotNull T data) {
+        delegate.update(uuid, data);
+        afterWrite(uuid, data);
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Optional<T>> getAsync(UUID uuid) {
+        return cache.get(uuid);
+    }
+
+    /**
+     * Serves cached players from memory and loads all misses with a single bulk call to the delegate.
+     */
+    @Override
+    public @NotNull CompletableFuture<Map<UUID, T>> getAllAsync(@NotNull Collection<UUID> uuids) {
+        return cache.getAll(uuids, (missing, executor) -> delegate.getAllAsync(new ArrayList<UUID>(missing)).thenApply(loaded -> {
+            Map<UUID, Optional<T>> wrapped = new HashMap<>();
+            for (UUID uuid : missing) {
+                wrapped.put(uuid, Optional.ofNullable(loaded.get(uuid)));
+            }
+            return wrapped;
+        })).thenApply(values -> {
+            Map<UUID, T> result = new HashMap<>();
+            values.forEach((uuid, value) -> value.ifPresent(data -> result.put(uuid, data)));
+            return result;
+        });
+    }
+
+    @Override
+    public @NotNull CompletableFuture<T> createAsync(UUID uuid) {
+        return delegate.createAsync(uuid).thenApply(created -> {
+            cache.put(uuid, CompletableFuture.completedFuture(Optional.of(created)));
+            return created;
+        });
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Void> updateAsync(UUID uuid, @NotNull T data) {
+        return delegate.updateAsync(uuid, data).thenRun(() -> afterWrite(uuid, data));
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Void> flushAsync(UUID uuid) {
+        return delegate.flushAsync(uuid);
+    }
+
+    // ------------ statistics ------------
+    public @NotNull String getName() {
+        return name;
+    }
+
+    public @NotNull CacheStats getStats() {
+        return cache.synchronous().stats();
+    }
+
+    public long estimatedSize() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    public int pinnedCount() {
+        return pinned.size();
+    }
+
+    public static @NotNull Collection<CachedPlayerRepository<?>> registered() {
+        return List.copyOf(REGISTRY.values());
+    }
+
+    // ------------ private methods ------------
+    // replacing the value makes the cache weigh the entry and compute its expiry again
+    private boolean reweigh(UUID uuid) {
+        return cache.synchronous().asMap().computeIfPresent(uuid, (key, current) -> current) != null;
+    }
+
+    private void afterWrite(UUID uuid, T data) {
+        if (merger == null) {
+            cache.synchronous().invalidate(uuid);
+            return;
+        }
+
+        cache.synchronous().asMap().computeIfPresent(uuid, (key, current) ->
+                Optional.of(current.map(existing -> merger.apply(existing, data)).orElse(data)));
+    }
+
+    private final class Loader implements AsyncCacheLoader<UUID, Optional<T>> {
+        @Override
+        public CompletableFuture<Optional<T>> asyncLoad(UUID uuid, Executor executor) {
+            return delegate.getAsync(uuid);
+        }
+
+        @Override
+        public CompletableFuture<Optional<T>> asyncReload(UUID uuid, Optional<T> oldValue, Executor executor) {
+            if (unwritten == null) return delegate.getAsync(uuid);
+
+            // taken before reading, writes accepted afterwards change the entry and the refresh is discarded
+            T pending = unwritten.apply(uuid);
+            if (pending == null) return delegate.getAsync(uuid);
+
+            return delegate.getAsync(uuid).thenApply(loaded ->
+                    Optional.of(loaded.map(stored -> merger.apply(stored, pending)).orElse(pending)));
+        }
+    }
+
+    private final class PinnedExpiry implements Expiry<UUID, Optional<T>> {
+        @Override
+        public long expireAfterCreate(UUID uuid, Optional<T> value, long currentTime) {
+            return pinned.contains(uuid) ? Long.MAX_VALUE : gracePeriod.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(UUID uuid, Optional<T> value, long currentTime, long currentDuration) {
+            return pinned.contains(uuid) ? Long.MAX_VALUE : currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(UUID uuid, Optional<T> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.dialect;
+
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.SqlDialect;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+public final class MySQLDialect implements SqlDialect {
+
+    @Override
+    public @NotNull List<String> createTable(@NotNull String table, @NotNull String definitions) {
+        return List.of("CREATE TABLE IF NOT EXISTS " + table + " (" + definitions + ")");
+    }
+
+    @Override
+    public @NotNull String upsert(@NotNull String insert, @NotNull List<String> keyColumns, @NotNull String assignments) {
+        return insert + " ON DUPLICATE KEY UPDATE " + assignments;
+    }
+
+    @Override
+    public @NotNull String insertIgnore(@NotNull String insert, @NotNull List<String> keyColumns) {
+        // unlike INSERT IGNORE this still fails on truncation and other data errors
+        String key = keyColumns.getFirst();
+        return insert + " ON DUPLICATE KEY UPDATE " + key + " = " + key;
+    }
+
+    @Override
+    public @NotNull String inserted(@NotNull String column) {
+        return "VALUES(" + column + ")";
+    }
+
+    @Override
+    public @NotNull String greatest(@NotNull String a, @NotNull String b) {
+        return "GREATEST(" + a + ", " + b + ")";
+    }
+
+    @Override
+    public @NotNull String deleteLimited(@NotNull String table, @NotNull String where) {
+        return "DELETE FROM " + table + " WHERE " + where + " LIMIT ?";
+    }
+
+    @Override
+    public int streamingFetchSize() {
+        // Connector/J only streams row by row with this sentinel, any other size buffers everything
+        return Integer.MIN_VALUE;
+    }
+
+    @Override
+    public void beginSnapshot(@NotNull Connection connection) throws SQLException {
+        connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        connection.setAutoCommit(false);
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+        }
+    }
+
+    @Override
+    public @Nullable String columnType(@NotNull Connection connection, @NotNull String table, @NotNull String column) throws SQLException {
+        String sql = "SELECT DATA_TYPE FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            stmt.setString(2, column);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1).toLowerCase() : null;
+            }
+        }
+    }
+
+    @Override
+    public @NotNull Set<String> columnNames(@NotNull Connection connection, @NotNull String table) throws SQLException {
+        return names(connection, "SELECT COLUMN_NAME FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?", table);
+    }
+
+    @Override
+    public @NotNull Set<String> indexNames(@NotNull Connection connection, @NotNull String table) throws SQLException {
+        return names(connection, "SELECT DISTINCT INDEX_NAME FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME <> 'PRIMARY'", table);
+    }
+
+    @Override
+    public @NotNull List<AlterAttempt> addColumn(@NotNull String table, @NotNull String definition) {
+        String alter = "ALTER TABLE " + table + " ADD COLUMN " + definition;
+
+        // INSTANT only touches metadata (8.0.12+), INPLACE rebuilds without blocking writes
+        return List.of(
+                new AlterAttempt("INSTANT", alter + ", ALGORITHM=INSTANT"),
+                new AlterAttempt("INPLACE", alter + ", ALGORITHM=INPLACE, LOCK=NONE"));
+    }
+
+    @Override
+    public @NotNull List<AlterAttempt> addIndex(@NotNull String table, @NotNull String name, @NotNull List<String> columns) {
+        return List.of(new AlterAttempt("INPLACE", "ALTER TABLE " + table + " ADD INDEX `" + name + "` (" +
+                String.join(", ", columns.stream().map(c -> "`" + c + "`").toList()) + "), ALGORITHM=INPLACE, LOCK=NONE"));
+    }
+
+    @Override
+    public @Nullable String swapTables(@NotNull String table, @NotNull String backup, @NotNull String shadow) {
+        return "RENAME TABLE " + table + " TO " + backup + ", " + shadow + " TO " + table;
+    }
+
+    @Override
+    public boolean acquireLock(@NotNull Connection connection, @NotNull String name, int timeoutSeconds) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, name);
+            stmt.setInt(2, timeoutSeconds);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    @Override
+    public void releaseLock(@NotNull Connection connection, @NotNull String name) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, name);
+            stmt.executeQuery().close();
+        }
+    }
+
+    // private methods
+    private static Set<String> names(Connection connection, String sql, String table) throws SQLException {
+        Set<String> names = new HashSet<>();
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, table);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    names.add(rs.getString(1).toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+
+        return names;
+    }
+}
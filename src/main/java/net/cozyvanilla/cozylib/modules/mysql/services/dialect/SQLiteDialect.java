@@ -0,0 +1,243 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.dialect;
+
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.SqlDialect;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SQLite flavour of the repository SQL.
+ *
+ * <p>Table definitions are still written in MySQL syntax and translated here: AUTO_INCREMENT
+ * columns become {@code INTEGER PRIMARY KEY AUTOINCREMENT}, {@code UNIQUE KEY} becomes a plain
+ * {@code UNIQUE} constraint, secondary {@code INDEX}/{@code KEY} definitions become separate
+ * {@code CREATE INDEX} statements and {@code ON UPDATE CURRENT_TIMESTAMP} is dropped. Declared
+ * types such as {@code BINARY(16)} are kept, SQLite stores the bound values as they are.
+ */
+public final class SQLiteDialect implements SqlDialect {
+    private static final int STREAMING_FETCH_SIZE = 256;
+    private static final Pattern UNIQUE_KEY = Pattern.compile(
+            "^UNIQUE\\s+(?:KEY|INDEX)\\s*(?:`?\\w+`?\\s*)?\\((.*)\\)$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern INDEX = Pattern.compile(
+            "^(?:KEY|INDEX)\\s+`?(\\w+)`?\\s*\\((.*)\\)$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern PRIMARY_KEY = Pattern.compile(
+            "^PRIMARY\\s+KEY\\s*\\((.*)\\)$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern ON_UPDATE = Pattern.compile(
+            "\\s+ON\\s+UPDATE\\s+CURRENT_TIMESTAMP", Pattern.CASE_INSENSITIVE);
+    private static final Pattern AUTO_INCREMENT = Pattern.compile(
+            "\\bAUTO_INCREMENT\\b", Pattern.CASE_INSENSITIVE);
+
+    @Override
+    public @NotNull List<String> createTable(@NotNull String table, @NotNull String definitions) {
+        List<String> columns = new ArrayList<>();
+        List<String> indexes = new ArrayList<>();
+        String primaryKey = null;
+        String rowIdColumn = null;
+
+        for (String definition : splitDefinitions(definitions)) {
+            Matcher matcher;
+
+            if ((matcher = PRIMARY_KEY.matcher(definition)).matches()) {
+                primaryKey = matcher.group(1).trim();
+            } else if ((matcher = UNIQUE_KEY.matcher(definition)).matches()) {
+                columns.add("UNIQUE (" + matcher.group(1).trim() + ")");
+            } else if ((matcher = INDEX.matcher(definition)).matches()) {
+                indexes.add("CREATE INDEX IF NOT EXISTS " + table + "_" + matcher.group(1) +
+                        " ON " + table + " (" + matcher.group(2).trim() + ")");
+            } else if (AUTO_INCREMENT.matcher(definition).find()) {
+                // only an INTEGER PRIMARY KEY column aliases the rowid and can auto increment
+                rowIdColumn = definition.split("\\s+", 2)[0];
+                columns.add(rowIdColumn + " INTEGER PRIMARY KEY AUTOINCREMENT");
+            } else {
+                columns.add(ON_UPDATE.matcher(definition).replaceAll(""));
+            }
+        }
+
+        if (primaryKey != null && !stripQuotes(primaryKey).equals(stripQuotes(rowIdColumn))) {
+            if (rowIdColumn != null) {
+                throw new IllegalArgumentException("SQLite only supports AUTO_INCREMENT on the sole primary key column of " + table);
+            }
+
+            columns.add("PRIMARY KEY (" + primaryKey + ")");
+        }
+
+        List<String> statements = new ArrayList<>();
+        statements.add("CREATE TABLE IF NOT EXISTS " + table + " (" + String.join(", ", columns) + ")");
+        statements.addAll(indexes);
+        return statements;
+    }
+
+    @Override
+    public @NotNull String upsert(@NotNull String insert, @NotNull List<String> keyColumns, @NotNull String assignments) {
+        return withConflictTarget(insert) + " ON CONFLICT (" + String.join(", ", keyColumns) + ") DO UPDATE SET " + assignments;
+    }
+
+    @Override
+    public @NotNull String insertIgnore(@NotNull String insert, @NotNull List<String> keyColumns) {
+        return withConflictTarget(insert) + " ON CONFLICT (" + String.join(", ", keyColumns) + ") DO NOTHING";
+    }
+
+    @Override
+    public @NotNull String inserted(@NotNull String column) {
+        return "excluded." + column;
+    }
+
+    @Override
+    public @NotNull String greatest(@NotNull String a, @NotNull String b) {
+        return "MAX(" + a + ", " + b + ")";
+    }
+
+    @Override
+    public @NotNull String deleteLimited(@NotNull String table, @NotNull String where) {
+        // DELETE ... LIMIT needs a compile-time option most builds lack
+        return "DELETE FROM " + table + " WHERE rowid IN (SELECT rowid FROM " + table +
+                " WHERE " + where + " LIMIT ?)";
+    }
+
+    @Override
+    public int streamingFetchSize() {
+        return STREAMING_FETCH_SIZE;
+    }
+
+    @Override
+    public void beginSnapshot(@NotNull Connection connection) throws SQLException {
+        // in WAL mode a read transaction sees the database as of its first read
+        connection.setAutoCommit(false);
+    }
+
+    @Override
+    public @Nullable String columnType(@NotNull Connection connection, @NotNull String table, @NotNull String column) throws SQLException {
+        String sql = "SELECT type FROM pragma_table_info(?) WHERE name = ?";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            stmt.setString(2, column);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) return null;
+
+                String type = rs.getString(1).toLowerCase(Locale.ROOT);
+                int length = type.indexOf('(');
+                return (length < 0 ? type : type.substring(0, length)).trim();
+            }
+        }
+    }
+
+    @Override
+    public @NotNull Set<String> columnNames(@NotNull Connection connection, @NotNull String table) throws SQLException {
+        return names(connection, "SELECT name FROM pragma_table_info(?)", table, "");
+    }
+
+    @Override
+    public @NotNull Set<String> indexNames(@NotNull Connection connection, @NotNull String table) throws SQLException {
+        // createTable prefixes declared index names with the table name
+        return names(connection, "SELECT name FROM pragma_index_list(?) WHERE origin = 'c'", table, table + "_");
+    }
+
+    @Override
+    public @NotNull List<AlterAttempt> addColumn(@NotNull String table, @NotNull String definition) {
+        // ADD COLUMN only rewrites the schema, never the rows
+        String column = ON_UPDATE.matcher(definition).replaceAll("");
+        return List.of(new AlterAttempt("INSTANT", "ALTER TABLE " + table + " ADD COLUMN " + column));
+    }
+
+    @Override
+    public @NotNull List<AlterAttempt> addIndex(@NotNull String table, @NotNull String name, @NotNull List<String> columns) {
+        return List.of(new AlterAttempt("INPLACE", "CREATE INDEX IF NOT EXISTS " + table + "_" + name +
+                " ON " + table + " (" + String.join(", ", columns) + ")"));
+    }
+
+    @Override
+    public @Nullable String swapTables(@NotNull String table, @NotNull String backup, @NotNull String shadow) {
+        return null;
+    }
+
+    @Override
+    public boolean acquireLock(@NotNull Connection connection, @NotNull String name, int timeoutSeconds) {
+        // the database file belongs to a single server
+        return true;
+    }
+
+    @Override
+    public void releaseLock(@NotNull Connection connection, @NotNull String name) {
+    }
+
+    // private methods
+    private static Set<String> names(Connection connection, String sql, String table, String prefix) throws SQLException {
+        Set<String> names = new HashSet<>();
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, table);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String name = rs.getString(1).toLowerCase(Locale.ROOT);
+                    names.add(name.startsWith(prefix) ? name.substring(prefix.length()) : name);
+                }
+            }
+        }
+
+        return names;
+    }
+
+    private static String withConflictTarget(String insert) {
+        // INSERT ... SELECT needs a WHERE clause before ON CONFLICT to parse unambiguously
+        String outer = topLevel(insert).toUpperCase(Locale.ROOT);
+        boolean select = outer.contains(" SELECT ") && !outer.contains(" VALUES ");
+        return select && !outer.contains(" WHERE ") ? insert + " WHERE true" : insert;
+    }
+
+    private static String topLevel(String sql) {
+        StringBuilder outer = new StringBuilder();
+        int depth = 0;
+
+        for (char c : sql.toCharArray()) {
+            if (c == '(') depth++;
+            if (depth == 0) outer.append(c);
+            if (c == ')') depth--;
+        }
+
+        return outer.toString();
+    }
+
+    private static List<String> splitDefinitions(String definitions) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int depth = 0;
+
+        for (char c : definitions.toCharArray()) {
+            if (c == '(') depth++;
+            if (c == ')') depth--;
+
+            if (c == ',' && depth == 0) {
+                addPart(parts, current);
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+
+        addPart(parts, current);
+        return parts;
+    }
+
+    private static void addPart(List<String> parts, StringBuilder part) {
+        String trimmed = part.toString().trim().replaceAll("\\s+", " ");
+        if (!trimmed.isEmpty()) parts.add(trimmed);
+    }
+
+    private static String stripQuotes(String value) {
+        return value == null ? null : value.replace("`", "").trim();
+    }
+}
@@ -0,0 +1,439 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.dump;
+
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ConnectionCallback;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ConnectionSupplier;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.SqlDialect;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Streams a table to and from a gzip compressed dump file.
+ *
+ * <p>The file starts with a schema header (table name, CREATE TABLE definition and the exported
+ * columns with their JDBC types), followed by chunks of up to {@value #CHUNK_ROWS} rows, each
+ * carrying its own CRC32, and ends with an empty chunk and the total row count. Exports read the
+ * whole table inside one snapshot transaction, so the dump is consistent without locking the
+ * table; imports write each chunk as large multi-row {@code REPLACE} statements.
+ *
+ * <p>Memory use is bounded by one chunk in both directions.
+ */
+public final class TableDump {
+    public static final String EXTENSION = ".cozydump.gz";
+
+    private static final int MAGIC = 0x435A4442;
+    private static final short VERSION = 1;
+    private static final int CHUNK_ROWS = 1000;
+    private static final int MAX_CHUNK_BYTES = 64 << 20;
+    // SQLite's default limit, well below MySQL's 65535
+    private static final int MAX_PARAMETERS = 32766;
+
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte STRING = 3;
+    private static final byte BYTES = 4;
+    private static final byte TIMESTAMP = 5;
+    private static final byte DECIMAL = 6;
+    private static final byte BOOLEAN = 7;
+
+    private final String tableName;
+    private final String schema;
+    private final ConnectionSupplier reads;
+    private final WriteRunner writes;
+    private final SqlDialect dialect;
+
+    public record Column(String name, int jdbcType, String typeName) {}
+
+    /**
+     * Runs import work the same way repositories run their writes.
+     */
+    @FunctionalInterface
+    public interface WriteRunner {
+        int write(@NotNull ConnectionCallback<Integer> work) throws SQLException;
+    }
+
+    /**
+     * @param tableName the table to export from or import into
+     * @param schema the table's CREATE TABLE statement, stored in the header for reference
+     * @param reads where the export borrows its connection
+     * @param writes runs each imported chunk
+     * @param dialect the dialect of the configured storage backend
+     */
+    public TableDump(@NotNull String tableName,
+                     @NotNull String schema,
+                     @NotNull ConnectionSupplier reads,
+                     @NotNull WriteRunner writes,
+                     @NotNull SqlDialect dialect) {
+        this.tableName = tableName;
+        this.schema = schema;
+        this.reads = reads;
+        this.writes = writes;
+        this.dialect = dialect;
+    }
+
+    /**
+     * Exports every row of the table. The file is written under a temporary name and only moved
+     * into place once complete.
+     *
+     * @param file the dump file to create
+     * @param progress receives the number of rows written so far after every chunk
+     * @return the number of rows exported
+     * @throws IOException if the file cannot be written
+     * @throws SQLException if reading the table fails
+     */
+    public long export(@NotNull File file, @NotNull LongConsumer progress) throws IOException, SQLException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+
+        File temporary = new File(parent, file.getName() + ".part");
+        long rows = 0;
+
+        try (Connection connection = reads.getConnection()) {
+            dialect.beginSnapshot(connection);
+
+            try (PreparedStatement stmt = connection.prepareStatement("SELECT * FROM " + tableName,
+                         ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(dialect.streamingFetchSize());
+
+                try (ResultSet rs = stmt.executeQuery();
+                     DataOutputStream out = new DataOutputStream(new GzipCompressorOutputStream(
+                             new BufferedOutputStream(new FileOutputStream(temporary))))) {
+
+                    List<Column> columns = columnsOf(rs.getMetaData());
+                    writeHeader(out, columns);
+
+                    ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+                    DataOutputStream chunkOut = new DataOutputStream(chunk);
+                    int chunkRows = 0;
+
+                    while (rs.next()) {
+                        for (int i = 0; i < columns.size(); i++) {
+                            writeValue(chunkOut, rs, i + 1, columns.get(i).jdbcType());
+                        }
+
+                        if (++chunkRows == CHUNK_ROWS) {
+                            writeChunk(out, chunkRows, chunk);
+                            rows += chunkRows;
+                            chunkRows = 0;
+                            progress.accept(rows);
+                        }
+                    }
+
+                    if (chunkRows > 0) {
+                        writeChunk(out, chunkRows, chunk);
+                        rows += chunkRows;
+                        progress.accept(rows);
+                    }
+
+                    out.writeInt(0);
+                    out.writeLong(rows);
+                }
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            Files.deleteIfExists(temporary.toPath());
+            throw e;
+        }
+
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return rows;
+    }
+
+    /**
+     * Imports a dump into the table, replacing rows whose keys already exist. Every column of the
+     * dump must exist in the table; columns only the table has keep their defaults.
+     *
+     * @param file the dump file to read
+     * @param progress receives the number of rows imported so far after every chunk
+     * @return the number of rows imported
+     * @throws IOException if the file is unreadable, corrupt or does not match the table
+     * @throws SQLException if writing a chunk fails
+     */
+    public long restore(@NotNull File file, @NotNull LongConsumer progress) throws IOException, SQLException {
+        long rows = 0;
+
+        try (DataInputStream in = new DataInputStream(new GzipCompressorInputStream(
+                new BufferedInputStream(new FileInputStream(file))))) {
+
+            List<Column> columns = readHeader(in);
+            requireColumns(columns);
+
+            int rowsPerStatement = Math.max(1, Math.min(CHUNK_ROWS, MAX_PARAMETERS / columns.size()));
+            String names = String.join(", ", columns.stream().map(Column::name).toList());
+            String tuple = "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+
+            while (true) {
+                int chunkRows = in.readInt();
+                if (chunkRows == 0) break;
+
+                List<Object[]> chunk = readChunk(in, chunkRows, columns);
+
+                writes.write(connection -> {
+                    for (int from = 0; from < chunk.size(); from += rowsPerStatement) {
+                        List<Object[]> batch = chunk.subList(from, Math.min(from + rowsPerStatement, chunk.size()));
+                        String sql = "REPLACE INTO " + tableName + " (" + names + ") VALUES " +
+                                String.join(", ", Collections.nCopies(batch.size(), tuple));
+
+                        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                            int index = 1;
+                            for (Object[] row : batch) {
+                                for (int i = 0; i < row.length; i++) {
+                                    bind(ps, index++, row[i], columns.get(i).jdbcType());
+                                }
+                            }
+
+                            ps.executeUpdate();
+                        }
+                    }
+
+                    return chunk.size();
+                });
+
+                rows += chunkRows;
+                progress.accept(rows);
+            }
+
+            long expected = in.readLong();
+            if (expected != rows) {
+                throw new IOException("Dump " + file.getName() + " declares " + expected + " rows but holds " + rows);
+            }
+        } catch (EOFException e) {
+            throw new IOException("Dump " + file.getName() + " is truncated after " + rows + " rows", e);
+        }
+
+        return rows;
+    }
+
+    // private methods
+    private void writeHeader(DataOutputStream out, List<Column> columns) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeUTF(tableName);
+        out.writeLong(System.currentTimeMillis());
+        writeString(out, schema);
+
+        out.writeInt(columns.size());
+        for (Column column : columns) {
+            out.writeUTF(column.name());
+            out.writeInt(column.jdbcType());
+            out.writeUTF(column.typeName());
+        }
+    }
+
+    private List<Column> readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a CozyLib table dump");
+        }
+
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported dump version " + version);
+        }
+
+        in.readUTF(); // source table, imports may target another name
+        in.readLong(); // created at
+        readString(in); // schema
+
+        int count = in.readInt();
+        List<Column> columns = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            columns.add(new Column(in.readUTF(), in.readInt(), in.readUTF()));
+        }
+
+        if (columns.isEmpty()) {
+            throw new IOException("Dump has no columns");
+        }
+
+        return columns;
+    }
+
+    private void requireColumns(List<Column> columns) throws IOException, SQLException {
+        Set<String> existing = new HashSet<>();
+
+        try (Connection connection = reads.getConnection();
+             PreparedStatement stmt = connection.prepareStatement("SELECT * FROM " + tableName + " WHERE 1 = 0");
+             ResultSet rs = stmt.executeQuery()) {
+
+            for (Column column : columnsOf(rs.getMetaData())) {
+                existing.add(column.name().toLowerCase(Locale.ROOT));
+            }
+        }
+
+        for (Column column : columns) {
+            if (!existing.contains(column.name().toLowerCase(Locale.ROOT))) {
+                throw new IOException("Column " + column.name() + " of the dump does not exist in " + tableName);
+            }
+        }
+    }
+
+    private static List<Column> columnsOf(ResultSetMetaData meta) throws SQLException {
+        List<Column> columns = new ArrayList<>(meta.getColumnCount());
+
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            String typeName = meta.getColumnTypeName(i);
+            columns.add(new Column(meta.getColumnLabel(i), meta.getColumnType(i), typeName == null ? "" : typeName));
+        }
+
+        return columns;
+    }
+
+    private static void writeChunk(DataOutputStream out, int rows, ByteArrayOutputStream chunk) throws IOException {
+        byte[] bytes = chunk.toByteArray();
+        chunk.reset();
+
+        out.writeInt(rows);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeInt(checksum(bytes));
+    }
+
+    private static List<Object[]> readChunk(DataInputStream in, int rows, List<Column> columns) throws IOException {
+        int length = in.readInt();
+        if (rows < 0 || length < 0 || length > MAX_CHUNK_BYTES) {
+            throw new IOException("Corrupt chunk header");
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        if (checksum(bytes) != in.readInt()) {
+            throw new IOException("Chunk checksum mismatch");
+        }
+
+        DataInputStream chunk = new DataInputStream(new ByteArrayInputStream(bytes));
+        List<Object[]> result = new ArrayList<>(rows);
+
+        for (int r = 0; r < rows; r++) {
+            Object[] row = new Object[columns.size()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = readValue(chunk);
+            }
+            result.add(row);
+        }
+
+        return result;
+    }
+
+    private static void writeValue(DataOutputStream out, ResultSet rs, int column, int jdbcType) throws SQLException, IOException {
+        Object value = switch (jdbcType) {
+            case Types.DATE, Types.TIME, Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> rs.getTimestamp(column);
+            default -> rs.getObject(column);
+        };
+
+        switch (value) {
+            case null -> out.writeByte(NULL);
+            case Boolean b -> {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean(b);
+            }
+            case Long l -> {
+                out.writeByte(LONG);
+                out.writeLong(l);
+            }
+            case Integer i -> {
+                out.writeByte(LONG);
+                out.writeLong(i);
+            }
+            case Short s -> {
+                out.writeByte(LONG);
+                out.writeLong(s);
+            }
+            case Byte b -> {
+                out.writeByte(LONG);
+                out.writeLong(b);
+            }
+            case Double d -> {
+                out.writeByte(DOUBLE);
+                out.writeDouble(d);
+            }
+            case Float f -> {
+                out.writeByte(DOUBLE);
+                out.writeDouble(f);
+            }
+            case BigDecimal decimal -> {
+                out.writeByte(DECIMAL);
+                writeString(out, decimal.toPlainString());
+            }
+            case byte[] bytes -> {
+                out.writeByte(BYTES);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            case Timestamp timestamp -> {
+                out.writeByte(TIMESTAMP);
+                out.writeLong(timestamp.getTime());
+                out.writeInt(timestamp.getNanos());
+            }
+            default -> {
+                out.writeByte(STRING);
+                writeString(out, rs.getString(column));
+            }
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+
+        return switch (tag) {
+            case NULL -> null;
+            case BOOLEAN -> in.readBoolean();
+            case LONG -> in.readLong();
+            case DOUBLE -> in.readDouble();
+            case DECIMAL -> new BigDecimal(readString(in));
+            case STRING -> readString(in);
+            case BYTES -> {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                yield bytes;
+            }
+            case TIMESTAMP -> {
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                yield timestamp;
+            }
+            default -> throw new IOException("Unknown value tag " + tag);
+        };
+    }
+
+    private static void bind(PreparedStatement ps, int index, Object value, int jdbcType) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, jdbcType);
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+
+    // writeUTF is limited to 64KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,271 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.flush;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.common.enums.TimeUnit;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.BatchWriter;
+import net.cozyvanilla.cozylib.runtime.MySQLConnection;
+import net.cozyvanilla.cozylib.util.paper.TaskUtils;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * Accumulates pending writes in memory and flushes them to a {@link BatchWriter} in bulk.
+ *
+ * <p>Repeated writes to the same key are merged with the supplied merge function before
+ * they ever reach the database, so a value that changes a hundred times between flushes
+ * costs a single row in the next batch. Flushes happen on a fixed interval, or early once
+ * the number of pending keys reaches {@code maxPending}.
+ *
+ * <p>Failed batches are merged back into the buffer, under any value enqueued since, and
+ * retried on the next flush. Once {@link #shutdown()} ran the buffer rejects new values.
+ *
+ * @param <K> the type of keys identifying a single row
+ * @param <V> the type of pending values
+ */
+public final class WriteBehindBuffer<K, V> {
+    private final Plugin plugin;
+    private final String name;
+    private final BatchWriter<K, V> writer;
+    private final BinaryOperator<V> merger;
+    private final double intervalSeconds;
+    private final int maxPending;
+
+    private final Map<K, V> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+
+    private ScheduledTask task;
+    private volatile boolean closed;
+
+    public record Stats(int queueDepth, long flushes, long flushedRows, long failedFlushes,
+                        double lastFlushMillis, double averageFlushMillis) {}
+
+    /**
+     * Creates a write-behind buffer. Call {@link #start()} to begin periodic flushing.
+     *
+     * @param plugin the plugin scheduling flush tasks
+     * @param name the name used in log messages, usually the table name
+     * @param writer the writer receiving merged batches
+     * @param merger merges a newly enqueued value (second) into an already pending value (first)
+     * @param intervalSeconds how often pending values are flushed
+     * @param maxPending the number of pending keys that triggers an early flush
+     */
+    public WriteBehindBuffer(@NotNull Plugin plugin,
+                             @NotNull String name,
+                             @NotNull BatchWriter<K, V> writer,
+                             @NotNull BinaryOperator<V> merger,
+                             double intervalSeconds,
+                             int maxPending) {
+        if (intervalSeconds <= 0) {
+            throw new IllegalArgumentException("intervalSeconds must be greater than 0");
+        }
+
+        if (maxPending <= 0) {
+            throw new IllegalArgumentException("maxPending must be greater than 0");
+        }
+
+        this.plugin = plugin;
+        this.name = name;
+        this.writer = writer;
+        this.merger = merger;
+        this.intervalSeconds = intervalSeconds;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Starts the periodic flush task.
+     */
+    public void start() {
+        if (task != null) return;
+
+        long intervalMillis = (long) Math.ceil(intervalSeconds * 1000);
+        task = TaskUtils.repeatingAsync(plugin, this::flush, TimeUnit.MILLISECOND, intervalMillis, intervalMillis);
+    }
+
+    /**
+     * Stops the periodic flush task and synchronously flushes everything still pending.
+     * Meant to be called from the owning plugin's onDisable.
+     */
+    public void shutdown() {
+        closed = true;
+
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        flush();
+
+        if (!pending.isEmpty()) {
+            Logger.severe("Write-behind buffer for " + name + " shut down with " + pending.size() + " unflushed rows");
+        }
+    }
+
+    /**
+     * Adds a value to the buffer, merging it with any value already pending for the same key.
+     *
+     * @param key the row key
+     * @param value the value to write
+     * @throws IllegalStateException if the buffer was shut down
+     */
+    public void enqueue(@NotNull K key, @NotNull V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+
+        if (closed) {
+            throw new IllegalStateException("Write-behind buffer for " + name + " is shut down");
+        }
+
+        pending.merge(key, value, merger);
+
+        // raced with shutdown, whose final flush may already have run
+        if (closed) {
+            flushAsync(key::equals).exceptionally(error -> {
+                Logger.severe("Failed to flush a row enqueued while " + name + " shut down", error);
+                return 0;
+            });
+            return;
+        }
+
+        if (pending.size() >= maxPending && flushScheduled.compareAndSet(false, true)) {
+            MySQLConnection.runAsync(plugin, name, () -> {
+                flushScheduled.set(false);
+                flush();
+            }).exceptionally(error -> {
+                // the queue is full, the values stay pending for the periodic flush
+                flushScheduled.set(false);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Flushes every pending value on the calling thread.
+     *
+     * @return the number of rows handed to the writer
+     */
+    public int flush() {
+        return flush(key -> true);
+    }
+
+    /**
+     * Flushes only the pending values whose key matches the filter, e.g. a single player on quit.
+     *
+     * @param filter selects which keys to flush
+     * @return the number of rows handed to the writer
+     */
+    public int flush(@NotNull Predicate<K> filter) {
+        flushLock.lock();
+        try {
+            Map<K, V> batch = drain(filter);
+            if (batch.isEmpty()) return 0;
+
+            long start = System.nanoTime();
+
+            try {
+                writer.writeBatch(batch);
+            } catch (SQLException | RuntimeException e) {
+                failedFlushes.incrementAndGet();
+                // values enqueued while writing are newer than the failed ones
+                batch.forEach((key, value) -> pending.merge(key, value, (newer, failed) -> merger.apply(failed, newer)));
+                Logger.severe("Failed to flush " + batch.size() + " pending rows for " + name + ", will retry", e);
+                return 0;
+            }
+
+            long elapsed = System.nanoTime() - start;
+            flushes.incrementAndGet();
+            flushedRows.addAndGet(batch.size());
+            totalFlushNanos.addAndGet(elapsed);
+            lastFlushNanos.set(elapsed);
+
+            return batch.size();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the pending values matching the filter on the database executor.
+     *
+     * @param filter selects which keys to flush
+     * @return a future completed once the flush finishes
+     */
+    public CompletableFuture<Integer> flushAsync(@NotNull Predicate<K> filter) {
+        return MySQLConnection.supplyAsync(plugin, name, () -> flush(filter));
+    }
+
+    /**
+     * Copies the values still waiting to be flushed whose key matches the filter.
+     *
+     * @param filter selects which keys to copy
+     * @return the pending values
+     */
+    public @NotNull Map<K, V> pending(@NotNull Predicate<K> filter) {
+        Map<K, V> copy = new HashMap<>();
+        pending.forEach((key, value) -> {
+            if (filter.test(key)) copy.put(key, value);
+        });
+        return copy;
+    }
+
+    /**
+     * Gets the number of keys currently waiting to be flushed.
+     *
+     * @return the pending key count
+     */
+    public int getQueueDepth() {
+        return pending.size();
+    }
+
+    /**
+     * Gets a snapshot of the buffer's queue depth and flush latency.
+     *
+     * @return the current statistics
+     */
+    public Stats getStats() {
+        long count = flushes.get();
+        double average = count == 0 ? 0 : totalFlushNanos.get() / (double) count / 1_000_000.0;
+
+        return new Stats(
+                pending.size(),
+                count,
+                flushedRows.get(),
+                failedFlushes.get(),
+                lastFlushNanos.get() / 1_000_000.0,
+                average);
+    }
+
+    private Map<K, V> drain(Predicate<K> filter) {
+        Map<K, V> batch = new HashMap<>();
+
+        for (K key : pending.keySet()) {
+            if (!filter.test(key)) continue;
+
+            V value = pending.remove(key);
+            if (value != null) {
+                batch.put(key, value);
+            }
+        }
+
+        return batch;
+    }
+}
@@ -0,0 +1,130 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.journal;
+
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.JournalCodec;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * The on-disk format of a {@link WriteJournal}: one {@code [length][crc32][payload]} record per row,
+ * the payload written by the journal's {@link JournalCodec}.
+ */
+final class JournalRecords {
+    static final int HEADER_BYTES = Integer.BYTES * 2;
+    static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private JournalRecords() {}
+
+    /**
+     * @param rows the number of intact records read
+     * @param tornBytes the number of bytes cut off the end of the file
+     */
+    record Replay(int rows, long tornBytes) {}
+
+    /**
+     * Encodes a single row as a complete record, header included.
+     */
+    static <K, V> byte[] encode(@NotNull JournalCodec<K, V> codec, @NotNull K key, @NotNull V value) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        codec.write(new DataOutputStream(payload), key, value);
+
+        byte[] bytes = payload.toByteArray();
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + bytes.length);
+        record.putInt(bytes.length);
+        record.putInt(checksum(bytes));
+        record.put(bytes);
+
+        return record.array();
+    }
+
+    /**
+     * Reads every intact record in file order. The first record that is cut short, oversized or
+     * fails its checksum ends the replay, and everything from it on is cut off the file, so the
+     * next append starts on a record boundary.
+     *
+     * @param file the journal file, which may not exist
+     * @param codec reads the payloads
+     * @param consumer receives every row in the order it was written
+     * @return how many rows were read and how many bytes were cut off
+     */
+    static <K, V> @NotNull Replay replay(@NotNull Path file, @NotNull JournalCodec<K, V> codec,
+                                         @NotNull BiConsumer<K, V> consumer) throws IOException {
+        if (!Files.exists(file)) return new Replay(0, 0L);
+
+        int rows = 0;
+        long valid = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int length;
+                int crc;
+
+                try {
+                    length = in.readInt();
+                    crc = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                if (length <= 0 || length > MAX_RECORD_BYTES) break;
+
+                byte[] payload = new byte[length];
+                try {
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                if (checksum(payload) != crc) break;
+
+                Map.Entry<K, V> row = codec.read(new DataInputStream(new ByteArrayInputStream(payload)));
+                consumer.accept(row.getKey(), row.getValue());
+
+                valid += HEADER_BYTES + length;
+                rows++;
+            }
+        }
+
+        long size = Files.size(file);
+        if (valid < size) {
+            try (FileChannel truncating = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                truncating.truncate(valid);
+                truncating.force(true);
+            }
+        }
+
+        return new Replay(rows, size - valid);
+    }
+
+    /**
+     * Writes rows into a fresh file, replacing anything it held, and syncs it before returning.
+     * Used to compact a journal down to its pending rows.
+     */
+    static <K, V> void write(@NotNull Path file, @NotNull JournalCodec<K, V> codec, @NotNull Map<K, V> rows) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map.Entry<K, V> row : rows.entrySet()) {
+                ByteBuffer buffer = ByteBuffer.wrap(encode(codec, row.getKey(), row.getValue()));
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+
+            out.force(true);
+        }
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,474 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.journal;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.common.enums.TimeUnit;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.BatchWriter;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.JournalCodec;
+import net.cozyvanilla.cozylib.runtime.MySQLConnection;
+import net.cozyvanilla.cozylib.util.paper.TaskUtils;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * Append-only on-disk journal in front of a {@link BatchWriter}, so writes survive a database outage.
+ *
+ * <p>Writes are first appended to a file in the plugin data folder. One thread owns the file and
+ * appends whatever queued up while the previous sync ran, so a burst of saves costs a single
+ * fsync; callers are completed once their rows are on disk. The rows are then merged in memory
+ * and drained to the writer on a fixed interval. A failed drain keeps the rows and retries on the
+ * next interval, so everything written during an outage is replayed once the database is back.
+ *
+ * <p>On start the file is read back in write order, merging rows like live appends, and every
+ * row it holds is drained again, which is why the writer must tolerate seeing a row twice, e.g. an
+ * upsert setting the value it is given. Once every row is acknowledged the file is truncated, and
+ * while rows are pending it is rewritten with only the merged pending rows whenever it grows past
+ * the compaction threshold.
+ *
+ * <p>Each record is {@code [length][crc32][payload]}, see {@link JournalRecords}; a torn or corrupt
+ * tail left by a crash is cut off on replay.
+ *
+ * @param <K> the type of keys identifying a single row
+ * @param <V> the type of pending values
+ */
+public final class WriteJournal<K, V> {
+    private final Plugin plugin;
+    private final String name;
+    private final Path file;
+    private final JournalCodec<K, V> codec;
+    private final BatchWriter<K, V> writer;
+    private final BinaryOperator<V> merger;
+    private final double drainIntervalSeconds;
+    private final long compactBytes;
+
+    private final Map<K, Slot<V>> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<Append<K, V>> appends = new LinkedBlockingQueue<>();
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final AtomicBoolean failing = new AtomicBoolean(false);
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong drained = new AtomicLong();
+    private final AtomicLong failedDrains = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+
+    private FileChannel channel;
+    private Thread thread;
+    private ScheduledTask task;
+    private volatile boolean running;
+
+    public record Stats(int pending, long fileBytes, long appended, long syncs, long drained,
+                        long failedDrains, long compactions) {}
+
+    // the same slot instance stays in the map until a newer write replaces it
+    private record Slot<V>(V value, long sequence) {}
+
+    private record Append<K, V>(List<Map.Entry<K, V>> rows, CompletableFuture<Void> future) {
+        private boolean isCompaction() {
+            return rows == null;
+        }
+    }
+
+    /**
+     * Creates a journal. Call {@link #start()} to replay the file and begin draining.
+     *
+     * @param plugin the plugin scheduling drain tasks
+     * @param name the name used in log messages and threads, usually the table name
+     * @param file the journal file
+     * @param codec serializes rows
+     * @param writer the idempotent writer receiving merged batches
+     * @param merger merges a newer value, its second argument, into an already pending value
+     * @param drainIntervalSeconds how often pending rows are drained
+     * @param compactBytes the file size above which pending rows are rewritten into a fresh file
+     */
+    public WriteJournal(@NotNull Plugin plugin,
+                        @NotNull String name,
+                        @NotNull File file,
+                        @NotNull JournalCodec<K, V> codec,
+                        @NotNull BatchWriter<K, V> writer,
+                        @NotNull BinaryOperator<V> merger,
+                        double drainIntervalSeconds,
+                        long compactBytes) {
+        if (drainIntervalSeconds <= 0) {
+            throw new IllegalArgumentException("drainIntervalSeconds must be greater than 0");
+        }
+
+        this.plugin = plugin;
+        this.name = name;
+        this.file = file.toPath();
+        this.codec = codec;
+        this.writer = writer;
+        this.merger = merger;
+        this.drainIntervalSeconds = drainIntervalSeconds;
+        this.compactBytes = Math.max(1L, compactBytes);
+    }
+
+    /**
+     * Replays the rows left in the file, opens it for appending and starts draining.
+     *
+     * @throws IOException if the journal file cannot be read or opened
+     */
+    public synchronized void start() throws IOException {
+        if (running) return;
+
+        Files.createDirectories(file.getParent());
+        int replayed = replay();
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+
+        running = true;
+        thread = new Thread(this::work, "CozyLib-Journal-" + name);
+        thread.setDaemon(true);
+        thread.start();
+
+        long intervalMillis = (long) Math.ceil(drainIntervalSeconds * 1000);
+        task = TaskUtils.repeatingAsync(plugin, this::drainIfIdle, TimeUnit.MILLISECOND, intervalMillis, intervalMillis);
+
+        if (replayed > 0) {
+            Logger.warning("Replaying " + replayed + " journaled rows for " + name);
+            MySQLConnection.runAsync(plugin, name, this::drain).exceptionally(error -> {
+                Logger.warning("Could not queue the replay of " + name + ", draining on the next interval instead");
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Stops draining, drains once more and closes the file. Rows the database did not acknowledge
+     * stay in the file and are replayed on the next start. Meant to be called on disable.
+     */
+    public synchronized void shutdown() {
+        if (!running) return;
+
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        drain();
+
+        running = false;
+        try {
+            thread.join(5000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            // the thread is gone, so the file is ours to truncate
+            if (pending.isEmpty() && appends.isEmpty()) channel.truncate(0);
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            Logger.severe("Failed to close the write journal of " + name, e);
+        }
+
+        if (!pending.isEmpty()) {
+            Logger.warning("Write journal for " + name + " kept " + pending.size() +
+                    " unacknowledged rows on disk, they are replayed on the next start");
+        }
+    }
+
+    /**
+     * Durably appends a single row.
+     *
+     * @see #append(Map)
+     */
+    public CompletableFuture<Void> append(@NotNull K key, @NotNull V value) {
+        return append(Map.of(key, value));
+    }
+
+    /**
+     * Durably appends rows. The future completes once they are synced to disk, before they reach
+     * the database.
+     *
+     * @param rows the rows to write
+     * @return a future completed once the rows are on disk
+     */
+    public CompletableFuture<Void> append(@NotNull Map<K, V> rows) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        if (rows.isEmpty()) {
+            future.complete(null);
+            return future;
+        }
+
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("Write journal for " + name + " is not running"));
+            return future;
+        }
+
+        appends.add(new Append<>(List.copyOf(rows.entrySet()), future));
+        return future;
+    }
+
+    /**
+     * Drains every pending row on the calling thread.
+     *
+     * @return the number of rows acknowledged by the writer
+     */
+    public int drain() {
+        return drain(key -> true);
+    }
+
+    /**
+     * Drains only the pending rows whose key matches the filter, e.g. a single player on quit.
+     *
+     * @param filter selects which keys to drain
+     * @return the number of rows acknowledged by the writer
+     */
+    public int drain(@NotNull Predicate<K> filter) {
+        drainLock.lock();
+        try {
+            Map<K, Slot<V>> slots = new HashMap<>();
+            Map<K, V> batch = new HashMap<>();
+
+            pending.forEach((key, slot) -> {
+                if (!filter.test(key)) return;
+                slots.put(key, slot);
+                batch.put(key, slot.value());
+            });
+
+            if (batch.isEmpty()) return 0;
+
+            try {
+                writer.writeBatch(batch);
+            } catch (SQLException | RuntimeException e) {
+                failedDrains.incrementAndGet();
+
+                // log once per outage, the rows are safe on disk
+                if (failing.compareAndSet(false, true)) {
+                    Logger.severe("Failed to drain " + batch.size() + " journaled rows for " + name +
+                            ", keeping them on disk and retrying", e);
+                }
+
+                return 0;
+            }
+
+            if (failing.compareAndSet(true, false)) {
+                Logger.info("Write journal for " + name + " reconnected, " + batch.size() + " rows replayed");
+            }
+
+            // rows rewritten while the batch was in flight keep their newer slot
+            slots.forEach(pending::remove);
+            drained.addAndGet(batch.size());
+            requestCompaction();
+
+            return batch.size();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Drains the pending rows matching the filter on the database executor.
+     *
+     * @param filter selects which keys to drain
+     * @return a future completed once the drain finishes
+     */
+    public CompletableFuture<Integer> drainAsync(@NotNull Predicate<K> filter) {
+        return MySQLConnection.supplyAsync(plugin, name, () -> drain(filter));
+    }
+
+    /**
+     * Copies the journaled values not yet acknowledged by the writer whose key matches the filter.
+     *
+     * @param filter selects which keys to copy
+     * @return the pending values
+     */
+    public @NotNull Map<K, V> pending(@NotNull Predicate<K> filter) {
+        Map<K, V> copy = new HashMap<>();
+        pending.forEach((key, slot) -> {
+            if (filter.test(key)) copy.put(key, slot.value());
+        });
+        return copy;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public @NotNull Stats getStats() {
+        long size;
+        try {
+            size = Files.exists(file) ? Files.size(file) : 0L;
+        } catch (IOException e) {
+            size = -1L;
+        }
+
+        return new Stats(
+                pending.size(),
+                size,
+                appended.get(),
+                syncs.get(),
+                drained.get(),
+                failedDrains.get(),
+                compactions.get());
+    }
+
+    // private methods
+    // a drain still running, e.g. stuck on a slow database, covers this tick
+    private void drainIfIdle() {
+        if (!drainLock.tryLock()) return;
+
+        try {
+            drain();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private void requestCompaction() {
+        if (running) {
+            appends.add(new Append<>(null, null));
+        }
+    }
+
+    private void work() {
+        List<Append<K, V>> group = new ArrayList<>();
+
+        while (running || !appends.isEmpty()) {
+            try {
+                Append<K, V> first = appends.poll(250L, java.util.concurrent.TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                group.add(first);
+                appends.drainTo(group);
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            boolean compact = false;
+            List<Append<K, V>> writes = new ArrayList<>(group.size());
+
+            for (Append<K, V> append : group) {
+                if (append.isCompaction()) {
+                    compact = true;
+                } else {
+                    writes.add(append);
+                }
+            }
+
+            if (!writes.isEmpty()) {
+                sync(writes);
+            }
+
+            if (compact) {
+                compact();
+            }
+
+            group.clear();
+        }
+    }
+
+    private void sync(List<Append<K, V>> writes) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (Append<K, V> append : writes) {
+                for (Map.Entry<K, V> row : append.rows()) {
+                    bytes.write(JournalRecords.encode(codec, row.getKey(), row.getValue()));
+                }
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            channel.force(false);
+            syncs.incrementAndGet();
+
+        } catch (IOException | RuntimeException e) {
+            Logger.severe("Failed to append " + writes.size() + " writes to the journal of " + name, e);
+            writes.forEach(append -> append.future().completeExceptionally(e));
+            return;
+        }
+
+        for (Append<K, V> append : writes) {
+            for (Map.Entry<K, V> row : append.rows()) {
+                track(row.getKey(), row.getValue());
+                appended.incrementAndGet();
+            }
+
+            append.future().complete(null);
+        }
+    }
+
+    private void compact() {
+        try {
+            if (pending.isEmpty()) {
+                if (channel.size() > 0) {
+                    channel.truncate(0);
+                    channel.force(true);
+                    compactions.incrementAndGet();
+                }
+
+                return;
+            }
+
+            if (channel.size() < compactBytes) return;
+
+            Path temporary = file.resolveSibling(file.getFileName() + ".compact");
+
+            Map<K, V> rows = new HashMap<>();
+            pending.forEach((key, slot) -> rows.put(key, slot.value()));
+            JournalRecords.write(temporary, codec, rows);
+
+            channel.close();
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+            compactions.incrementAndGet();
+
+        } catch (IOException e) {
+            Logger.severe("Failed to compact the write journal of " + name, e);
+
+            try {
+                if (!channel.isOpen()) {
+                    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    channel.position(channel.size());
+                }
+            } catch (IOException reopen) {
+                Logger.severe("Failed to reopen the write journal of " + name, reopen);
+            }
+        }
+    }
+
+    private int replay() throws IOException {
+        JournalRecords.Replay replay = JournalRecords.replay(file, codec, this::track);
+
+        if (replay.tornBytes() > 0) {
+            Logger.warning("Cut " + replay.tornBytes() + " torn bytes off the write journal of " + name);
+        }
+
+        return replay.rows();
+    }
+
+    private void track(K key, V value) {
+        long seq = sequence.incrementAndGet();
+        pending.merge(key, new Slot<>(value, seq),
+                (current, added) -> new Slot<>(merger.apply(current.value(), added.value()), seq));
+    }
+}
@@ -0,0 +1,246 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.mapping;
+
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ResultSetMapper;
+import net.cozyvanilla.cozylib.util.java.UUIDUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps rows onto a record's canonical constructor, one column per record component.
+ *
+ * <p>A component reads the column labelled with its name in snake_case ({@code obtainedAt} reads
+ * {@code obtained_at}) or with its exact name, case-insensitively; alias columns with {@code AS}
+ * when they are named differently. Extra columns are ignored, so the same mapper works for any
+ * query selecting at least the record's columns.
+ *
+ * <p>The constructor handle and a typed reader per component are built once per record class.
+ * Column indexes are resolved once per result set shape and reused for every row of the result
+ * set, so mapping a row neither looks columns up by name nor goes through reflection.
+ *
+ * <p>Supported component types are the JDBC primitives and their boxes, {@link String},
+ * {@code byte[]}, {@link BigDecimal}, {@link Instant}, {@link Timestamp}, {@link LocalDateTime},
+ * {@link UUID} (BINARY(16) or CHAR(36)) and enums stored by name; anything else is read with
+ * {@link ResultSet#getObject(int, Class)}.
+ *
+ * @param <R> the record type
+ */
+public final class RecordMapper<R extends Record> implements ResultSetMapper<R> {
+    private static final ClassValue<RecordMapper<?>> MAPPERS = new ClassValue<>() {
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        protected RecordMapper<?> computeValue(Class<?> type) {
+            return new RecordMapper(type.asSubclass(Record.class));
+        }
+    };
+
+    private final Class<R> type;
+    private final String[] names;
+    private final Reader[] readers;
+    private final MethodHandle constructor;
+    private final Map<String, int[]> shapes = new ConcurrentHashMap<>();
+
+    // the result set currently being mapped, so its rows skip the shape lookup
+    private volatile Binding binding;
+
+    @FunctionalInterface
+    private interface Reader {
+        Object read(ResultSet rs, int column) throws SQLException;
+    }
+
+    private record Binding(WeakReference<ResultSet> resultSet, int[] columns) {}
+
+    private RecordMapper(Class<R> type) {
+        RecordComponent[] components = type.getRecordComponents();
+
+        this.type = type;
+        this.names = new String[components.length];
+        this.readers = new Reader[components.length];
+        Class<?>[] parameters = new Class<?>[components.length];
+
+        for (int i = 0; i < components.length; i++) {
+            names[i] = components[i].getName();
+            readers[i] = readerFor(components[i].getType());
+            parameters[i] = components[i].getType();
+        }
+
+        try {
+            Constructor<R> canonical = type.getDeclaredConstructor(parameters);
+            canonical.setAccessible(true);
+
+            // (Object[]) -> Object, so each row is a single invokeExact
+            this.constructor = MethodHandles.lookup().unreflectConstructor(canonical)
+                    .asType(MethodType.genericMethodType(components.length))
+                    .asSpreader(Object[].class, components.length);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot access the canonical constructor of " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Gets the mapper of a record class, building it on first use.
+     *
+     * @param type the record class
+     * @param <R> the record type
+     * @return the shared mapper
+     * @throws IllegalArgumentException if the record's constructor is inaccessible
+     */
+    @SuppressWarnings("unchecked")
+    public static <R extends Record> @NotNull RecordMapper<R> of(@NotNull Class<R> type) {
+        return (RecordMapper<R>) MAPPERS.get(type);
+    }
+
+    @Override
+    public R fromResultSet(ResultSet resultSet) throws SQLException {
+        int[] columns = columnsOf(resultSet);
+        Object[] values = new Object[readers.length];
+
+        for (int i = 0; i < readers.length; i++) {
+            values[i] = readers[i].read(resultSet, columns[i]);
+        }
+
+        try {
+            return type.cast((Object) constructor.invokeExact(values));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to construct " + type.getName(), e);
+        }
+    }
+
+    // private methods
+    private int[] columnsOf(ResultSet resultSet) throws SQLException {
+        Binding current = binding;
+        if (current != null && current.resultSet().get() == resultSet) {
+            return current.columns();
+        }
+
+        ResultSetMetaData meta = resultSet.getMetaData();
+        StringJoiner shape = new StringJoiner(",");
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            shape.add(meta.getColumnLabel(i).toLowerCase(Locale.ROOT));
+        }
+
+        int[] columns = shapes.get(shape.toString());
+        if (columns == null) {
+            columns = resolve(meta);
+            shapes.put(shape.toString(), columns);
+        }
+
+        binding = new Binding(new WeakReference<>(resultSet), columns);
+        return columns;
+    }
+
+    private int[] resolve(ResultSetMetaData meta) throws SQLException {
+        Map<String, Integer> labels = new HashMap<>();
+        for (int i = meta.getColumnCount(); i >= 1; i--) {
+            // iterating backwards keeps the first of duplicate labels
+            labels.put(meta.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+
+        int[] columns = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            Integer column = labels.get(snakeCase(names[i]));
+            if (column == null) column = labels.get(names[i].toLowerCase(Locale.ROOT));
+
+            if (column == null) {
+                throw new SQLException("No column for " + type.getSimpleName() + "." + names[i] +
+                        ", expected " + snakeCase(names[i]) + " in " + labels.keySet());
+            }
+
+            columns[i] = column;
+        }
+
+        return columns;
+    }
+
+    private static String snakeCase(String name) {
+        StringBuilder builder = new StringBuilder(name.length() + 4);
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0) builder.append('_');
+                builder.append(Character.toLowerCase(c));
+            } else {
+                builder.append(c);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Reader readerFor(Class<?> type) {
+        if (type == int.class) return ResultSet::getInt;
+        if (type == long.class) return ResultSet::getLong;
+        if (type == double.class) return ResultSet::getDouble;
+        if (type == float.class) return ResultSet::getFloat;
+        if (type == boolean.class) return ResultSet::getBoolean;
+        if (type == short.class) return ResultSet::getShort;
+        if (type == byte.class) return ResultSet::getByte;
+        if (type == String.class) return ResultSet::getString;
+        if (type == byte[].class) return ResultSet::getBytes;
+        if (type == BigDecimal.class) return ResultSet::getBigDecimal;
+        if (type == Timestamp.class) return ResultSet::getTimestamp;
+
+        if (type == Integer.class) return nullable(ResultSet::getInt);
+        if (type == Long.class) return nullable(ResultSet::getLong);
+        if (type == Double.class) return nullable(ResultSet::getDouble);
+        if (type == Boolean.class) return nullable(ResultSet::getBoolean);
+
+        if (type == Instant.class) {
+            return (rs, column) -> {
+                Timestamp timestamp = rs.getTimestamp(column);
+                return timestamp == null ? null : timestamp.toInstant();
+            };
+        }
+
+        if (type == LocalDateTime.class) {
+            return (rs, column) -> {
+                Timestamp timestamp = rs.getTimestamp(column);
+                return timestamp == null ? null : timestamp.toLocalDateTime();
+            };
+        }
+
+        if (type == UUID.class) {
+            return (rs, column) -> {
+                byte[] bytes = rs.getBytes(column);
+                if (bytes == null) return null;
+
+                // legacy CHAR(36) columns come back as their text bytes
+                return bytes.length == 16 ? UUIDUtils.fromBytes(bytes) : UUID.fromString(rs.getString(column));
+            };
+        }
+
+        if (type.isEnum()) {
+            return (rs, column) -> {
+                String name = rs.getString(column);
+                return name == null ? null : Enum.valueOf((Class) type, name);
+            };
+        }
+
+        return (rs, column) -> rs.getObject(column, type);
+    }
+
+    private static Reader nullable(Reader reader) {
+        return (rs, column) -> {
+            Object value = reader.read(rs, column);
+            return rs.wasNull() ? null : value;
+        };
+    }
+}
@@ -0,0 +1,150 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Proxies a {@link Connection} so statements it creates report to {@link QueryMetrics}.
+ */
+final class InstrumentedConnection implements InvocationHandler {
+    private final Connection delegate;
+
+    InstrumentedConnection(Connection delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Object result = call(delegate, method, args);
+
+        return switch (method.getName()) {
+            case "prepareStatement" -> wrap(PreparedStatement.class, (Statement) result, (String) args[0]);
+            case "createStatement" -> wrap(Statement.class, (Statement) result, null);
+            default -> result;
+        };
+    }
+
+    // private methods
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Object wrap(Class<? extends Statement> type, Statement statement, String sql) {
+        return Proxy.newProxyInstance(
+                type.getClassLoader(),
+                new Class<?>[]{type},
+                new InstrumentedStatement(statement, sql));
+    }
+
+    private static final class InstrumentedStatement implements InvocationHandler {
+        private final Statement delegate;
+        private final String sql;
+        private final List<String> parameterTypes = new ArrayList<>();
+        private String lastBatchSql;
+        private int batchSize;
+
+        private InstrumentedStatement(Statement delegate, String sql) {
+            this.delegate = delegate;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (isParameterSetter(name, args)) {
+                track((Integer) args[0], name.substring(3));
+                return call(delegate, method, args);
+            }
+
+            switch (name) {
+                case "clearParameters" -> parameterTypes.clear();
+                case "addBatch" -> {
+                    batchSize++;
+                    if (args != null && args.length == 1) lastBatchSql = (String) args[0];
+                }
+                case "clearBatch" -> batchSize = 0;
+                case "executeQuery", "executeUpdate", "execute", "executeLargeUpdate" -> {
+                    String executed = args != null && args.length > 0 && args[0] instanceof String s ? s : sql;
+                    return timed(executed, method, args, 0);
+                }
+                case "executeBatch", "executeLargeBatch" -> {
+                    int size = batchSize;
+                    batchSize = 0;
+                    return timed(sql != null ? sql : lastBatchSql, method, args, size);
+                }
+                default -> {}
+            }
+
+            return call(delegate, method, args);
+        }
+
+        private Object timed(String executed, Method method, Object[] args, int size) throws Throwable {
+            long start = System.nanoTime();
+            Object result = null;
+            Throwable error = null;
+
+            try {
+                result = call(delegate, method, args);
+                return result;
+            } catch (Throwable t) {
+                error = t;
+                throw t;
+            } finally {
+                if (executed != null) {
+                    QueryMetrics.record(executed, System.nanoTime() - start, rowsOf(result), size,
+                            List.copyOf(parameterTypes), error);
+                }
+            }
+        }
+
+        private void track(int index, String type) {
+            while (parameterTypes.size() < index) {
+                parameterTypes.add("?");
+            }
+
+            parameterTypes.set(index - 1, type);
+        }
+
+        private static boolean isParameterSetter(String name, Object[] args) {
+            return name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer;
+        }
+
+        private static long rowsOf(Object result) {
+            return switch (result) {
+                case Integer rows -> Math.max(0, rows);
+                case Long rows -> Math.max(0L, rows);
+                case int[] counts -> sum(counts);
+                case long[] counts -> sum(counts);
+                case null, default -> 0L;
+            };
+        }
+
+        private static long sum(int[] counts) {
+            long total = 0;
+            for (int count : counts) {
+                if (count > 0) total += count;
+            }
+            return total;
+        }
+
+        private static long sum(long[] counts) {
+            long total = 0;
+            for (long count : counts) {
+                if (count > 0) total += count;
+            }
+            return total;
+        }
+    }
+}
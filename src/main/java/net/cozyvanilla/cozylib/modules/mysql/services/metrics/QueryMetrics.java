@@ -0,0 +1,153 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.metrics;
+
+import net.cozyvanilla.cozylib.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Collects per-SQL-template latency, rows affected and batch sizes, plus connection pool wait times.
+ *
+ * <p>Statements are grouped by template: the SQL as prepared, with runs of placeholders such as
+ * {@code IN (?, ?, ?)} or multi-row {@code VALUES (?, ?), (?, ?)} collapsed, so the same query
+ * over a different number of players lands in one bucket.
+ *
+ * <p>Statements slower than the configured threshold are logged with their parameter types only,
+ * never their values.
+ */
+public final class QueryMetrics {
+    private static final int MAX_TEMPLATES = 512;
+    private static final String OVERFLOW_TEMPLATE = "<other>";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern PLACEHOLDER_RUN = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+    private static final Pattern ROW_RUN = Pattern.compile("\\((\\?\\.\\.\\.|\\?)\\)(\\s*,\\s*\\((\\?\\.\\.\\.|\\?)\\))+");
+    private static final Pattern UNION_RUN = Pattern.compile("(SELECT \\? AS \\w+)( UNION ALL SELECT \\? AS \\w+)+", Pattern.CASE_INSENSITIVE);
+
+    private static final Map<String, StatementMetrics> STATEMENTS = new ConcurrentHashMap<>();
+    private static final Map<String, String> TEMPLATES = new ConcurrentHashMap<>();
+    private static final LatencyHistogram POOL_WAIT = new LatencyHistogram();
+
+    private static volatile boolean enabled = true;
+    private static volatile long slowQueryMicros = 250_000L;
+
+    private QueryMetrics() {}
+
+    /**
+     * Wraps a pooled connection so every statement created from it is timed.
+     *
+     * @param connection the connection to wrap
+     * @return the instrumented connection
+     */
+    public static @NotNull Connection instrument(@NotNull Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new InstrumentedConnection(connection));
+    }
+
+    /**
+     * Records how long a caller waited for the pool to hand out a connection.
+     *
+     * @param nanos the wait time in nanoseconds
+     */
+    public static void recordPoolWait(long nanos) {
+        POOL_WAIT.record(nanos / 1_000L);
+    }
+
+    /**
+     * Applies the metrics settings from config.yml.
+     *
+     * @param enable whether connections should be instrumented
+     * @param slowQueryMillis statements at or above this duration are logged
+     */
+    public static void configure(boolean enable, long slowQueryMillis) {
+        enabled = enable;
+        slowQueryMicros = Math.max(0L, slowQueryMillis) * 1_000L;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static @NotNull LatencyHistogram getPoolWait() {
+        return POOL_WAIT;
+    }
+
+    /**
+     * Gets every recorded template, slowest in total first.
+     *
+     * @return a snapshot of the statement metrics
+     */
+    public static @NotNull List<StatementMetrics> getStatements() {
+        List<StatementMetrics> list = new ArrayList<>(STATEMENTS.values());
+        list.sort(Comparator.comparingLong((StatementMetrics m) -> m.getLatency().getTotal()).reversed());
+        return list;
+    }
+
+    public static void reset() {
+        STATEMENTS.clear();
+        TEMPLATES.clear();
+        POOL_WAIT.reset();
+    }
+
+    /**
+     * Normalizes SQL to its template.
+     *
+     * @param sql the SQL as prepared
+     * @return the template
+     */
+    public static @NotNull String templateOf(@NotNull String sql) {
+        String cached = TEMPLATES.get(sql);
+        if (cached != null) return cached;
+
+        String template = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        template = UNION_RUN.matcher(template).replaceAll("$1 UNION ALL ...");
+        template = PLACEHOLDER_RUN.matcher(template).replaceAll("?...");
+        template = ROW_RUN.matcher(template).replaceAll("($1), ...");
+
+        // raw SQL is never cached unbounded, the templates themselves are few
+        if (TEMPLATES.size() < MAX_TEMPLATES * 8) {
+            TEMPLATES.put(sql, template);
+        }
+
+        return template;
+    }
+
+    // package-private methods
+    static void record(String sql, long nanos, long rows, int batchSize, List<String> parameterTypes, Throwable error) {
+        String template = templateOf(sql);
+        long micros = nanos / 1_000L;
+
+        StatementMetrics metrics = STATEMENTS.get(template);
+        if (metrics == null) {
+            String key = STATEMENTS.size() < MAX_TEMPLATES ? template : OVERFLOW_TEMPLATE;
+            metrics = STATEMENTS.computeIfAbsent(key, StatementMetrics::new);
+        }
+
+        metrics.record(micros, rows, batchSize, error != null);
+
+        if (micros >= slowQueryMicros) {
+            Logger.warning("Slow query (" + (micros / 1_000L) + "ms" +
+                    (batchSize > 0 ? ", batch of " + batchSize : "") +
+                    (error != null ? ", failed" : "") + "): " + template + " " + redact(parameterTypes));
+        }
+    }
+
+    private static String redact(List<String> parameterTypes) {
+        if (parameterTypes.isEmpty()) return "[no params]";
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String type : parameterTypes) {
+            counts.merge(type, 1, Integer::sum);
+        }
+
+        StringJoiner joiner = new StringJoiner(", ", "[" + parameterTypes.size() + " params: ", "]");
+        counts.forEach((type, count) -> joiner.add(count == 1 ? type : count + "x " + type));
+        return joiner.toString();
+    }
+}
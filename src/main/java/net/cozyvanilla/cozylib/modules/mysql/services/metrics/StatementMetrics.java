@@ -0,0 +1,67 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histogram for one SQL template.
+ */
+public final class StatementMetrics {
+    private final String template;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rowsAffected = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedRows = new LongAdder();
+
+    StatementMetrics(@NotNull String template) {
+        this.template = template;
+    }
+
+    void record(long micros, long rows, int batchSize, boolean failed) {
+        latency.record(micros);
+
+        if (failed) errors.increment();
+        if (rows > 0) rowsAffected.add(rows);
+
+        if (batchSize > 0) {
+            batches.increment();
+            batchedRows.add(batchSize);
+        }
+    }
+
+    public @NotNull String getTemplate() {
+        return template;
+    }
+
+    public @NotNull LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getExecutions() {
+        return latency.getCount();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getRowsAffected() {
+        return rowsAffected.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * Gets the average number of statements per {@code executeBatch} call.
+     *
+     * @return the average batch size, or 0 if the template was never batched
+     */
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : batchedRows.sum() / (double) count;
+    }
+}
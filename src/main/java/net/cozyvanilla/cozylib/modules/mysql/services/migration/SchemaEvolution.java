@@ -0,0 +1,383 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.migration;
+
+import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.SqlDialect;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.SqlDialect.AlterAttempt;
+import net.cozyvanilla.cozylib.modules.mysql.services.table.ColumnBuilder;
+import net.cozyvanilla.cozylib.modules.mysql.services.table.DataType;
+import net.cozyvanilla.cozylib.modules.mysql.services.table.TableBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Brings a live table up to its {@link TableBuilder} definition when the server starts.
+ *
+ * <p>The definition is diffed against the live schema and every missing column and index is added
+ * with the cheapest algorithm the backend offers: {@code ALGORITHM=INSTANT} first, then
+ * {@code ALGORITHM=INPLACE, LOCK=NONE}. If the server refuses both, the table is rebuilt the way
+ * {@link UuidMigration} does it: a shadow table is created from the new definition, rows are
+ * copied over in bounded primary key ranges at a throttled rate, rows written meanwhile are caught
+ * up through {@code last_updated} and rows deleted meanwhile are removed from the shadow. The last
+ * catch-up and the {@code RENAME TABLE} swapping the tables run while both tables are write locked,
+ * so nothing written to the original table is left behind. The original table is kept as
+ * {@code <table>_preevolve} so it can be inspected and dropped by hand.
+ *
+ * <p>Each run that changes the table is recorded as the table's next version in
+ * {@value #HISTORY_TABLE}, together with what was changed and the weakest algorithm used. Servers
+ * sharing the database evolve a table one at a time under a named lock, so the second one finds
+ * the table already up to date.
+ */
+public final class SchemaEvolution {
+    public static final String HISTORY_TABLE = "cozylib_schema_history";
+
+    private static final String SHADOW_SUFFIX = "_evolve";
+    private static final String BACKUP_SUFFIX = "_preevolve";
+    private static final String COPY = "COPY";
+    private static final String LOCK_PREFIX = "cozylib_evolve:";
+    private static final int LOCK_NAME_LIMIT = 64;
+    private static final int LOCK_TIMEOUT_SECONDS = 600;
+
+    private final TableBuilder definition;
+    private final String createShadowSql;
+    private final SqlDialect dialect;
+    private final int chunkSize;
+    private final int rowsPerSecond;
+
+    /**
+     * @param definition the table as it should be
+     * @param createShadowSql the CREATE TABLE statement of the shadow table, used if a change has to be copied
+     * @param dialect the dialect of the storage backend
+     * @param chunkSize the number of primary key values copied per chunk
+     * @param rowsPerSecond the copy rate limit
+     */
+    public SchemaEvolution(@NotNull TableBuilder definition,
+                           @NotNull String createShadowSql,
+                           @NotNull SqlDialect dialect,
+                           int chunkSize,
+                           int rowsPerSecond) {
+        this.definition = definition;
+        this.createShadowSql = createShadowSql;
+        this.dialect = dialect;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.rowsPerSecond = Math.max(1, rowsPerSecond);
+    }
+
+    /**
+     * Gets the name of the shadow table a copy of {@code table} is built in.
+     */
+    public static @NotNull String shadowName(@NotNull String table) {
+        return table + SHADOW_SUFFIX;
+    }
+
+    /**
+     * Applies every missing column and index. Must not be called from the main thread.
+     *
+     * @param connection an open connection, left open
+     * @return the recorded version, or 0 if the table already matched its definition
+     * @throws SQLException if a change could not be applied, or another server held the table's
+     *                      lock for too long; changes applied before it are kept
+     */
+    public int run(@NotNull Connection connection) throws SQLException {
+        String table = definition.getTableName();
+
+        // nothing to do on most starts, so the lock is only taken once there is
+        Set<String> columns = dialect.columnNames(connection, table);
+        if (columns.isEmpty() || matchesDefinition(connection, table)) return 0;
+
+        String lock = lockName(table);
+        if (!dialect.acquireLock(connection, lock, LOCK_TIMEOUT_SECONDS)) {
+            throw new SQLException("Timed out waiting for another server to evolve " + table);
+        }
+
+        try {
+            return evolve(connection, table);
+        } finally {
+            dialect.releaseLock(connection, lock);
+        }
+    }
+
+    // private methods
+    private int evolve(Connection connection, String table) throws SQLException {
+        // looked up again, another server may have evolved the table while we waited for the lock
+        Set<String> columns = dialect.columnNames(connection, table);
+        if (columns.isEmpty()) return 0;
+
+        Set<String> indexes = dialect.indexNames(connection, table);
+        List<String> changes = new ArrayList<>();
+        List<List<AlterAttempt>> attempts = new ArrayList<>();
+
+        for (ColumnBuilder column : definition.getColumns()) {
+            if (columns.contains(column.getName().toLowerCase(Locale.ROOT))) continue;
+
+            changes.add("add column " + column.getName());
+            attempts.add(dialect.addColumn(table, column.toSql()));
+        }
+
+        for (TableBuilder.IndexDefinition index : definition.getIndexes()) {
+            if (indexes.contains(index.name().toLowerCase(Locale.ROOT))) continue;
+
+            changes.add("add index " + index.name());
+            attempts.add(dialect.addIndex(table, index.name(), index.columns()));
+        }
+
+        if (changes.isEmpty()) return 0;
+
+        createHistoryTable(connection);
+        Logger.info("Evolving " + table + ": " + String.join(", ", changes));
+
+        String weakest = null;
+        for (List<AlterAttempt> change : attempts) {
+            String algorithm = alter(connection, change);
+
+            if (algorithm == null) {
+                // changed outside of cozylib while we were trying
+                if (matchesDefinition(connection, table)) break;
+
+                copy(connection, table, columns);
+                weakest = COPY;
+                break;
+            }
+
+            if (weakest == null || rank(algorithm) > rank(weakest)) weakest = algorithm;
+        }
+
+        if (weakest == null) return 0;
+
+        int version = record(connection, table, String.join(", ", changes), weakest);
+        Logger.info("Evolved " + table + " to version " + version + " (" + weakest + ")");
+
+        return version;
+    }
+
+    private static String lockName(String table) {
+        String name = LOCK_PREFIX + table;
+        return name.length() <= LOCK_NAME_LIMIT ? name : LOCK_PREFIX + Integer.toHexString(table.hashCode());
+    }
+
+    private @Nullable String alter(Connection connection, List<AlterAttempt> attempts) {
+        for (AlterAttempt attempt : attempts) {
+            try {
+                execute(connection, attempt.sql());
+                return attempt.algorithm();
+            } catch (SQLException e) {
+                Logger.warning("ALGORITHM=" + attempt.algorithm() + " refused: " + e.getMessage());
+            }
+        }
+
+        return null;
+    }
+
+    private boolean matchesDefinition(Connection connection, String table) throws SQLException {
+        Set<String> columns = dialect.columnNames(connection, table);
+        Set<String> indexes = dialect.indexNames(connection, table);
+
+        return definition.getColumns().stream().allMatch(c -> columns.contains(c.getName().toLowerCase(Locale.ROOT)))
+                && definition.getIndexes().stream().allMatch(i -> indexes.contains(i.name().toLowerCase(Locale.ROOT)));
+    }
+
+    private void copy(Connection connection, String table, Set<String> liveColumns) throws SQLException {
+        String shadow = shadowName(table);
+        String backup = table + BACKUP_SUFFIX;
+
+        String swap = dialect.swapTables(table, backup, shadow);
+        if (swap == null) {
+            throw new SQLException("Cannot rebuild " + table + " on this storage backend");
+        }
+
+        List<String> primaryKey = definition.getPrimaryKey();
+        if (primaryKey.isEmpty()) {
+            throw new SQLException("Cannot copy " + table + " in chunks without a primary key");
+        }
+
+        String key = primaryKey.getFirst();
+
+        // the shadow has every defined column, only the ones that exist today can be copied
+        List<String> columns = liveColumns.stream()
+                .filter(c -> c.equals("last_updated") || definition.getColumns().stream()
+                        .anyMatch(d -> d.getName().equalsIgnoreCase(c)))
+                .toList();
+
+        execute(connection, "DROP TABLE IF EXISTS " + shadow);
+        execute(connection, createShadowSql);
+
+        String copy = copyStatement(table, shadow, columns);
+        String upsert = upsertClause(columns);
+        Timestamp copyStart = now(connection);
+
+        Logger.info("Rebuilding " + table + " through " + shadow);
+
+        long copied = 0;
+        Object cursor = null;
+
+        while (true) {
+            Object upper = boundary(connection, table, key, cursor);
+            String range = (cursor == null ? " WHERE 1 = 1" : " WHERE " + key + " > ?") +
+                    (upper == null ? "" : " AND " + key + " <= ?");
+
+            int rows;
+            try (PreparedStatement ps = connection.prepareStatement(copy + range + upsert)) {
+                int index = 1;
+                if (cursor != null) ps.setObject(index++, cursor);
+                if (upper != null) ps.setObject(index, upper);
+
+                rows = ps.executeUpdate();
+            }
+
+            copied += rows;
+
+            // fewer than chunkSize keys remained, the last range was open-ended
+            if (upper == null) break;
+
+            cursor = upper;
+            Logger.info("Copied " + copied + " rows of " + table + " (cursor " + cursor + ")");
+            throttle(rows);
+        }
+
+        // rows written or deleted while we were copying, without blocking writers
+        Timestamp catchUpStart = now(connection);
+        catchUp(connection, copy, upsert, columns, copyStart);
+        prune(connection, table, shadow, primaryKey);
+
+        execute(connection, "DROP TABLE IF EXISTS " + backup);
+
+        // rows written or deleted during the first catch-up, with writers held off until the tables are swapped
+        execute(connection, "LOCK TABLES " + table + " WRITE, " + shadow + " WRITE");
+        try {
+            catchUp(connection, copy, upsert, columns, catchUpStart);
+            prune(connection, table, shadow, primaryKey);
+            execute(connection, swap);
+        } finally {
+            execute(connection, "UNLOCK TABLES");
+        }
+
+        Logger.info("Rebuilt " + table + " (" + copied + " rows), the original table was kept as " + backup);
+    }
+
+    private @Nullable Object boundary(Connection connection, String table, String key, @Nullable Object cursor) throws SQLException {
+        String sql = "SELECT " + key + " FROM " + table + (cursor == null ? "" : " WHERE " + key + " > ?") +
+                " GROUP BY " + key + " ORDER BY " + key + " LIMIT 1 OFFSET ?";
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int index = 1;
+            if (cursor != null) ps.setObject(index++, cursor);
+            ps.setInt(index, chunkSize - 1);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getObject(1) : null;
+            }
+        }
+    }
+
+    private String copyStatement(String from, String to, List<String> columns) {
+        String list = String.join(", ", columns);
+        return "INSERT INTO " + to + " (" + list + ") SELECT " + list + " FROM " + from;
+    }
+
+    private String upsertClause(List<String> columns) {
+        return " ON DUPLICATE KEY UPDATE " + columns.stream()
+                .map(c -> c + " = VALUES(" + c + ")")
+                .collect(Collectors.joining(", "));
+    }
+
+    // without last_updated there is no telling what changed, so every row is copied again
+    private void catchUp(Connection connection, String copy, String upsert, List<String> columns, Timestamp since) throws SQLException {
+        if (!columns.contains("last_updated")) {
+            execute(connection, copy + upsert);
+            return;
+        }
+
+        try (PreparedStatement ps = connection.prepareStatement(copy + " WHERE last_updated >= ?" + upsert)) {
+            ps.setTimestamp(1, since);
+            ps.executeUpdate();
+        }
+    }
+
+    // removes the rows of the shadow table that were deleted from the original since they were copied
+    private void prune(Connection connection, String table, String shadow, List<String> primaryKey) throws SQLException {
+        String joined = primaryKey.stream()
+                .map(k -> shadow + "." + k + " = " + table + "." + k)
+                .collect(Collectors.joining(" AND "));
+
+        execute(connection, "DELETE " + shadow + " FROM " + shadow + " LEFT JOIN " + table + " ON " + joined +
+                " WHERE " + table + "." + primaryKey.getFirst() + " IS NULL");
+    }
+
+    private void createHistoryTable(Connection connection) throws SQLException {
+        TableBuilder history = new TableBuilder(HISTORY_TABLE)
+                .column("table_name", DataType.varchar(64))
+                .column("version", DataType.intType())
+                .column("description", DataType.varchar(1024))
+                .column("algorithm", DataType.varchar(16))
+                .column("applied_at", DataType.timestamp()).nullable()
+                .primaryKey("table_name", "version");
+
+        for (String sql : history.build(dialect)) {
+            execute(connection, sql);
+        }
+    }
+
+    private int record(Connection connection, String table, String description, @Nullable String algorithm) throws SQLException {
+        int version;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT COALESCE(MAX(version), 0) FROM " + HISTORY_TABLE + " WHERE table_name = ?")) {
+            ps.setString(1, table);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                version = rs.getInt(1) + 1;
+            }
+        }
+
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO " + HISTORY_TABLE + " (table_name, version, description, algorithm, applied_at) " +
+                        "VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)")) {
+            ps.setString(1, table);
+            ps.setInt(2, version);
+            ps.setString(3, description);
+            ps.setString(4, algorithm == null ? "NONE" : algorithm);
+            ps.executeUpdate();
+        }
+
+        return version;
+    }
+
+    private int rank(String algorithm) {
+        return switch (algorithm) {
+            case "INSTANT" -> 0;
+            case "INPLACE" -> 1;
+            default -> 2;
+        };
+    }
+
+    private Timestamp now(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT CURRENT_TIMESTAMP")) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+
+    private void execute(Connection connection, String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private void throttle(int rows) {
+        long sleep = rows * 1000L / rowsPerSecond;
+        if (sleep <= 0) return;
+
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
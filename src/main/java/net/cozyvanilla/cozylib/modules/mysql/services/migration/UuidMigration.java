@@ -0,0 +1,304 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.migration;
+
+import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.modules.mysql.abstracts.AbstractMySQL;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ConnectionSupplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Converts a table's CHAR(36) uuid column to BINARY(16) while the server keeps running, and
+ * optionally a legacy column to the id it maps to in a lookup table, see {@link #convert}.
+ *
+ * <p>The repository's own column definitions are used to create a shadow table, rows are copied
+ * over in bounded uuid ranges with the uuid converted by {@code UNHEX(REPLACE(uuid, '-', ''))},
+ * and rows written during the copy are caught up through {@code last_updated}. The last delta
+ * and the {@code RENAME TABLE} swapping the tables run while both tables are write locked, so
+ * nothing written to the original table is left behind. The original table is kept as
+ * {@code <table>_char36} so it can be inspected and dropped by hand.
+ *
+ * <p>Statements bound as CHAR(36) before the swap and run after it fail and are logged, which
+ * makes every server look up the column type again; buffered writes are retried on their next flush.
+ */
+public final class UuidMigration {
+    private static final String SHADOW_SUFFIX = "_uuidmig";
+    private static final String BACKUP_SUFFIX = "_char36";
+
+    private final AbstractMySQL repository;
+    private final ConnectionSupplier connections;
+    private final String uuidColumn;
+    private final int chunkSize;
+    private final int rowsPerSecond;
+
+    private @Nullable Lookup lookup;
+
+    // a legacy column replaced by the id a lookup table holds for its value, under the same column names
+    private record Lookup(String legacyColumn, String column, String table) {}
+
+    public UuidMigration(@NotNull AbstractMySQL repository,
+                         @NotNull ConnectionSupplier connections,
+                         @NotNull String uuidColumn,
+                         int chunkSize,
+                         int rowsPerSecond) {
+        this.repository = repository;
+        this.connections = connections;
+        this.uuidColumn = uuidColumn;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.rowsPerSecond = Math.max(1, rowsPerSecond);
+    }
+
+    /**
+     * Also converts a legacy column the table no longer defines, e.g. {@code data_name} to the
+     * interned {@code data_id}. The lookup table must hold both columns under the same names and
+     * create the id when only the legacy value is inserted; every legacy value is registered in it
+     * before its rows are copied.
+     *
+     * @param legacyColumn the column of the original table, e.g. {@code data_name}
+     * @param column the column of the migrated table, e.g. {@code data_id}
+     * @param lookupTable the table mapping one to the other
+     * @return this migration
+     */
+    public @NotNull UuidMigration convert(@NotNull String legacyColumn, @NotNull String column, @NotNull String lookupTable) {
+        this.lookup = new Lookup(legacyColumn, column, lookupTable);
+        return this;
+    }
+
+    /**
+     * Runs the migration on the calling thread. Must not be called from the main thread.
+     *
+     * @return the number of rows copied, or 0 if the table was already converted
+     * @throws SQLException if any step fails; the original table is left untouched in that case
+     */
+    public long run() throws SQLException {
+        String table = repository.getTableName();
+        String shadow = table + SHADOW_SUFFIX;
+        String backup = table + BACKUP_SUFFIX;
+
+        try (Connection connection = connections.getConnection()) {
+            List<String> columns = columnsOf(connection, table);
+            if (columns.isEmpty() || !columns.contains(uuidColumn)) {
+                throw new SQLException("Column " + uuidColumn + " not found on " + table);
+            }
+
+            boolean binary = "binary".equals(typeOf(connection, table, uuidColumn));
+            Lookup converted = lookup != null && columns.contains(lookup.legacyColumn()) ? lookup : null;
+
+            // nothing left to convert, e.g. migrated by another server
+            if (binary && converted == null) {
+                repository.markBinaryUuids(connection);
+                return 0;
+            }
+
+            execute(connection, "DROP TABLE IF EXISTS " + shadow);
+            execute(connection, repository.buildCreateTableSql(shadow));
+
+            Copy copy = new Copy(table, shadow, columnsOf(connection, shadow), columns, binary, converted);
+            Timestamp copyStart = now(connection);
+
+            Logger.info("Migrating " + table + " to " + describe(binary, converted));
+
+            long copied = 0;
+            Object cursor = binary ? new byte[0] : "";
+
+            register(connection, copy, null);
+
+            try (PreparedStatement next = connection.prepareStatement(
+                    "SELECT " + uuidColumn + " FROM " + table + " WHERE " + uuidColumn + " > ? " +
+                            "GROUP BY " + uuidColumn + " ORDER BY " + uuidColumn + " LIMIT 1 OFFSET ?");
+                 PreparedStatement range = connection.prepareStatement(
+                         copy.sql() + " WHERE " + copy.source(uuidColumn) + " > ? AND " +
+                                 copy.source(uuidColumn) + " <= ?" + copy.upsert());
+                 PreparedStatement tail = connection.prepareStatement(
+                         copy.sql() + " WHERE " + copy.source(uuidColumn) + " > ?" + copy.upsert())) {
+
+                while (true) {
+                    next.setObject(1, cursor);
+                    next.setInt(2, chunkSize - 1);
+
+                    Object upper;
+                    try (ResultSet rs = next.executeQuery()) {
+                        upper = rs.next() ? rs.getObject(1) : null;
+                    }
+
+                    // fewer than chunkSize players remain, copy the rest in one go
+                    if (upper == null) {
+                        tail.setObject(1, cursor);
+                        copied += tail.executeUpdate();
+                        break;
+                    }
+
+                    range.setObject(1, cursor);
+                    range.setObject(2, upper);
+                    int rows = range.executeUpdate();
+                    copied += rows;
+                    cursor = upper;
+
+                    Logger.info("Migrated " + copied + " rows of " + table);
+                    throttle(rows);
+                }
+            }
+
+            // rows written while we were copying, without blocking writers
+            Timestamp catchUpStart = now(connection);
+            catchUp(connection, copy, copyStart);
+
+            execute(connection, "DROP TABLE IF EXISTS " + backup);
+
+            // rows written during the first catch-up, with writers held off until the tables are swapped
+            execute(connection, "LOCK TABLES " + table + " WRITE, " + shadow + " WRITE" +
+                    (converted == null ? "" : ", " + converted.table() + " WRITE"));
+            try {
+                catchUp(connection, copy, catchUpStart);
+                execute(connection, "RENAME TABLE " + table + " TO " + backup + ", " + shadow + " TO " + table);
+            } finally {
+                execute(connection, "UNLOCK TABLES");
+            }
+
+            repository.markBinaryUuids(connection);
+
+            Logger.info("Migrated " + table + " to " + describe(binary, converted) + " (" + copied +
+                    " rows), the original table was kept as " + backup);
+
+            return copied;
+        }
+    }
+
+    // private methods
+    private List<String> columnsOf(Connection connection, String table) throws SQLException {
+        String sql = "SELECT COLUMN_NAME FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? ORDER BY ORDINAL_POSITION";
+
+        List<String> columns = new ArrayList<>();
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, table);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(rs.getString(1));
+                }
+            }
+        }
+
+        return columns;
+    }
+
+    private String typeOf(Connection connection, String table, String column) throws SQLException {
+        String sql = "SELECT DATA_TYPE FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?";
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, table);
+            ps.setString(2, column);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1).toLowerCase() : null;
+            }
+        }
+    }
+
+    // gives every legacy value written since the given time an id, so the join drops no row
+    private void register(Connection connection, Copy copy, @Nullable Timestamp since) throws SQLException {
+        if (copy.lookup == null) return;
+
+        Lookup converted = copy.lookup;
+        String sql = "INSERT IGNORE INTO " + converted.table() + " (" + converted.legacyColumn() + ") " +
+                "SELECT DISTINCT " + copy.source(converted.legacyColumn()) + " FROM " + copy.from +
+                (since == null ? "" : " WHERE " + copy.source("last_updated") + " >= ?");
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            if (since != null) ps.setTimestamp(1, since);
+            ps.executeUpdate();
+        }
+    }
+
+    private void catchUp(Connection connection, Copy copy, Timestamp since) throws SQLException {
+        if (!copy.targets.contains("last_updated")) return;
+
+        register(connection, copy, since);
+
+        try (PreparedStatement ps = connection.prepareStatement(
+                copy.sql() + " WHERE " + copy.source("last_updated") + " >= ?" + copy.upsert())) {
+            ps.setTimestamp(1, since);
+            ps.executeUpdate();
+        }
+    }
+
+    private String describe(boolean binary, @Nullable Lookup converted) {
+        String uuids = binary ? null : uuidColumn + " as BINARY(16)";
+        String ids = converted == null ? null : converted.column() + " from " + converted.table();
+
+        return uuids == null ? ids : ids == null ? uuids : uuids + " and " + ids;
+    }
+
+    private Timestamp now(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT CURRENT_TIMESTAMP")) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+
+    private void execute(Connection connection, String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private void throttle(int rows) {
+        long sleep = rows * 1000L / rowsPerSecond;
+        if (sleep <= 0) return;
+
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // the INSERT ... SELECT filling the shadow table, with the columns it shares with the original converted
+    private final class Copy {
+        private final String from;
+        private final List<String> targets;
+        private final @Nullable Lookup lookup;
+        private final String sql;
+
+        private Copy(String from, String to, List<String> targets, List<String> sources, boolean binary, @Nullable Lookup lookup) {
+            this.from = from;
+            this.targets = targets.stream()
+                    .filter(c -> sources.contains(c) || (lookup != null && c.equals(lookup.column())))
+                    .toList();
+            this.lookup = lookup;
+
+            String selected = this.targets.stream()
+                    .map(c -> c.equals(uuidColumn) && !binary ? "UNHEX(REPLACE(" + source(c) + ", '-', ''))"
+                            : lookup != null && c.equals(lookup.column()) ? lookup.table() + "." + c
+                            : source(c))
+                    .collect(Collectors.joining(", "));
+
+            this.sql = "INSERT INTO " + to + " (" + String.join(", ", this.targets) + ") SELECT " + selected +
+                    " FROM " + from + (lookup == null ? "" : " JOIN " + lookup.table() + " ON " +
+                    lookup.table() + "." + lookup.legacyColumn() + " = " + source(lookup.legacyColumn()));
+        }
+
+        private String sql() {
+            return sql;
+        }
+
+        private String source(String column) {
+            return from + "." + column;
+        }
+
+        private String upsert() {
+            return " ON DUPLICATE KEY UPDATE " + targets.stream()
+                    .filter(c -> !c.equals(uuidColumn))
+                    .map(c -> c + " = VALUES(" + c + ")")
+                    .collect(Collectors.joining(", "));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.resilience;
+
+/**
+ * AIMD limit on how many calls may be in flight at once.
+ *
+ * <p>Every call finishing below the latency target grows the limit by {@code 1 / limit}, roughly
+ * one extra slot per round of calls. A failed call or one slower than the target shrinks it by
+ * {@link #BACKOFF}, so during a brownout the limit collapses within a few rounds and excess calls
+ * fail fast instead of queueing behind the connection timeout.
+ */
+public final class AdaptiveLimiter {
+    private static final double BACKOFF = 0.7;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+
+    private double limit;
+    private int inFlight;
+
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, long latencyTargetNanos) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyTargetNanos = latencyTargetNanos;
+        this.limit = Math.clamp(initialLimit, this.minLimit, this.maxLimit);
+    }
+
+    /**
+     * Takes an in-flight slot if the current limit allows it.
+     *
+     * @return true if the call may proceed, in which case {@link #release} must follow
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) return false;
+
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Returns a slot and adapts the limit to the call's outcome.
+     *
+     * @param latencyNanos how long the call took
+     * @param failed whether the call failed
+     */
+    public synchronized void release(long latencyNanos, boolean failed) {
+        inFlight--;
+
+        if (failed || latencyNanos > latencyTargetNanos) {
+            limit = Math.max(minLimit, limit * BACKOFF);
+        } else if (inFlight + 1 >= (int) limit) {
+            // only grow while the limit is actually being used
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    /**
+     * Returns a slot of a call that never ran, leaving the limit unchanged.
+     */
+    public synchronized void cancel() {
+        inFlight--;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
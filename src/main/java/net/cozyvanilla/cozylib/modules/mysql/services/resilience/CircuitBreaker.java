@@ -0,0 +1,136 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.resilience;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Count-based circuit breaker.
+ *
+ * <p>While {@link State#CLOSED} the outcomes of the last {@code windowSize} calls are kept; once
+ * the window is full and the failure rate reaches the threshold the circuit opens and every call
+ * is refused for {@code openMillis}. After that up to {@code probes} calls are let through in
+ * {@link State#HALF_OPEN}: if they all succeed the circuit closes again, one failure reopens it.
+ */
+public final class CircuitBreaker {
+    private final int windowSize;
+    private final double failureRate;
+    private final long openNanos;
+    private final int probes;
+    private final BiConsumer<State, State> listener;
+
+    private final boolean[] window;
+    private int position;
+    private int recorded;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+    private long transitions;
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * @param windowSize how many recent calls the failure rate is computed over
+     * @param failureRate the share of failed calls, between 0 and 1, that opens the circuit
+     * @param openMillis how long the circuit stays open before probing
+     * @param probes how many trial calls must succeed to close the circuit
+     * @param listener notified with the old and new state on every transition, under the breaker's lock
+     */
+    public CircuitBreaker(int windowSize, double failureRate, long openMillis, int probes,
+                          @NotNull BiConsumer<State, State> listener) {
+        this.windowSize = Math.max(1, windowSize);
+        this.failureRate = Math.clamp(failureRate, 0.0, 1.0);
+        this.openNanos = Math.max(0L, openMillis) * 1_000_000L;
+        this.probes = Math.max(1, probes);
+        this.listener = listener;
+        this.window = new boolean[this.windowSize];
+    }
+
+    /**
+     * Asks whether a call may run now.
+     *
+     * @return true if the call may proceed, in which case {@link #record} must follow
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) return false;
+            transition(State.HALF_OPEN);
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= probes) return false;
+            probesStarted++;
+        }
+
+        return true;
+    }
+
+    /**
+     * Records the outcome of a call admitted by {@link #tryAcquire()}.
+     *
+     * @param failed whether the call failed
+     */
+    public synchronized void record(boolean failed) {
+        switch (state) {
+            case HALF_OPEN -> {
+                if (failed) {
+                    open();
+                } else if (++probesSucceeded >= probes) {
+                    transition(State.CLOSED);
+                }
+            }
+            case CLOSED -> {
+                if (recorded == windowSize && window[position]) failures--;
+                window[position] = failed;
+                if (failed) failures++;
+
+                position = (position + 1) % windowSize;
+                recorded = Math.min(windowSize, recorded + 1);
+
+                if (recorded == windowSize && failures >= Math.ceil(windowSize * failureRate)) {
+                    open();
+                }
+            }
+            // calls admitted before the circuit opened do not change anything
+            case OPEN -> {}
+        }
+    }
+
+    public synchronized @NotNull State getState() {
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return recorded == 0 ? 0 : failures / (double) recorded;
+    }
+
+    public synchronized long getTransitions() {
+        return transitions;
+    }
+
+    // private methods
+    private void open() {
+        openedAt = System.nanoTime();
+        transition(State.OPEN);
+    }
+
+    private void transition(State next) {
+        State previous = state;
+        state = next;
+        transitions++;
+
+        probesStarted = 0;
+        probesSucceeded = 0;
+
+        if (next == State.CLOSED) {
+            position = 0;
+            recorded = 0;
+            failures = 0;
+        }
+
+        listener.accept(previous, next);
+    }
+}
@@ -0,0 +1,222 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.resilience;
+
+import net.cozyvanilla.cozylib.Config;
+import net.cozyvanilla.cozylib.common.enums.MessageType;
+import net.cozyvanilla.cozylib.modules.mysql.services.metrics.LatencyHistogram;
+import net.cozyvanilla.cozylib.modules.util.Console;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive concurrency limit plus circuit breaker in front of one repository's async calls.
+ *
+ * <p>Calls beyond the {@link AdaptiveLimiter}'s current limit, or made while the
+ * {@link CircuitBreaker} is open, fail immediately with a {@link RejectedExecutionException}
+ * instead of waiting out the connection timeout. Writes are never refused: they run unguarded
+ * instead, so a save is slowed down by a struggling database but not dropped. A call counts as
+ * failed when it throws, or when it reported a database error through {@link #markFailed()} even
+ * if the repository swallowed it. Latency is measured from when the work starts running, so time
+ * spent queued for a worker does not shrink the limit. Circuit transitions are printed to the console.
+ */
+public final class RepositoryGuard {
+    private static final String PREFIX = "[CozyLib-MySQL]";
+    private static final Map<String, RepositoryGuard> REGISTRY = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Call> CURRENT = new ThreadLocal<>();
+
+    private final String name;
+    private final AdaptiveLimiter limiter;
+    private final CircuitBreaker breaker;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+
+    public record Stats(String name, CircuitBreaker.State state, int limit, int inFlight, long calls,
+                        long failures, long limited, long shortCircuited, double failureRate,
+                        long transitions, double p99Millis) {}
+
+    private static final class Call {
+        private volatile boolean failed;
+        private volatile long elapsedNanos;
+    }
+
+    private RepositoryGuard(String name, Config.ResilienceConfig config) {
+        this.name = name;
+        this.limiter = new AdaptiveLimiter(
+                config.initialLimit(),
+                config.minLimit(),
+                config.maxLimit(),
+                config.latencyTargetMillis() * 1_000_000L);
+        this.breaker = new CircuitBreaker(
+                config.windowSize(),
+                config.failureRate(),
+                config.openMillis(),
+                config.probes(),
+                this::onTransition);
+    }
+
+    /**
+     * Gets the guard of a repository, creating it with the limits from config.yml.
+     *
+     * @param name the repository name, usually the table name
+     * @return the guard, or null if the resilience layer is disabled
+     */
+    public static @Nullable RepositoryGuard of(@NotNull String name) {
+        Config.ResilienceConfig config = Config.getResilienceConfig();
+        if (!config.enabled()) return null;
+
+        return REGISTRY.computeIfAbsent(name, key -> new RepositoryGuard(key, config));
+    }
+
+    public static @NotNull Collection<RepositoryGuard> registered() {
+        return List.copyOf(REGISTRY.values());
+    }
+
+    /**
+     * Marks the guarded call running on this thread as failed. Repositories catch and log their
+     * SQL errors, so the connection helpers report them here for the breaker to see.
+     */
+    public static void markFailed() {
+        Call call = CURRENT.get();
+        if (call != null) call.failed = true;
+    }
+
+    /**
+     * Submits work if the limiter and breaker allow it.
+     *
+     * @param submitter hands the wrapped work to an executor
+     * @param work the blocking work
+     * @param <T> the supplied value type
+     * @return the submitted future, or a failed one if the call was refused
+     */
+    public <T> @NotNull CompletableFuture<T> submit(@NotNull Function<Supplier<T>, CompletableFuture<T>> submitter,
+                                                    @NotNull Supplier<T> work) {
+        return submit(submitter, work, false);
+    }
+
+    /**
+     * Submits work if the limiter and breaker allow it. Writes they refuse are submitted anyway,
+     * without being counted.
+     *
+     * @param submitter hands the wrapped work to an executor
+     * @param work the blocking work
+     * @param write whether the work saves data that must not be dropped
+     * @param <T> the supplied value type
+     * @return the submitted future, or a failed one if a read was refused
+     */
+    public <T> @NotNull CompletableFuture<T> submit(@NotNull Function<Supplier<T>, CompletableFuture<T>> submitter,
+                                                    @NotNull Supplier<T> work,
+                                                    boolean write) {
+        if (!limiter.tryAcquire()) {
+            limited.increment();
+            if (write) return unguarded(submitter, work);
+
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    name + " is at its concurrency limit of " + limiter.getLimit()));
+        }
+
+        if (!breaker.tryAcquire()) {
+            limiter.cancel();
+            shortCircuited.increment();
+            if (write) return unguarded(submitter, work);
+
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    "Circuit of " + name + " is open, failing fast"));
+        }
+
+        Call call = new Call();
+
+        CompletableFuture<T> future;
+        try {
+            future = submitter.apply(() -> run(call, work));
+        } catch (RuntimeException e) {
+            finish(call, true);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return future.whenComplete((result, error) -> finish(call, error != null || call.failed));
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    public @NotNull CircuitBreaker.State getState() {
+        return breaker.getState();
+    }
+
+    public @NotNull Stats getStats() {
+        return new Stats(
+                name,
+                breaker.getState(),
+                limiter.getLimit(),
+                limiter.getInFlight(),
+                calls.sum(),
+                failures.sum(),
+                limited.sum(),
+                shortCircuited.sum(),
+                breaker.getFailureRate(),
+                breaker.getTransitions(),
+                latency.percentile(99) / 1_000.0);
+    }
+
+    // private methods
+    private static <T> CompletableFuture<T> unguarded(Function<Supplier<T>, CompletableFuture<T>> submitter, Supplier<T> work) {
+        try {
+            return submitter.apply(work);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static <T> T run(Call call, Supplier<T> work) {
+        Call previous = CURRENT.get();
+        CURRENT.set(call);
+        long start = System.nanoTime();
+
+        try {
+            return work.get();
+        } catch (RuntimeException e) {
+            call.failed = true;
+            throw e;
+        } finally {
+            call.elapsedNanos = System.nanoTime() - start;
+            CURRENT.set(previous);
+        }
+    }
+
+    // a call the executor refused never ran, so it adds no latency
+    private void finish(Call call, boolean failed) {
+        long elapsed = call.elapsedNanos;
+
+        calls.increment();
+        if (failed) failures.increment();
+        latency.record(elapsed / 1_000L);
+
+        limiter.release(elapsed, failed);
+        breaker.record(failed);
+    }
+
+    private void onTransition(CircuitBreaker.State previous, CircuitBreaker.State next) {
+        MessageType type = next == CircuitBreaker.State.CLOSED ? MessageType.INFO : MessageType.WARNING;
+        String reason = switch (next) {
+            case OPEN -> String.format("%.0f%% of recent calls failed, failing fast", breaker.getFailureRate() * 100);
+            case HALF_OPEN -> "probing for recovery";
+            case CLOSED -> "recovered";
+        };
+
+        Console.print(PREFIX, "Circuit of " + name + " " + previous + " -> " + next + ": " + reason, type);
+    }
+}
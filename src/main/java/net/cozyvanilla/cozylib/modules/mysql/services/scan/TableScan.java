@@ -0,0 +1,432 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.scan;
+
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ConnectionSupplier;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ResultSetMapper;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.SqlDialect;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates a whole table in constant memory, one mapped row at a time.
+ *
+ * <p>By default the scan runs a single query on one connection with the dialect's streaming
+ * fetch size, so the driver hands rows over as they arrive instead of buffering the result. That
+ * keeps the connection busy for the whole scan, and MySQL aborts a stream whose reader stalls for
+ * longer than {@code net_write_timeout}; scans doing slow work per row should switch to
+ * {@link #keyset keyset pagination}, which reads pages of {@link #pageSize} rows ordered by a
+ * unique key and borrows a connection only while a page is read.
+ *
+ * <p>A scan over a sharded table reads every shard at once, each on its own virtual thread, and
+ * merges the rows through a small buffer as they arrive. Rows then come in no particular order
+ * across shards, but the action is still called from the scanning thread only.
+ *
+ * <p>Scans block and must not run on the main thread.
+ *
+ * @param <T> the mapped row type
+ */
+public final class TableScan<T> {
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final int MERGE_BUFFER = 1024;
+    private static final Object END_OF_SHARD = new Object();
+
+    private final List<ConnectionSupplier> shards;
+    private final SqlDialect dialect;
+    private final String table;
+    private final String columns;
+    private final ResultSetMapper<T> mapper;
+
+    private String where;
+    private List<Object> parameters = List.of();
+    private List<String> keyColumns = List.of();
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    /**
+     * @param connections where each query borrows its connection
+     * @param dialect the dialect deciding the streaming fetch size
+     * @param table the table to scan
+     * @param columns the comma separated select list handed to the mapper
+     * @param mapper maps the current row
+     */
+    public TableScan(@NotNull ConnectionSupplier connections,
+                     @NotNull SqlDialect dialect,
+                     @NotNull String table,
+                     @NotNull String columns,
+                     @NotNull ResultSetMapper<T> mapper) {
+        this(List.of(connections), dialect, table, columns, mapper);
+    }
+
+    /**
+     * @param shards where each shard's queries borrow their connection, scanned in parallel
+     * @param dialect the dialect deciding the streaming fetch size
+     * @param table the table to scan
+     * @param columns the comma separated select list handed to the mapper
+     * @param mapper maps the current row, from several threads at once when there are several shards
+     */
+    public TableScan(@NotNull List<ConnectionSupplier> shards,
+                     @NotNull SqlDialect dialect,
+                     @NotNull String table,
+                     @NotNull String columns,
+                     @NotNull ResultSetMapper<T> mapper) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("a scan needs at least one shard");
+        }
+
+        this.shards = List.copyOf(shards);
+        this.dialect = dialect;
+        this.table = table;
+        this.columns = columns;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Restricts the scan to rows matching a condition.
+     *
+     * @param condition the condition, without {@code WHERE}
+     * @param parameters values bound to the condition's placeholders, in order
+     * @return this scan
+     */
+    public @NotNull TableScan<T> where(@NotNull String condition, @NotNull Object... parameters) {
+        this.where = condition;
+        this.parameters = List.of(parameters);
+        return this;
+    }
+
+    /**
+     * Switches to keyset pagination over a unique key: each page continues after the last key of
+     * the previous one, so no page is ever skipped over with {@code OFFSET}.
+     *
+     * @param keyColumns the columns of a unique key, most significant first
+     * @return this scan
+     */
+    public @NotNull TableScan<T> keyset(@NotNull String... keyColumns) {
+        if (keyColumns.length == 0) {
+            throw new IllegalArgumentException("keyset pagination needs at least one key column");
+        }
+
+        this.keyColumns = List.of(keyColumns);
+        return this;
+    }
+
+    /**
+     * Sets how many rows a keyset page reads.
+     *
+     * @param pageSize the rows per page
+     * @return this scan
+     */
+    public @NotNull TableScan<T> pageSize(int pageSize) {
+        this.pageSize = Math.max(1, pageSize);
+        return this;
+    }
+
+    /**
+     * Runs the scan, handing every row to the action as it is read.
+     *
+     * @param action receives each mapped row
+     * @return the number of rows scanned
+     * @throws SQLException if a query fails
+     */
+    public long forEach(@NotNull Consumer<? super T> action) throws SQLException {
+        long rows = 0;
+
+        try (Cursor<T> cursor = open()) {
+            while (cursor.advance()) {
+                action.accept(cursor.current());
+                rows++;
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * Runs the scan lazily as a stream. The stream holds database resources and must be closed,
+     * ideally with try-with-resources. SQL errors surface as {@link IllegalStateException}.
+     *
+     * @return a sequential stream of mapped rows
+     */
+    public @NotNull Stream<T> stream() {
+        Cursor<T> cursor = open();
+
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!cursor.advance()) return false;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Failed to scan " + table, e);
+                }
+
+                action.accept(cursor.current());
+                return true;
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                cursor.close();
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to close the scan of " + table, e);
+            }
+        });
+    }
+
+    // private methods
+    private Cursor<T> open() {
+        return shards.size() == 1 ? open(shards.getFirst()) : new MergingCursor();
+    }
+
+    private Cursor<T> open(ConnectionSupplier connections) {
+        return keyColumns.isEmpty() ? new StreamingCursor(connections) : new KeysetCursor(connections);
+    }
+
+    private interface Cursor<T> extends AutoCloseable {
+        boolean advance() throws SQLException;
+
+        T current();
+
+        @Override
+        void close() throws SQLException;
+    }
+
+    private final class StreamingCursor implements Cursor<T> {
+        private final ConnectionSupplier connections;
+        private Connection connection;
+        private PreparedStatement statement;
+        private ResultSet resultSet;
+        private boolean started;
+        private T current;
+
+        private StreamingCursor(ConnectionSupplier connections) {
+            this.connections = connections;
+        }
+
+        @Override
+        public boolean advance() throws SQLException {
+            if (resultSet == null) {
+                if (started) return false;
+                started = true;
+                start();
+            }
+
+            if (!resultSet.next()) {
+                close();
+                return false;
+            }
+
+            current = mapper.fromResultSet(resultSet);
+            return true;
+        }
+
+        @Override
+        public T current() {
+            return current;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            // a drained streaming result set must be closed before the connection can be reused
+            try (Connection ignored = connection; PreparedStatement ignored2 = statement; ResultSet ignored3 = resultSet) {
+                connection = null;
+                statement = null;
+                resultSet = null;
+            }
+        }
+
+        private void start() throws SQLException {
+            String sql = "SELECT " + columns + " FROM " + table + (where == null ? "" : " WHERE " + where);
+
+            connection = connections.getConnection();
+
+            try {
+                statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(dialect.streamingFetchSize());
+                bind(statement, parameters, 1);
+                resultSet = statement.executeQuery();
+            } catch (SQLException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+    }
+
+    private final class KeysetCursor implements Cursor<T> {
+        private final ConnectionSupplier connections;
+        private final ArrayDeque<T> page = new ArrayDeque<>();
+        private List<Object> lastKey;
+        private boolean exhausted;
+        private T current;
+
+        private KeysetCursor(ConnectionSupplier connections) {
+            this.connections = connections;
+        }
+
+        @Override
+        public boolean advance() throws SQLException {
+            if (page.isEmpty() && !exhausted) {
+                readPage();
+            }
+
+            current = page.poll();
+            return current != null;
+        }
+
+        @Override
+        public T current() {
+            return current;
+        }
+
+        @Override
+        public void close() {
+            page.clear();
+            exhausted = true;
+        }
+
+        private void readPage() throws SQLException {
+            String keys = String.join(", ", keyColumns);
+            List<String> conditions = new ArrayList<>(2);
+            if (where != null) conditions.add("(" + where + ")");
+            if (lastKey != null) {
+                conditions.add("(" + keys + ") > (" + String.join(", ", Collections.nCopies(keyColumns.size(), "?")) + ")");
+            }
+
+            // key columns are appended so the mapper's column indexes stay untouched
+            String sql = "SELECT " + columns + ", " + keys + " FROM " + table +
+                    (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions)) +
+                    " ORDER BY " + keys + " LIMIT ?";
+
+            try (Connection connection = connections.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(sql)) {
+
+                int index = bind(statement, parameters, 1);
+                if (lastKey != null) index = bind(statement, lastKey, index);
+                statement.setInt(index, pageSize);
+
+                try (ResultSet rs = statement.executeQuery()) {
+                    int keyOffset = rs.getMetaData().getColumnCount() - keyColumns.size();
+                    int read = 0;
+
+                    Object[] key = new Object[keyColumns.size()];
+
+                    while (rs.next()) {
+                        page.add(mapper.fromResultSet(rs));
+                        read++;
+
+                        for (int i = 0; i < key.length; i++) {
+                            key[i] = rs.getObject(keyOffset + i + 1);
+                        }
+                    }
+
+                    if (read > 0) lastKey = Arrays.asList(key);
+
+                    exhausted = read < pageSize;
+                }
+            }
+        }
+    }
+
+    private final class MergingCursor implements Cursor<T> {
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(MERGE_BUFFER);
+        private volatile boolean closed;
+        private int running = -1;
+        private T current;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean advance() throws SQLException {
+            if (running < 0) start();
+
+            while (running > 0 && !closed) {
+                Object next;
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new SQLException("Interrupted while scanning " + table, e);
+                }
+
+                if (next == END_OF_SHARD) {
+                    running--;
+                    continue;
+                }
+
+                if (next instanceof Failure failure) {
+                    close();
+                    if (failure.error() instanceof SQLException e) throw e;
+                    throw (RuntimeException) failure.error();
+                }
+
+                current = (T) next;
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public T current() {
+            return current;
+        }
+
+        @Override
+        public void close() {
+            // readers see the flag within one offer timeout and release their connections
+            closed = true;
+            queue.clear();
+        }
+
+        private void start() {
+            running = shards.size();
+
+            for (int i = 0; i < shards.size(); i++) {
+                ConnectionSupplier shard = shards.get(i);
+
+                Thread.ofVirtual().name("CozyLib-Scan-" + table + "-" + i).start(() -> {
+                    try (Cursor<T> cursor = open(shard)) {
+                        while (!closed && cursor.advance()) {
+                            if (!put(cursor.current())) return;
+                        }
+                    } catch (SQLException | RuntimeException e) {
+                        put(new Failure(e));
+                        return;
+                    }
+
+                    put(END_OF_SHARD);
+                });
+            }
+        }
+
+        private boolean put(Object value) {
+            try {
+                while (!closed) {
+                    if (queue.offer(value, 100, TimeUnit.MILLISECONDS)) return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return false;
+        }
+    }
+
+    private record Failure(Exception error) {}
+
+    private static int bind(PreparedStatement statement, List<Object> values, int index) throws SQLException {
+        for (Object value : values) {
+            statement.setObject(index++, value);
+        }
+
+        return index;
+    }
+}
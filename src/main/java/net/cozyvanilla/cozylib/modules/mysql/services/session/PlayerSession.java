@@ -0,0 +1,155 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.session;
+
+import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.PlayerRepository;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Everything the registered repositories hold for one player, loaded before the player joins.
+ *
+ * <p>A session is created during {@code AsyncPlayerPreLoginEvent} and is complete by the time the
+ * join event fires, so code running on join never has to deal with data that is not loaded yet.
+ *
+ * <p>Changed data is marked dirty with {@link #set} or {@link #markDirty} and written back by the
+ * {@link SessionLoader} in the background, when the player quits and on a fixed interval. After a
+ * quit the session stays in memory for the grace period, and a player rejoining within it gets the
+ * same session back without reading anything again.
+ */
+public final class PlayerSession {
+    private final UUID uuid;
+    private final String name;
+    private final long loadedAt;
+    private final long loadMillis;
+    private final Map<SessionKey<?>, Object> values = new ConcurrentHashMap<>();
+    private final Set<SessionKey<?>> dirty = ConcurrentHashMap.newKeySet();
+
+    PlayerSession(UUID uuid, String name, long loadMillis, Map<SessionKey<?>, Object> values) {
+        this.uuid = uuid;
+        this.name = name;
+        this.loadedAt = System.currentTimeMillis();
+        this.loadMillis = loadMillis;
+        this.values.putAll(values);
+    }
+
+    /**
+     * Gets the data a repository loaded for this player. Players without a row got a freshly
+     * created one.
+     *
+     * @param key the key returned when the repository was registered
+     * @return the player's data
+     * @throws IllegalArgumentException if the repository was registered after this session was loaded
+     */
+    public <T> @NotNull T get(@NotNull SessionKey<T> key) {
+        Object value = values.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException(key.name() + " was not loaded for " + name);
+        }
+
+        @SuppressWarnings("unchecked")
+        T typed = (T) value;
+        return typed;
+    }
+
+    /**
+     * Replaces a repository's data and marks it for writing.
+     */
+    public <T> void set(@NotNull SessionKey<T> key, @NotNull T value) {
+        values.put(key, value);
+        dirty.add(key);
+    }
+
+    /**
+     * Marks data that was changed in place for writing.
+     */
+    public void markDirty(@NotNull SessionKey<?> key) {
+        if (values.containsKey(key)) dirty.add(key);
+    }
+
+    public boolean has(@NotNull SessionKey<?> key) {
+        return values.containsKey(key);
+    }
+
+    public boolean isDirty() {
+        return !dirty.isEmpty();
+    }
+
+    public @NotNull UUID getUuid() {
+        return uuid;
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * Gets how long loading every repository took, in milliseconds.
+     */
+    public long getLoadMillis() {
+        return loadMillis;
+    }
+
+    void attach(Map<SessionKey<?>, Object> loaded) {
+        loaded.forEach(values::putIfAbsent);
+    }
+
+    /**
+     * Writes every dirty repository's data through its repository's async update. Data that fails
+     * to write is marked dirty again and retried by the next flush.
+     *
+     * @return a future completing once every write finished, never exceptionally
+     */
+    @NotNull CompletableFuture<Void> flushAsync() {
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+
+        for (SessionKey<?> key : List.copyOf(dirty)) {
+            // cleared first so a change made while writing marks it dirty again
+            dirty.remove(key);
+            // composed so an update throwing instead of failing its future is retried as well
+            writes.add(CompletableFuture.completedFuture(key).thenCompose(this::write).exceptionally(throwable -> {
+                dirty.add(key);
+                Logger.severe("Failed to flush " + key.name() + " of " + name, throwable);
+                return null;
+            }));
+        }
+
+        return CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Writes every dirty repository's data on the calling thread, used on shutdown.
+     */
+    void flush() {
+        for (SessionKey<?> key : List.copyOf(dirty)) {
+            dirty.remove(key);
+
+            try {
+                writeNow(key);
+            } catch (RuntimeException e) {
+                dirty.add(key);
+                Logger.severe("Failed to flush " + key.name() + " of " + name, e);
+            }
+        }
+    }
+
+    // private methods
+    private <T> CompletableFuture<Void> write(SessionKey<T> key) {
+        return key.repository().updateAsync(uuid, get(key));
+    }
+
+    private <T> void writeNow(SessionKey<T> key) {
+        PlayerRepository<T> repository = key.repository();
+        repository.update(uuid, get(key));
+    }
+}
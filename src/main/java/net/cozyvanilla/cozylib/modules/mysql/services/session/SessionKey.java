@@ -0,0 +1,14 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.session;
+
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.PlayerRepository;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Typed handle to one repository's data inside a {@link PlayerSession}, returned by
+ * {@link SessionLoader#register}.
+ *
+ * @param name the unique name the repository was registered under
+ * @param repository the repository loaded at login
+ * @param <T> the repository's data type
+ */
+public record SessionKey<T>(@NotNull String name, @NotNull PlayerRepository<T> repository) {}
@@ -0,0 +1,392 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.session;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.common.enums.TimeUnit;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.PlayerRepository;
+import net.cozyvanilla.cozylib.util.paper.TaskUtils;
+import net.cozyvanilla.cozylib.util.text.AdventureUtils;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads every registered {@link PlayerRepository} for a player while they log in, so their data is
+ * ready before they join.
+ *
+ * <p>Loading happens in {@code AsyncPlayerPreLoginEvent}, off the main thread. All repositories are
+ * fetched in parallel, players without a row get one created, and the whole load has to finish
+ * within the login deadline. If it does not, or a repository fails, the login is denied with the
+ * configured message instead of letting the player in with missing data. A row is only created
+ * when the read succeeded and found none, never after a failed read.
+ *
+ * <p>Dirty session data is flushed asynchronously on a fixed interval and when the player quits.
+ * The quit flush also writes what every registered repository still holds back for the player, see
+ * {@link PlayerRepository#flushAsync}. A quitting player's session is then kept warm for the grace
+ * period: a rejoin within it reattaches to the same session without a single query, which spares
+ * the database a full save and reload for every crash or reconnect. The warm session is trusted
+ * as is, so the grace period must be shorter than the time a player needs to join another server
+ * sharing the same tables. A session that expires is flushed once more, and a login after that
+ * waits for any flush still in flight before reading the player's rows again.
+ *
+ * <pre>{@code
+ * SessionKey<PlayerProgress> PROGRESS = SessionLoader.register("progress", progressRepository);
+ *
+ * // on join or later
+ * PlayerProgress progress = SessionLoader.getSession(player).get(PROGRESS);
+ * }</pre>
+ */
+public final class SessionLoader implements Listener {
+    private static final Map<String, SessionKey<?>> KEYS = new ConcurrentHashMap<>();
+    private static final Map<UUID, PlayerSession> SESSIONS = new ConcurrentHashMap<>();
+    private static final Map<UUID, CompletableFuture<Void>> FLUSHING = new ConcurrentHashMap<>();
+
+    private final Plugin plugin;
+    private final long deadlineMillis;
+    private final double flushIntervalSeconds;
+    private final String timeoutMessage;
+    private final String failureMessage;
+
+    // loaded sessions whose player has not joined yet, dropped if the login is denied later on
+    private final Cache<UUID, PlayerSession> pending;
+
+    // sessions of players who quit less than the grace period ago
+    private final Cache<UUID, PlayerSession> warm;
+
+    private ScheduledTask task;
+
+    /**
+     * @param plugin the plugin the listener is registered for
+     * @param deadlineMillis how long loading may take per login
+     * @param gracePeriod how long a quitting player's session is kept for a rejoin, zero to drop it at once
+     * @param flushIntervalSeconds how often dirty sessions of online players are flushed
+     * @param timeoutMessage the MiniMessage kick message if loading exceeds the deadline
+     * @param failureMessage the MiniMessage kick message if a repository fails
+     */
+    public SessionLoader(@NotNull Plugin plugin,
+                         long deadlineMillis,
+                         @NotNull Duration gracePeriod,
+                         double flushIntervalSeconds,
+                         @NotNull String timeoutMessage,
+                         @NotNull String failureMessage) {
+        if (flushIntervalSeconds <= 0) {
+            throw new IllegalArgumentException("flushIntervalSeconds must be greater than 0");
+        }
+
+        this.plugin = plugin;
+        this.deadlineMillis = Math.max(1, deadlineMillis);
+        this.flushIntervalSeconds = flushIntervalSeconds;
+        this.timeoutMessage = timeoutMessage;
+        this.failureMessage = failureMessage;
+
+        this.pending = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(60))
+                .removalListener(this::onRemoval)
+                .build();
+
+        // the scheduler expires warm sessions on time, so they are flushed even while nobody logs in
+        this.warm = Caffeine.newBuilder()
+                .expireAfterWrite(gracePeriod.isNegative() ? Duration.ZERO : gracePeriod)
+                .scheduler(Scheduler.systemScheduler())
+                .removalListener(this::onRemoval)
+                .build();
+    }
+
+    /**
+     * Starts loading sessions at login and loads the players already online, e.g. after a reload.
+     */
+    public void enable() {
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+
+        long intervalMillis = (long) Math.ceil(flushIntervalSeconds * 1000);
+        task = TaskUtils.repeatingAsync(plugin, this::flushAll, TimeUnit.MILLISECOND, intervalMillis, intervalMillis);
+
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            load(player.getUniqueId(), player.getName()).whenComplete((session, throwable) -> {
+                if (throwable != null) {
+                    Logger.severe("Failed to load the session of " + player.getName(), throwable);
+                } else if (player.isOnline()) {
+                    SESSIONS.put(session.getUuid(), session);
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops the loader and synchronously flushes every online and warm session.
+     */
+    public void disable() {
+        HandlerList.unregisterAll(this);
+
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        SESSIONS.values().forEach(PlayerSession::flush);
+        warm.asMap().values().forEach(PlayerSession::flush);
+        pending.asMap().values().forEach(PlayerSession::flush);
+
+        SESSIONS.clear();
+        warm.invalidateAll();
+        pending.invalidateAll();
+    }
+
+    // ------------ usable methods ------------
+    /**
+     * Adds a repository to every session loaded from now on.
+     *
+     * @param name a unique name, e.g. the table name
+     * @param repository the repository to load at login
+     * @return the key to read the loaded data with
+     * @throws IllegalArgumentException if the name is already taken
+     */
+    public static <T> @NotNull SessionKey<T> register(@NotNull String name, @NotNull PlayerRepository<T> repository) {
+        SessionKey<T> key = new SessionKey<>(name, repository);
+
+        if (KEYS.putIfAbsent(name, key) != null) {
+            throw new IllegalArgumentException("A repository is already registered as " + name);
+        }
+
+        return key;
+    }
+
+    public static void unregister(@NotNull SessionKey<?> key) {
+        KEYS.remove(key.name(), key);
+    }
+
+    /**
+     * Gets the session of an online player.
+     *
+     * @return the session, or null if the player is offline or was online before the loader started
+     *         and is still loading
+     */
+    public static @Nullable PlayerSession getSession(@NotNull UUID uuid) {
+        return SESSIONS.get(uuid);
+    }
+
+    public static @Nullable PlayerSession getSession(@NotNull Player player) {
+        return getSession(player.getUniqueId());
+    }
+
+    public static @NotNull Collection<SessionKey<?>> registered() {
+        return List.copyOf(KEYS.values());
+    }
+
+    public static int sessionCount() {
+        return SESSIONS.size();
+    }
+
+    public long warmCount() {
+        return warm.estimatedSize();
+    }
+
+    /**
+     * Loads every registered repository for a player in parallel, creating missing rows.
+     *
+     * @return a future completing with the player's session
+     */
+    public @NotNull CompletableFuture<PlayerSession> load(@NotNull UUID uuid, @NotNull String name) {
+        // rows still being written from an expired session must not be read back stale
+        CompletableFuture<Void> flushing = FLUSHING.getOrDefault(uuid, CompletableFuture.completedFuture(null));
+        return flushing.thenCompose(ignored -> load(uuid, name, null));
+    }
+
+    /**
+     * Flushes the dirty data of every online player in the background.
+     */
+    public void flushAll() {
+        for (PlayerSession session : SESSIONS.values()) {
+            if (session.isDirty()) flush(session);
+        }
+    }
+
+    // ------------ listeners ------------
+    @EventHandler(priority = EventPriority.HIGH)
+    public void onPreLogin(AsyncPlayerPreLoginEvent e) {
+        if (e.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+
+        UUID uuid = e.getUniqueId();
+
+        // a rejoin within the grace period reattaches, only repositories registered since are loaded
+        PlayerSession reattached = warm.asMap().remove(uuid);
+
+        try {
+            CompletableFuture<PlayerSession> loading = reattached == null
+                    ? load(uuid, e.getName())
+                    : reattach(uuid, e.getName(), reattached);
+
+            pending.put(uuid, loading.get(deadlineMillis, java.util.concurrent.TimeUnit.MILLISECONDS));
+        } catch (TimeoutException ex) {
+            if (reattached != null) warm.put(uuid, reattached);
+
+            Logger.warning("Loading " + e.getName() + " exceeded the login deadline of " + deadlineMillis + "ms, denying login");
+            e.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, AdventureUtils.toComponent(timeoutMessage));
+        } catch (ExecutionException ex) {
+            if (reattached != null) warm.put(uuid, reattached);
+
+            Logger.severe("Failed to load " + e.getName() + ", denying login", ex.getCause());
+            e.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, AdventureUtils.toComponent(failureMessage));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            if (reattached != null) warm.put(uuid, reattached);
+            e.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, AdventureUtils.toComponent(failureMessage));
+        } catch (RuntimeException ex) {
+            // thrown before a future existed, the login is still denied rather than let through by Paper
+            if (reattached != null) warm.put(uuid, reattached);
+
+            Logger.severe("Failed to load " + e.getName() + ", denying login", ex);
+            e.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, AdventureUtils.toComponent(failureMessage));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLoginResult(AsyncPlayerPreLoginEvent e) {
+        // denied by a later listener
+        if (e.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+
+        PlayerSession denied = pending.asMap().remove(e.getUniqueId());
+        if (denied != null) flush(denied, true);
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent e) {
+        Player player = e.getPlayer();
+        PlayerSession session = pending.asMap().remove(player.getUniqueId());
+
+        if (session == null) {
+            Logger.warning(player.getName() + " joined without a loaded session");
+            return;
+        }
+
+        SESSIONS.put(player.getUniqueId(), session);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        UUID uuid = e.getPlayer().getUniqueId();
+        PlayerSession session = SESSIONS.remove(uuid);
+        if (session == null) return;
+
+        flush(session, true);
+        warm.put(uuid, session);
+    }
+
+    // private methods
+    // the warm session is trusted as is, only waiting for its quit flush so repositories registered
+    // since are not read back stale
+    private CompletableFuture<PlayerSession> reattach(UUID uuid, String name, PlayerSession session) {
+        CompletableFuture<Void> flushing = FLUSHING.getOrDefault(uuid, CompletableFuture.completedFuture(null));
+        return flushing.thenCompose(ignored -> load(uuid, name, session));
+    }
+
+    private CompletableFuture<PlayerSession> load(UUID uuid, String name, @Nullable PlayerSession reattached) {
+        long start = System.nanoTime();
+        List<SessionKey<?>> keys = KEYS.values().stream()
+                .filter(key -> reattached == null || !reattached.has(key))
+                .toList();
+
+        if (reattached != null && keys.isEmpty()) {
+            return CompletableFuture.completedFuture(reattached);
+        }
+
+        List<CompletableFuture<?>> futures = new ArrayList<>(keys.size());
+        for (SessionKey<?> key : keys) {
+            futures.add(loadOne(key, uuid));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            Map<SessionKey<?>, Object> values = new HashMap<>();
+            for (int i = 0; i < keys.size(); i++) {
+                values.put(keys.get(i), futures.get(i).join());
+            }
+
+            if (reattached != null) {
+                reattached.attach(values);
+                return reattached;
+            }
+
+            return new PlayerSession(uuid, name, (System.nanoTime() - start) / 1_000_000, values);
+        });
+    }
+
+    private CompletableFuture<Void> flush(PlayerSession session) {
+        return flush(session, false);
+    }
+
+    // a session leaving the server also flushes what its repositories hold back for the player
+    private CompletableFuture<Void> flush(PlayerSession session, boolean leaving) {
+        if (!session.isDirty() && !leaving) return CompletableFuture.completedFuture(null);
+
+        UUID uuid = session.getUuid();
+        CompletableFuture<Void> write = session.flushAsync();
+        if (leaving) write = write.thenCompose(ignored -> flushRepositories(session));
+
+        CompletableFuture<Void> written = write;
+        CompletableFuture<Void> combined = FLUSHING.compute(uuid, (key, previous) ->
+                previous == null ? written : CompletableFuture.allOf(previous, written));
+
+        combined.whenComplete((ignored, throwable) -> FLUSHING.remove(uuid, combined));
+        return combined;
+    }
+
+    private void onRemoval(@Nullable UUID uuid, @Nullable PlayerSession session, RemovalCause cause) {
+        // expired sessions are gone for good, anything they still hold is written back
+        if (session != null && cause.wasEvicted()) {
+            flush(session, true);
+        }
+    }
+
+    // never completes exceptionally, a failed repository is logged and its rows stay pending in it
+    private static CompletableFuture<Void> flushRepositories(PlayerSession session) {
+        UUID uuid = session.getUuid();
+        List<CompletableFuture<Void>> flushes = new ArrayList<>();
+
+        for (SessionKey<?> key : KEYS.values()) {
+            flushes.add(CompletableFuture.completedFuture(key)
+                    .thenCompose(registered -> registered.repository().flushAsync(uuid))
+                    .exceptionally(throwable -> {
+                        Logger.severe("Failed to flush the pending writes of " + key.name() + " for " + session.getName(), throwable);
+                        return null;
+                    }));
+        }
+
+        return CompletableFuture.allOf(flushes.toArray(CompletableFuture[]::new));
+    }
+
+    // a failed read never falls through to createAsync, which would replace a row we could not see with
+    // defaults; the failed future denies the login instead
+    private static <T> CompletableFuture<T> loadOne(SessionKey<T> key, UUID uuid) {
+        PlayerRepository<T> repository = key.repository();
+
+        CompletableFuture<Optional<T>> found;
+        try {
+            found = repository.getAsync(uuid);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return found.thenCompose(loaded -> loaded
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> repository.createAsync(uuid)));
+    }
+}
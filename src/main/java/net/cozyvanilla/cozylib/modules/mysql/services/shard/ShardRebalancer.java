@@ -0,0 +1,234 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.shard;
+
+import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.modules.mysql.abstracts.AbstractMySQL;
+import net.cozyvanilla.cozylib.runtime.MySQLConnection;
+import net.cozyvanilla.cozylib.runtime.ShardRouter;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Moves players whose shard changed after shards were appended, while the server keeps running.
+ *
+ * <p>Every shard of every sharded table is walked in uuid order, {@code chunkSize} players at a
+ * time. The players of a page found outside their home shard are marked as moving in
+ * {@value ShardRouter#PLACEMENT_TABLE}, which makes every write to them fail, and the rebalancer
+ * waits until every server's cached placement has expired and seen the mark. Each player then has
+ * all their rows, in every sharded table, copied to the home shard; the move is recorded so reads
+ * and writes switch over, and only then are the old rows deleted. Only rows still holding the
+ * copied values are deleted; a row written on the old shard after it was copied is kept and the
+ * player is reported as skipped, so a later run moves it. Copies are throttled to {@code rowsPerSecond}.
+ *
+ * <p>Players for whom {@code busy} holds, e.g. players online on this server, are skipped and
+ * picked up by a later run.
+ */
+public final class ShardRebalancer {
+    private static final AtomicBoolean RUNNING = new AtomicBoolean();
+    private static final long WRITE_GRACE_MILLIS = 1_000L;
+
+    private final Plugin plugin;
+    private final ShardRouter router;
+    private final List<AbstractMySQL> tables;
+    private final Predicate<UUID> busy;
+    private final int chunkSize;
+    private final int rowsPerSecond;
+
+    private volatile boolean cancelled;
+
+    public record Result(long moved, long rows, long skipped) {}
+
+    /**
+     * @param plugin the plugin whose bulkhead partition the moves count against
+     * @param router the router whose pending moves are applied
+     * @param tables the sharded tables, all moved together per player
+     * @param busy whether a player must not be moved right now
+     * @param chunkSize the number of players read per page
+     * @param rowsPerSecond the copy rate limit
+     */
+    public ShardRebalancer(@NotNull Plugin plugin,
+                           @NotNull ShardRouter router,
+                           @NotNull List<AbstractMySQL> tables,
+                           @NotNull Predicate<UUID> busy,
+                           int chunkSize,
+                           int rowsPerSecond) {
+        this.plugin = plugin;
+        this.router = router;
+        this.tables = List.copyOf(tables);
+        this.busy = busy;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.rowsPerSecond = Math.max(1, rowsPerSecond);
+    }
+
+    /**
+     * Moves every misplaced player. Must not be called from the main thread.
+     *
+     * @return how many players and rows were moved, and how many players were skipped
+     * @throws IllegalStateException if no rebalance is pending or another one is running
+     * @throws SQLException if a move fails; players moved before it stay moved
+     */
+    public @NotNull Result run() throws SQLException {
+        if (!router.isRebalancing()) {
+            throw new IllegalStateException("No rebalance is pending, set mysql.shards.previous_count first");
+        }
+
+        if (!RUNNING.compareAndSet(false, true)) {
+            throw new IllegalStateException("A rebalance is already running");
+        }
+
+        try {
+            Set<UUID> skipped = new HashSet<>();
+            long moved = 0;
+            long rows = 0;
+
+            Logger.info("Rebalancing " + tables.size() + " tables from " + router.getPreviousCount() +
+                    " to " + router.getShardCount() + " shards");
+
+            for (int shard = 0; shard < router.getShardCount() && !cancelled; shard++) {
+                for (AbstractMySQL table : tables) {
+                    UUID after = null;
+                    List<UUID> players;
+
+                    do {
+                        players = table.scanPlayers(shard, after, chunkSize);
+                        List<UUID> misplaced = new ArrayList<>();
+
+                        for (UUID player : players) {
+                            if (router.homeOf(player) == shard) continue;
+
+                            if (busy.test(player)) {
+                                skipped.add(player);
+                                continue;
+                            }
+
+                            misplaced.add(player);
+                        }
+
+                        long copied = 0;
+                        Set<UUID> marked = new LinkedHashSet<>(misplaced);
+
+                        try {
+                            if (!marked.isEmpty()) fence(marked, shard);
+
+                            for (UUID player : misplaced) {
+                                if (cancelled) break;
+
+                                copied += move(player, shard, skipped);
+                                marked.remove(player);
+                                moved++;
+                            }
+                        } finally {
+                            release(marked, shard);
+                        }
+
+                        if (!players.isEmpty()) after = players.getLast();
+                        rows += copied;
+                        throttle(copied);
+                    } while (players.size() == chunkSize && !cancelled);
+
+                    Logger.info("Rebalanced " + table.getTableName() + " on shard " + shard + ": " +
+                            moved + " players moved so far");
+                }
+            }
+
+            Logger.info("Rebalance " + (cancelled ? "cancelled" : "finished") + ": " + moved + " players (" + rows +
+                    " rows) moved, " + skipped.size() + " skipped" +
+                    (skipped.isEmpty() && !cancelled ? ", mysql.shards.previous_count can be set back to 0" : ", run it again"));
+
+            return new Result(moved, rows, skipped.size());
+        } finally {
+            RUNNING.set(false);
+        }
+    }
+
+    /**
+     * Stops the rebalance after the player currently being moved.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public static boolean isRunning() {
+        return RUNNING.get();
+    }
+
+    /**
+     * Gets the registered tables spread over the configured shards.
+     */
+    public static @NotNull List<AbstractMySQL> shardedTables() {
+        return AbstractMySQL.registered().stream().filter(AbstractMySQL::isSharded).toList();
+    }
+
+    // private methods
+    // marks the players as moving and waits until no server still writes to them from a cached placement
+    private void fence(Collection<UUID> players, int from) throws SQLException {
+        try (Connection connection = MySQLConnection.getConnection(plugin)) {
+            router.markMoving(connection, MySQLConnection.getDialect(), players, from);
+        }
+
+        try {
+            Thread.sleep(router.getPlacementCacheMillis() + WRITE_GRACE_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        }
+    }
+
+    // clears the moving mark of players left on their old shard, by a cancel or a failed move
+    private void release(Collection<UUID> players, int from) throws SQLException {
+        if (players.isEmpty()) return;
+
+        try (Connection connection = MySQLConnection.getConnection(plugin)) {
+            for (UUID player : players) {
+                router.cancelMove(connection, MySQLConnection.getDialect(), player, from);
+            }
+        }
+    }
+
+    private long move(UUID player, int from, Set<UUID> skipped) throws SQLException {
+        int to = router.homeOf(player);
+        Map<AbstractMySQL, AbstractMySQL.PlayerRows> copies = new LinkedHashMap<>();
+        long rows = 0;
+
+        for (AbstractMySQL table : tables) {
+            AbstractMySQL.PlayerRows copied = table.copyPlayer(player, from, to);
+            copies.put(table, copied);
+            rows += copied.rows().size();
+        }
+
+        try (Connection connection = MySQLConnection.getConnection(plugin)) {
+            router.recordMove(connection, MySQLConnection.getDialect(), player);
+        }
+
+        int kept = 0;
+        for (Map.Entry<AbstractMySQL, AbstractMySQL.PlayerRows> copy : copies.entrySet()) {
+            kept += copy.getKey().deletePlayer(copy.getValue(), from);
+        }
+
+        if (kept > 0) {
+            Logger.warning(kept + " rows of " + player + " were written on shard " + from +
+                    " during the move and were kept there, run the rebalance again to move them");
+            skipped.add(player);
+        } else {
+            skipped.remove(player);
+        }
+
+        return rows;
+    }
+
+    private void throttle(long rows) {
+        long sleep = rows * 1000L / rowsPerSecond;
+        if (sleep <= 0) return;
+
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        }
+    }
+}
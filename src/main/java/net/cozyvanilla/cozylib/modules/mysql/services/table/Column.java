@@ -0,0 +1,86 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.table;
+
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ParameterBinder;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+
+/**
+ * A typed column (or bare statement parameter) used by {@link Query} to place placeholders and by
+ * {@link StatementTemplate.Binder} to bind values to them.
+ *
+ * @param <T> the Java type bound to the column's placeholders
+ */
+public final class Column<T> {
+    private final String name;
+    private final DataType type;
+    private final ParameterBinder<T> binder;
+
+    private Column(String name, DataType type, ParameterBinder<T> binder) {
+        this.name = name;
+        this.type = type;
+        this.binder = binder;
+    }
+
+    public static <T> @NotNull Column<T> of(@NotNull String name, @NotNull DataType type, @NotNull ParameterBinder<T> binder) {
+        return new Column<>(name, type, binder);
+    }
+
+    public static @NotNull Column<Integer> integer(@NotNull String name) {
+        return of(name, DataType.intType(), (ps, index, value) -> ps.setInt(index, value));
+    }
+
+    public static @NotNull Column<Long> bigint(@NotNull String name) {
+        return of(name, DataType.bigint(), (ps, index, value) -> ps.setLong(index, value));
+    }
+
+    public static @NotNull Column<String> varchar(@NotNull String name, int length) {
+        return of(name, DataType.varchar(length), (ps, index, value) -> ps.setString(index, value));
+    }
+
+    public static @NotNull Column<Instant> timestamp(@NotNull String name) {
+        return of(name, DataType.timestamp(), (ps, index, value) -> {
+            if (value == null) {
+                ps.setNull(index, Types.TIMESTAMP);
+            } else {
+                ps.setTimestamp(index, Timestamp.from(value));
+            }
+        });
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    public @NotNull DataType getType() {
+        return type;
+    }
+
+    /**
+     * Matches rows whose column equals the bound value.
+     */
+    public @NotNull Condition eq() {
+        return Condition.of(name + " = ?", this);
+    }
+
+    /**
+     * Matches rows whose column is one of the bound values. The list holds one placeholder per
+     * {@link StatementTemplate#repeat repetition} of the compiled statement.
+     */
+    public @NotNull Condition in() {
+        return Condition.in(this);
+    }
+
+    void bind(PreparedStatement statement, int index, T value) throws SQLException {
+        binder.bind(statement, index, value);
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + type.toSql();
+    }
+}
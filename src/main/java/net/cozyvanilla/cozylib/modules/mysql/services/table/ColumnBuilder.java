@@ -59,7 +59,14 @@ public final class ColumnBuilder {
         return this;
     }
 
-    String toSql() {
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Renders the column definition, e.g. {@code `amount` INT NOT NULL DEFAULT 0}.
+     */
+    public String toSql() {
         StringBuilder sql = new StringBuilder();
 
         sql.append("`").append(name).append("` ");
@@ -0,0 +1,53 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.table;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * A WHERE condition of a {@link Query}, with the columns bound to its placeholders in order.
+ */
+public final class Condition {
+    private final String sql;
+    private final List<Column<?>> parameters;
+    private final Column<?> repeated;
+
+    private Condition(String sql, List<Column<?>> parameters, Column<?> repeated) {
+        this.sql = sql;
+        this.parameters = parameters;
+        this.repeated = repeated;
+    }
+
+    /**
+     * @param sql the condition, one {@code ?} per parameter
+     * @param parameters the columns bound to the placeholders, in order; a column may repeat
+     * @return the condition
+     */
+    public static @NotNull Condition of(@NotNull String sql, @NotNull Column<?>... parameters) {
+        long placeholders = sql.chars().filter(c -> c == '?').count();
+        if (placeholders != parameters.length) {
+            throw new IllegalArgumentException(sql + " has " + placeholders + " placeholders but " + parameters.length + " parameters");
+        }
+
+        return new Condition(sql, List.of(parameters), null);
+    }
+
+    static Condition in(Column<?> column) {
+        return new Condition(column.getName() + " IN (?)", List.of(), column);
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    List<Column<?>> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * The column of an IN list, whose placeholders repeat, or null for a plain condition.
+     */
+    Column<?> getRepeated() {
+        return repeated;
+    }
+}
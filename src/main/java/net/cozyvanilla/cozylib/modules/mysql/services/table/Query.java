@@ -0,0 +1,274 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.table;
+
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.SqlDialect;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Small typed DSL compiling a repository's statements into {@link StatementTemplate}s once, so hot
+ * paths bind values instead of concatenating SQL.
+ *
+ * <pre>{@code
+ * StatementTemplate update = Query.update(tableName)
+ *         .set("amount", dialect -> dialect.greatest("amount", "?"), AMOUNT)
+ *         .where(PLAYER.eq(), DATA.eq())
+ *         .compile("update_amount", dialect);
+ *
+ * try (StatementTemplate.Binder binder = update.prepare(connection)) {
+ *     binder.set(AMOUNT, 5).set(PLAYER, uuid).set(DATA, "coal");
+ *     binder.statement().executeUpdate();
+ * }
+ * }</pre>
+ */
+public final class Query {
+    // splits dialect-rendered inserts around their VALUES tuple
+    private static final String GROUP_MARKER = "\u0000group\u0000";
+
+    private Query() {}
+
+    public static @NotNull Select select(@NotNull String table, @NotNull String... columns) {
+        return new Select(table, columns);
+    }
+
+    public static @NotNull Insert insertInto(@NotNull String table) {
+        return new Insert(table);
+    }
+
+    public static @NotNull Update update(@NotNull String table) {
+        return new Update(table);
+    }
+
+    public static @NotNull Delete deleteFrom(@NotNull String table) {
+        return new Delete(table);
+    }
+
+    public static final class Select {
+        private final String table;
+        private final String columns;
+        private final List<Condition> conditions = new ArrayList<>();
+
+        private Select(String table, String[] columns) {
+            this.table = table;
+            this.columns = String.join(", ", columns);
+        }
+
+        /**
+         * Adds conditions, all of which must hold. At most one may be an IN list, which becomes
+         * the statement's repeated group.
+         */
+        public @NotNull Select where(@NotNull Condition... conditions) {
+            this.conditions.addAll(List.of(conditions));
+            return this;
+        }
+
+        public @NotNull StatementTemplate compile(@NotNull String name, @NotNull SqlDialect dialect) {
+            return compileWhere(name, "SELECT " + columns + " FROM " + table, conditions);
+        }
+    }
+
+    public static final class Insert {
+        private final String table;
+        private final List<String> columns = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+        private final List<Column<?>> parameters = new ArrayList<>();
+        private List<String> keyColumns = List.of();
+        private Function<SqlDialect, String> assignments;
+        private boolean ignoreDuplicates;
+
+        private Insert(String table) {
+            this.table = table;
+        }
+
+        /**
+         * Inserts a bound value into the column.
+         */
+        public @NotNull Insert value(@NotNull Column<?> column) {
+            columns.add(column.getName());
+            values.add("?");
+            parameters.add(column);
+            return this;
+        }
+
+        /**
+         * Inserts a constant SQL expression into the column, e.g. {@code "0"} or {@code "NULL"}.
+         */
+        public @NotNull Insert value(@NotNull String column, @NotNull String expression) {
+            columns.add(column);
+            values.add(expression);
+            return this;
+        }
+
+        /**
+         * Skips rows whose key already exists.
+         */
+        public @NotNull Insert ignoreDuplicates(@NotNull String... keyColumns) {
+            this.keyColumns = List.of(keyColumns);
+            this.ignoreDuplicates = true;
+            return this;
+        }
+
+        /**
+         * Updates rows whose key already exists.
+         *
+         * @param assignments renders the {@code column = expression} list, without placeholders
+         * @param keyColumns the conflicting key
+         */
+        public @NotNull Insert onDuplicateUpdate(@NotNull Function<SqlDialect, String> assignments, @NotNull String... keyColumns) {
+            this.keyColumns = List.of(keyColumns);
+            this.assignments = assignments;
+            return this;
+        }
+
+        /**
+         * Compiles the insert with its VALUES tuple as the repeated group, so
+         * {@link StatementTemplate#repeat} gives multi-row inserts.
+         */
+        public @NotNull StatementTemplate compile(@NotNull String name, @NotNull SqlDialect dialect) {
+            String insert = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES " + GROUP_MARKER;
+
+            if (ignoreDuplicates) {
+                insert = dialect.insertIgnore(insert, keyColumns);
+            } else if (assignments != null) {
+                insert = dialect.upsert(insert, keyColumns, assignments.apply(dialect));
+            }
+
+            int marker = insert.indexOf(GROUP_MARKER);
+            String tail = insert.substring(marker + GROUP_MARKER.length());
+            if (tail.indexOf('?') >= 0) {
+                throw new IllegalArgumentException(name + " binds parameters outside its VALUES tuple");
+            }
+
+            return new StatementTemplate(name, insert.substring(0, marker), "(" + String.join(", ", values) + ")", tail,
+                    List.of(), parameters, List.of());
+        }
+    }
+
+    public static final class Update {
+        private final String table;
+        private final List<Function<SqlDialect, String>> assignments = new ArrayList<>();
+        private final List<Column<?>> parameters = new ArrayList<>();
+        private final List<Condition> conditions = new ArrayList<>();
+
+        private Update(String table) {
+            this.table = table;
+        }
+
+        /**
+         * Sets the column to a bound value.
+         */
+        public @NotNull Update set(@NotNull Column<?> column) {
+            return set(column.getName(), dialect -> "?", column);
+        }
+
+        /**
+         * Sets the column to an expression rendered for the dialect.
+         *
+         * @param expression renders the expression, one {@code ?} per parameter
+         * @param parameters the columns bound to the expression's placeholders, in order
+         */
+        public @NotNull Update set(@NotNull String column, @NotNull Function<SqlDialect, String> expression,
+                                   @NotNull Column<?>... parameters) {
+            assignments.add(dialect -> column + " = " + expression.apply(dialect));
+            this.parameters.addAll(List.of(parameters));
+            return this;
+        }
+
+        public @NotNull Update where(@NotNull Condition... conditions) {
+            this.conditions.addAll(List.of(conditions));
+            return this;
+        }
+
+        public @NotNull StatementTemplate compile(@NotNull String name, @NotNull SqlDialect dialect) {
+            List<String> rendered = assignments.stream().map(assignment -> assignment.apply(dialect)).toList();
+            String set = String.join(", ", rendered);
+
+            long placeholders = set.chars().filter(c -> c == '?').count();
+            if (placeholders != parameters.size()) {
+                throw new IllegalArgumentException(name + " has " + placeholders + " placeholders in SET but " + parameters.size() + " parameters");
+            }
+
+            return compileWhere(name, "UPDATE " + table + " SET " + set, parameters, conditions);
+        }
+    }
+
+    public static final class Delete {
+        private final String table;
+        private final List<Condition> conditions = new ArrayList<>();
+        private Column<Integer> limit;
+
+        private Delete(String table) {
+            this.table = table;
+        }
+
+        public @NotNull Delete where(@NotNull Condition... conditions) {
+            this.conditions.addAll(List.of(conditions));
+            return this;
+        }
+
+        /**
+         * Deletes at most the bound number of rows per execution.
+         */
+        public @NotNull Delete limit(@NotNull Column<Integer> limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        public @NotNull StatementTemplate compile(@NotNull String name, @NotNull SqlDialect dialect) {
+            if (limit == null) {
+                return compileWhere(name, "DELETE FROM " + table, conditions);
+            }
+
+            if (conditions.isEmpty() || conditions.stream().anyMatch(condition -> condition.getRepeated() != null)) {
+                throw new IllegalArgumentException(name + " needs plain conditions to delete in chunks");
+            }
+
+            List<Column<?>> parameters = new ArrayList<>();
+            conditions.forEach(condition -> parameters.addAll(condition.getParameters()));
+            parameters.add(limit);
+
+            String where = String.join(" AND ", conditions.stream().map(Condition::getSql).map(sql -> "(" + sql + ")").toList());
+            return new StatementTemplate(name, dialect.deleteLimited(table, where), null, "",
+                    parameters, List.of(), List.of());
+        }
+    }
+
+    // private methods
+    private static StatementTemplate compileWhere(String name, String statement, List<Condition> conditions) {
+        return compileWhere(name, statement, List.of(), conditions);
+    }
+
+    private static StatementTemplate compileWhere(String name, String statement, List<Column<?>> statementParameters,
+                                           List<Condition> conditions) {
+        List<Column<?>> parameters = new ArrayList<>(statementParameters);
+        List<String> plain = new ArrayList<>();
+        Column<?> repeated = null;
+
+        for (Condition condition : conditions) {
+            if (condition.getRepeated() == null) {
+                plain.add(condition.getSql().toUpperCase(Locale.ROOT).contains(" OR ") ? "(" + condition.getSql() + ")" : condition.getSql());
+                parameters.addAll(condition.getParameters());
+            } else if (repeated == null) {
+                repeated = condition.getRepeated();
+            } else {
+                throw new IllegalArgumentException(name + " can only hold one IN list");
+            }
+        }
+
+        StringBuilder head = new StringBuilder(statement);
+        if (!conditions.isEmpty()) head.append(" WHERE ").append(String.join(" AND ", plain));
+
+        if (repeated == null) {
+            return new StatementTemplate(name, head.toString(), null, "", parameters, List.of(), List.of());
+        }
+
+        // the IN list goes last so its placeholders can grow without moving the others
+        if (!plain.isEmpty()) head.append(" AND ");
+        head.append(repeated.getName()).append(" IN (");
+
+        return new StatementTemplate(name, head.toString(), "?", ")", parameters, List.of(repeated), List.of());
+    }
+}
@@ -0,0 +1,179 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.table;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable statement compiled once by {@link Query}, with the typed columns bound to each of
+ * its placeholders.
+ *
+ * <p>Statements with a repeated group, the VALUES tuple of a multi-row insert or the placeholders
+ * of an IN list, hold that group once; {@link #repeat} derives the variant with more repetitions
+ * and caches it, so every distinct SQL string of a repository is built at most once.
+ */
+public final class StatementTemplate {
+    private final String name;
+    private final String head;
+    private final String group;
+    private final String tail;
+    private final Column<?>[] headParameters;
+    private final Column<?>[] groupParameters;
+    private final Column<?>[] tailParameters;
+    private final int repetitions;
+    private final String sql;
+    private final Map<Integer, StatementTemplate> variants;
+
+    StatementTemplate(String name, String head, @Nullable String group, String tail,
+                      List<Column<?>> headParameters, List<Column<?>> groupParameters, List<Column<?>> tailParameters) {
+        this(name, head, group, tail,
+                headParameters.toArray(Column<?>[]::new),
+                groupParameters.toArray(Column<?>[]::new),
+                tailParameters.toArray(Column<?>[]::new),
+                1, new ConcurrentHashMap<>());
+
+        variants.put(1, this);
+    }
+
+    private StatementTemplate(String name, String head, String group, String tail,
+                              Column<?>[] headParameters, Column<?>[] groupParameters, Column<?>[] tailParameters,
+                              int repetitions, Map<Integer, StatementTemplate> variants) {
+        this.name = name;
+        this.head = head;
+        this.group = group;
+        this.tail = tail;
+        this.headParameters = headParameters;
+        this.groupParameters = groupParameters;
+        this.tailParameters = tailParameters;
+        this.repetitions = repetitions;
+        this.variants = variants;
+        this.sql = group == null ? head + tail : head + String.join(", ", Collections.nCopies(repetitions, group)) + tail;
+    }
+
+    /**
+     * Gets the variant repeating the statement's group, e.g. a multi-row insert of {@code count} rows.
+     *
+     * @param count the number of repetitions, at least 1
+     * @return the cached variant
+     * @throws IllegalStateException if the statement has no repeated group
+     */
+    public @NotNull StatementTemplate repeat(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be at least 1");
+        }
+
+        if (group == null && count != 1) {
+            throw new IllegalStateException(name + " has no repeated group");
+        }
+
+        return variants.computeIfAbsent(count, key -> new StatementTemplate(name, head, group, tail,
+                headParameters, groupParameters, tailParameters, key, variants));
+    }
+
+    /**
+     * Prepares this statement and starts binding it.
+     *
+     * @param connection the connection to prepare on
+     * @return a binder over the new statement, closing it closes the statement
+     * @throws SQLException if preparing fails
+     */
+    public @NotNull Binder prepare(@NotNull Connection connection) throws SQLException {
+        return new Binder(connection.prepareStatement(sql));
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    public @NotNull String getSql() {
+        return sql;
+    }
+
+    public int getRepetitions() {
+        return repetitions;
+    }
+
+    /**
+     * The number of distinct SQL strings derived from this statement so far, each taking a slot
+     * of the driver's prepared statement cache.
+     */
+    public int getVariantCount() {
+        return variants.size();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + sql;
+    }
+
+    /**
+     * Binds values by column to a prepared statement. A column used by several placeholders of the
+     * current repetition is bound to all of them.
+     */
+    public final class Binder implements AutoCloseable {
+        private final PreparedStatement statement;
+        private int repetition;
+
+        private Binder(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        public <T> @NotNull Binder set(@NotNull Column<T> column, T value) throws SQLException {
+            boolean bound = bind(column, value, headParameters, 1);
+            bound |= bind(column, value, groupParameters, headParameters.length + repetition * groupParameters.length + 1);
+            bound |= bind(column, value, tailParameters, headParameters.length + repetitions * groupParameters.length + 1);
+
+            if (!bound) {
+                throw new IllegalArgumentException(column.getName() + " is not a parameter of " + name);
+            }
+
+            return this;
+        }
+
+        /**
+         * Moves on to the next repetition of the group, e.g. the next row of a multi-row insert.
+         */
+        public @NotNull Binder next() {
+            if (++repetition >= repetitions) {
+                throw new IllegalStateException(name + " only repeats " + repetitions + " times");
+            }
+
+            return this;
+        }
+
+        public void addBatch() throws SQLException {
+            statement.addBatch();
+            repetition = 0;
+        }
+
+        public @NotNull PreparedStatement statement() {
+            return statement;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            statement.close();
+        }
+
+        // private methods
+        private <T> boolean bind(Column<T> column, T value, Column<?>[] parameters, int firstIndex) throws SQLException {
+            boolean bound = false;
+
+            for (int i = 0; i < parameters.length; i++) {
+                if (parameters[i] == column) {
+                    column.bind(statement, firstIndex + i, value);
+                    bound = true;
+                }
+            }
+
+            return bound;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package net.cozyvanilla.cozylib.modules.mysql.services.table;
 
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.SqlDialect;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -8,9 +10,19 @@ public final class TableBuilder {
     private final String tableName;
     private final List<ColumnBuilder> columns = new ArrayList<>();
     private final List<String> primaryKeys = new ArrayList<>();
-    private final List<String> indexes = new ArrayList<>();
+    private final List<IndexDefinition> indexes = new ArrayList<>();
     private final List<String> foreignKeys = new ArrayList<>();
 
+    public record IndexDefinition(String name, List<String> columns) {
+        String toSql() {
+            return "INDEX `" + name + "` (" +
+                    String.join(", ", columns.stream()
+                            .map(c -> "`" + c + "`")
+                            .toList()) +
+                    ")";
+        }
+    }
+
     public TableBuilder(String tableName) {
         this.tableName = tableName;
     }
@@ -21,19 +33,17 @@ public final class TableBuilder {
         return column;
     }
 
+    public ColumnBuilder column(Column<?> column) {
+        return column(column.getName(), column.getType());
+    }
+
     public TableBuilder primaryKey(String... columns) {
         primaryKeys.addAll(Arrays.asList(columns));
         return this;
     }
 
     public TableBuilder index(String indexName, String... columns) {
-        indexes.add(
-                "INDEX `" + indexName + "` (" +
-                        String.join(", ", Arrays.stream(columns)
-                                .map(c -> "`" + c + "`")
-                                .toList()) +
-                        ")"
-        );
+        indexes.add(new IndexDefinition(indexName, List.of(columns)));
         return this;
     }
 
@@ -73,7 +83,46 @@ public final class TableBuilder {
         return toSql();
     }
 
+    /**
+     * Builds the statements creating this table on the given storage backend.
+     *
+     * @param dialect the dialect to render for
+     * @return the statements to execute, in order
+     */
+    public List<String> build(SqlDialect dialect) {
+        return dialect.createTable(tableName, definitions());
+    }
+
+    /**
+     * Builds the comma separated column, key and index definitions, without the CREATE TABLE around them.
+     */
+    public String definitions() {
+        return String.join(", ", definitionList());
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<ColumnBuilder> getColumns() {
+        return List.copyOf(columns);
+    }
+
+    public List<String> getPrimaryKey() {
+        return List.copyOf(primaryKeys);
+    }
+
+    public List<IndexDefinition> getIndexes() {
+        return List.copyOf(indexes);
+    }
+
     private String toSql() {
+        return "CREATE TABLE IF NOT EXISTS `" + tableName + "` (\n  " +
+                String.join(",\n  ", definitionList()) +
+                "\n);";
+    }
+
+    private List<String> definitionList() {
         List<String> definitions = new ArrayList<>();
 
         for (ColumnBuilder column : columns) {
@@ -90,11 +139,9 @@ public final class TableBuilder {
             );
         }
 
-        definitions.addAll(indexes);
+        indexes.forEach(index -> definitions.add(index.toSql()));
         definitions.addAll(foreignKeys);
 
-        return "CREATE TABLE IF NOT EXISTS `" + tableName + "` (\n  " +
-                String.join(",\n  ", definitions) +
-                "\n);";
+        return definitions;
     }
 }
\ No newline at end of file
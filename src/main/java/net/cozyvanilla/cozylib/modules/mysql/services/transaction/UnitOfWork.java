@@ -0,0 +1,162 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.transaction;
+
+import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ConnectionCallback;
+import net.cozyvanilla.cozylib.runtime.MySQLConnection;
+import net.cozyvanilla.cozylib.runtime.ShardRouter;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Gathers writes from any number of repositories and commits them together, on one connection in
+ * one transaction, e.g. everything a player save touches.
+ *
+ * <p>Repositories add their batched statements through {@code AbstractMySQL.stage}; nothing runs
+ * until {@link #commit()}. Either every staged step is committed or, if one fails, none is. Staged
+ * writes go straight to the database, bypassing write-behind buffers and journals, and players
+ * with staged writes are pinned to the primary for the read-your-writes window once committed.
+ *
+ * <p>Steps writing a sharded table run on the shard of their player, so every player a unit
+ * touches in sharded tables must live on the same shard, and unsharded steps can only join them
+ * on shard 0. A unit per player always satisfies that.
+ *
+ * <p>A unit is meant to be filled by one thread and committed once.
+ */
+public final class UnitOfWork {
+    private static final String EXECUTOR_KEY = "unit-of-work";
+
+    private final Plugin plugin;
+    private final List<ConnectionCallback<?>> steps = new ArrayList<>();
+    private final Set<UUID> players = new HashSet<>();
+    private final Set<UUID> shardedPlayers = new HashSet<>();
+    private boolean unsharded;
+    private boolean committed;
+
+    /**
+     * @param plugin the plugin whose bulkhead partition the transaction's connection counts against
+     */
+    public UnitOfWork(@NotNull Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Adds a step, run in order with the others when the unit commits.
+     *
+     * @param player the player whose data the step writes, or null
+     * @param step the work, which must not close the connection or commit
+     * @return this unit
+     */
+    public @NotNull UnitOfWork add(@Nullable UUID player, @NotNull ConnectionCallback<?> step) {
+        return add(player, false, step);
+    }
+
+    /**
+     * Adds a step writing a sharded table, run on the player's shard when the unit commits.
+     *
+     * @param player the player whose data the step writes
+     * @param step the work, which must not close the connection or commit
+     * @return this unit
+     */
+    public @NotNull UnitOfWork addSharded(@NotNull UUID player, @NotNull ConnectionCallback<?> step) {
+        return add(player, true, step);
+    }
+
+    public boolean isEmpty() {
+        return steps.isEmpty();
+    }
+
+    public int size() {
+        return steps.size();
+    }
+
+    /**
+     * Runs every staged step in one transaction on the calling thread. Must not be called from the
+     * main thread.
+     *
+     * @throws SQLException if a step or the commit failed; nothing was written
+     */
+    public void commit() throws SQLException {
+        if (committed) {
+            throw new IllegalStateException("Unit of work was already committed");
+        }
+
+        committed = true;
+        if (steps.isEmpty()) return;
+
+        MySQLConnection.transaction(plugin, shard(), connection -> {
+            for (ConnectionCallback<?> step : steps) {
+                step.apply(connection);
+            }
+
+            return null;
+        });
+
+        players.forEach(MySQLConnection::markWritten);
+    }
+
+    /**
+     * Commits the unit on the database executor.
+     *
+     * @return a future containing whether the unit was committed
+     */
+    public @NotNull CompletableFuture<Boolean> commitAsync() {
+        return MySQLConnection.supplyAsync(plugin, EXECUTOR_KEY, () -> {
+            try {
+                commit();
+                return true;
+            } catch (SQLException e) {
+                Logger.severe("Failed to commit a unit of work of " + steps.size() + " steps for " + players.size() + " players", e);
+                return false;
+            }
+        });
+    }
+
+    // private methods
+    private UnitOfWork add(@Nullable UUID player, boolean sharded, ConnectionCallback<?> step) {
+        if (committed) {
+            throw new IllegalStateException("Unit of work was already committed");
+        }
+
+        steps.add(step);
+        if (player != null) players.add(player);
+
+        if (sharded) {
+            shardedPlayers.add(player);
+        } else {
+            unsharded = true;
+        }
+
+        return this;
+    }
+
+    private int shard() throws SQLException {
+        ShardRouter router = MySQLConnection.getShardRouter();
+        if (router == null || shardedPlayers.isEmpty()) return 0;
+
+        int shard = -1;
+        for (UUID player : shardedPlayers) {
+            int current = router.writeShardOf(player);
+
+            if (shard >= 0 && current != shard) {
+                throw new IllegalStateException("Unit of work spans shards " + shard + " and " + current);
+            }
+
+            shard = current;
+        }
+
+        if (unsharded && shard != 0) {
+            throw new IllegalStateException("Unit of work mixes unsharded tables with shard " + shard);
+        }
+
+        return shard;
+    }
+}
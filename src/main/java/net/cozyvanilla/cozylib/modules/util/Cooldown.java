@@ -1,46 +1,26 @@
 package net.cozyvanilla.cozylib.modules.util;
 
-import net.cozyvanilla.cozylib.util.external.PerEntryExpiryCache;
-
-import java.time.Duration;
 import java.util.Objects;
 import java.util.UUID;
 
+/**
+ * Static cooldown API, kept for compatibility. Every call resolves a {@link CooldownHandle}, so
+ * code checking cooldowns often should register a handle once and use it directly.
+ */
 public final class Cooldown {
 
     private Cooldown() {}
 
     /**
-     * Utility class for handling named cooldowns per owner, player, and id.
-     */
-    private static final PerEntryExpiryCache<String, Long> EXPIRY_TIMESTAMPS =
-            PerEntryExpiryCache.create(10_000, key -> Duration.ofSeconds(60));
-
-    /**
-     * Builds a unique cooldown key from the owner class, player UUID, and cooldown id.
+     * Resolves the registered handle of a cooldown. Callers on hot paths should keep the
+     * {@link CooldownHandle} themselves instead.
      *
      * @param owner class that owns the cooldown
-     * @param uuid player UUID
      * @param id cooldown identifier
-     * @return unique cache key for the cooldown
-     */
-    private static String keyOf(Class<?> owner, UUID uuid, String id) {
-        Objects.requireNonNull(owner, "owner");
-        Objects.requireNonNull(uuid, "uuid");
-        Objects.requireNonNull(id, "id");
-
-        return owner.getName() + ":" + uuid + ":" + id;
-    }
-
-    /**
-     * Stores a cooldown entry using the given key and duration.
-     *
-     * @param key unique cooldown key
-     * @param seconds cooldown duration in seconds
+     * @return the cooldown's handle
      */
-    private static void add(String key, long seconds) {
-        long future = System.currentTimeMillis() + (seconds * 1000L);
-        EXPIRY_TIMESTAMPS.put(key, future, Duration.ofSeconds(seconds));
+    private static CooldownHandle handleOf(Class<?> owner, String id) {
+        return CooldownHandle.register(owner, id);
     }
 
     /**
@@ -53,11 +33,7 @@ public final class Cooldown {
      * @throws IllegalArgumentException if seconds is not greater than 0
      */
     public static void start(Class<?> owner, UUID uuid, String id, long seconds) {
-        if (seconds <= 0) {
-            throw new IllegalArgumentException("seconds must be greater than 0");
-        }
-
-        add(keyOf(owner, uuid, id), seconds);
+        handleOf(owner, id).start(Objects.requireNonNull(uuid, "uuid"), seconds);
     }
 
     /**
@@ -67,21 +43,11 @@ public final class Cooldown {
      * @param uuid player UUID
      * @param id cooldown identifier
      * @param seconds cooldown duration in seconds
-     * @return true if the cooldown was started, false if already active or invalid
+     * @return true if the cooldown was started, false if already active
+     * @throws IllegalArgumentException if seconds is not greater than 0
      */
     public static boolean tryStart(Class<?> owner, UUID uuid, String id, long seconds) {
-        if (seconds <= 0) {
-            throw new IllegalArgumentException("seconds must be greater than 0");
-        }
-
-        String key = keyOf(owner, uuid, id);
-        Long expiresAt = EXPIRY_TIMESTAMPS.getIfPresent(key);
-        if (expiresAt == null) {
-            start(owner, uuid, id, seconds);
-            return true;
-        }
-
-        return false;
+        return handleOf(owner, id).tryStart(Objects.requireNonNull(uuid, "uuid"), seconds);
     }
 
     /**
@@ -93,8 +59,7 @@ public final class Cooldown {
      * @return remaining time in seconds, or 0 if no cooldown exists
      */
     public static long get(Class<?> owner, UUID uuid, String id) {
-        Long expiresAt = EXPIRY_TIMESTAMPS.getIfPresent(keyOf(owner, uuid, id));
-        return expiresAt == null ? 0L : ((expiresAt - System.currentTimeMillis()) / 1000);
+        return handleOf(owner, id).get(Objects.requireNonNull(uuid, "uuid"));
     }
 
     /**
@@ -107,17 +72,6 @@ public final class Cooldown {
      * @return remaining seconds, 0 if a new cooldown was started
      */
     public static long getOrStart(Class<?> owner, UUID uuid, String id, long seconds) {
-        if (seconds <= 0) {
-            throw new IllegalArgumentException("seconds must be greater than 0");
-        }
-
-        String key = keyOf(owner, uuid, id);
-        Long expiresAt = EXPIRY_TIMESTAMPS.getIfPresent(key);
-        if (expiresAt != null) {
-            return get(owner, uuid, id);
-        }
-
-        start(owner, uuid, id, seconds);
-        return 0;
+        return handleOf(owner, id).getOrStart(Objects.requireNonNull(uuid, "uuid"), seconds);
     }
 }
\ No newline at end of file
@@ -0,0 +1,171 @@
+package net.cozyvanilla.cozylib.modules.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A named cooldown registered once per owner and id, checked per player without allocating.
+ *
+ * <p>Registering interns the owner and id to an int, and every check looks the player up by the
+ * two halves of their UUID in a shared primitive table holding the expiry as a raw {@code long}.
+ * Keep the handle in a field and use it from event handlers:
+ *
+ * <pre>{@code
+ * private static final CooldownHandle USE = CooldownHandle.register(MyListener.class, "use");
+ *
+ * if (!USE.tryStart(player.getUniqueId(), 3)) return;
+ * }</pre>
+ */
+public final class CooldownHandle {
+    private static final CooldownTable TABLE = new CooldownTable();
+    private static final AtomicInteger NEXT_INDEX = new AtomicInteger();
+    private static final ClassValue<Map<String, CooldownHandle>> HANDLES = new ClassValue<>() {
+        @Override
+        protected Map<String, CooldownHandle> computeValue(@NotNull Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final Class<?> owner;
+    private final String id;
+    private final int index;
+
+    private CooldownHandle(Class<?> owner, String id, int index) {
+        this.owner = owner;
+        this.id = id;
+        this.index = index;
+    }
+
+    /**
+     * Gets the handle of a cooldown, registering it on first use. Registering the same owner and
+     * id again returns the same handle.
+     *
+     * @param owner class that owns the cooldown
+     * @param id cooldown identifier
+     * @return the handle
+     */
+    public static @NotNull CooldownHandle register(@NotNull Class<?> owner, @NotNull String id) {
+        Objects.requireNonNull(owner, "owner");
+        Objects.requireNonNull(id, "id");
+
+        Map<String, CooldownHandle> handles = HANDLES.get(owner);
+        CooldownHandle handle = handles.get(id);
+        if (handle != null) return handle;
+
+        return handles.computeIfAbsent(id, key -> new CooldownHandle(owner, key, NEXT_INDEX.getAndIncrement()));
+    }
+
+    /**
+     * Starts the cooldown, replacing one that is already active.
+     *
+     * @param uuid player UUID
+     * @param seconds cooldown duration in seconds
+     * @throws IllegalArgumentException if seconds is not greater than 0
+     */
+    public void start(@NotNull UUID uuid, long seconds) {
+        long expiresAt = expiresAt(seconds);
+        TABLE.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), index,
+                expiresAt, System.currentTimeMillis());
+    }
+
+    /**
+     * Starts the cooldown only if one is not already active.
+     *
+     * @param uuid player UUID
+     * @param seconds cooldown duration in seconds
+     * @return true if the cooldown was started, false if already active
+     * @throws IllegalArgumentException if seconds is not greater than 0
+     */
+    public boolean tryStart(@NotNull UUID uuid, long seconds) {
+        long expiresAt = expiresAt(seconds);
+        return TABLE.putIfAbsent(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), index,
+                expiresAt, System.currentTimeMillis()) == 0L;
+    }
+
+    /**
+     * Gets the remaining cooldown time in seconds.
+     *
+     * @param uuid player UUID
+     * @return remaining time in seconds, or 0 if no cooldown is active
+     */
+    public long get(@NotNull UUID uuid) {
+        return getMillis(uuid) / 1000;
+    }
+
+    /**
+     * Gets the remaining cooldown time in milliseconds.
+     *
+     * @param uuid player UUID
+     * @return remaining time in milliseconds, or 0 if no cooldown is active
+     */
+    public long getMillis(@NotNull UUID uuid) {
+        long now = System.currentTimeMillis();
+        long expiresAt = TABLE.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), index, now);
+        return expiresAt == 0L ? 0L : expiresAt - now;
+    }
+
+    /**
+     * Gets the remaining cooldown time in seconds, or starts the cooldown if none is active.
+     *
+     * @param uuid player UUID
+     * @param seconds cooldown duration in seconds
+     * @return remaining seconds, 0 if a new cooldown was started
+     * @throws IllegalArgumentException if seconds is not greater than 0
+     */
+    public long getOrStart(@NotNull UUID uuid, long seconds) {
+        long expiresAt = expiresAt(seconds);
+        long now = System.currentTimeMillis();
+        long active = TABLE.putIfAbsent(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), index,
+                expiresAt, now);
+
+        return active == 0L ? 0L : (active - now) / 1000;
+    }
+
+    public boolean isActive(@NotNull UUID uuid) {
+        return TABLE.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), index,
+                System.currentTimeMillis()) != 0L;
+    }
+
+    /**
+     * Ends the cooldown of a player early.
+     */
+    public void clear(@NotNull UUID uuid) {
+        TABLE.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), index);
+    }
+
+    /**
+     * Ends the cooldown of every player.
+     */
+    public void clearAll() {
+        TABLE.removeAll(index);
+    }
+
+    public @NotNull Class<?> getOwner() {
+        return owner;
+    }
+
+    public @NotNull String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the number of stored cooldowns over all handles, including expired ones not yet swept.
+     */
+    public static int size() {
+        return TABLE.size();
+    }
+
+    // private methods
+    private static long expiresAt(long seconds) {
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("seconds must be greater than 0");
+        }
+
+        return System.currentTimeMillis() + (seconds * 1000L);
+    }
+}
@@ -0,0 +1,214 @@
+package net.cozyvanilla.cozylib.modules.util;
+
+/**
+ * Open-addressing map from (UUID msb, UUID lsb, handle index) to an expiry time in epoch millis,
+ * backing every {@link CooldownHandle}.
+ *
+ * <p>Keys and expiries live in parallel primitive arrays, so lookups and updates allocate nothing.
+ * The table is split into segments, each guarded by its own monitor. Expired entries are treated
+ * as absent and are swept out of a segment before it grows, so no timer is needed.
+ */
+final class CooldownTable {
+    private static final int SEGMENTS = 16;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    CooldownTable() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * @return the expiry, or 0 if no cooldown is active
+     */
+    long get(long msb, long lsb, int handle, long now) {
+        long hash = hash(msb, lsb, handle);
+        return segment(hash).get(hash, msb, lsb, handle, now);
+    }
+
+    void put(long msb, long lsb, int handle, long expiresAt, long now) {
+        long hash = hash(msb, lsb, handle);
+        segment(hash).put(hash, msb, lsb, handle, expiresAt, now, false);
+    }
+
+    /**
+     * Stores the expiry unless a cooldown is still active.
+     *
+     * @return the active expiry, or 0 if the given one was stored
+     */
+    long putIfAbsent(long msb, long lsb, int handle, long expiresAt, long now) {
+        long hash = hash(msb, lsb, handle);
+        return segment(hash).put(hash, msb, lsb, handle, expiresAt, now, true);
+    }
+
+    void remove(long msb, long lsb, int handle) {
+        long hash = hash(msb, lsb, handle);
+        segment(hash).remove(hash, msb, lsb, handle);
+    }
+
+    /**
+     * Drops every entry of a handle, active or not.
+     */
+    void removeAll(int handle) {
+        for (Segment segment : segments) {
+            segment.removeAll(handle);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    // private methods
+    private Segment segment(long hash) {
+        return segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+    }
+
+    static long hash(long msb, long lsb, int handle) {
+        long h = msb * 0x9e3779b97f4a7c15L ^ lsb ^ (long) handle * 0xc2b2ae3d27d4eb4fL;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // linear probing with backward-shift deletion, an expiry of 0 marks an empty slot
+    private static final class Segment {
+        private long[] msbs = new long[INITIAL_CAPACITY];
+        private long[] lsbs = new long[INITIAL_CAPACITY];
+        private int[] handles = new int[INITIAL_CAPACITY];
+        private long[] expiries = new long[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized long get(long hash, long msb, long lsb, int handle, long now) {
+            int slot = find(hash, msb, lsb, handle);
+            if (slot < 0) return 0L;
+
+            long expiresAt = expiries[slot];
+            return expiresAt > now ? expiresAt : 0L;
+        }
+
+        synchronized long put(long hash, long msb, long lsb, int handle, long expiresAt, long now, boolean ifAbsent) {
+            int slot = find(hash, msb, lsb, handle);
+
+            if (slot >= 0) {
+                long current = expiries[slot];
+                if (ifAbsent && current > now) return current;
+
+                expiries[slot] = expiresAt;
+                return 0L;
+            }
+
+            if ((size + 1) * 2 > expiries.length) {
+                sweep(now);
+                if ((size + 1) * 2 > expiries.length) resize(expiries.length * 2);
+            }
+
+            insert(hash, msb, lsb, handle, expiresAt);
+            return 0L;
+        }
+
+        synchronized void remove(long hash, long msb, long lsb, int handle) {
+            int slot = find(hash, msb, lsb, handle);
+            if (slot >= 0) delete(slot);
+        }
+
+        synchronized void removeAll(int handle) {
+            for (int slot = 0; slot < expiries.length; ) {
+                // a deletion shifts the next entry into this slot, so it is checked again
+                if (expiries[slot] != 0L && handles[slot] == handle) {
+                    delete(slot);
+                } else {
+                    slot++;
+                }
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private int find(long hash, long msb, long lsb, int handle) {
+            int mask = expiries.length - 1;
+
+            for (int slot = (int) hash & mask; expiries[slot] != 0L; slot = (slot + 1) & mask) {
+                if (msbs[slot] == msb && lsbs[slot] == lsb && handles[slot] == handle) return slot;
+            }
+
+            return -1;
+        }
+
+        private void insert(long hash, long msb, long lsb, int handle, long expiresAt) {
+            int mask = expiries.length - 1;
+            int slot = (int) hash & mask;
+
+            while (expiries[slot] != 0L) {
+                slot = (slot + 1) & mask;
+            }
+
+            msbs[slot] = msb;
+            lsbs[slot] = lsb;
+            handles[slot] = handle;
+            expiries[slot] = expiresAt;
+            size++;
+        }
+
+        private void delete(int slot) {
+            int mask = expiries.length - 1;
+            int hole = slot;
+
+            for (int next = (hole + 1) & mask; expiries[next] != 0L; next = (next + 1) & mask) {
+                int home = (int) hash(msbs[next], lsbs[next], handles[next]) & mask;
+
+                // move the entry back if the hole lies between its home slot and where it sits
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    msbs[hole] = msbs[next];
+                    lsbs[hole] = lsbs[next];
+                    handles[hole] = handles[next];
+                    expiries[hole] = expiries[next];
+                    hole = next;
+                }
+            }
+
+            expiries[hole] = 0L;
+            size--;
+        }
+
+        private void sweep(long now) {
+            for (int slot = 0; slot < expiries.length; ) {
+                if (expiries[slot] != 0L && expiries[slot] <= now) {
+                    delete(slot);
+                } else {
+                    slot++;
+                }
+            }
+        }
+
+        private void resize(int capacity) {
+            long[] oldMsbs = msbs;
+            long[] oldLsbs = lsbs;
+            int[] oldHandles = handles;
+            long[] oldExpiries = expiries;
+
+            msbs = new long[capacity];
+            lsbs = new long[capacity];
+            handles = new int[capacity];
+            expiries = new long[capacity];
+            size = 0;
+
+            for (int slot = 0; slot < oldExpiries.length; slot++) {
+                if (oldExpiries[slot] == 0L) continue;
+                insert(hash(oldMsbs[slot], oldLsbs[slot], oldHandles[slot]),
+                        oldMsbs[slot], oldLsbs[slot], oldHandles[slot], oldExpiries[slot]);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package net.cozyvanilla.cozylib.runtime;
+
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ConnectionSupplier;
+import net.cozyvanilla.cozylib.modules.mysql.services.metrics.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps how many pooled connections one consuming plugin may hold at once.
+ *
+ * <p>Every plugin extending {@code AbstractMySQL} shares the same pools, so without a cap a
+ * plugin running a slow report could hold every connection and stall everyone's saves. Each
+ * plugin gets its own partition: borrowing a connection first takes one of the partition's
+ * permits, waiting at most the partition's timeout, and closing the connection gives it back.
+ *
+ * <p>A thread that already holds a connection of the partition borrows further ones without a
+ * permit, so nested calls such as interning a name inside a write cannot deadlock on the cap.
+ */
+public final class ConnectionBulkhead {
+    private final String name;
+    private final int maxConnections;
+    private final long timeoutMillis;
+    private final Semaphore permits;
+    private final ThreadLocal<int[]> held = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final LatencyHistogram waits = new LatencyHistogram();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public record Stats(String name, int maxConnections, int inUse, long acquired, long timeouts,
+                        double averageWaitMillis, double p99WaitMillis) {}
+
+    public ConnectionBulkhead(@NotNull String name, int maxConnections, long timeoutMillis) {
+        this.name = name;
+        this.maxConnections = Math.max(1, maxConnections);
+        this.timeoutMillis = Math.max(0L, timeoutMillis);
+        this.permits = new Semaphore(this.maxConnections, true);
+    }
+
+    /**
+     * Borrows a connection within this partition's cap.
+     *
+     * @param pool where the connection is borrowed from once a permit is held
+     * @return a connection that returns its permit when closed
+     * @throws SQLException if no permit freed up within the timeout, or the pool failed
+     */
+    public @NotNull Connection acquire(@NotNull ConnectionSupplier pool) throws SQLException {
+        int[] count = held.get();
+
+        if (count[0] > 0) {
+            return track(pool.getConnection(), false);
+        }
+
+        long start = System.nanoTime();
+
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTransientConnectionException(name + " holds all of its " + maxConnections +
+                        " connections, none freed up within " + timeoutMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection of " + name, e);
+        }
+
+        waits.record((System.nanoTime() - start) / 1_000L);
+
+        try {
+            Connection connection = pool.getConnection();
+            acquired.increment();
+            return track(connection, true);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    public @NotNull Stats getStats() {
+        return new Stats(
+                name,
+                maxConnections,
+                maxConnections - permits.availablePermits(),
+                acquired.sum(),
+                timeouts.sum(),
+                waits.getMean() / 1_000.0,
+                waits.percentile(99) / 1_000.0);
+    }
+
+    // private methods
+    private Connection track(Connection connection, boolean permit) {
+        int[] count = held.get();
+        count[0]++;
+
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Releasing(connection, count, permit ? permits : null));
+    }
+
+    private static final class Releasing implements InvocationHandler {
+        private final Connection delegate;
+        private final int[] count;
+        private final Semaphore permits;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Releasing(Connection delegate, int[] count, Semaphore permits) {
+            this.delegate = delegate;
+            this.count = count;
+            this.permits = permits;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("close") && closed.compareAndSet(false, true)) {
+                try {
+                    delegate.close();
+                } finally {
+                    // connections are closed on the thread that borrowed them
+                    count[0]--;
+                    if (permits != null) permits.release();
+                }
+
+                return null;
+            }
+
+            try {
+                return method.invoke(delegate, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
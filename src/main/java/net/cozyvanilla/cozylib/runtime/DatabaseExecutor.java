@@ -0,0 +1,270 @@
+package net.cozyvanilla.cozylib.runtime;
+
+import net.cozyvanilla.cozylib.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor for blocking JDBC work, sized to the connection pool.
+ *
+ * <p>Every task is queued under a key (usually the repository's table name). Workers take tasks
+ * round-robin across keys, so a repository that floods the queue only delays itself: other
+ * repositories still get a worker as soon as one frees up.
+ *
+ * <p>Once {@code capacity} tasks are waiting, new tasks are either rejected or run on the
+ * submitting thread, depending on the configured {@link RejectionPolicy}.
+ */
+public final class DatabaseExecutor {
+
+    public enum RejectionPolicy {
+        /** Fail the returned future with a {@link RejectedExecutionException}. */
+        ABORT,
+        /** Run the task on the submitting thread, slowing the producer down. Blocks the main thread if it submitted. */
+        CALLER_RUNS
+    }
+
+    public record Stats(int queueDepth, int activeWorkers, long completed, long rejected,
+                        double averageWaitMillis, double maxWaitMillis, Map<String, Integer> depthByKey) {}
+
+    private record Task(Runnable runnable, long enqueuedAt) {}
+
+    private final int capacity;
+    private final RejectionPolicy policy;
+    private final Thread[] workers;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<String, ArrayDeque<Task>> queues = new HashMap<>();
+    private final ArrayDeque<String> ready = new ArrayDeque<>();
+    private int size;
+    private int active;
+    private boolean shutdown;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public DatabaseExecutor(@NotNull String name, int threads, int capacity, @NotNull RejectionPolicy policy) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be greater than 0");
+        }
+
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+        this.workers = new Thread[threads];
+
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(this::work, name + "-" + i);
+            thread.setDaemon(true);
+            workers[i] = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Runs a supplier on a database worker.
+     *
+     * @param key the fairness key, usually the table name
+     * @param supplier the blocking work
+     * @param <T> the supplied value type
+     * @return a future containing the supplied value
+     */
+    public <T> CompletableFuture<T> supplyAsync(@NotNull String key, @NotNull Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        Runnable runnable = () -> {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        };
+
+        if (!offer(key, runnable)) {
+            rejected.incrementAndGet();
+
+            if (policy == RejectionPolicy.CALLER_RUNS && !isShutdown()) {
+                runnable.run();
+            } else {
+                future.completeExceptionally(new RejectedExecutionException(
+                        "Database queue is full (" + capacity + " tasks), rejected task for " + key));
+            }
+        }
+
+        return future;
+    }
+
+    /**
+     * Runs a task on a database worker.
+     *
+     * @param key the fairness key, usually the table name
+     * @param runnable the blocking work
+     * @return a future completed when the task finishes
+     */
+    public CompletableFuture<Void> runAsync(@NotNull String key, @NotNull Runnable runnable) {
+        return supplyAsync(key, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Stops accepting tasks, lets queued tasks finish and waits for the workers to exit.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     */
+    public void shutdown(long timeout, @NotNull TimeUnit unit) {
+        lock.lock();
+        try {
+            shutdown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread worker : workers) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            try {
+                if (remaining > 0) worker.join(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        for (Thread worker : workers) {
+            if (worker.isAlive()) {
+                Logger.warning("Database worker " + worker.getName() + " did not finish in time, interrupting");
+                worker.interrupt();
+            }
+        }
+    }
+
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return shutdown;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            Map<String, Integer> depthByKey = new TreeMap<>();
+            queues.forEach((key, queue) -> depthByKey.put(key, queue.size()));
+
+            long count = completed.get();
+            return new Stats(
+                    size,
+                    active,
+                    count,
+                    rejected.get(),
+                    count == 0 ? 0 : totalWaitNanos.get() / (double) count / 1_000_000.0,
+                    maxWaitNanos.get() / 1_000_000.0,
+                    depthByKey);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // private methods
+    private boolean offer(String key, Runnable runnable) {
+        lock.lock();
+        try {
+            if (shutdown || size >= capacity) return false;
+
+            ArrayDeque<Task> queue = queues.computeIfAbsent(key, ignored -> new ArrayDeque<>());
+            if (queue.isEmpty()) {
+                ready.addLast(key);
+            }
+
+            queue.addLast(new Task(runnable, System.nanoTime()));
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Task take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (ready.isEmpty()) {
+                if (shutdown) return null;
+                notEmpty.await();
+            }
+
+            String key = ready.pollFirst();
+            ArrayDeque<Task> queue = queues.get(key);
+            Task task = queue.pollFirst();
+
+            // keys with more work go to the back of the line
+            if (queue.isEmpty()) {
+                queues.remove(key);
+            } else {
+                ready.addLast(key);
+            }
+
+            size--;
+            active++;
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Task task;
+            try {
+                task = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (task == null) return;
+
+            long waited = System.nanoTime() - task.enqueuedAt();
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+            try {
+                task.runnable().run();
+            } catch (Throwable t) {
+                Logger.severe("Database task failed: ", t);
+            } finally {
+                completed.incrementAndGet();
+
+                lock.lock();
+                try {
+                    active--;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
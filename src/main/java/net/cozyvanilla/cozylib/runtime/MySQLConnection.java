@@ -5,22 +5,62 @@ import com.zaxxer.hikari.HikariDataSource;
 import net.cozyvanilla.cozylib.Config;
 import net.cozyvanilla.cozylib.Logger;
 import net.cozyvanilla.cozylib.common.enums.MessageType;
+import net.cozyvanilla.cozylib.common.enums.StorageBackend;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ConnectionCallback;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.SqlDialect;
+import net.cozyvanilla.cozylib.modules.mysql.services.dialect.MySQLDialect;
+import net.cozyvanilla.cozylib.modules.mysql.services.dialect.SQLiteDialect;
+import net.cozyvanilla.cozylib.modules.mysql.services.metrics.QueryMetrics;
 import net.cozyvanilla.cozylib.modules.util.Console;
+import net.cozyvanilla.cozylib.util.paper.FutureUtils;
 import org.bukkit.plugin.Plugin;
 
+import java.io.File;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public final class MySQLConnection {
+    private static final int MAXIMUM_POOL_SIZE = 10;
+    private static final long EXECUTOR_SHUTDOWN_SECONDS = 30L;
+    private static final int SQLITE_BUSY_TIMEOUT_MILLIS = 5000;
+    public static final int PREPARED_STATEMENT_CACHE_SIZE = 250;
+    public static final int PREPARED_STATEMENT_SQL_LIMIT = 2048;
+
     private final Plugin plugin;
     private static HikariDataSource hikariDataSource;
+    private static DatabaseExecutor executor;
+    private static SqlDialect dialect = new MySQLDialect();
+    private static SQLiteWriter sqliteWriter;
+    private static ReplicaRouter replicaRouter;
+    private static ShardRouter shardRouter;
+    private static final Map<String, ConnectionBulkhead> bulkheads = new ConcurrentHashMap<>();
 
     public MySQLConnection(Plugin plugin) {
         this.plugin = plugin;
         enable();
     }
 
-    public void enable() {
+    public synchronized void enable() {
+        // enabling twice would open a second set of replica and shard pools and leak the first
+        if (hikariDataSource != null && !hikariDataSource.isClosed()) return;
+
+        Config.StorageConfig storage = Config.getStorageConfig();
+
+        if (storage.backend() == StorageBackend.SQLITE) {
+            enableSQLite(storage);
+            return;
+        }
+
         Config.MySQLConfig config = Config.getMySQLConfig();
         hikariDataSource = getHikari(
                 config.poolName(),
@@ -28,9 +68,24 @@ public final class MySQLConnection {
                 config.port(),
                 config.username(),
                 config.password(),
-                config.dbName());
+                config.dbName(),
+                MAXIMUM_POOL_SIZE,
+                false);
 
         if (hikariDataSource != null) {
+            dialect = new MySQLDialect();
+            startReplicas(config);
+
+            if (!startShards(config)) {
+                plugin.getServer().getPluginManager().disablePlugin(plugin);
+                return;
+            }
+
+            configureMetrics();
+            // reads on replicas and shards no longer wait for primary connections, so they get their own workers
+            startExecutor(MAXIMUM_POOL_SIZE
+                    + replicaRouter.getReplicaCount() * Config.getReplicaConfig().poolSize()
+                    + (shardRouter.getShardCount() - 1) * Config.getShardConfig().poolSize());
             return;
         }
 
@@ -38,9 +93,154 @@ public final class MySQLConnection {
         plugin.getServer().getPluginManager().disablePlugin(plugin);
     }
 
-    public void disable() { closeConnection(); }
+    public void disable() {
+        stopExecutor();
+        stopWriter();
+        stopReplicas();
+        stopShards();
+        closeConnection();
+        bulkheads.clear();
+    }
+
+    private void enableSQLite(Config.StorageConfig storage) {
+        File file = new File(plugin.getDataFolder(), storage.sqliteFile());
+        String url = "jdbc:sqlite:" + file.getAbsolutePath() +
+                "?journal_mode=WAL&synchronous=NORMAL&busy_timeout=" + SQLITE_BUSY_TIMEOUT_MILLIS;
+
+        try {
+            if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+                throw new SQLException("Could not create " + file.getParentFile());
+            }
+
+            // the writer opens first so WAL mode is set before any reader connects
+            startWriter(url, storage.groupCommitSize());
+
+            HikariConfig hikariConfig = new HikariConfig();
+            hikariConfig.setPoolName(Config.getMySQLConfig().poolName() + "-sqlite");
+            hikariConfig.setJdbcUrl(url);
+            hikariConfig.setMaximumPoolSize(storage.readPoolSize());
+            hikariConfig.setMinimumIdle(1);
+            hikariConfig.setConnectionTimeout(10000);
+
+            hikariDataSource = new HikariDataSource(hikariConfig);
+            dialect = new SQLiteDialect();
+            configureMetrics();
+            startExecutor(storage.readPoolSize());
+
+            Console.print("Using embedded SQLite storage at " + file.getPath(), MessageType.INFO);
+
+        } catch (Exception e) {
+            Logger.severe("Failed to open SQLite database " + file.getPath(), e);
+            stopWriter();
+            plugin.getServer().getPluginManager().disablePlugin(plugin);
+        }
+    }
+
+    private void startReplicas(Config.MySQLConfig config) {
+        Config.ReplicaConfig replicaConfig = Config.getReplicaConfig();
+        List<HikariDataSource> replicas = new ArrayList<>();
+
+        for (String address : replicaConfig.hosts()) {
+            int separator = address.lastIndexOf(':');
+            String host = separator < 0 ? address : address.substring(0, separator);
+            int port = config.port();
+
+            try {
+                if (separator >= 0) port = Integer.parseInt(address.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                Logger.severe("Invalid read replica address " + address + ", expected host:port", e);
+                continue;
+            }
+
+            HikariDataSource replica = getHikari(
+                    config.poolName() + "-replica-" + (replicas.size() + 1),
+                    host,
+                    port,
+                    config.username(),
+                    config.password(),
+                    config.dbName(),
+                    replicaConfig.poolSize(),
+                    true);
+
+            if (replica != null) {
+                replicas.add(replica);
+            }
+        }
+
+        replicaRouter = new ReplicaRouter(hikariDataSource, replicas, replicaConfig.readYourWritesMillis());
+
+        if (!replicas.isEmpty()) {
+            Console.print("Routing reads to " + replicas.size() + " read replica(s)", MessageType.INFO);
+        }
+    }
+
+    private boolean startShards(Config.MySQLConfig config) {
+        Config.ShardConfig shardConfig = Config.getShardConfig();
+        List<HikariDataSource> shards = new ArrayList<>();
+        shards.add(hikariDataSource);
 
-    private HikariDataSource getHikari(String poolName, String host, int port, String user, String pass, String dbName) {
+        for (String address : shardConfig.hosts()) {
+            int separator = address.lastIndexOf(':');
+            String host = separator < 0 ? address : address.substring(0, separator);
+            int port = config.port();
+
+            try {
+                if (separator >= 0) port = Integer.parseInt(address.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                Logger.severe("Invalid shard address " + address + ", expected host:port", e);
+                port = -1;
+            }
+
+            HikariDataSource shard = port < 0 ? null : getHikari(
+                    config.poolName() + "-shard-" + shards.size(),
+                    host,
+                    port,
+                    config.username(),
+                    config.password(),
+                    config.dbName(),
+                    shardConfig.poolSize(),
+                    false);
+
+            // a skipped shard would silently re-home its players, refuse to start instead
+            if (shard == null) {
+                Logger.severe("Shard " + address + " is unavailable, sharded player data would be unreachable");
+                shards.subList(1, shards.size()).forEach(HikariDataSource::close);
+                return false;
+            }
+
+            shards.add(shard);
+        }
+
+        shardRouter = new ShardRouter(shards, shardConfig.previousCount(), shardConfig.placementCacheSeconds() * 1000L);
+
+        if (shards.size() > 1) {
+            Console.print("Sharding player tables over " + shards.size() + " MySQL servers", MessageType.INFO);
+
+            try (Connection connection = getConnection()) {
+                shardRouter.createPlacementTable(connection, dialect);
+            } catch (SQLException e) {
+                Logger.severe("Failed to create " + ShardRouter.PLACEMENT_TABLE, e);
+            }
+        }
+
+        return true;
+    }
+
+    private static synchronized void stopShards() {
+        if (shardRouter != null) {
+            shardRouter.close();
+            shardRouter = null;
+        }
+    }
+
+    private static synchronized void stopReplicas() {
+        if (replicaRouter != null) {
+            replicaRouter.close();
+            replicaRouter = null;
+        }
+    }
+
+    private HikariDataSource getHikari(String poolName, String host, int port, String user, String pass, String dbName, int poolSize, boolean readOnly) {
         try {
             HikariConfig hikariConfig = new HikariConfig();
             hikariConfig.setPoolName(poolName);
@@ -50,16 +250,17 @@ public final class MySQLConnection {
             );
             hikariConfig.setUsername(user);
             hikariConfig.setPassword(pass);
+            hikariConfig.setReadOnly(readOnly);
 
-            hikariConfig.setMaximumPoolSize(10);
-            hikariConfig.setMinimumIdle(5);
+            hikariConfig.setMaximumPoolSize(poolSize);
+            hikariConfig.setMinimumIdle(Math.min(5, poolSize));
             hikariConfig.setIdleTimeout(300000);
             hikariConfig.setConnectionTimeout(10000);
             hikariConfig.setMaxLifetime(1800000);
 
             hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
-            hikariConfig.addDataSourceProperty("prepStmtCacheSize", "250");
-            hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+            hikariConfig.addDataSourceProperty("prepStmtCacheSize", String.valueOf(PREPARED_STATEMENT_CACHE_SIZE));
+            hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", String.valueOf(PREPARED_STATEMENT_SQL_LIMIT));
 
             return new HikariDataSource(hikariConfig);
 
@@ -70,6 +271,49 @@ public final class MySQLConnection {
         return null;
     }
 
+    private static void configureMetrics() {
+        Config.MetricsConfig metrics = Config.getMetricsConfig();
+        QueryMetrics.configure(metrics.enabled(), metrics.slowQueryMillis());
+    }
+
+    // one worker per pooled connection, more threads would only wait inside Hikari
+    private static synchronized void startExecutor(int threads) {
+        if (executor != null && !executor.isShutdown()) return;
+
+        Config.ExecutorConfig config = Config.getExecutorConfig();
+        executor = new DatabaseExecutor(
+                "CozyLib-DB",
+                threads,
+                config.queueCapacity(),
+                config.rejectionPolicy());
+    }
+
+    private static synchronized void stopExecutor() {
+        if (executor != null && !executor.isShutdown()) {
+            executor.shutdown(EXECUTOR_SHUTDOWN_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // the connection is only opened once it is known to be needed, an existing writer keeps its own
+    private static synchronized void startWriter(String url, int groupCommitSize) throws SQLException {
+        if (sqliteWriter != null) return;
+
+        Connection connection = DriverManager.getConnection(url);
+        try {
+            sqliteWriter = new SQLiteWriter(connection, groupCommitSize);
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private static synchronized void stopWriter() {
+        if (sqliteWriter != null) {
+            sqliteWriter.shutdown(EXECUTOR_SHUTDOWN_SECONDS, TimeUnit.SECONDS);
+            sqliteWriter = null;
+        }
+    }
+
     private void closeConnection() {
         if (hikariDataSource != null && !hikariDataSource.isClosed()) {
             hikariDataSource.close();
@@ -84,4 +328,289 @@ public final class MySQLConnection {
 
         return hikariDataSource.getConnection();
     }
+
+    /**
+     * Borrows a connection for reading. With read replicas configured the read goes to one of them,
+     * unless the player wrote within the read-your-writes window; without replicas it is a primary
+     * connection, like {@link #getConnection()}.
+     *
+     * @param player the player whose data is read, or null for reads not tied to one player
+     * @return a pooled connection the caller must close
+     * @throws SQLException if no connection could be borrowed
+     */
+    public static Connection getReadConnection(UUID player) throws SQLException {
+        ReplicaRouter router = replicaRouter;
+        if (router == null) {
+            return getConnection();
+        }
+
+        return router.getReadConnection(player);
+    }
+
+    /**
+     * Pins a player's reads to the primary for the read-your-writes window.
+     *
+     * @param player the player who just wrote
+     */
+    public static void markWritten(UUID player) {
+        ReplicaRouter router = replicaRouter;
+        if (router != null) {
+            router.pin(player);
+        }
+    }
+
+    /**
+     * Whether a player's reads are currently pinned to the primary.
+     *
+     * @param player the player's UUID
+     * @return true if the player wrote within the read-your-writes window
+     */
+    public static boolean isPinned(UUID player) {
+        ReplicaRouter router = replicaRouter;
+        return router != null && router.isPinned(player);
+    }
+
+    /**
+     * Gets the router spreading reads over read replicas.
+     *
+     * @return the replica router, or null when using SQLite or before the pool started
+     */
+    public static ReplicaRouter getReplicaRouter() {
+        return replicaRouter;
+    }
+
+    /**
+     * Gets the router placing sharded tables on shards.
+     *
+     * @return the shard router, or null when using SQLite or before the pool started
+     */
+    public static ShardRouter getShardRouter() {
+        return shardRouter;
+    }
+
+    /**
+     * Gets the number of shards sharded tables are spread over, 1 when sharding is off.
+     */
+    public static int getShardCount() {
+        ShardRouter router = shardRouter;
+        return router == null ? 1 : router.getShardCount();
+    }
+
+    /**
+     * Borrows a connection from a shard's pool, counted against the plugin's bulkhead partition.
+     * Shard 0 is the primary.
+     *
+     * @param plugin the plugin borrowing the connection
+     * @param shard the shard index
+     * @return a pooled connection the caller must close
+     * @throws SQLException if the plugin's partition stayed full for its timeout, or the pool failed
+     */
+    public static Connection getShardConnection(Plugin plugin, int shard) throws SQLException {
+        ShardRouter router = shardRouter;
+        if (shard == 0 || router == null) {
+            return getConnection(plugin);
+        }
+
+        ConnectionBulkhead bulkhead = getBulkhead(plugin);
+        return bulkhead == null ? router.getConnection(shard) : bulkhead.acquire(() -> router.getConnection(shard));
+    }
+
+    /**
+     * Borrows a primary connection counted against the plugin's bulkhead partition.
+     *
+     * @param plugin the plugin borrowing the connection
+     * @return a pooled connection the caller must close
+     * @throws SQLException if the plugin's partition stayed full for its timeout, or the pool failed
+     */
+    public static Connection getConnection(Plugin plugin) throws SQLException {
+        ConnectionBulkhead bulkhead = getBulkhead(plugin);
+        return bulkhead == null ? getConnection() : bulkhead.acquire(MySQLConnection::getConnection);
+    }
+
+    /**
+     * Borrows a read connection counted against the plugin's bulkhead partition.
+     *
+     * @param plugin the plugin borrowing the connection
+     * @param player the player whose data is read, or null for reads not tied to one player
+     * @return a pooled connection the caller must close
+     * @throws SQLException if the plugin's partition stayed full for its timeout, or the pool failed
+     * @see #getReadConnection(UUID)
+     */
+    public static Connection getReadConnection(Plugin plugin, UUID player) throws SQLException {
+        ConnectionBulkhead bulkhead = getBulkhead(plugin);
+        return bulkhead == null ? getReadConnection(player) : bulkhead.acquire(() -> getReadConnection(player));
+    }
+
+    /**
+     * Runs write work like {@link #write(ConnectionCallback)}, borrowing the MySQL connection from
+     * the plugin's bulkhead partition.
+     */
+    public static <T> T write(Plugin plugin, ConnectionCallback<T> work) throws SQLException {
+        SQLiteWriter writer = sqliteWriter;
+        if (writer != null) {
+            return writer.execute(work);
+        }
+
+        try (Connection connection = getConnection(plugin)) {
+            return work.apply(connection);
+        }
+    }
+
+    /**
+     * Runs write work on a shard like {@link #write(Plugin, ConnectionCallback)}; shard 0 is the primary.
+     *
+     * @param shard the shard index
+     */
+    public static <T> T write(Plugin plugin, int shard, ConnectionCallback<T> work) throws SQLException {
+        if (shard == 0) return write(plugin, work);
+
+        try (Connection connection = getShardConnection(plugin, shard)) {
+            return work.apply(connection);
+        }
+    }
+
+    /**
+     * Runs write work as one transaction, committed only if all of it succeeds. On MySQL the work
+     * gets a pooled connection with auto-commit off; on SQLite it runs on the writer thread under
+     * its own savepoint, which already makes it atomic.
+     *
+     * @param plugin the plugin whose bulkhead partition the connection counts against
+     * @param work the work, which must not close the connection or commit
+     * @param <T> the result type
+     * @return the work's result
+     * @throws SQLException if the work or its commit failed, after rolling back
+     */
+    public static <T> T transaction(Plugin plugin, ConnectionCallback<T> work) throws SQLException {
+        return transaction(plugin, 0, work);
+    }
+
+    /**
+     * Runs write work as one transaction on a shard, see {@link #transaction(Plugin, ConnectionCallback)}.
+     *
+     * @param shard the shard index, 0 for the primary
+     */
+    public static <T> T transaction(Plugin plugin, int shard, ConnectionCallback<T> work) throws SQLException {
+        SQLiteWriter writer = sqliteWriter;
+        if (writer != null) {
+            return writer.execute(work);
+        }
+
+        try (Connection connection = getShardConnection(plugin, shard)) {
+            connection.setAutoCommit(false);
+
+            try {
+                T result = work.apply(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollback) {
+                    e.addSuppressed(rollback);
+                }
+
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Gets the bulkhead partition of a plugin, creating it on first use with the limits from config.yml.
+     *
+     * @param plugin the consuming plugin
+     * @return the partition, or null if bulkheads are disabled
+     */
+    public static ConnectionBulkhead getBulkhead(Plugin plugin) {
+        Config.BulkheadConfig config = Config.getBulkheadConfig();
+        if (!config.enabled()) return null;
+
+        return bulkheads.computeIfAbsent(plugin.getName(), name -> new ConnectionBulkhead(
+                name,
+                config.plugins().getOrDefault(name, config.maxConnections()),
+                config.timeoutMillis()));
+    }
+
+    public static Collection<ConnectionBulkhead> getBulkheads() {
+        return bulkheads.values();
+    }
+
+    /**
+     * Runs write work on a connection and returns its result. On MySQL the work borrows a pooled
+     * connection; on SQLite it is handed to the single writer thread and committed with whatever
+     * other writes are queued.
+     *
+     * @param work the work, which must not close the connection
+     * @param <T> the result type
+     * @return the work's result
+     * @throws SQLException if the work or its commit failed
+     */
+    public static <T> T write(ConnectionCallback<T> work) throws SQLException {
+        SQLiteWriter writer = sqliteWriter;
+        if (writer != null) {
+            return writer.execute(work);
+        }
+
+        try (Connection connection = getConnection()) {
+            return work.apply(connection);
+        }
+    }
+
+    /**
+     * Gets the SQL dialect of the configured storage backend.
+     *
+     * @return the active dialect
+     */
+    public static SqlDialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * Gets the executor every repository runs its blocking JDBC work on.
+     *
+     * @return the database executor, or null if the pool failed to start
+     */
+    public static DatabaseExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Runs blocking database work on the database executor, queued under the given key.
+     * Falls back to Paper's async scheduler when the executor is not running.
+     *
+     * @param plugin the plugin owning the work
+     * @param key the fairness key, usually the table name
+     * @param supplier the blocking work
+     * @param <T> the supplied value type
+     * @return a future containing the supplied value
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Plugin plugin, String key, Supplier<T> supplier) {
+        DatabaseExecutor current = executor;
+
+        if (current == null || current.isShutdown()) {
+            return FutureUtils.supplyAsync(plugin, supplier);
+        }
+
+        return current.supplyAsync(key, supplier);
+    }
+
+    /**
+     * Runs blocking database work on the database executor, queued under the given key.
+     * Falls back to Paper's async scheduler when the executor is not running.
+     *
+     * @param plugin the plugin owning the work
+     * @param key the fairness key, usually the table name
+     * @param runnable the blocking work
+     * @return a future completed when the work finishes
+     */
+    public static CompletableFuture<Void> runAsync(Plugin plugin, String key, Runnable runnable) {
+        DatabaseExecutor current = executor;
+
+        if (current == null || current.isShutdown()) {
+            return FutureUtils.async(plugin, runnable);
+        }
+
+        return current.runAsync(key, runnable);
+    }
 }
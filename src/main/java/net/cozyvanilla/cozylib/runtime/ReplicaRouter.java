@@ -0,0 +1,108 @@
+package net.cozyvanilla.cozylib.runtime;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import net.cozyvanilla.cozylib.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Spreads reads over the read-replica pools while writes stay on the primary.
+ *
+ * <p>Replicas are picked round-robin. A replica that fails to hand out a connection is skipped
+ * for a few seconds, and when no replica is usable the read falls back to the primary. Players
+ * who just wrote are pinned to the primary for the read-your-writes window, so they never read
+ * an older value from a replica that has not caught up yet.
+ */
+public final class ReplicaRouter {
+    private static final long RETRY_NANOS = Duration.ofSeconds(5).toNanos();
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final AtomicLongArray downUntil;
+    private final AtomicInteger next = new AtomicInteger();
+    private final @Nullable Cache<UUID, Boolean> pinned;
+
+    public ReplicaRouter(@NotNull HikariDataSource primary, @NotNull List<HikariDataSource> replicas, long pinMillis) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.downUntil = new AtomicLongArray(replicas.size());
+        this.pinned = pinMillis <= 0 ? null : Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(pinMillis))
+                .build();
+    }
+
+    /**
+     * Borrows a connection for reading, from a replica when one is usable.
+     *
+     * @param player the player whose data is read, or null for reads not tied to one player
+     * @return a pooled connection, from the primary if the player is pinned or no replica is up
+     * @throws SQLException if the primary cannot hand out a connection either
+     */
+    public @NotNull Connection getReadConnection(@Nullable UUID player) throws SQLException {
+        if (replicas.isEmpty() || (player != null && isPinned(player))) {
+            return primary.getConnection();
+        }
+
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        long now = System.nanoTime();
+
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = (start + i) % replicas.size();
+            if (downUntil.get(index) - now > 0) continue;
+
+            try {
+                return replicas.get(index).getConnection();
+            } catch (SQLException e) {
+                downUntil.set(index, now + RETRY_NANOS);
+                Logger.warning("Read replica " + replicas.get(index).getPoolName() +
+                        " is unavailable, reading from the primary: " + e.getMessage());
+            }
+        }
+
+        return primary.getConnection();
+    }
+
+    /**
+     * Pins a player to the primary for the read-your-writes window. Called after each write.
+     *
+     * @param player the player who wrote
+     */
+    public void pin(@NotNull UUID player) {
+        if (pinned != null && !replicas.isEmpty()) {
+            pinned.put(player, Boolean.TRUE);
+        }
+    }
+
+    public boolean isPinned(@NotNull UUID player) {
+        return pinned != null && pinned.getIfPresent(player) != null;
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    public long getPinnedCount() {
+        return pinned == null ? 0 : pinned.estimatedSize();
+    }
+
+    /**
+     * Closes the replica pools. The primary is owned by {@link MySQLConnection}.
+     */
+    public void close() {
+        for (HikariDataSource replica : replicas) {
+            if (!replica.isClosed()) {
+                replica.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package net.cozyvanilla.cozylib.runtime;
+
+import net.cozyvanilla.cozylib.Logger;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.ConnectionCallback;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Funnels every SQLite write through one thread and one connection, committing in groups.
+ *
+ * <p>SQLite allows a single writer at a time, so instead of letting pooled connections fight over
+ * the write lock, callers hand their work to this thread. Whatever queued up while the previous
+ * group was committing runs as the next group inside one transaction, so a burst of writes costs
+ * a single WAL sync. Each piece of work runs under its own savepoint: a failing write is rolled
+ * back and reported to its caller without affecting the rest of the group.
+ */
+public final class SQLiteWriter {
+    private static final long POLL_MILLIS = 250L;
+
+    private final Connection connection;
+    private final int maxGroupSize;
+    private final BlockingQueue<Pending<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    private static final class Pending<T> {
+        private final ConnectionCallback<T> work;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private Throwable error;
+
+        private Pending(ConnectionCallback<T> work) {
+            this.work = work;
+        }
+
+        private void run(Connection connection) {
+            try {
+                result = work.apply(connection);
+            } catch (Throwable t) {
+                error = t;
+            }
+        }
+
+        private void complete(Throwable groupError) {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else if (groupError != null) {
+                future.completeExceptionally(groupError);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    public SQLiteWriter(@NotNull Connection connection, int maxGroupSize) throws SQLException {
+        this.connection = connection;
+        this.maxGroupSize = Math.max(1, maxGroupSize);
+
+        connection.setAutoCommit(false);
+
+        this.thread = new Thread(this::work, "CozyLib-SQLite-Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Runs write work on the writer thread and waits until its group is committed. Work submitted
+     * from the writer thread itself runs inline, inside the current group.
+     *
+     * @param work the work, which must not close or commit the connection
+     * @param <T> the result type
+     * @return the work's result
+     * @throws SQLException if the work or the commit failed
+     */
+    public <T> T execute(@NotNull ConnectionCallback<T> work) throws SQLException {
+        if (Thread.currentThread() == thread) {
+            return work.apply(connection);
+        }
+
+        if (!running) {
+            throw new SQLException("SQLite writer is shut down");
+        }
+
+        Pending<T> pending = new Pending<>(work);
+        queue.add(pending);
+
+        if (!thread.isAlive() && queue.remove(pending)) {
+            throw new SQLException("SQLite writer is shut down");
+        }
+
+        try {
+            return pending.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the SQLite writer", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sql) throw sql;
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new SQLException(cause);
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Commits everything already queued, then stops the thread and closes the write connection.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     */
+    public void shutdown(long timeout, @NotNull TimeUnit unit) {
+        running = false;
+
+        try {
+            thread.join(unit.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (thread.isAlive()) {
+            Logger.warning("SQLite writer did not finish in time, " + queue.size() + " writes were dropped");
+            thread.interrupt();
+        }
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            Logger.severe("Failed to close the SQLite write connection", e);
+        }
+    }
+
+    // private methods
+    private void work() {
+        List<Pending<?>> group = new ArrayList<>(maxGroupSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending<?> first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                group.add(first);
+                queue.drainTo(group, maxGroupSize - 1);
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            commit(group);
+            group.clear();
+        }
+    }
+
+    private void commit(List<Pending<?>> group) {
+        for (Pending<?> pending : group) {
+            Savepoint savepoint;
+
+            try {
+                savepoint = connection.setSavepoint();
+            } catch (SQLException e) {
+                pending.error = e;
+                continue;
+            }
+
+            pending.run(connection);
+
+            try {
+                if (pending.error != null) {
+                    connection.rollback(savepoint);
+                } else {
+                    connection.releaseSavepoint(savepoint);
+                }
+            } catch (SQLException e) {
+                Logger.severe("Failed to close savepoint on the SQLite writer", e);
+            }
+        }
+
+        Throwable groupError = null;
+
+        try {
+            connection.commit();
+        } catch (SQLException e) {
+            groupError = e;
+            Logger.severe("Failed to commit a group of " + group.size() + " SQLite writes", e);
+
+            try {
+                connection.rollback();
+            } catch (SQLException rollback) {
+                Logger.severe("Failed to roll back the SQLite writer", rollback);
+            }
+        }
+
+        for (Pending<?> pending : group) {
+            pending.complete(groupError);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package net.cozyvanilla.cozylib.runtime;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.SqlDialect;
+import net.cozyvanilla.cozylib.util.java.UUIDUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Routes sharded tables to one of several MySQL servers by a stable hash of the player's UUID.
+ *
+ * <p>Shard 0 is the primary; the others come from {@code mysql.shards.hosts} in config.yml. Players
+ * are placed with jump consistent hashing, so appending a shard only moves the players that now
+ * belong to it, about {@code 1 / shards} of them, and never reorders the rest.
+ *
+ * <p>While a rebalance is pending ({@code previous_count} is set) a player whose shard changed
+ * stays on their old shard until {@link net.cozyvanilla.cozylib.modules.mysql.services.shard.ShardRebalancer}
+ * moves them and records the move in {@value #PLACEMENT_TABLE} on the primary. Those players cost
+ * one lookup, cached for a few seconds; every other player is routed without touching the database.
+ *
+ * <p>Before copying a player the rebalancer marks them as moving. Writes routed through
+ * {@link #writeShardOf} fail for a moving player, so no server writes rows the copy would miss;
+ * reads keep going to the old shard until the move is recorded.
+ */
+public final class ShardRouter {
+    public static final String PLACEMENT_TABLE = "cozylib_shard_placement";
+
+    private final List<HikariDataSource> shards;
+    private final int previousCount;
+    private final long placementCacheMillis;
+    private final Cache<UUID, Placement> placements;
+
+    // where a player awaiting a move lives, and whether the rebalancer is copying them right now
+    private record Placement(int shard, boolean moving) {}
+
+    /**
+     * @param shards the shard pools, the primary first
+     * @param previousCount the shard count before the last change, or 0 if no rebalance is pending
+     * @param placementCacheMillis how long a looked up placement stays cached
+     */
+    public ShardRouter(@NotNull List<HikariDataSource> shards, int previousCount, long placementCacheMillis) {
+        this.shards = List.copyOf(shards);
+        this.previousCount = previousCount > 0 && previousCount < shards.size() ? previousCount : 0;
+        this.placementCacheMillis = placementCacheMillis;
+        this.placements = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(placementCacheMillis))
+                .maximumSize(100_000)
+                .build();
+    }
+
+    /**
+     * Gets the shard a player's rows live on.
+     *
+     * @param player the player's UUID
+     * @return the shard index
+     * @throws SQLException if the placement of a player awaiting a move could not be looked up
+     */
+    public int shardOf(@NotNull UUID player) throws SQLException {
+        int home = homeOf(player);
+        if (previousCount == 0) return home;
+
+        int previous = jump(key(player), previousCount);
+        if (previous == home) return home;
+
+        return placement(player, previous).shard();
+    }
+
+    /**
+     * Gets the shard a player's rows are written to.
+     *
+     * @param player the player's UUID
+     * @return the shard index
+     * @throws SQLException if the player is being moved by the rebalancer, or the placement of a
+     *                      player awaiting a move could not be looked up
+     */
+    public int writeShardOf(@NotNull UUID player) throws SQLException {
+        int home = homeOf(player);
+        if (previousCount == 0) return home;
+
+        int previous = jump(key(player), previousCount);
+        if (previous == home) return home;
+
+        Placement placement = placement(player, previous);
+        if (placement.moving()) {
+            throw new SQLException("Player " + player + " is being moved to shard " + home + ", retry the write later");
+        }
+
+        return placement.shard();
+    }
+
+    /**
+     * Gets the shard a player belongs on once every pending move is done.
+     */
+    public int homeOf(@NotNull UUID player) {
+        return jump(key(player), shards.size());
+    }
+
+    /**
+     * Gets the shard a player lived on before the last change of the shard count.
+     *
+     * @return the previous shard, or the home shard if no rebalance is pending
+     */
+    public int previousOf(@NotNull UUID player) {
+        return previousCount == 0 ? homeOf(player) : jump(key(player), previousCount);
+    }
+
+    /**
+     * Marks players as moving, so writes to them fail until {@link #recordMove} or
+     * {@link #cancelMove}. Called by the rebalancer before copying them; other servers only see the
+     * mark once their cached placement expires, see {@link #getPlacementCacheMillis()}.
+     *
+     * @param connection a primary connection
+     * @param dialect the dialect of the primary
+     * @param players the players about to be copied, all living on {@code from}
+     * @param from the shard they are copied from
+     */
+    public void markMoving(@NotNull Connection connection, @NotNull SqlDialect dialect,
+                           @NotNull Collection<UUID> players, int from) throws SQLException {
+        for (UUID player : players) {
+            place(connection, dialect, player, from, true);
+        }
+    }
+
+    /**
+     * Records that a player's rows were moved to their home shard and clears their moving mark.
+     * Called by the rebalancer once the rows are copied and before they are deleted from the old shard.
+     *
+     * @param connection a primary connection
+     * @param dialect the dialect of the primary
+     * @param player the moved player
+     */
+    public void recordMove(@NotNull Connection connection, @NotNull SqlDialect dialect, @NotNull UUID player) throws SQLException {
+        place(connection, dialect, player, homeOf(player), false);
+    }
+
+    /**
+     * Clears the moving mark of a player whose move failed, leaving them on their old shard.
+     *
+     * @param connection a primary connection
+     * @param dialect the dialect of the primary
+     * @param player the player
+     * @param from the shard their rows still live on
+     */
+    public void cancelMove(@NotNull Connection connection, @NotNull SqlDialect dialect, @NotNull UUID player, int from) throws SQLException {
+        place(connection, dialect, player, from, false);
+    }
+
+    /**
+     * Creates the placement table on the primary if a rebalance is pending, adding the moving mark
+     * to a table created before it existed.
+     */
+    public void createPlacementTable(@NotNull Connection connection, @NotNull SqlDialect dialect) throws SQLException {
+        if (previousCount == 0) return;
+
+        for (String sql : dialect.createTable(PLACEMENT_TABLE,
+                "player_uuid BINARY(16) NOT NULL, shard INT NOT NULL, moving BOOLEAN NOT NULL DEFAULT FALSE, " +
+                        "PRIMARY KEY (player_uuid)")) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.execute();
+            }
+        }
+
+        if (!dialect.columnNames(connection, PLACEMENT_TABLE).contains("moving")) {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "ALTER TABLE " + PLACEMENT_TABLE + " ADD COLUMN moving BOOLEAN NOT NULL DEFAULT FALSE")) {
+                ps.execute();
+            }
+        }
+    }
+
+    /**
+     * Borrows a connection from a shard's pool.
+     *
+     * @param shard the shard index
+     * @return a pooled connection the caller must close
+     */
+    public @NotNull Connection getConnection(int shard) throws SQLException {
+        return shards.get(shard).getConnection();
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public int getPreviousCount() {
+        return previousCount;
+    }
+
+    public boolean isRebalancing() {
+        return previousCount > 0;
+    }
+
+    /**
+     * Gets how long a looked up placement stays cached, the longest a server may keep writing to a
+     * player after they were marked as moving.
+     */
+    public long getPlacementCacheMillis() {
+        return placementCacheMillis;
+    }
+
+    public @NotNull String getPoolName(int shard) {
+        return shards.get(shard).getPoolName();
+    }
+
+    /**
+     * Closes the shard pools. The primary, shard 0, is owned by {@link MySQLConnection}.
+     */
+    public void close() {
+        for (int i = 1; i < shards.size(); i++) {
+            if (!shards.get(i).isClosed()) {
+                shards.get(i).close();
+            }
+        }
+    }
+
+    // private methods
+    private Placement placement(UUID player, int previous) throws SQLException {
+        Placement cached = placements.getIfPresent(player);
+        if (cached != null) return cached;
+
+        Placement placed = lookup(player, previous);
+        placements.put(player, placed);
+        return placed;
+    }
+
+    private Placement lookup(UUID player, int previous) throws SQLException {
+        try (Connection connection = shards.getFirst().getConnection();
+             PreparedStatement ps = connection.prepareStatement(
+                     "SELECT shard, moving FROM " + PLACEMENT_TABLE + " WHERE player_uuid = ?")) {
+            ps.setBytes(1, UUIDUtils.toBytes(player));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new Placement(rs.getInt(1), rs.getBoolean(2)) : new Placement(previous, false);
+            }
+        }
+    }
+
+    private void place(Connection connection, SqlDialect dialect, UUID player, int shard, boolean moving) throws SQLException {
+        String insert = dialect.upsert("INSERT INTO " + PLACEMENT_TABLE + " (player_uuid, shard, moving) VALUES (?, ?, ?)",
+                List.of("player_uuid"), "shard = " + dialect.inserted("shard") + ", moving = " + dialect.inserted("moving"));
+
+        try (PreparedStatement ps = connection.prepareStatement(insert)) {
+            ps.setBytes(1, UUIDUtils.toBytes(player));
+            ps.setInt(2, shard);
+            ps.setBoolean(3, moving);
+            ps.executeUpdate();
+        }
+
+        placements.put(player, new Placement(shard, moving));
+    }
+
+    // offline-mode uuids are name hashes with fixed version bits, mix them before bucketing
+    private static long key(UUID uuid) {
+        long key = uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    // Lamping & Veach, "A Fast, Minimal Memory, Consistent Hash Algorithm"
+    private static int jump(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+
+        return (int) bucket;
+    }
+}
@@ -0,0 +1,55 @@
+package net.cozyvanilla.cozylib.util.java;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+public class UUIDUtils {
+
+    private UUIDUtils() {}
+
+    /**
+     * Converts a UUID to its 16-byte big-endian representation, suitable for BINARY(16) columns.
+     *
+     * @param uuid the UUID to convert
+     * @return the 16 raw bytes of the UUID
+     */
+    @NotNull
+    public static byte[] toBytes(@NotNull UUID uuid) {
+        byte[] bytes = new byte[16];
+        writeLong(bytes, 0, uuid.getMostSignificantBits());
+        writeLong(bytes, 8, uuid.getLeastSignificantBits());
+        return bytes;
+    }
+
+    /**
+     * Creates a UUID from its 16-byte big-endian representation.
+     *
+     * @param bytes the 16 raw bytes
+     * @return the created UUID
+     * @throws IllegalArgumentException if the array is not 16 bytes long
+     */
+    @NotNull
+    public static UUID fromBytes(@NotNull byte[] bytes) {
+        if (bytes.length != 16) {
+            throw new IllegalArgumentException("UUID bytes must be 16 bytes long, got " + bytes.length);
+        }
+
+        return new UUID(readLong(bytes, 0), readLong(bytes, 8));
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
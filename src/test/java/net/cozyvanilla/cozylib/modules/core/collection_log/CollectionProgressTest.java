@@ -0,0 +1,70 @@
+package net.cozyvanilla.cozylib.modules.core.collection_log;
+
+import net.cozyvanilla.cozylib.common.enums.OperationType;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollectionProgressTest {
+    private final CollectionProgress progress = new CollectionProgress(UUID.randomUUID(), 4);
+
+    @Test
+    void appliesEveryOperation() {
+        assertEquals(5, progress.apply(0, OperationType.ADD, 5, 1));
+        assertEquals(15, progress.apply(0, OperationType.MULTIPLY, 3, 1));
+        assertEquals(12, progress.apply(0, OperationType.SUBTRACT, 3, 1));
+        assertEquals(4, progress.apply(0, OperationType.DIVIDE, 3, 1));
+        assertEquals(7, progress.apply(0, OperationType.SET, 7, 1));
+    }
+
+    @Test
+    void clampsAtZero() {
+        progress.apply(0, OperationType.SET, 3, 1);
+
+        assertEquals(0, progress.apply(0, OperationType.SUBTRACT, 10, 1));
+        assertEquals(0, progress.apply(1, OperationType.SET, -4, 1));
+        assertEquals(0, progress.apply(2, OperationType.ADD, Integer.MIN_VALUE, 1));
+    }
+
+    @Test
+    void clampsAtIntegerMaxInsteadOfOverflowing() {
+        progress.apply(0, OperationType.SET, Integer.MAX_VALUE - 1, 1);
+
+        assertEquals(Integer.MAX_VALUE, progress.apply(0, OperationType.ADD, 10, 1));
+        assertEquals(Integer.MAX_VALUE, progress.apply(0, OperationType.MULTIPLY, 2, 1));
+        assertEquals(Integer.MAX_VALUE, progress.apply(1, OperationType.SUBTRACT, Integer.MIN_VALUE, 1));
+    }
+
+    @Test
+    void rejectsDivisionByZero() {
+        assertThrows(ArithmeticException.class, () -> progress.apply(0, OperationType.DIVIDE, 0, 1));
+        assertFalse(progress.isDirty());
+    }
+
+    @Test
+    void keepsFirstObtainedTime() {
+        progress.apply(0, OperationType.ADD, 1, 100);
+        progress.apply(0, OperationType.SET, 0, 200);
+        progress.apply(0, OperationType.ADD, 1, 300);
+
+        assertEquals(100L, progress.getObtainedAt(0));
+        assertEquals(0L, progress.getObtainedAt(1));
+    }
+
+    @Test
+    void marksOnlyChangedIndicesDirty() {
+        progress.apply(0, OperationType.ADD, 1, 1);
+        progress.apply(1, OperationType.SUBTRACT, 1, 1);
+        progress.apply(2, OperationType.SET, 0, 1);
+
+        BitSet dirty = progress.takeDirty();
+        assertEquals(BitSet.valueOf(new long[]{0b1}), dirty);
+        assertFalse(progress.isDirty());
+
+        progress.restoreDirty(dirty);
+        assertTrue(progress.isDirty());
+    }
+}
@@ -0,0 +1,62 @@
+package net.cozyvanilla.cozylib.modules.mysql.repositories;
+
+import net.cozyvanilla.cozylib.modules.mysql.repositories.PlayerProgressRepository.Collection;
+import net.cozyvanilla.cozylib.modules.mysql.repositories.PlayerProgressRepository.ProgressKey;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgressJournalCodecTest {
+    private final PlayerProgressRepository.ProgressJournalCodec codec = new PlayerProgressRepository.ProgressJournalCodec();
+
+    @Test
+    void roundTripsObtainedRow() throws IOException {
+        ProgressKey key = new ProgressKey(UUID.randomUUID(), "diamond_ore");
+        Collection value = new Collection(42, Instant.ofEpochMilli(1_760_000_000_123L));
+
+        assertEquals(Map.entry(key, value), roundTrip(key, value));
+    }
+
+    @Test
+    void roundTripsRowWithoutObtainedAt() throws IOException {
+        ProgressKey key = new ProgressKey(UUID.randomUUID(), "dirt");
+        Collection value = new Collection(0, null);
+
+        assertEquals(Map.entry(key, value), roundTrip(key, value));
+    }
+
+    @Test
+    void keepsObtainedAtToTheMillisecond() throws IOException {
+        ProgressKey key = new ProgressKey(UUID.randomUUID(), "emerald");
+        Instant obtainedAt = Instant.ofEpochSecond(1_760_000_000L, 123_456_789L);
+
+        Collection read = roundTrip(key, new Collection(1, obtainedAt)).getValue();
+
+        assertEquals(Instant.ofEpochMilli(obtainedAt.toEpochMilli()), read.obtainedAt());
+    }
+
+    @Test
+    void roundTripsNegativeAndUnicodeValues() throws IOException {
+        ProgressKey key = new ProgressKey(new UUID(-1L, Long.MIN_VALUE), "päckchen_✓");
+        Collection value = new Collection(-7, Instant.EPOCH);
+
+        assertEquals(Map.entry(key, value), roundTrip(key, value));
+    }
+
+    // private methods
+    private Map.Entry<ProgressKey, Collection> roundTrip(ProgressKey key, Collection value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        codec.write(new DataOutputStream(bytes), key, value);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Map.Entry<ProgressKey, Collection> read = codec.read(in);
+
+        assertEquals(0, in.available(), "the codec must read exactly what it wrote");
+        return read;
+    }
+}
@@ -0,0 +1,141 @@
+package net.cozyvanilla.cozylib.modules.mysql.services.journal;
+
+import net.cozyvanilla.cozylib.modules.mysql.interfaces.JournalCodec;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalRecordsTest {
+    private static final JournalCodec<String, Integer> CODEC = new JournalCodec<>() {
+        @Override
+        public void write(@NotNull DataOutput out, @NotNull String key, @NotNull Integer value) throws IOException {
+            out.writeUTF(key);
+            out.writeInt(value);
+        }
+
+        @Override
+        public @NotNull Map.Entry<String, Integer> read(@NotNull DataInput in) throws IOException {
+            return Map.entry(in.readUTF(), in.readInt());
+        }
+    };
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void replaysRowsInWriteOrder() throws IOException {
+        Path file = folder.resolve("rows.journal");
+        Files.write(file, records(Map.entry("a", 1), Map.entry("b", 2), Map.entry("a", 3)));
+
+        List<Map.Entry<String, Integer>> rows = new ArrayList<>();
+        JournalRecords.Replay replay = JournalRecords.replay(file, CODEC, (key, value) -> rows.add(Map.entry(key, value)));
+
+        assertEquals(3, replay.rows());
+        assertEquals(0L, replay.tornBytes());
+        assertEquals(List.of(Map.entry("a", 1), Map.entry("b", 2), Map.entry("a", 3)), rows);
+    }
+
+    @Test
+    void cutsTornTailOff() throws IOException {
+        Path file = folder.resolve("torn.journal");
+        byte[] intact = records(Map.entry("a", 1), Map.entry("b", 2));
+        byte[] last = JournalRecords.encode(CODEC, "c", 3);
+
+        // a crash in the middle of the last append
+        byte[] torn = Arrays.copyOf(intact, intact.length + last.length - 3);
+        System.arraycopy(last, 0, torn, intact.length, last.length - 3);
+        Files.write(file, torn);
+
+        Map<String, Integer> rows = new LinkedHashMap<>();
+        JournalRecords.Replay replay = JournalRecords.replay(file, CODEC, rows::put);
+
+        assertEquals(2, replay.rows());
+        assertEquals(last.length - 3, replay.tornBytes());
+        assertEquals(Map.of("a", 1, "b", 2), rows);
+        assertEquals(intact.length, Files.size(file));
+    }
+
+    @Test
+    void stopsAtCorruptRecord() throws IOException {
+        Path file = folder.resolve("corrupt.journal");
+        byte[] bytes = records(Map.entry("a", 1), Map.entry("b", 2), Map.entry("c", 3));
+        int second = JournalRecords.encode(CODEC, "a", 1).length;
+
+        // flip a payload byte of the second record, its checksum no longer matches
+        bytes[second + JournalRecords.HEADER_BYTES + 1] ^= 0x7F;
+        Files.write(file, bytes);
+
+        Map<String, Integer> rows = new LinkedHashMap<>();
+        JournalRecords.Replay replay = JournalRecords.replay(file, CODEC, rows::put);
+
+        assertEquals(1, replay.rows());
+        assertEquals(Map.of("a", 1), rows);
+        assertEquals(second, Files.size(file));
+    }
+
+    @Test
+    void appendsAfterTornTailReplayAgain() throws IOException {
+        Path file = folder.resolve("append.journal");
+        byte[] intact = records(Map.entry("a", 1));
+        Files.write(file, Arrays.copyOf(intact, intact.length + 5));
+
+        JournalRecords.replay(file, CODEC, (key, value) -> {});
+        Files.write(file, JournalRecords.encode(CODEC, "b", 2), java.nio.file.StandardOpenOption.APPEND);
+
+        Map<String, Integer> rows = new LinkedHashMap<>();
+        JournalRecords.Replay replay = JournalRecords.replay(file, CODEC, rows::put);
+
+        assertEquals(2, replay.rows());
+        assertEquals(Map.of("a", 1, "b", 2), rows);
+    }
+
+    @Test
+    void compactionKeepsOnlyMergedRows() throws IOException {
+        Path file = folder.resolve("compact.journal");
+        Files.write(file, records(Map.entry("a", 1), Map.entry("b", 2), Map.entry("a", 5), Map.entry("b", 1)));
+
+        // merged like the journal tracks appends, the newer value wins
+        Map<String, Integer> pending = new HashMap<>();
+        JournalRecords.replay(file, CODEC, (key, value) -> pending.merge(key, value, (older, newer) -> newer));
+        long before = Files.size(file);
+
+        Path compacted = folder.resolve("compact.journal.compact");
+        JournalRecords.write(compacted, CODEC, pending);
+
+        Map<String, Integer> rows = new HashMap<>();
+        JournalRecords.Replay replay = JournalRecords.replay(compacted, CODEC, rows::put);
+
+        assertEquals(2, replay.rows());
+        assertEquals(Map.of("a", 5, "b", 1), rows);
+        assertTrue(Files.size(compacted) < before);
+    }
+
+    @Test
+    void missingFileReplaysNothing() throws IOException {
+        JournalRecords.Replay replay = JournalRecords.replay(folder.resolve("missing.journal"), CODEC, (key, value) -> fail());
+
+        assertEquals(0, replay.rows());
+        assertEquals(0L, replay.tornBytes());
+    }
+
+    // private methods
+    @SafeVarargs
+    private static byte[] records(Map.Entry<String, Integer>... rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Map.Entry<String, Integer> row : rows) {
+            bytes.write(JournalRecords.encode(CODEC, row.getKey(), row.getValue()));
+        }
+
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,162 @@
+package net.cozyvanilla.cozylib.modules.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CooldownTableTest {
+    // mirrors CooldownTable: the top four hash bits pick one of 16 segments, the low bits the slot
+    private static final int SEGMENTS = 16;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final CooldownTable table = new CooldownTable();
+
+    @Test
+    void deleteShiftsWrappedRunBack() {
+        // three keys homed in the last slot run over into slots 0 and 1, the fourth is homed in 0
+        List<Key> last = keysAt(0, INITIAL_CAPACITY - 1, 3, 0);
+        Key first = keysAt(0, 0, 1, 0).getFirst();
+
+        put(last.get(0), 1000);
+        put(last.get(1), 1001);
+        put(last.get(2), 1002);
+        put(first, 1003);
+
+        remove(last.get(0));
+
+        assertEquals(0L, get(last.get(0), 0));
+        assertEquals(1001L, get(last.get(1), 0));
+        assertEquals(1002L, get(last.get(2), 0));
+        assertEquals(1003L, get(first, 0));
+        assertEquals(3, table.size());
+
+        remove(last.get(2));
+
+        assertEquals(1001L, get(last.get(1), 0));
+        assertEquals(0L, get(last.get(2), 0));
+        assertEquals(1003L, get(first, 0));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    void removeAllKeepsOtherHandlesAcrossTheWrap() {
+        List<Key> kept = keysAt(0, INITIAL_CAPACITY - 1, 1, 1);
+        List<Key> dropped = keysAt(0, INITIAL_CAPACITY - 1, 2, 0);
+        Key wrapped = keysAt(0, 0, 1, 0).getFirst();
+
+        put(dropped.get(0), 1000);
+        put(kept.getFirst(), 1001);
+        put(dropped.get(1), 1002);
+        put(wrapped, 1003);
+
+        table.removeAll(0);
+
+        assertEquals(1001L, get(kept.getFirst(), 0));
+        assertEquals(0L, get(dropped.get(0), 0));
+        assertEquals(0L, get(dropped.get(1), 0));
+        assertEquals(0L, get(wrapped, 0));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void sweepsExpiredEntriesBeforeGrowing() {
+        // a segment at its load factor, the next insert has to sweep or grow
+        List<Key> expired = keysIn(3, INITIAL_CAPACITY / 2);
+        for (Key key : expired) {
+            put(key, 100);
+        }
+        assertEquals(expired.size(), table.size());
+
+        Key fresh = keysIn(3, expired.size() + 1).getLast();
+        table.put(fresh.msb(), fresh.lsb(), fresh.handle(), 1000, 200);
+
+        assertEquals(1, table.size());
+        assertEquals(1000L, get(fresh, 200));
+        for (Key key : expired) {
+            assertEquals(0L, get(key, 0), "swept entries are gone, not only expired");
+        }
+    }
+
+    @Test
+    void growsWhenLiveEntriesFillASegment() {
+        List<Key> keys = keysIn(5, INITIAL_CAPACITY * 2);
+        for (int i = 0; i < keys.size(); i++) {
+            put(keys.get(i), 1000 + i);
+        }
+
+        assertEquals(keys.size(), table.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(1000L + i, get(keys.get(i), 0));
+        }
+    }
+
+    @Test
+    void expiredEntriesReadAsAbsent() {
+        Key key = keysIn(0, 1).getFirst();
+        put(key, 1000);
+
+        assertEquals(1000L, get(key, 999));
+        assertEquals(0L, get(key, 1000));
+        assertEquals(0L, get(key, 5000));
+    }
+
+    @Test
+    void putIfAbsentKeepsActiveAndReplacesExpired() {
+        Key key = keysIn(0, 1).getFirst();
+
+        assertEquals(0L, table.putIfAbsent(key.msb(), key.lsb(), key.handle(), 1000, 0));
+        assertEquals(1000L, table.putIfAbsent(key.msb(), key.lsb(), key.handle(), 2000, 500));
+        assertEquals(1000L, get(key, 500));
+
+        assertEquals(0L, table.putIfAbsent(key.msb(), key.lsb(), key.handle(), 3000, 1000));
+        assertEquals(3000L, get(key, 1000));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void putReplacesActiveEntry() {
+        Key key = keysIn(0, 1).getFirst();
+        put(key, 1000);
+        table.put(key.msb(), key.lsb(), key.handle(), 500, 0);
+
+        assertEquals(500L, get(key, 0));
+        assertEquals(1, table.size());
+    }
+
+    // private methods
+    private record Key(long msb, long lsb, int handle) {}
+
+    private void put(Key key, long expiresAt) {
+        table.put(key.msb(), key.lsb(), key.handle(), expiresAt, 0);
+    }
+
+    private long get(Key key, long now) {
+        return table.get(key.msb(), key.lsb(), key.handle(), now);
+    }
+
+    private void remove(Key key) {
+        table.remove(key.msb(), key.lsb(), key.handle());
+    }
+
+    private static List<Key> keysIn(int segment, int count) {
+        return keysAt(segment, -1, count, 0);
+    }
+
+    // keys of one segment homed in a slot of its initial table, or in any slot for -1
+    private static List<Key> keysAt(int segment, int slot, int count, int handle) {
+        List<Key> keys = new ArrayList<>(count);
+
+        for (long msb = 1; keys.size() < count; msb++) {
+            long hash = CooldownTable.hash(msb, 0L, handle);
+            if (((int) (hash >>> 60) & (SEGMENTS - 1)) != segment) continue;
+            if (slot >= 0 && ((int) hash & (INITIAL_CAPACITY - 1)) != slot) continue;
+
+            keys.add(new Key(msb, 0L, handle));
+        }
+
+        return keys;
+    }
+}
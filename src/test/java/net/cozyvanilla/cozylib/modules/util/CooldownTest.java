@@ -0,0 +1,63 @@
+package net.cozyvanilla.cozylib.modules.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the static API answered from a Caffeine map of expiry times before, and must answer the same now
+class CooldownTest {
+
+    @Test
+    void getIsZeroWithoutCooldown() {
+        assertEquals(0L, Cooldown.get(CooldownTest.class, UUID.randomUUID(), "none"));
+    }
+
+    @Test
+    void getReturnsWholeRemainingSeconds() {
+        UUID uuid = UUID.randomUUID();
+        Cooldown.start(CooldownTest.class, uuid, "get", 10);
+
+        long remaining = Cooldown.get(CooldownTest.class, uuid, "get");
+        assertTrue(remaining == 9 || remaining == 10, "got " + remaining);
+    }
+
+    @Test
+    void getOrStartReturnsZeroWhenStartingAndRemainingAfterwards() {
+        UUID uuid = UUID.randomUUID();
+
+        assertEquals(0L, Cooldown.getOrStart(CooldownTest.class, uuid, "getOrStart", 30));
+
+        // the running cooldown is kept, not restarted with the new duration
+        long remaining = Cooldown.getOrStart(CooldownTest.class, uuid, "getOrStart", 5);
+        assertTrue(remaining == 29 || remaining == 30, "got " + remaining);
+        assertEquals(remaining, Cooldown.get(CooldownTest.class, uuid, "getOrStart"));
+    }
+
+    @Test
+    void tryStartOnlyStartsOnce() {
+        UUID uuid = UUID.randomUUID();
+
+        assertTrue(Cooldown.tryStart(CooldownTest.class, uuid, "tryStart", 10));
+        assertFalse(Cooldown.tryStart(CooldownTest.class, uuid, "tryStart", 10));
+    }
+
+    @Test
+    void cooldownsAreScopedByOwnerIdAndPlayer() {
+        UUID uuid = UUID.randomUUID();
+        Cooldown.start(CooldownTest.class, uuid, "scoped", 10);
+
+        assertEquals(0L, Cooldown.get(String.class, uuid, "scoped"));
+        assertEquals(0L, Cooldown.get(CooldownTest.class, uuid, "other"));
+        assertEquals(0L, Cooldown.get(CooldownTest.class, UUID.randomUUID(), "scoped"));
+    }
+
+    @Test
+    void rejectsNonPositiveDurations() {
+        UUID uuid = UUID.randomUUID();
+
+        assertThrows(IllegalArgumentException.class, () -> Cooldown.start(CooldownTest.class, uuid, "invalid", 0));
+        assertThrows(IllegalArgumentException.class, () -> Cooldown.getOrStart(CooldownTest.class, uuid, "invalid", -1));
+    }
+}
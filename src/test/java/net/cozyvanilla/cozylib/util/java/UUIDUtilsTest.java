@@ -0,0 +1,34 @@
+package net.cozyvanilla.cozylib.util.java;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UUIDUtilsTest {
+
+    @Test
+    void roundTripsThroughBytes() {
+        for (UUID uuid : new UUID[]{UUID.randomUUID(), new UUID(0L, 0L), new UUID(-1L, Long.MIN_VALUE)}) {
+            assertEquals(uuid, UUIDUtils.fromBytes(UUIDUtils.toBytes(uuid)));
+        }
+    }
+
+    @Test
+    void writesBigEndianMostSignificantFirst() {
+        UUID uuid = UUID.fromString("01234567-89ab-cdef-fedc-ba9876543210");
+        ByteBuffer expected = ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits());
+
+        assertArrayEquals(expected.array(), UUIDUtils.toBytes(uuid));
+    }
+
+    @Test
+    void rejectsWrongLength() {
+        assertThrows(IllegalArgumentException.class, () -> UUIDUtils.fromBytes(new byte[15]));
+        assertThrows(IllegalArgumentException.class, () -> UUIDUtils.fromBytes(new byte[17]));
+    }
+}